@@ -5,6 +5,9 @@ import com.microsoft.playwright.options.*;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 public class BrowserManager implements AutoCloseable {
@@ -13,10 +16,20 @@ public class BrowserManager implements AutoCloseable {
   private Playwright pw;
   private Browser browser;
   private BrowserContext ctx;
+  // 用 ReentrantLock 而非 synchronized：启动浏览器要数秒，synchronized 会把虚拟线程钉在载体线程上
+  private final ReentrantLock lock = new ReentrantLock();
+  // 前台负载 = 打开的页面数 - 后台页面数（保留中的搜索会话、闲置的创作中心页、预取页）
+  private final AtomicInteger openPages = new AtomicInteger();
+  private final Set<Page> background = ConcurrentHashMap.newKeySet();
   public BrowserManager() { this(true); }               // 默认无头
   public BrowserManager(boolean headless) { this.headless = headless; }
 
-  public synchronized BrowserContext context(){
+  public BrowserContext context(){
+    lock.lock();
+    try{ return contextLocked(); } finally { lock.unlock(); }
+  }
+
+  private BrowserContext contextLocked(){
     if(ctx!=null) return ctx;
     pw = Playwright.create();
     browser = pw.chromium().launch(new BrowserType.LaunchOptions().setHeadless(headless));
@@ -27,12 +40,27 @@ public class BrowserManager implements AutoCloseable {
     // 降低默认等待，避免卡死
     ctx.setDefaultTimeout(6000);
     ctx.setDefaultNavigationTimeout(8000);
+    ctx.onPage(p -> {
+      openPages.incrementAndGet();
+      p.onClose(x -> { openPages.decrementAndGet(); background.remove(x); });
+    });
     // restore cookies
     var cookies = store.read();
     if(!cookies.isEmpty()) ctx.addCookies(cookies.stream().map(this::toCookie).toList());
     return ctx;
   }
 
+  /** 正在为前台请求工作的页面数 */
+  public int foregroundPages(){
+    return Math.max(0, openPages.get() - background.size());
+  }
+
+  /** 标记页面为后台（闲置保留/低优先级），不计入前台负载 */
+  public void markBackground(Page page, boolean bg){
+    if(page == null) return;
+    if(bg && !page.isClosed()) background.add(page); else background.remove(page);
+  }
+
   private Cookie toCookie(Map<String,Object> m){
     Cookie c = new Cookie(String.valueOf(m.get("name")),String.valueOf(m.get("value")));
     c.setDomain(String.valueOf(m.get("domain")));
@@ -44,7 +72,8 @@ public class BrowserManager implements AutoCloseable {
     return c;
   }
 
-  public synchronized void persistCookies(){
+  public void persistCookies(){
+    lock.lock();
     try{
       var cookies = context().cookies();
       List<Map<String,Object>> list = new ArrayList<>();
@@ -58,6 +87,7 @@ public class BrowserManager implements AutoCloseable {
       }
       store.write(list);
     }catch(Exception e){ throw new RuntimeException(e); }
+    finally { lock.unlock(); }
   }
 
   @Override public void close(){
@@ -0,0 +1,267 @@
+package com.lv.xhsmcp.cache;
+
+import com.lv.xhsmcp.util.Json;
+import com.lv.xhsmcp.xhs.BizErrorCode;
+import com.lv.xhsmcp.xhs.Result;
+import com.lv.xhsmcp.xhs.StatsSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 工具结果缓存：按字节计量的 LRU + 同 key 并发请求合并（single-flight）
+ * <p>
+ * - 成功结果按工具 TTL 缓存；过期后在 stale 窗口内保留，站点出错时兜底返回
+ * - AUTH_REQUIRED 失败写入短期负缓存，避免短时间内反复打开页面被跳登录
+ * - 其他失败不缓存
+ */
+@Slf4j
+@Service
+public class ToolCache implements StatsSource {
+    /* ===================== 常量 ===================== */
+    public static final String FEED_DETAIL = "feedDetail";
+    public static final String USER_PROFILE = "userProfile";
+    public static final String SEARCH = "search";
+
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+    private static final String MSG_STALE = "站点请求失败，返回过期缓存";
+
+    private final long maxBytes;
+    private final long negativeTtlMs;
+    private final long staleMs;
+    private final Map<String, Long> ttlMs = new HashMap<>();
+
+    /** 访问顺序的 LinkedHashMap 即 LRU；所有访问持有 lock */
+    private final LinkedHashMap<String, Entry> lru = new LinkedHashMap<>(256, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private long bytes;
+    private long evictions;
+
+    private final Map<String, CompletableFuture<Result<?>>> inflight = new ConcurrentHashMap<>();
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    public ToolCache(@Value("${xhs.cache.max-bytes:67108864}") long maxBytes,
+                     @Value("${xhs.cache.negative-ttl-seconds:30}") long negativeTtlSeconds,
+                     @Value("${xhs.cache.stale-seconds:3600}") long staleSeconds,
+                     @Value("${xhs.cache.ttl.feed-detail-seconds:600}") long feedDetailTtl,
+                     @Value("${xhs.cache.ttl.user-profile-seconds:600}") long userProfileTtl,
+                     @Value("${xhs.cache.ttl.search-seconds:120}") long searchTtl) {
+        this.maxBytes = maxBytes;
+        this.negativeTtlMs = negativeTtlSeconds * 1000;
+        this.staleMs = staleSeconds * 1000;
+        ttlMs.put(FEED_DETAIL, feedDetailTtl * 1000);
+        ttlMs.put(USER_PROFILE, userProfileTtl * 1000);
+        ttlMs.put(SEARCH, searchTtl * 1000);
+    }
+
+    /**
+     * 读缓存，未命中则由第一个调用方执行 loader，同 key 的并发调用方等待同一结果
+     * <p>
+     * loader 抛出的异常会原样传给所有等待方（有过期缓存时返回过期缓存）。
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Result<T> get(String tool, String key, Supplier<Result<T>> loader) {
+        final String k = tool + '|' + key;
+        final Counters c = counters.computeIfAbsent(tool, t -> new Counters());
+        final long now = System.currentTimeMillis();
+
+        Entry e = peek(k);
+        if (e != null && now < e.expiresAt) {
+            (e.negative ? c.negativeHits : c.hits).increment();
+            return (Result<T>) e.value;
+        }
+
+        CompletableFuture<Result<?>> mine = new CompletableFuture<>();
+        CompletableFuture<Result<?>> running = inflight.putIfAbsent(k, mine);
+        if (running != null) {
+            c.coalesced.increment();
+            return (Result<T>) join(running);
+        }
+
+        c.misses.increment();
+        try {
+            Result<T> r;
+            try {
+                r = onLoaded(tool, k, loader.get(), c);
+            } catch (RuntimeException ex) {
+                r = staleOf(k, now);
+                if (r == null) {
+                    throw ex;
+                }
+                c.staleHits.increment();
+                log.warn("Serve stale cache on error. key={}, err={}", k, ex.getMessage());
+            }
+            mine.complete(r);
+            return r;
+        } catch (RuntimeException ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inflight.remove(k, mine);
+        }
+    }
+
+    /** 主动写入（预取等场景），不影响命中统计 */
+    public <T> void put(String tool, String key, Result<T> value) {
+        if (value != null && value.isSuccess()) {
+            store(tool + '|' + key, value, ttlOf(tool), false);
+        }
+    }
+
+    /** 是否已有未过期的成功结果 */
+    public boolean containsFresh(String tool, String key) {
+        Entry e = peek(tool + '|' + key);
+        return e != null && !e.negative && System.currentTimeMillis() < e.expiresAt;
+    }
+
+    private <T> Result<T> onLoaded(String tool, String k, Result<T> r, Counters c) {
+        if (r.isSuccess()) {
+            store(k, r, ttlOf(tool), false);
+            return r;
+        }
+        if (r.getCode() == BizErrorCode.AUTH_REQUIRED) {
+            store(k, r, negativeTtlMs, true);
+            return r;
+        }
+        // 站点侧失败：有过期缓存就兜底
+        Result<T> stale = staleOf(k, System.currentTimeMillis());
+        if (stale != null) {
+            c.staleHits.increment();
+            log.warn("Serve stale cache on failure. key={}, code={}", k, r.getCode());
+            return stale;
+        }
+        return r;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Result<T> staleOf(String k, long now) {
+        Entry e = peek(k);
+        if (e == null || e.negative || now > e.expiresAt + staleMs) {
+            return null;
+        }
+        Result<T> v = (Result<T>) e.value;
+        return Result.ok(v.getData(), MSG_STALE);
+    }
+
+    private static Result<?> join(CompletableFuture<Result<?>> f) {
+        try {
+            return f.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw ex;
+        }
+    }
+
+    private long ttlOf(String tool) {
+        return ttlMs.getOrDefault(tool, 60_000L);
+    }
+
+    /* =============== LRU 存取 =============== */
+
+    private Entry peek(String k) {
+        lock.lock();
+        try {
+            return lru.get(k);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void store(String k, Result<?> value, long ttl, boolean negative) {
+        long size = estimate(k, value);
+        if (size > maxBytes) {
+            return; // 单个结果超过总容量，不缓存
+        }
+        Entry e = new Entry(value, size, System.currentTimeMillis() + ttl, negative);
+        lock.lock();
+        try {
+            Entry old = lru.put(k, e);
+            if (old != null) {
+                bytes -= old.bytes;
+            }
+            bytes += size;
+            Iterator<Map.Entry<String, Entry>> it = lru.entrySet().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, Entry> eldest = it.next();
+                if (eldest.getKey().equals(k)) continue;
+                bytes -= eldest.getValue().bytes;
+                it.remove();
+                evictions++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 以序列化后的 JSON 字节数近似内存占用 */
+    private static long estimate(String k, Result<?> value) {
+        long data;
+        try {
+            data = value.getData() == null ? 0 : Json.M.writeValueAsBytes(value.getData()).length;
+        } catch (Exception ex) {
+            data = 4096;
+        }
+        String msg = value.getMessage();
+        return ENTRY_OVERHEAD_BYTES + 2L * k.length() + (msg == null ? 0 : 2L * msg.length()) + data;
+    }
+
+    /* =============== 指标 =============== */
+
+    @Override
+    public String statsName() {
+        return "cache";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            out.put("entries", lru.size());
+            out.put("bytes", bytes);
+            out.put("maxBytes", maxBytes);
+            out.put("evictions", evictions);
+        } finally {
+            lock.unlock();
+        }
+        out.put("inflight", inflight.size());
+        Map<String, Object> tools = new TreeMap<>();
+        counters.forEach((tool, c) -> tools.put(tool, c.snapshot()));
+        out.put("tools", tools);
+        return out;
+    }
+
+    private record Entry(Result<?> value, long bytes, long expiresAt, boolean negative) {}
+
+    private static final class Counters {
+        final LongAdder hits = new LongAdder();
+        final LongAdder negativeHits = new LongAdder();
+        final LongAdder staleHits = new LongAdder();
+        final LongAdder coalesced = new LongAdder();
+        final LongAdder misses = new LongAdder();
+
+        Map<String, Object> snapshot() {
+            long h = hits.sum(), n = negativeHits.sum(), s = staleHits.sum(), co = coalesced.sum(), m = misses.sum();
+            long total = h + n + co + m;
+            Map<String, Object> x = new LinkedHashMap<>();
+            x.put("hits", h);
+            x.put("negativeHits", n);
+            x.put("coalesced", co);
+            x.put("misses", m);
+            x.put("staleServed", s);
+            // 合并的请求也没有额外打开浏览器，计入命中
+            x.put("hitRatio", total == 0 ? 0.0 : Math.round((h + n + co) * 10_000.0 / total) / 10_000.0);
+            return x;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.lv.xhsmcp.cache;
+
+import com.lv.xhsmcp.model.Comment;
+import com.lv.xhsmcp.model.Feed;
+import com.lv.xhsmcp.model.User;
+import com.lv.xhsmcp.xhs.StatsSource;
+import io.micrometer.common.util.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * xsec_token 登记表：从搜索、信息流、主页、评论等结果里学习笔记/用户对应的 token，
+ * 调用方未带 token 时自动补全，减少因缺 token 被跳转后的失败与重试
+ * <p>
+ * 有界（xhs.token.max-entries）、带过期（xhs.token.ttl-hours）；超出容量时淘汰最旧的条目。
+ */
+@Service
+public class XsecTokenRegistry implements StatsSource {
+    /* ===================== 常量 ===================== */
+    private static final String NOTE = "n:";
+    private static final String USER = "u:";
+
+    private final int maxEntries;
+    private final long ttlMs;
+    private final Map<String, Entry> map = new ConcurrentHashMap<>();
+    private final ReentrantLock evictLock = new ReentrantLock();
+
+    private final LongAdder filled = new LongAdder();
+    private final LongAdder missed = new LongAdder();
+
+    public XsecTokenRegistry(@Value("${xhs.token.max-entries:50000}") int maxEntries,
+                             @Value("${xhs.token.ttl-hours:24}") long ttlHours) {
+        this.maxEntries = Math.max(16, maxEntries);
+        this.ttlMs = ttlHours * 3_600_000L;
+    }
+
+    /* =============== 补全 =============== */
+
+    /** 传入 token 非空则原样返回，否则从登记表中查找笔记 token（查不到返回原值） */
+    public String noteToken(String noteId, String given) {
+        return resolve(NOTE, noteId, given);
+    }
+
+    /** 同 {@link #noteToken}，用于用户主页 */
+    public String userToken(String userId, String given) {
+        return resolve(USER, userId, given);
+    }
+
+    private String resolve(String ns, String id, String given) {
+        if (StringUtils.isNotBlank(given) || StringUtils.isBlank(id)) {
+            return given;
+        }
+        Entry e = map.get(ns + id);
+        if (e == null || e.expiresAt < System.currentTimeMillis()) {
+            missed.increment();
+            return given;
+        }
+        filled.increment();
+        return e.token;
+    }
+
+    /* =============== 学习 =============== */
+
+    public void learnNote(String noteId, String token) {
+        put(NOTE, noteId, token);
+    }
+
+    public void learnUser(String userId, String token) {
+        put(USER, userId, token);
+    }
+
+    public void learnUser(User u) {
+        if (u != null) {
+            put(USER, u.getUserId(), u.getXsecToken());
+        }
+    }
+
+    /** 笔记卡片：笔记自身与作者的 token */
+    public void learnFeeds(Collection<Feed> feeds) {
+        if (feeds == null) return;
+        for (Feed f : feeds) {
+            if (f == null) continue;
+            put(NOTE, f.getId(), f.getXsecToken());
+            if (f.getNoteCard() != null) {
+                learnUser(f.getNoteCard().getUser());
+            }
+        }
+    }
+
+    /** 评论（含子评论）作者的 token */
+    public void learnComments(Collection<Comment> comments) {
+        if (comments == null) return;
+        for (Comment c : comments) {
+            if (c == null) continue;
+            learnUser(c.getUserInfo());
+            learnComments(c.getSubComments());
+        }
+    }
+
+    private void put(String ns, String id, String token) {
+        if (StringUtils.isBlank(id) || StringUtils.isBlank(token)) {
+            return;
+        }
+        map.put(ns + id, new Entry(token, System.currentTimeMillis() + ttlMs));
+        if (map.size() > maxEntries) {
+            evict();
+        }
+    }
+
+    /** 先清过期；仍超出则按过期时间淘汰最旧的，一次降到容量的 90%，摊薄排序开销 */
+    private void evict() {
+        if (!evictLock.tryLock()) {
+            return; // 其他线程正在清理
+        }
+        try {
+            evictLocked();
+        } finally {
+            evictLock.unlock();
+        }
+    }
+
+    private void evictLocked() {
+        long now = System.currentTimeMillis();
+        map.values().removeIf(e -> e.expiresAt < now);
+        int excess = map.size() - maxEntries * 9 / 10;
+        if (excess <= 0) {
+            return;
+        }
+        map.entrySet().stream()
+                .sorted(Comparator.comparingLong(x -> x.getValue().expiresAt))
+                .limit(excess)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(map::remove);
+    }
+
+    /* =============== 指标 =============== */
+
+    @Override
+    public String statsName() {
+        return "xsecTokens";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("entries", map.size());
+        out.put("maxEntries", maxEntries);
+        out.put("filled", filled.sum());
+        out.put("missed", missed.sum());
+        return out;
+    }
+
+    private record Entry(String token, long expiresAt) {}
+}
@@ -0,0 +1,27 @@
+package com.lv.xhsmcp.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.lv.xhsmcp.xhs.BizErrorCode;
+import lombok.*;
+
+import java.io.Serializable;
+
+/* ========== 批量工具的单项结果（失败不影响其他项） ========== */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult<T> implements Serializable {
+    private Integer index;     // 在入参列表中的位置
+    private String id;         // feedId / userId
+    private Boolean success;
+    private Boolean skipped;   // skipSeen / skipDuplicates 时未执行，原因见 message
+    private BizErrorCode code;
+    private String message;
+    private Long retryAfterSeconds;  // 被准入控制拒绝（OVERLOADED）时建议的重试等待
+    private Long elapsedMs;
+    private T data;
+}
@@ -1,5 +1,6 @@
 package com.lv.xhsmcp.model;
 
+import com.fasterxml.jackson.annotation.JsonAlias;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -18,19 +19,33 @@ public class Comment implements Serializable {
     private String id;
 
     @JsonProperty("noteId")
+    @JsonAlias({"noteId","note_id"})
     private String noteId;
 
     private String content;
+    @JsonAlias({"likeCount","like_count"})
     private String likeCount;
+    @JsonAlias({"createTime","create_time"})
     private Long createTime;     // epoch 秒
+    @JsonAlias({"ipLocation","ip_location"})
     private String ipLocation;
     private Boolean liked;
 
     // 字段名与结构稍异：原为 userInfo: User
     @JsonProperty("userInfo")
+    @JsonAlias({"userInfo","user_info"})
     private User userInfo;
 
+    @JsonAlias({"subCommentCount","sub_comment_count"})
     private String subCommentCount;
+    @JsonAlias({"subComments","sub_comments"})
     private List<Comment> subComments;
+    @JsonAlias({"showTags","show_tags"})
     private List<String> showTags;
+
+    // 评论接口（/comment/page）返回的子评论分页状态
+    @JsonAlias({"subCommentCursor","sub_comment_cursor"})
+    private String subCommentCursor;
+    @JsonAlias({"subCommentHasMore","sub_comment_has_more"})
+    private Boolean subCommentHasMore;
 }
@@ -0,0 +1,33 @@
+package com.lv.xhsmcp.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/* ========== 博主订阅：定期检查主页，只推送新增/变更的笔记 ========== */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CreatorWatch implements Serializable {
+    private String userId;
+    private String xsecToken;
+    private String nickname;
+    private Integer baseIntervalSeconds;   // 订阅时指定的检查间隔
+    private Integer intervalSeconds;       // 当前自适应间隔：有更新时缩短，长期无更新时拉长
+    private Long nextCheckAt;              // epoch 毫秒
+    private Long lastCheckAt;
+    private Long lastChangeAt;             // 最近一次发现新增/变更笔记的时间
+    private Integer checks;
+    private Integer failures;              // 连续失败次数
+    private String message;                // 最近一次失败原因
+    private Long createdAt;
+    private LinkedHashMap<String, Long> snapshot;  // 笔记 id -> 卡片指纹（标题/类型/封面），按首次出现顺序
+    private List<WatchUpdate> updates;             // 最近若干次变更，新的在后
+}
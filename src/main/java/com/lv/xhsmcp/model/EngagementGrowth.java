@@ -0,0 +1,24 @@
+package com.lv.xhsmcp.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.io.Serializable;
+
+/* ========== 某项互动数在查询区间内的增长 ========== */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class EngagementGrowth implements Serializable {
+    private String metric;        // likes / collects / comments / shares
+    private Long first;
+    private Long last;
+    private Long delta;
+    private Double perHour;
+    private Double percent;       // 相对首值的增幅（%），首值为 0 时不给出
+    private Boolean approximate;  // 首值或末值为约数，增量只精确到显示位数
+}
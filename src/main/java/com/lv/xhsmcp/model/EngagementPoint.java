@@ -0,0 +1,23 @@
+package com.lv.xhsmcp.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.io.Serializable;
+
+/* ========== 互动数时间序列的一个采样点 ========== */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class EngagementPoint implements Serializable {
+    private Long ts;              // epoch 毫秒
+    private Long likes;
+    private Long collects;
+    private Long comments;
+    private Long shares;
+    private Boolean approximate;  // 有计数来自“1.2万”之类的约数
+}
@@ -0,0 +1,24 @@
+package com.lv.xhsmcp.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.io.Serializable;
+import java.util.List;
+
+/* ========== engagementSeries 工具结果 ========== */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class EngagementSeries implements Serializable {
+    private String feedId;
+    private String title;
+    private Integer samples;          // 区间内原始样本数（降采样前）
+    private Integer stepSeconds;      // 降采样步长，未降采样时为空
+    private List<EngagementPoint> points;
+    private List<EngagementGrowth> growth;
+}
@@ -27,4 +27,5 @@ public class FeedDetail implements Serializable {
     private User user;
     private InteractInfo interactInfo;
     private List<DetailImageInfo> imageList;
+    private List<NoteTag> tagList;
 }
@@ -0,0 +1,21 @@
+package com.lv.xhsmcp.model;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.io.Serializable;
+
+/* ========== 批量获取笔记详情的单项 ========== */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FeedRef implements Serializable {
+    private String feedId;
+    @JsonAlias({"xsecToken","xsec_token"})
+    private String xsecToken;
+}
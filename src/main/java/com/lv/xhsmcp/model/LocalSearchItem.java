@@ -0,0 +1,22 @@
+package com.lv.xhsmcp.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.io.Serializable;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class LocalSearchItem implements Serializable {
+    private String feedId;
+    private String xsecToken;
+    private String title;
+    private Double score;        // BM25 得分
+    private Long fetchedAt;      // 最近一次抓取时间（epoch 毫秒）
+    private Feed feed;           // 本地存储中的笔记卡片，可能为空（只抓过详情时）
+}
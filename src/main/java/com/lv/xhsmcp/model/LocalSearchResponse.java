@@ -0,0 +1,21 @@
+package com.lv.xhsmcp.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class LocalSearchResponse implements Serializable {
+    private List<LocalSearchItem> items;
+    private Integer matched;     // 满足条件的文档数（截断前）
+    private Integer indexedDocs; // 索引中的笔记数
+    private Long elapsedMicros;
+}
@@ -0,0 +1,22 @@
+package com.lv.xhsmcp.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.io.Serializable;
+import java.util.List;
+
+/* ========== 多关键词搜索的合并条目 ========== */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MultiSearchItem implements Serializable {
+    private Feed feed;
+    private Double score;
+    private List<String> matchedKeywords;
+    private Integer bestRank;   // 在各关键词结果中的最好名次（从 1 开始）
+}
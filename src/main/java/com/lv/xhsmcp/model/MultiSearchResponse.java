@@ -0,0 +1,23 @@
+package com.lv.xhsmcp.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/* ========== 多关键词搜索结果（已去重、按 score 降序） ========== */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MultiSearchResponse implements Serializable {
+    private List<MultiSearchItem> items;
+    private Map<String, Integer> perKeyword;     // 关键词 -> 该关键词返回条数
+    private Map<String, String> failedKeywords;  // 关键词 -> 失败原因
+    private Integer uniqueTotal;                 // 去重后总条数（截断前）
+}
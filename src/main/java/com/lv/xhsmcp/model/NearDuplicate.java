@@ -0,0 +1,22 @@
+package com.lv.xhsmcp.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.io.Serializable;
+
+/* ========== 与某笔记内容近似的另一篇笔记 ========== */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class NearDuplicate implements Serializable {
+    private String feedId;
+    private String title;
+    private Double similarity;  // MinHash 估计的 Jaccard 相似度
+    private String basis;       // content：标题+正文；title：仅标题（至少一方未抓取详情）
+    private Boolean fetched;    // 是否已抓取过详情
+}
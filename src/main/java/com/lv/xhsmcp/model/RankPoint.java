@@ -0,0 +1,19 @@
+package com.lv.xhsmcp.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.io.Serializable;
+
+/* ========== 某笔记在一次关键词巡检中的名次 ========== */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RankPoint implements Serializable {
+    private Long ts;       // 巡检时间，epoch 毫秒
+    private Integer rank;  // 从 1 开始；不在结果中为空
+}
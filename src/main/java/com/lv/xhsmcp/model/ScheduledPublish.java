@@ -0,0 +1,43 @@
+package com.lv.xhsmcp.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.io.Serializable;
+import java.util.List;
+
+/* ========== 定时发布任务 ========== */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ScheduledPublish implements Serializable {
+    private String id;
+    private String title;
+    private String content;
+    private List<String> images;          // 原始图片（URL / 本地路径）
+    private List<String> preparedImages;  // 预取后的本地路径，发布时直接使用
+    private Long publishAt;               // 计划发布时间，epoch 毫秒
+    private Long fireAt;                  // 实际触发时间 = publishAt + 抖动
+    private Status status;
+    private String message;               // 最近一次结果/失败原因
+    private String noteId;                // 发布成功后的笔记 id
+    private Long createdAt;
+    private Long finishedAt;
+
+    public enum Status {
+        PENDING,    // 等待中
+        PREPARED,   // 素材已预取
+        RUNNING,    // 发布中
+        DONE,
+        FAILED,
+        CANCELLED;
+
+        public boolean isFinal() {
+            return this == DONE || this == FAILED || this == CANCELLED;
+        }
+    }
+}
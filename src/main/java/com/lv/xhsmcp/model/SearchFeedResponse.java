@@ -22,4 +22,10 @@ public class SearchFeedResponse implements Serializable {
     @JsonProperty("items")
     private List<Feed> items = new ArrayList<>();
     private Boolean hasMore = false;
+    /** 续取游标：服务端仍保留搜索会话时返回，传给 searchMore 继续获取 */
+    private String cursor;
+
+    public SearchFeedResponse(List<Feed> items, Boolean hasMore) {
+        this(items, hasMore, null);
+    }
 }
@@ -0,0 +1,21 @@
+package com.lv.xhsmcp.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.io.Serializable;
+
+/* ========== 流式搜索的最终汇总（明细已分批推送） ========== */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SearchSummary implements Serializable {
+    private String keyword;
+    private Integer total;    // 已推送条数
+    private Integer batches;  // 推送批次数
+    private Boolean hasMore;
+}
@@ -0,0 +1,26 @@
+package com.lv.xhsmcp.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.io.Serializable;
+
+/* ========== 互动数追踪：定时采样的笔记 ========== */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TrackedNote implements Serializable {
+    private String feedId;
+    private String xsecToken;
+    private String title;
+    private Integer intervalSeconds;  // 采样间隔
+    private Long nextCheckAt;         // epoch 毫秒
+    private Long lastSampleAt;
+    private Integer failures;         // 连续失败次数
+    private String message;           // 最近一次失败原因
+    private Long createdAt;
+}
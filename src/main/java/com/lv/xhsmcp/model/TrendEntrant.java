@@ -0,0 +1,23 @@
+package com.lv.xhsmcp.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.io.Serializable;
+
+/* ========== 关键词结果中的新进笔记 ========== */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TrendEntrant implements Serializable {
+    private String feedId;
+    private Long firstSeenAt;   // 首次进入结果的巡检时间，epoch 毫秒
+    private Integer firstRank;
+    private Integer bestRank;
+    private Integer latestRank; // 最近一次巡检中的名次，已掉出为空
+    private Feed feed;          // 本地存储中的笔记卡片，可能为空
+}
@@ -0,0 +1,27 @@
+package com.lv.xhsmcp.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.io.Serializable;
+
+/* ========== 关键词趋势监控：定时巡检的关键词 ========== */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TrendKeyword implements Serializable {
+    private String keyword;
+    private Integer intervalSeconds;  // 巡检间隔
+    private Integer limit;            // 每次记录的名次数
+    private Long nextSweepAt;         // epoch 毫秒
+    private Long lastSweepAt;
+    private Integer sweeps;           // 已记录的巡检次数
+    private Integer unchangedSweeps;  // 其中结果与上一次完全相同的次数
+    private Integer failures;         // 连续失败次数
+    private String message;           // 最近一次失败原因
+    private Long createdAt;
+}
@@ -26,6 +26,7 @@ public class User implements Serializable {
     @JsonAlias({"nickName","nick_name"})
     private String nickName;
 
+    @JsonAlias({"avatar","image"})
     private String avatar;
 
     @JsonProperty("xsecToken")
@@ -0,0 +1,21 @@
+package com.lv.xhsmcp.model;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.io.Serializable;
+
+/* ========== 批量获取用户主页的单项 ========== */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserRef implements Serializable {
+    private String userId;
+    @JsonAlias({"xsecToken","xsec_token"})
+    private String xsecToken;
+}
@@ -0,0 +1,22 @@
+package com.lv.xhsmcp.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.io.Serializable;
+import java.util.List;
+
+/* ========== 博主订阅的一次变更 ========== */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class WatchUpdate implements Serializable {
+    private String userId;
+    private Long detectedAt;      // epoch 毫秒
+    private List<Feed> newNotes;
+    private List<Feed> changedNotes;
+}
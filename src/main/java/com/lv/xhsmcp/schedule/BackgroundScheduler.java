@@ -0,0 +1,43 @@
+package com.lv.xhsmcp.schedule;
+
+import com.lv.xhsmcp.util.Threads;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 后台定时的共享设施：定时发布、博主订阅、互动数追踪、趋势巡检共用一个时间轮和一个存储刷盘线程
+ * <p>
+ * - 时间轮的 tick 线程只负责投递，到期任务由调用方交给各自的 worker 池执行
+ * - 刷盘任务应足够快（整表 JSON 写文件），异常由任务自行处理
+ * - 使用方先于本 bean 销毁，其 @PreDestroy 里仍可做最后一次刷盘
+ */
+@Component
+public class BackgroundScheduler {
+    /* ===================== 常量 ===================== */
+    public static final long TICK_MS = 1_000;
+    private static final int WHEEL_SIZE = 4_096;            // 一圈约 68 分钟
+
+    private final HashedTimerWheel wheel = new HashedTimerWheel(TICK_MS, WHEEL_SIZE, Runnable::run);
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(Threads.daemon("store-flush"));
+
+    /** 在指定的墙钟时间（epoch 毫秒）投递任务；已过期的在下一个 tick 投递 */
+    public HashedTimerWheel.Timeout at(long epochMs, Runnable task) {
+        return wheel.schedule(task, epochMs);
+    }
+
+    /** 按固定间隔执行刷盘任务 */
+    public ScheduledFuture<?> everyMs(long intervalMs, Runnable task) {
+        return flusher.scheduleWithFixedDelay(task, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        wheel.close();
+        flusher.shutdownNow();
+    }
+}
@@ -0,0 +1,150 @@
+package com.lv.xhsmcp.schedule;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 哈希时间轮：单个 tick 线程驱动所有定时任务
+ * <p>
+ * - 新增任务先进无锁队列，由 tick 线程放入桶内（桶只被 tick 线程访问，无需加锁）
+ * - 超过一圈的任务记录剩余圈数，逐圈递减
+ * - 到期任务交给外部 executor 执行，tick 线程本身不跑业务
+ * 上万个任务也只占一个线程。
+ */
+@Slf4j
+public final class HashedTimerWheel implements AutoCloseable {
+
+    private final long tickMs;
+    private final int mask;
+    private final ArrayDeque<Timeout>[] buckets;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Executor executor;
+    private final Thread worker;
+    private final AtomicBoolean running = new AtomicBoolean(true);
+
+    /** 时间轴原点：以 nanoTime 计时，避免系统时钟回拨 */
+    private final long startNanos = System.nanoTime();
+    private final long startEpochMs = System.currentTimeMillis();
+    private long tick;
+
+    /**
+     * @param tickMs    每格时长
+     * @param wheelSize 格数（向上取 2 的幂）
+     * @param executor  到期任务执行器
+     */
+    @SuppressWarnings("unchecked")
+    public HashedTimerWheel(long tickMs, int wheelSize, Executor executor) {
+        if (tickMs <= 0) {
+            throw new IllegalArgumentException("tickMs must be > 0");
+        }
+        if (wheelSize <= 0 || wheelSize > (1 << 20)) {
+            throw new IllegalArgumentException("wheelSize must be in (0, 2^20]");
+        }
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        if (size <= 0) size = 1;
+        this.tickMs = tickMs;
+        this.mask = size - 1;
+        this.buckets = new ArrayDeque[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        this.executor = executor;
+        this.worker = new Thread(this::run, "timer-wheel");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * 在指定的墙钟时间（epoch 毫秒）执行任务；已过期的任务在下一个 tick 执行
+     */
+    public Timeout schedule(Runnable task, long deadlineEpochMs) {
+        if (!running.get()) {
+            throw new IllegalStateException("timer wheel stopped");
+        }
+        long offsetMs = Math.max(0, deadlineEpochMs - startEpochMs);
+        Timeout t = new Timeout(task, offsetMs);
+        pending.add(t);
+        return t;
+    }
+
+    private void run() {
+        while (running.get()) {
+            long deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos((tick + 1) * tickMs);
+            long sleepNanos = deadlineNanos - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            transferPending();
+            expire(buckets[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void transferPending() {
+        Timeout t;
+        while ((t = pending.poll()) != null) {
+            if (t.isCancelled()) {
+                continue;
+            }
+            long calculated = t.offsetMs / tickMs;
+            // 已过期的放到当前格，立刻执行
+            long ticks = Math.max(calculated, tick);
+            t.remainingRounds = (ticks - tick) / buckets.length;
+            buckets[(int) (ticks & mask)].add(t);
+        }
+    }
+
+    private void expire(ArrayDeque<Timeout> bucket) {
+        Iterator<Timeout> it = bucket.iterator();
+        while (it.hasNext()) {
+            Timeout t = it.next();
+            if (t.isCancelled()) {
+                it.remove();
+            } else if (t.remainingRounds <= 0) {
+                it.remove();
+                try {
+                    executor.execute(t.task);
+                } catch (Exception e) {
+                    log.warn("Timer task rejected. err={}", e.getMessage());
+                }
+            } else {
+                t.remainingRounds--;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (running.compareAndSet(true, false)) {
+            worker.interrupt();
+        }
+    }
+
+    /** 定时任务句柄 */
+    public static final class Timeout {
+        private final Runnable task;
+        private final long offsetMs;
+        private final AtomicBoolean cancelled = new AtomicBoolean(false);
+        private long remainingRounds; // 仅 tick 线程读写
+
+        private Timeout(Runnable task, long offsetMs) {
+            this.task = task;
+            this.offsetMs = offsetMs;
+        }
+
+        public boolean cancel() { return cancelled.compareAndSet(false, true); }
+        public boolean isCancelled() { return cancelled.get(); }
+    }
+}
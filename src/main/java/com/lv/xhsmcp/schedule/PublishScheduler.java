@@ -0,0 +1,416 @@
+package com.lv.xhsmcp.schedule;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.lv.xhsmcp.model.ScheduledPublish;
+import com.lv.xhsmcp.model.ScheduledPublish.Status;
+import com.lv.xhsmcp.service.AdmissionController;
+import com.lv.xhsmcp.service.PublishService;
+import com.lv.xhsmcp.util.DataPaths;
+import com.lv.xhsmcp.util.JsonListStore;
+import com.lv.xhsmcp.util.Threads;
+import com.lv.xhsmcp.xhs.BizErrorCode;
+import com.lv.xhsmcp.xhs.Result;
+import io.micrometer.common.util.StringUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * 定时发布
+ * <p>
+ * - 所有任务挂在共享时间轮（{@link BackgroundScheduler}）上，不会一任务一线程
+ * - 任务表落盘，重启后重新挂载；过期未执行的任务立即补发
+ * - 到点前 prefetchLead 预取远程图片（存在任务表旁的 images/&lt;任务 id&gt;/ 下，随任务结束删除），到点只剩浏览器步骤；
+ *   到点时仍在进行的预取先等它结束，距触发不足两个 tick 的任务不预取；重启后预取文件已丢失的任务退回 PENDING 重新预取
+ * - 已结束的任务保留 7 天，启动时及每有任务结束时清理
+ * - 触发时间叠加随机抖动，并由固定数量的 worker 执行，避免整点扎堆
+ * - 到点的发布与手动发布一样经准入控制（"publish"，WRITE 级）；排队满被拒时任务恢复原状态，延后重新触发
+ */
+@Slf4j
+@Service
+public class PublishScheduler {
+    /* ===================== 常量 ===================== */
+    static final String ADMISSION_TOOL = "publish";
+    private static final long FLUSH_INTERVAL_MS = 1_000;
+    private static final long BUSY_RETRY_MS = 30_000;
+    private static final Duration FINISHED_RETENTION = Duration.ofDays(7);
+    private static final DateTimeFormatter LOCAL_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm[:ss]");
+
+    @Value("${xhs.schedule.zone:Asia/Shanghai}")
+    private String zone;
+    @Value("${xhs.schedule.workers:2}")
+    private int workers;
+    @Value("${xhs.schedule.jitter-seconds:30}")
+    private int jitterSeconds;
+    @Value("${xhs.schedule.prefetch-lead-minutes:10}")
+    private int prefetchLeadMinutes;
+
+    @Resource
+    private PublishService publishService;
+    @Resource
+    private BackgroundScheduler scheduler;
+    @Resource
+    private AdmissionController admission;
+
+    private final JsonListStore<ScheduledPublish> store = new JsonListStore<>(
+            DataPaths.dir("schedule").resolve("publish-jobs.json"), new TypeReference<>() {}, "定时发布任务");
+    private final Map<String, ScheduledPublish> jobs = new ConcurrentHashMap<>();
+    private final Map<String, List<HashedTimerWheel.Timeout>> timeouts = new ConcurrentHashMap<>();
+    /** 已投递、尚未结束的预取；到点发布前先等它写完素材目录 */
+    private final Map<String, Future<?>> prefetching = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+    private ExecutorService publishWorkers;
+    private ExecutorService prefetchWorker;
+    private ScheduledFuture<?> flushTask;
+
+    @PostConstruct
+    public void start() {
+        publishWorkers = Executors.newFixedThreadPool(Math.max(1, workers), Threads.daemon("publish-worker"));
+        prefetchWorker = Executors.newSingleThreadExecutor(Threads.daemon("publish-prefetch"));
+        flushTask = scheduler.everyMs(FLUSH_INTERVAL_MS, this::flushIfDirty);
+
+        long now = System.currentTimeMillis();
+        int restored = 0;
+        for (ScheduledPublish job : store.read()) {
+            if (job.getStatus() == Status.RUNNING) {
+                // 发布过程中被重启：结果未知，不自动重试，避免重复发帖
+                job.setStatus(Status.FAILED);
+                job.setMessage("服务重启，发布结果未知，请人工确认");
+                job.setFinishedAt(now);
+                dirty.set(true);
+            }
+            if (job.getStatus().isFinal()) {
+                jobs.put(job.getId(), job);
+                continue;
+            }
+            if (job.getStatus() == Status.PREPARED && !allExist(job.getPreparedImages())) {
+                // 预取的文件已不在（数据卷重建等）：退回 PENDING，按原计划重新预取
+                log.info("Prepared media missing, prefetch again. id={}", job.getId());
+                job.setStatus(Status.PENDING);
+                job.setPreparedImages(null);
+                dirty.set(true);
+            }
+            jobs.put(job.getId(), job);
+            arm(job);
+            restored++;
+        }
+        pruneFinished();
+        log.info("Publish scheduler started. restored={}, total={}, store={}", restored, jobs.size(), store.path());
+    }
+
+    @PreDestroy
+    public void stop() {
+        timeouts.values().forEach(ts -> ts.forEach(HashedTimerWheel.Timeout::cancel));
+        if (flushTask != null) flushTask.cancel(false);
+        if (prefetchWorker != null) prefetchWorker.shutdownNow();
+        if (publishWorkers != null) publishWorkers.shutdownNow();
+        flushIfDirty();
+    }
+
+    /**
+     * 新建定时发布任务
+     *
+     * @param publishAt 计划时间：yyyy-MM-dd HH:mm[:ss]（按 xhs.schedule.zone 解释）、ISO-8601 或 epoch 毫秒
+     */
+    public Result<ScheduledPublish> schedule(String title, String content, List<String> images, String publishAt) {
+        if (StringUtils.isBlank(title)) {
+            throw new IllegalArgumentException("标题不能为空");
+        }
+        if (StringUtils.isBlank(content)) {
+            throw new IllegalArgumentException("正文内容不能为空");
+        }
+        if (images == null || images.isEmpty()) {
+            throw new IllegalArgumentException("图片地址不能为空");
+        }
+        Long at = parseTime(publishAt);
+        if (at == null) {
+            return Result.fail(BizErrorCode.SCHEDULE_FAILED, "无法解析发布时间: " + publishAt);
+        }
+        long now = System.currentTimeMillis();
+        long jitter = jitterSeconds <= 0 ? 0 : ThreadLocalRandom.current().nextLong(jitterSeconds * 1000L);
+        ScheduledPublish job = ScheduledPublish.builder()
+                .id(UUID.randomUUID().toString())
+                .title(title)
+                .content(content)
+                .images(List.copyOf(images))
+                .publishAt(at)
+                .fireAt(Math.max(at, now) + jitter)
+                .status(Status.PENDING)
+                .createdAt(now)
+                .build();
+        jobs.put(job.getId(), job);
+        arm(job);
+        dirty.set(true);
+        log.info("Publish scheduled. id={}, publishAt={}, fireAt={}", job.getId(),
+                Instant.ofEpochMilli(at), Instant.ofEpochMilli(job.getFireAt()));
+        return Result.ok(copy(job), "已加入定时发布");
+    }
+
+    public Result<Void> cancel(String id) {
+        ScheduledPublish job = jobs.get(id);
+        if (job == null) {
+            return Result.fail(BizErrorCode.DATA_NOT_FOUND, "定时任务不存在: " + id);
+        }
+        synchronized (job) {
+            if (job.getStatus().isFinal() || job.getStatus() == Status.RUNNING) {
+                return Result.fail(BizErrorCode.SCHEDULE_FAILED, "任务当前状态不可取消: " + job.getStatus());
+            }
+            job.setStatus(Status.CANCELLED);
+            job.setFinishedAt(System.currentTimeMillis());
+        }
+        disarm(id);
+        deleteImages(id);
+        dirty.set(true);
+        pruneFinished();
+        return Result.ok("已取消");
+    }
+
+    /** 按计划时间排序返回所有任务（副本） */
+    public List<ScheduledPublish> list() {
+        List<ScheduledPublish> all = snapshot();
+        all.sort(Comparator.comparing(ScheduledPublish::getPublishAt));
+        return all;
+    }
+
+    /* ===================== 时间轮回调 ===================== */
+
+    private void arm(ScheduledPublish job) {
+        List<HashedTimerWheel.Timeout> ts = new ArrayList<>(2);
+        long prefetchAt = Math.max(System.currentTimeMillis(),
+                job.getFireAt() - Duration.ofMinutes(prefetchLeadMinutes).toMillis());
+        // 预取须比发布早至少一个 tick 投递，发布回调才一定能看到它的 Future；来不及的到点直接下载
+        if (job.getStatus() == Status.PENDING && job.getFireAt() - prefetchAt > 2 * BackgroundScheduler.TICK_MS) {
+            // tick 线程只负责投递，实际工作交给各自的线程池
+            ts.add(scheduler.at(prefetchAt, () -> prefetching.put(job.getId(), prefetchWorker.submit(() -> prefetch(job)))));
+        }
+        ts.add(scheduler.at(job.getFireAt(), () -> publishWorkers.execute(() -> fire(job))));
+        timeouts.put(job.getId(), ts);
+    }
+
+    private void disarm(String id) {
+        List<HashedTimerWheel.Timeout> ts = timeouts.remove(id);
+        if (ts != null) ts.forEach(HashedTimerWheel.Timeout::cancel);
+    }
+
+    /** 提前下载远程图片并校验本地文件，结果记入任务 */
+    private void prefetch(ScheduledPublish job) {
+        synchronized (job) {
+            if (job.getStatus() != Status.PENDING) return;
+        }
+        try {
+            Result<PublishService.ImagesReady> ready = publishService.checkAndDownload(job.getImages(), imageDir(job.getId()));
+            boolean cancelled;
+            synchronized (job) {
+                cancelled = job.getStatus() != Status.PENDING;
+            }
+            if (cancelled) {
+                // 下载期间任务被取消：取消时删过的目录又被写入，再删一次
+                deleteImages(job.getId());
+                return;
+            }
+            synchronized (job) {
+                if (ready.isSuccess()) {
+                    job.setPreparedImages(ready.getData().getLocalPaths());
+                    job.setStatus(Status.PREPARED);
+                    job.setMessage(null);
+                } else {
+                    // 预取失败不终止任务，到点再试一次
+                    job.setMessage("预取素材失败: " + ready.getMessage());
+                }
+            }
+            dirty.set(true);
+            log.info("Publish media prefetched. id={}, ok={}", job.getId(), ready.isSuccess());
+        } catch (Exception e) {
+            log.warn("Publish media prefetch failed. id={}, err={}", job.getId(), e.getMessage());
+        } finally {
+            prefetching.remove(job.getId());
+        }
+    }
+
+    /** 等待该任务进行中的预取结束；被中断时返回 false */
+    private boolean awaitPrefetch(String id) {
+        Future<?> f = prefetching.get(id);
+        if (f == null) return true;
+        try {
+            f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | CancellationException e) {
+            // prefetch 自行处理异常，这里只等它结束
+        }
+        return true;
+    }
+
+    private void fire(ScheduledPublish job) {
+        // 预取与发布写同一个素材目录，且发布结束会删除该目录
+        if (!awaitPrefetch(job.getId())) return;
+        List<String> prepared;
+        Status before;
+        synchronized (job) {
+            if (job.getStatus().isFinal() || job.getStatus() == Status.RUNNING) return;
+            prepared = job.getPreparedImages();
+            before = job.getStatus();
+            job.setStatus(Status.RUNNING);
+        }
+        dirty.set(true);
+        timeouts.remove(job.getId());
+        log.info("Scheduled publish firing. id={}, title={}", job.getId(), job.getTitle());
+
+        Status status;
+        String message;
+        String noteId = null;
+        try {
+            Result<String> r = admission.admit(ADMISSION_TOOL, () -> publish(job, prepared));
+            if (r.getCode() == BizErrorCode.OVERLOADED) {
+                // 被准入控制拒绝时尚未执行任何步骤：恢复原状态，延后再触发
+                long delayMs = Math.max(BUSY_RETRY_MS, r.getRetryAfterSeconds() == null ? 0 : r.getRetryAfterSeconds() * 1000);
+                synchronized (job) {
+                    job.setStatus(before);
+                    job.setMessage(r.getMessage());
+                    job.setFireAt(System.currentTimeMillis() + delayMs);
+                }
+                dirty.set(true);
+                arm(job);
+                log.info("Scheduled publish deferred by admission control. id={}, delayMs={}", job.getId(), delayMs);
+                return;
+            }
+            status = r.isSuccess() ? Status.DONE : Status.FAILED;
+            message = r.getMessage();
+            noteId = r.getData();
+        } catch (Exception e) {
+            log.error("Scheduled publish failed. id={}, err={}", job.getId(), e.getMessage(), e);
+            status = Status.FAILED;
+            message = e.getMessage();
+        }
+        synchronized (job) {
+            job.setStatus(status);
+            job.setMessage(message);
+            job.setNoteId(noteId);
+            job.setFinishedAt(System.currentTimeMillis());
+        }
+        deleteImages(job.getId());
+        dirty.set(true);
+        pruneFinished();
+    }
+
+    private Result<String> publish(ScheduledPublish job, List<String> prepared) {
+        // 未预取成功，或预取文件在此期间丢失：到点现下载
+        Result<PublishService.ImagesReady> ready = allExist(prepared) ? null
+                : publishService.checkAndDownload(job.getImages(), imageDir(job.getId()));
+        if (ready != null && !ready.isSuccess()) {
+            return Result.fail(ready.getCode(), ready.getMessage());
+        }
+        return publishService.publish(job.getTitle(), job.getContent(),
+                ready != null ? ready.getData().getLocalPaths() : prepared);
+    }
+
+    /* ===================== 持久化 ===================== */
+
+    private void flushIfDirty() {
+        if (!dirty.getAndSet(false)) return;
+        try {
+            store.write(snapshot());
+        } catch (Exception e) {
+            dirty.set(true);
+            log.warn("Flush scheduled publish store failed. err={}", e.getMessage());
+        }
+    }
+
+    /** 移除结束超过保留期的任务 */
+    private void pruneFinished() {
+        long cutoff = System.currentTimeMillis() - FINISHED_RETENTION.toMillis();
+        for (ScheduledPublish job : jobs.values()) {
+            boolean expired;
+            synchronized (job) {
+                expired = job.getStatus().isFinal() && job.getFinishedAt() != null && job.getFinishedAt() < cutoff;
+            }
+            if (expired && jobs.remove(job.getId(), job)) {
+                deleteImages(job.getId());
+                dirty.set(true);
+            }
+        }
+    }
+
+    /* ===================== 辅助方法 ===================== */
+
+    private List<ScheduledPublish> snapshot() {
+        List<ScheduledPublish> all = new ArrayList<>(jobs.size());
+        for (ScheduledPublish job : jobs.values()) {
+            all.add(copy(job));
+        }
+        return all;
+    }
+
+    private static ScheduledPublish copy(ScheduledPublish job) {
+        synchronized (job) {
+            return job.toBuilder().build();
+        }
+    }
+
+    /** 预取素材目录：与任务表同在数据目录下，容器重建后仍在 */
+    private Path imageDir(String id) {
+        return store.path().resolveSibling("images").resolve(id);
+    }
+
+    private void deleteImages(String id) {
+        Path dir = imageDir(id);
+        if (!Files.isDirectory(dir)) return;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path f : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(f);
+            }
+            Files.deleteIfExists(dir);
+        } catch (IOException e) {
+            log.warn("Delete prepared media failed. id={}, err={}", id, e.getMessage());
+        }
+    }
+
+    private static boolean allExist(List<String> paths) {
+        if (paths == null || paths.isEmpty()) return false;
+        for (String p : paths) {
+            if (!Files.exists(Paths.get(p))) return false;
+        }
+        return true;
+    }
+
+    private Long parseTime(String s) {
+        if (StringUtils.isBlank(s)) return null;
+        String v = s.trim();
+        if (v.chars().allMatch(Character::isDigit)) {
+            return Long.parseLong(v);
+        }
+        ZoneId z = ZoneId.of(zone);
+        try {
+            return OffsetDateTime.parse(v).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ignore) {
+            // 不带时区，继续按本地时间解析
+        }
+        try {
+            return LocalDateTime.parse(v).atZone(z).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ignore) {
+            // 继续尝试空格分隔格式
+        }
+        try {
+            return LocalDateTime.parse(v, LOCAL_FMT).atZone(z).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,593 @@
+package com.lv.xhsmcp.service;
+
+import com.lv.xhsmcp.xhs.BizErrorCode;
+import com.lv.xhsmcp.xhs.Result;
+import com.lv.xhsmcp.xhs.StatsSource;
+import io.micrometer.common.util.StringUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 工具调用准入控制：会打开浏览器页面的工具先过按工具的并发上限，再从按优先级划分的全局页面池取名额
+ * <p>
+ * - 按工具：公平信号量 + 有界等待队列
+ * - 全局页面池（xhs.admission.global-limit 个名额）分三个优先级 {@link Priority}：各自有预留名额（只给本级用）与上限，
+ *   其余为共享名额；有名额空出时先满足未用满预留的级别，共享名额按 已占用数 / 权重 最小的级别先得（加权公平）。
+ *   默认写操作上限 1，发一批视频时交互式读取仍有预留与大部分共享名额可用
+ * - 队列已满立即拒绝，排队超过 xhs.admission.max-queue-ms 也拒绝，均返回 {@link BizErrorCode#OVERLOADED} 与建议的 retryAfterSeconds
+ *   （按平均执行时长 EWMA × 前面的调用数 / 并发上限估算）
+ * - 套在 {@code ToolCache} 的 loader 里：命中缓存不占名额；被拒绝时有过期缓存则由缓存兜底
+ * - 批量工具按单项准入（每项各开一个页面），单项被拒只记在该项结果里
+ * - 后台定时检查（博主订阅 watchCheck、互动数追踪 engagementCheck、趋势巡检 trendSweep）也在此准入，默认 BULK 级
+ */
+@Slf4j
+@Service
+public class AdmissionController implements StatsSource {
+    /* ===================== 常量 ===================== */
+    private static final double EWMA_ALPHA = 0.2;
+    private static final long DEFAULT_SERVICE_MS = 5_000;
+    private static final long MAX_RETRY_AFTER_SECONDS = 120;
+    private static final int ACQUIRED = 0, QUEUE_FULL = 1, TIMED_OUT = 2;
+    /** 未在 xhs.admission.tool-priorities 中配置的工具的默认优先级；其余为 INTERACTIVE */
+    private static final Map<String, Priority> DEFAULT_PRIORITIES = Map.ofEntries(
+            Map.entry("publish", Priority.WRITE),
+            Map.entry("publishBatch", Priority.WRITE),
+            Map.entry("publishVideo", Priority.WRITE),
+            Map.entry("postComment", Priority.WRITE),
+            Map.entry("feedDetails", Priority.BULK),
+            Map.entry("userProfiles", Priority.BULK),
+            Map.entry("multiSearch", Priority.BULK),
+            Map.entry("watchCheck", Priority.BULK),
+            Map.entry("engagementCheck", Priority.BULK),
+            Map.entry("trendSweep", Priority.BULK),
+            Map.entry("detailPrefetch", Priority.BULK));
+
+    /** 浏览器页面池的优先级 */
+    public enum Priority {
+        /** 智能体的即时查询 */
+        INTERACTIVE,
+        /** 批量抓取 */
+        BULK,
+        /** 发布、评论等写操作（单次可能占用页面数分钟） */
+        WRITE;
+
+        /** 调用方指定的优先级；空白返回 null（用工具默认） */
+        public static Priority of(String s) {
+            if (StringUtils.isBlank(s)) {
+                return null;
+            }
+            try {
+                return valueOf(s.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("priority must be one of interactive, bulk, write: " + s);
+            }
+        }
+    }
+
+    private final boolean enabled;
+    private final long maxQueueNanos;
+    private final int defaultQueueSize;
+    private final Pool pool;
+    /** xhs.admission.tool-limits 中单独配置的工具：{并发上限, 队列长度} */
+    private final Map<String, int[]> toolSpecs;
+    private final Map<String, Priority> toolPriorities;
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    public AdmissionController(@Value("${xhs.admission.enabled:true}") boolean enabled,
+                               @Value("${xhs.admission.global-limit:4}") int globalLimit,
+                               @Value("${xhs.admission.queue-size:32}") int queueSize,
+                               @Value("${xhs.admission.max-queue-ms:15000}") long maxQueueMs,
+                               @Value("${xhs.admission.tool-limits:}") String toolLimits,
+                               @Value("${xhs.admission.tool-priorities:}") String toolPriorities,
+                               @Value("${xhs.admission.interactive.reserved:1}") int interactiveReserved,
+                               @Value("${xhs.admission.interactive.weight:6}") int interactiveWeight,
+                               @Value("${xhs.admission.interactive.max:4}") int interactiveMax,
+                               @Value("${xhs.admission.bulk.reserved:1}") int bulkReserved,
+                               @Value("${xhs.admission.bulk.weight:3}") int bulkWeight,
+                               @Value("${xhs.admission.bulk.max:3}") int bulkMax,
+                               @Value("${xhs.admission.write.reserved:0}") int writeReserved,
+                               @Value("${xhs.admission.write.weight:1}") int writeWeight,
+                               @Value("${xhs.admission.write.max:1}") int writeMax) {
+        if (globalLimit <= 0 || queueSize < 0 || maxQueueMs < 0) {
+            throw new IllegalStateException("xhs.admission.global-limit must be > 0, queue-size and max-queue-ms >= 0");
+        }
+        this.enabled = enabled;
+        this.maxQueueNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueMs);
+        this.defaultQueueSize = queueSize;
+        this.pool = new Pool(globalLimit, new Klass[]{
+                new Klass(Priority.INTERACTIVE, interactiveReserved, interactiveWeight, interactiveMax, queueSize),
+                new Klass(Priority.BULK, bulkReserved, bulkWeight, bulkMax, queueSize),
+                new Klass(Priority.WRITE, writeReserved, writeWeight, writeMax, queueSize)});
+        this.toolSpecs = parseSpecs(toolLimits, queueSize);
+        this.toolPriorities = parsePriorities(toolPriorities);
+    }
+
+    /** "tool=limit[/queue],..." */
+    static Map<String, int[]> parseSpecs(String spec, int defaultQueue) {
+        Map<String, int[]> out = new HashMap<>();
+        for (Map.Entry<String, String> e : entries(spec, "xhs.admission.tool-limits").entrySet()) {
+            String v = e.getValue();
+            int slash = v.indexOf('/');
+            try {
+                int limit = Integer.parseInt(slash < 0 ? v : v.substring(0, slash).trim());
+                int queue = slash < 0 ? defaultQueue : Integer.parseInt(v.substring(slash + 1).trim());
+                if (limit <= 0 || queue < 0) {
+                    throw new IllegalStateException("invalid xhs.admission.tool-limits entry: " + e.getKey() + "=" + v);
+                }
+                out.put(e.getKey(), new int[]{limit, queue});
+            } catch (NumberFormatException ex) {
+                throw new IllegalStateException("invalid xhs.admission.tool-limits entry: " + e.getKey() + "=" + v);
+            }
+        }
+        return out;
+    }
+
+    /** "tool=interactive|bulk|write,..." */
+    static Map<String, Priority> parsePriorities(String spec) {
+        Map<String, Priority> out = new HashMap<>();
+        for (Map.Entry<String, String> e : entries(spec, "xhs.admission.tool-priorities").entrySet()) {
+            try {
+                out.put(e.getKey(), Priority.of(e.getValue()));
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalStateException("invalid xhs.admission.tool-priorities entry: " + e.getKey() + "=" + e.getValue());
+            }
+        }
+        return out;
+    }
+
+    private static Map<String, String> entries(String spec, String property) {
+        Map<String, String> out = new LinkedHashMap<>();
+        if (StringUtils.isBlank(spec)) {
+            return out;
+        }
+        for (String part : spec.split(",")) {
+            String p = part.trim();
+            if (p.isEmpty()) continue;
+            int eq = p.indexOf('=');
+            if (eq <= 0 || eq == p.length() - 1) {
+                throw new IllegalStateException("invalid " + property + " entry: " + p);
+            }
+            out.put(p.substring(0, eq).trim(), p.substring(eq + 1).trim());
+        }
+        return out;
+    }
+
+    /** 按工具默认优先级准入后执行 job */
+    public <T> Result<T> admit(String tool, Supplier<Result<T>> job) {
+        return admit(tool, null, job);
+    }
+
+    /**
+     * 准入后执行 job；名额不足时不执行，返回 OVERLOADED
+     *
+     * @param tool      工具名（按工具限流与统计的维度）
+     * @param requested 调用方指定的优先级，null 用工具默认；默认为 WRITE 的工具不可改
+     */
+    public <T> Result<T> admit(String tool, Priority requested, Supplier<Result<T>> job) {
+        if (!enabled) {
+            return job.get();
+        }
+        Priority def = priorityOf(tool);
+        Priority p = requested == null || def == Priority.WRITE ? def : requested;
+        Lane lane = lanes.computeIfAbsent(tool, this::newLane);
+        long t0 = System.nanoTime();
+        long deadline = t0 + maxQueueNanos;
+        int a = lane.acquire(deadline);
+        if (a != ACQUIRED) {
+            return reject(tool, tool, a, lane.retryAfterSeconds());
+        }
+        Klass k = pool.classes[p.ordinal()];
+        int g = pool.acquire(k, deadline);
+        if (g != ACQUIRED) {
+            lane.release(-1);
+            return reject(tool, p.name().toLowerCase(Locale.ROOT) + " 级", g, pool.retryAfterSeconds(k));
+        }
+        long waited = System.nanoTime() - t0;
+        lane.recordWait(waited);
+        k.recordWait(waited);
+        long start = System.nanoTime();
+        long serviceMs = -1;
+        try {
+            Result<T> r = job.get();
+            serviceMs = (System.nanoTime() - start) / 1_000_000;
+            return r;
+        } finally {
+            // 异常结束的耗时不计入 EWMA（多为快速失败，会低估排队时长）
+            pool.release(k, serviceMs);
+            lane.release(serviceMs);
+            lane.latency.record((System.nanoTime() - t0) / 1_000_000);
+        }
+    }
+
+    /**
+     * tool 以 requested 优先级最多能同时执行几个（取按工具上限与该级上限的较小者）；
+     * 批量调用按此决定扇出宽度，排在后面的项不必先进准入队列干等
+     */
+    public int concurrency(String tool, Priority requested) {
+        Priority def = priorityOf(tool);
+        Priority p = requested == null || def == Priority.WRITE ? def : requested;
+        int[] spec = toolSpecs.get(tool);
+        int lane = spec == null ? pool.capacity : spec[0];
+        return Math.max(1, Math.min(lane, Math.min(pool.capacity, pool.classes[p.ordinal()].max)));
+    }
+
+    public Priority priorityOf(String tool) {
+        Priority p = toolPriorities.get(tool);
+        return p != null ? p : DEFAULT_PRIORITIES.getOrDefault(tool, Priority.INTERACTIVE);
+    }
+
+    private Lane newLane(String tool) {
+        int[] spec = toolSpecs.get(tool);
+        // 未单独配置的工具只受页面池约束，自身不设更紧的限制
+        return spec == null ? new Lane(pool.capacity, defaultQueueSize) : new Lane(spec[0], spec[1]);
+    }
+
+    private <T> Result<T> reject(String tool, String scope, int reason, long retryAfter) {
+        String why = reason == QUEUE_FULL ? "排队已满" : "排队超过 " + TimeUnit.NANOSECONDS.toSeconds(maxQueueNanos) + " 秒";
+        log.warn("Tool call rejected by admission control. tool={}, scope={}, reason={}, retryAfterSeconds={}",
+                tool, scope, reason == QUEUE_FULL ? "queue-full" : "queue-timeout", retryAfter);
+        return Result.fail(BizErrorCode.OVERLOADED, "服务繁忙（" + scope + " " + why + "），请 " + retryAfter + " 秒后重试", retryAfter);
+    }
+
+    private static long retryAfter(double avgServiceMs, int ahead, int capacity) {
+        double ms = avgServiceMs * Math.max(1, ahead) / Math.max(1, capacity);
+        return Math.max(1, Math.min(MAX_RETRY_AFTER_SECONDS, (long) Math.ceil(ms / 1000)));
+    }
+
+    /* =============== 指标 =============== */
+
+    @Override
+    public String statsName() {
+        return "admission";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("maxQueueMs", TimeUnit.NANOSECONDS.toMillis(maxQueueNanos));
+        out.put("pool", pool.stats());
+        Map<String, Object> tools = new TreeMap<>();
+        lanes.forEach((k, v) -> {
+            Map<String, Object> m = v.stats();
+            m.put("priority", priorityOf(k).name().toLowerCase(Locale.ROOT));
+            tools.put(k, m);
+        });
+        out.put("tools", tools);
+        return out;
+    }
+
+    /* =============== 按工具 =============== */
+
+    /** 单个工具的并发限制：公平信号量 + 有界等待队列 */
+    private static final class Lane {
+        final int limit;
+        final int queueSize;
+        final Semaphore permits;
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger waiting = new AtomicInteger();
+        final LongAdder admitted = new LongAdder();
+        final LongAdder rejectedQueueFull = new LongAdder();
+        final LongAdder rejectedTimeout = new LongAdder();
+        final LongAdder waitNanos = new LongAdder();
+        final AtomicLong maxWaitNanos = new AtomicLong();
+        /** 排队 + 执行的总耗时 */
+        final Histogram latency = new Histogram();
+        /** 平均执行时长（毫秒），尚无样本时为默认值 */
+        volatile double avgServiceMs = DEFAULT_SERVICE_MS;
+
+        Lane(int limit, int queueSize) {
+            this.limit = limit;
+            this.queueSize = queueSize;
+            this.permits = new Semaphore(limit, true);
+        }
+
+        int acquire(long deadline) {
+            try {
+                // 带超时的 tryAcquire 遵守公平顺序，不会插到排队者前面
+                if (permits.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+                    running.incrementAndGet();
+                    return ACQUIRED;
+                }
+                if (waiting.incrementAndGet() > queueSize) {
+                    waiting.decrementAndGet();
+                    rejectedQueueFull.increment();
+                    return QUEUE_FULL;
+                }
+                boolean ok;
+                try {
+                    ok = permits.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } finally {
+                    waiting.decrementAndGet();
+                }
+                if (ok) {
+                    running.incrementAndGet();
+                    return ACQUIRED;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            rejectedTimeout.increment();
+            return TIMED_OUT;
+        }
+
+        /** @param serviceMs 执行耗时，小于 0 表示不计入平均 */
+        void release(long serviceMs) {
+            running.decrementAndGet();
+            permits.release();
+            if (serviceMs >= 0) {
+                synchronized (this) {
+                    avgServiceMs += EWMA_ALPHA * (serviceMs - avgServiceMs);
+                }
+            }
+        }
+
+        void recordWait(long nanos) {
+            admitted.increment();
+            waitNanos.add(nanos);
+            maxWaitNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        long retryAfterSeconds() {
+            return retryAfter(avgServiceMs, running.get() + waiting.get(), limit);
+        }
+
+        Map<String, Object> stats() {
+            Map<String, Object> out = new LinkedHashMap<>();
+            long n = admitted.sum();
+            out.put("limit", limit);
+            out.put("queueSize", queueSize);
+            out.put("running", running.get());
+            out.put("queueDepth", waiting.get());
+            out.put("admitted", n);
+            out.put("rejectedQueueFull", rejectedQueueFull.sum());
+            out.put("rejectedTimeout", rejectedTimeout.sum());
+            out.put("avgWaitMs", n == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(waitNanos.sum() / n));
+            out.put("maxWaitMs", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+            out.put("avgServiceMs", Math.round(avgServiceMs));
+            out.put("latencyP50Ms", latency.percentile(0.50));
+            out.put("latencyP99Ms", latency.percentile(0.99));
+            return out;
+        }
+    }
+
+    /* =============== 全局页面池 =============== */
+
+    /** 一个优先级在页面池中的份额与等待队列；字段由 Pool.lock 保护（计数器除外） */
+    private static final class Klass {
+        final Priority priority;
+        final int reserved;
+        final int weight;
+        final int max;
+        final int queueSize;
+        final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+        int running;
+        double avgServiceMs = DEFAULT_SERVICE_MS;
+        final LongAdder admitted = new LongAdder();
+        final LongAdder rejectedQueueFull = new LongAdder();
+        final LongAdder rejectedTimeout = new LongAdder();
+        final Histogram wait = new Histogram();
+
+        Klass(Priority priority, int reserved, int weight, int max, int queueSize) {
+            if (reserved < 0 || weight <= 0 || max <= 0 || max < reserved) {
+                throw new IllegalStateException("xhs.admission." + priority.name().toLowerCase(Locale.ROOT)
+                        + ": reserved must be >= 0, weight > 0, max > 0 and max >= reserved");
+            }
+            this.priority = priority;
+            this.reserved = reserved;
+            this.weight = weight;
+            this.max = max;
+            this.queueSize = queueSize;
+        }
+
+        void recordWait(long nanos) {
+            admitted.increment();
+            wait.record(TimeUnit.NANOSECONDS.toMillis(nanos));
+        }
+    }
+
+    private static final class Waiter {
+        final Condition cond;
+        boolean granted;
+
+        Waiter(Condition cond) {
+            this.cond = cond;
+        }
+    }
+
+    /**
+     * 按优先级划分的页面名额：预留名额只给本级，其余共享；
+     * 每次有名额空出或新请求到达都重新分派，分派后不存在“能拿到名额却在排队”的级别
+     */
+    private static final class Pool {
+        final int capacity;
+        final int shared;
+        final Klass[] classes;
+        final ReentrantLock lock = new ReentrantLock();
+
+        Pool(int capacity, Klass[] classes) {
+            int reserved = 0;
+            for (Klass k : classes) reserved += k.reserved;
+            if (reserved > capacity) {
+                throw new IllegalStateException("sum of xhs.admission.*.reserved must be <= global-limit");
+            }
+            this.capacity = capacity;
+            this.shared = capacity - reserved;
+            this.classes = classes;
+        }
+
+        int acquire(Klass k, long deadline) {
+            lock.lock();
+            try {
+                if (k.queue.isEmpty() && eligible(k)) {
+                    k.running++;
+                    return ACQUIRED;
+                }
+                if (k.queue.size() >= k.queueSize) {
+                    k.rejectedQueueFull.increment();
+                    return QUEUE_FULL;
+                }
+                Waiter w = new Waiter(lock.newCondition());
+                k.queue.addLast(w);
+                long nanos = deadline - System.nanoTime();
+                boolean interrupted = false;
+                while (!w.granted && nanos > 0) {
+                    try {
+                        nanos = w.cond.awaitNanos(nanos);
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                        break;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                if (w.granted) {
+                    return ACQUIRED;
+                }
+                k.queue.remove(w);
+                k.rejectedTimeout.increment();
+                return TIMED_OUT;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release(Klass k, long serviceMs) {
+            lock.lock();
+            try {
+                k.running--;
+                if (serviceMs >= 0) {
+                    k.avgServiceMs += EWMA_ALPHA * (serviceMs - k.avgServiceMs);
+                }
+                dispatch();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** 持有锁：先满足未用满预留的级别，再把共享名额给 已占用数 / 权重 最小的级别 */
+        private void dispatch() {
+            while (true) {
+                Klass best = null;
+                for (Klass c : classes) {
+                    if (c.queue.isEmpty() || !eligible(c)) continue;
+                    if (c.running < c.reserved) {
+                        best = c;
+                        break;
+                    }
+                    if (best == null || (long) c.running * best.weight < (long) best.running * c.weight
+                            || ((long) c.running * best.weight == (long) best.running * c.weight && c.weight > best.weight)) {
+                        best = c;
+                    }
+                }
+                if (best == null) {
+                    return;
+                }
+                Waiter w = best.queue.pollFirst();
+                w.granted = true;
+                best.running++;
+                w.cond.signal();
+            }
+        }
+
+        private boolean eligible(Klass k) {
+            if (k.running >= k.max) return false;
+            if (k.running < k.reserved) return true;
+            int sharedUsed = 0;
+            for (Klass c : classes) sharedUsed += Math.max(0, c.running - c.reserved);
+            return sharedUsed < shared;
+        }
+
+        long retryAfterSeconds(Klass k) {
+            lock.lock();
+            try {
+                return retryAfter(k.avgServiceMs, k.running + k.queue.size(), k.max);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Map<String, Object> stats() {
+            Map<String, Object> out = new LinkedHashMap<>();
+            lock.lock();
+            try {
+                out.put("capacity", capacity);
+                out.put("shared", shared);
+                for (Klass k : classes) {
+                    Map<String, Object> m = new LinkedHashMap<>();
+                    m.put("reserved", k.reserved);
+                    m.put("weight", k.weight);
+                    m.put("max", k.max);
+                    m.put("running", k.running);
+                    m.put("queueDepth", k.queue.size());
+                    m.put("admitted", k.admitted.sum());
+                    m.put("rejectedQueueFull", k.rejectedQueueFull.sum());
+                    m.put("rejectedTimeout", k.rejectedTimeout.sum());
+                    m.put("waitP50Ms", k.wait.percentile(0.50));
+                    m.put("waitP99Ms", k.wait.percentile(0.99));
+                    m.put("avgServiceMs", Math.round(k.avgServiceMs));
+                    out.put(k.priority.name().toLowerCase(Locale.ROOT), m);
+                }
+            } finally {
+                lock.unlock();
+            }
+            return out;
+        }
+    }
+
+    /**
+     * 毫秒耗时的对数分桶直方图：每个 2 的幂区间再分 4 桶，分位数误差不超过 25%
+     */
+    static final class Histogram {
+        private static final int BUCKETS = 4 + 4 * 40;
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+        void record(long ms) {
+            counts.incrementAndGet(bucket(Math.max(0, ms)));
+        }
+
+        /** 分位数所在桶的上界（毫秒），无样本返回 0 */
+        long percentile(double q) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) total += counts.get(i);
+            if (total == 0) {
+                return 0;
+            }
+            long target = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= target) return upper(i);
+            }
+            return upper(BUCKETS - 1);
+        }
+
+        static int bucket(long v) {
+            if (v < 4) return (int) v;
+            int e = 63 - Long.numberOfLeadingZeros(v);
+            int m = (int) (v >>> (e - 2)) & 3;
+            return Math.min(BUCKETS - 1, 4 + 4 * (e - 2) + m);
+        }
+
+        static long upper(int i) {
+            if (i < 4) return i;
+            int e = (i - 4) / 4 + 2;
+            int m = (i - 4) % 4;
+            return ((long) (4 + m + 1) << (e - 2)) - 1;
+        }
+    }
+}
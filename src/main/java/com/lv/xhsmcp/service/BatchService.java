@@ -0,0 +1,164 @@
+package com.lv.xhsmcp.service;
+
+import com.lv.xhsmcp.cache.ToolCache;
+import com.lv.xhsmcp.model.*;
+import com.lv.xhsmcp.store.NearDupIndex;
+import com.lv.xhsmcp.store.SeenFilter;
+import com.lv.xhsmcp.xhs.BizErrorCode;
+import com.lv.xhsmcp.xhs.Progress;
+import com.lv.xhsmcp.xhs.Result;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 批量详情/主页：在浏览器上下文里并行打开多个页面，单项失败只记录在该项结果中
+ * <p>
+ * 同时打开的页面数只由 {@link AdmissionController} 管：每个批次的扇出宽度取该工具在所用优先级下的并发上限，
+ * 每项单独准入，排队超时的项返回 OVERLOADED 与 retryAfterSeconds。
+ */
+@Service
+@Slf4j
+public class BatchService {
+    /* ===================== 常量 ===================== */
+    private static final int MAX_ITEMS = 100;
+    private static final String SEEN = "已处理过，跳过";
+
+    @Resource
+    private FeedDetailService feedDetailService;
+    @Resource
+    private UserProfileService userProfileService;
+    @Resource
+    private ToolCache toolCache;
+    @Resource
+    private SeenFilter seenFilter;
+    @Resource
+    private NearDupIndex nearDupIndex;
+    @Resource
+    private AdmissionController admission;
+
+    /**
+     * 批量获取笔记详情
+     *
+     * @param skipSeen       跳过此前（含以往会话）已抓取过详情的笔记，见 {@link SeenFilter}
+     * @param skipDuplicates 跳过与列表中靠前的某项、或与已抓取过详情的其他笔记内容近似的笔记，见 {@link NearDupIndex}
+     * @param priority       准入优先级，null 取工具默认（BULK）
+     * @param onItem         每完成一项（不论成败）调用一次，调用之间互斥，可为 null
+     */
+    public List<BatchItemResult<FeedDetailResponse>> feedDetails(List<FeedRef> items, boolean skipSeen, boolean skipDuplicates,
+                                                                 AdmissionController.Priority priority, Progress progress,
+                                                                 Consumer<BatchItemResult<FeedDetailResponse>> onItem) {
+        Map<String, String> duplicateOf = skipDuplicates && items != null && items.size() <= MAX_ITEMS
+                ? nearDupIndex.collapse(items, ref -> ref == null ? null : ref.getFeedId(), null, true).duplicateOf()
+                : Map.of();
+        return run(items, FeedRef::getFeedId, admission.concurrency("feedDetails", priority),
+                ref -> {
+                    if (skipSeen && seenFilter.mightContain(SeenFilter.NOTE, ref.getFeedId())) {
+                        return SEEN;
+                    }
+                    String dup = ref.getFeedId() == null ? null : duplicateOf.get(ref.getFeedId());
+                    return dup == null ? null : "与笔记 " + dup + " 内容近似，跳过";
+                },
+                ref -> toolCache.get(ToolCache.FEED_DETAIL, ref.getFeedId(),
+                        () -> admission.admit("feedDetails", priority, () -> feedDetailService.feedDetail(ref.getFeedId(), ref.getXsecToken()))),
+                BizErrorCode.GET_FEED_DETAIL_FAILED, progress, onItem);
+    }
+
+    /** 批量获取用户主页 */
+    public List<BatchItemResult<UserProfileResponse>> userProfiles(List<UserRef> items, boolean skipSeen,
+                                                                   AdmissionController.Priority priority, Progress progress,
+                                                                   Consumer<BatchItemResult<UserProfileResponse>> onItem) {
+        return run(items, UserRef::getUserId, admission.concurrency("userProfiles", priority),
+                skipSeen ? ref -> seenFilter.mightContain(SeenFilter.USER, ref.getUserId()) ? SEEN : null : null,
+                ref -> toolCache.get(ToolCache.USER_PROFILE, ref.getUserId(),
+                        () -> admission.admit("userProfiles", priority, () -> userProfileService.userProfile(ref.getUserId(), ref.getXsecToken()))),
+                BizErrorCode.GET_USER_PROFILE_FAILED, progress, onItem);
+    }
+
+    /**
+     * 最多 width 个虚拟线程依次执行各项（真正打开页面前在 job 里按单项准入，命中缓存的项不占名额）；
+     * 返回顺序与入参一致；skip 返回跳过原因（null 表示执行），本身为 null 表示都不跳过
+     */
+    private <I, T> List<BatchItemResult<T>> run(List<I> items, Function<I, String> idOf, int width, Function<I, String> skip,
+                                                 Function<I, Result<T>> job,
+                                                 BizErrorCode failCode, Progress progress,
+                                                 Consumer<BatchItemResult<T>> onItem) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("items must not be empty");
+        }
+        if (items.size() > MAX_ITEMS) {
+            throw new IllegalArgumentException("items must be <= " + MAX_ITEMS);
+        }
+        final Progress p = progress == null ? Progress.NOOP : progress;
+        final int total = items.size();
+        @SuppressWarnings("unchecked")
+        BatchItemResult<T>[] out = new BatchItemResult[total];
+        ReentrantLock emitLock = new ReentrantLock();
+        int[] done = {0};
+        long t0 = System.nanoTime();
+
+        try (ExecutorService exec = Executors.newFixedThreadPool(Math.min(width, total), Thread.ofVirtual().factory())) {
+            for (int i = 0; i < total; i++) {
+                final int idx = i;
+                exec.submit(() -> {
+                    I item = items.get(idx);
+                    BatchItemResult<T> r = runOne(idx, item, idOf, skip, job, failCode);
+                    emitLock.lock();
+                    try {
+                        out[idx] = r;
+                        done[0]++;
+                        p.report(done[0], (double) total, "已完成 " + done[0] + "/" + total);
+                        if (onItem != null) {
+                            onItem.accept(r);
+                        }
+                    } catch (Exception e) {
+                        log.warn("Batch item callback failed. index={}, err={}", idx, e.getMessage());
+                    } finally {
+                        emitLock.unlock();
+                    }
+                });
+            }
+        } // close() 等待全部完成
+
+        List<BatchItemResult<T>> list = new ArrayList<>(Arrays.asList(out));
+        long ok = list.stream().filter(r -> Boolean.TRUE.equals(r.getSuccess())).count();
+        long skipped = list.stream().filter(r -> Boolean.TRUE.equals(r.getSkipped())).count();
+        log.info("Batch done. items={}, ok={}, skipped={}, failed={}, elapsedMs={}",
+                total, ok, skipped, total - ok, (System.nanoTime() - t0) / 1_000_000);
+        return list;
+    }
+
+    private <I, T> BatchItemResult<T> runOne(int idx, I item, Function<I, String> idOf, Function<I, String> skip,
+                                             Function<I, Result<T>> job, BizErrorCode failCode) {
+        String id = item == null ? null : idOf.apply(item);
+        long start = System.nanoTime();
+        BatchItemResult.BatchItemResultBuilder<T> b = BatchItemResult.<T>builder().index(idx).id(id);
+        try {
+            if (item == null) {
+                throw new IllegalArgumentException("item must not be null");
+            }
+            String skipReason = skip == null ? null : skip.apply(item);
+            if (skipReason != null) {
+                return b.success(true).skipped(true).message(skipReason).elapsedMs(0L).build();
+            }
+            Result<T> r = job.apply(item);
+            b.success(r.isSuccess()).code(r.getCode()).message(r.getMessage()).retryAfterSeconds(r.getRetryAfterSeconds()).data(r.getData());
+        } catch (IllegalArgumentException e) {
+            b.success(false).code(failCode).message(e.getMessage());
+        } catch (Exception e) {
+            log.error("Batch item failed. index={}, id={}, err={}", idx, id, e.getMessage(), e);
+            b.success(false).code(failCode).message(failCode.getDefaultMessage());
+        }
+        return b.elapsedMs((System.nanoTime() - start) / 1_000_000).build();
+    }
+}
@@ -0,0 +1,430 @@
+package com.lv.xhsmcp.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.lv.xhsmcp.browser.BrowserManager;
+import com.lv.xhsmcp.cache.XsecTokenRegistry;
+import com.lv.xhsmcp.model.Comment;
+import com.lv.xhsmcp.model.CommentList;
+import com.lv.xhsmcp.store.NoteStore;
+import com.lv.xhsmcp.util.Json;
+import com.lv.xhsmcp.xhs.BizErrorCode;
+import com.lv.xhsmcp.xhs.Progress;
+import com.lv.xhsmcp.xhs.Result;
+import com.lv.xhsmcp.xhs.XhsApi;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.PlaywrightException;
+import com.microsoft.playwright.options.WaitUntilState;
+import io.micrometer.common.util.StringUtils;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * 评论全量抓取：按 cursor 翻页主评论，可选并发展开子评论
+ * <p>
+ * 先打开笔记页（拿到签名函数与登录态），之后所有分页都在页面内直接调用评论接口，不再滚动 DOM。
+ * <p>
+ * 返回的每条主评论的 subCommentCursor / subCommentHasMore 指向其尚未返回的子评论（含因条数上限被截掉的），
+ * 可交给 {@link #commentReplies} 继续翻页。子评论 cursor 即上一条子评论的 id，与站内接口一致。
+ */
+@Slf4j
+@Service
+public class CommentService {
+    /* ===================== 常量 ===================== */
+    private static final String API_COMMENT_PAGE = "/api/sns/web/v2/comment/page";
+    private static final String API_SUB_COMMENT_PAGE = "/api/sns/web/v2/comment/sub/page";
+    private static final String IMAGE_FORMATS = "jpg,webp,avif";
+
+    private static final int PAGE_DEFAULT_TIMEOUT_MS = 60_000;
+    private static final int NAV_TIMEOUT_MS = 60_000;
+    private static final int STABLE_SLEEP_MS = 1_500;
+    private static final int PAGE_INTERVAL_MS = 300;       // 两次翻页之间的间隔，避免触发风控
+    private static final int SUB_PAGE_SIZE = 10;
+    private static final int DEFAULT_LIMIT = 100;
+    /** 返回的 cursor = 接口 cursor + SKIP_SEP + 该页已返回的主评论数（页内截断时） */
+    private static final String SKIP_SEP = "~";
+    private static final Duration TOTAL_BUDGET = Duration.ofSeconds(180);
+
+    @Value("${xhs.comments.reply-concurrency:4}")
+    private int replyConcurrency;
+
+    @Resource
+    private BrowserManager bm;
+    @Resource
+    private XsecTokenRegistry tokens;
+    @Resource
+    private NoteStore noteStore;
+
+    /**
+     * 抓取笔记评论
+     *
+     * @param limit          主评论 + 子评论总条数上限；0=默认值；&lt;0 抛异常
+     * @param includeReplies 是否展开每条主评论下的全部子评论
+     * @param cursor         上次返回的 cursor，从该处继续；为空从第一页开始
+     * @param onBatch        每翻完一页主评论（及其展开的子评论）调用一次，可为 null
+     */
+    public Result<CommentList> feedComments(String feedId, String xsecToken, int limit, boolean includeReplies,
+                                            String cursor, Progress progress, Consumer<List<Comment>> onBatch) {
+        if (StringUtils.isBlank(feedId)) {
+            throw new IllegalArgumentException("feedId must not be blank");
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must be >= 0");
+        }
+        final int want = (limit == 0 ? DEFAULT_LIMIT : limit);
+        xsecToken = tokens.noteToken(feedId, xsecToken);
+        final String token = xsecToken == null ? "" : xsecToken;
+        String next = "";
+        int skip = 0;
+        if (StringUtils.isNotBlank(cursor)) {
+            int i = cursor.lastIndexOf(SKIP_SEP);
+            next = i < 0 ? cursor : cursor.substring(0, i);
+            skip = i < 0 ? 0 : parseSkip(cursor.substring(i + 1));
+        }
+
+        try (Page page = bm.context().newPage()) {
+            // 1) 打开笔记页
+            Result<CommentList> denied = openNote(page, feedId, xsecToken);
+            if (denied != null) {
+                return denied;
+            }
+            progress.report(0, (double) want, "已打开笔记页");
+
+            // 2) 主评论按 cursor 翻页
+            final long deadlineNs = System.nanoTime() + TOTAL_BUDGET.toNanos();
+            List<Comment> all = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            int count = 0;
+            String resume = null;
+            boolean hasMore = true;
+            int pages = 0;
+
+            while (hasMore && count < want) {
+                if (System.nanoTime() > deadlineNs) {
+                    log.warn("Comment crawl hit total budget. feedId={}, collected={}", feedId, count);
+                    break;
+                }
+                if (pages > 0) {
+                    page.waitForTimeout(PAGE_INTERVAL_MS);
+                }
+                String pageCursor = next;
+                JsonNode root = XhsApi.get(page, commentPageUri(feedId, pageCursor, token));
+                if (!XhsApi.isOk(root)) {
+                    log.warn("Comment page api failed. feedId={}, cursor={}, code={}, msg={}",
+                            feedId, pageCursor, root.path("code").asText(), root.path("msg").asText());
+                    if (pages == 0) {
+                        return Result.fail(BizErrorCode.GET_COMMENTS_FAILED, "评论接口返回失败：" + root.path("msg").asText());
+                    }
+                    break;
+                }
+                pages++;
+                JsonNode data = root.path("data");
+                next = data.path("cursor").asText("");
+                hasMore = data.path("has_more").asBoolean(false) && StringUtils.isNotBlank(next);
+
+                List<Comment> batch = new ArrayList<>();
+                List<Comment> roots = toComments(data.path("comments"));
+                for (int i = skip; i < roots.size(); i++) {
+                    Comment c = roots.get(i);
+                    if (count >= want) {
+                        // 页内截断：cursor 只前进到已返回的位置，下次从本页第 i 条继续
+                        resume = pageCursor + SKIP_SEP + i;
+                        hasMore = true;
+                        break;
+                    }
+                    if (c.getId() == null || !seen.add(c.getId())) {
+                        continue;
+                    }
+                    count++;
+                    // 接口随主评论附带的前几条子评论一并去重计数；截断时子评论 cursor 退回到最后返回的那条
+                    List<Comment> replies = new ArrayList<>();
+                    if (c.getSubComments() != null) {
+                        String consumed = "";
+                        for (Comment r : c.getSubComments()) {
+                            if (count >= want) {
+                                c.setSubCommentCursor(consumed);
+                                c.setSubCommentHasMore(true);
+                                break;
+                            }
+                            if (r.getId() == null) continue;
+                            consumed = r.getId();
+                            if (seen.add(r.getId())) {
+                                replies.add(r);
+                                count++;
+                            }
+                        }
+                    }
+                    c.setSubComments(replies);
+                    batch.add(c);
+                }
+
+                // 3) 并发展开子评论
+                if (includeReplies && count < want) {
+                    count = expandReplies(page, feedId, token, batch, seen, count, want, deadlineNs);
+                }
+
+                skip = 0;
+                all.addAll(batch);
+                progress.report(count, (double) want, "已获取 " + count + "/" + want + " 条评论");
+                if (onBatch != null && !batch.isEmpty()) {
+                    onBatch.accept(batch);
+                }
+            }
+
+            log.info("Feed comments done. feedId={}, roots={}, total={}, pages={}, hasMore={}",
+                    feedId, all.size(), count, pages, hasMore);
+            tokens.learnComments(all);
+            CommentList out = new CommentList(all, resume != null ? resume : hasMore ? next : null, hasMore);
+            noteStore.saveComments(feedId, out);
+            return Result.ok(out);
+
+        } catch (PlaywrightException e) {
+            log.error("Feed comments system error. feedId={}, err={}", feedId, e.getMessage(), e);
+            throw new RuntimeException("获取评论发生系统异常", e);
+        }
+    }
+
+    /**
+     * 按轮次并发翻子评论：每轮对所有仍有剩余的主评论各取一页（页面内最多 replyConcurrency 个在途请求），
+     * 直到全部取完、达到总数上限或超时
+     *
+     * @return 更新后的累计条数
+     */
+    private int expandReplies(Page page, String feedId, String token, List<Comment> roots,
+                              Set<String> seen, int count, int want, long deadlineNs) {
+        // rootId -> 下一页 cursor（Comment 为可变 @Data 对象，不能直接做 key）
+        Map<String, String> pending = new LinkedHashMap<>();
+        Map<String, Comment> byId = new HashMap<>();
+        for (Comment c : roots) {
+            if (Boolean.TRUE.equals(c.getSubCommentHasMore()) && StringUtils.isNotBlank(c.getSubCommentCursor())) {
+                pending.put(c.getId(), c.getSubCommentCursor());
+                byId.put(c.getId(), c);
+            }
+        }
+        while (!pending.isEmpty() && count < want && System.nanoTime() < deadlineNs) {
+            List<String> ids = new ArrayList<>(pending.keySet());
+            List<String> uris = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                uris.add(subCommentPageUri(feedId, id, pending.get(id), token));
+            }
+            List<JsonNode> resps = XhsApi.getAll(page, uris, Math.max(1, replyConcurrency));
+
+            for (int i = 0; i < ids.size(); i++) {
+                String rootId = ids.get(i);
+                JsonNode root = resps.get(i);
+                if (!XhsApi.isOk(root)) {
+                    log.warn("Sub comment api failed. feedId={}, rootId={}, code={}",
+                            feedId, rootId, root.path("code").asText());
+                    pending.remove(rootId);
+                    continue;
+                }
+                JsonNode data = root.path("data");
+                Comment parent = byId.get(rootId);
+                String consumed = pending.get(rootId);
+                boolean truncated = false;
+                for (Comment r : toComments(data.path("comments"))) {
+                    if (count >= want) {
+                        truncated = true;
+                        break;
+                    }
+                    if (r.getId() == null) continue;
+                    consumed = r.getId();
+                    if (seen.add(r.getId())) {
+                        parent.getSubComments().add(r);
+                        count++;
+                    }
+                }
+                String next = data.path("cursor").asText("");
+                if (truncated) {
+                    pending.put(rootId, consumed);
+                } else if (data.path("has_more").asBoolean(false) && StringUtils.isNotBlank(next)) {
+                    pending.put(rootId, next);
+                } else {
+                    pending.remove(rootId);
+                    parent.setSubCommentCursor(null);
+                    parent.setSubCommentHasMore(false);
+                }
+            }
+            if (!pending.isEmpty() && count < want) {
+                page.waitForTimeout(PAGE_INTERVAL_MS);
+            }
+        }
+        // 未取完的（达到上限或超时）：cursor 指向下一条未返回的子评论
+        pending.forEach((id, next) -> {
+            byId.get(id).setSubCommentCursor(next);
+            byId.get(id).setSubCommentHasMore(true);
+        });
+        return count;
+    }
+
+    /**
+     * 翻页抓取一条主评论下的子评论，从 feedComments 返回的该主评论的 subCommentCursor 处继续
+     *
+     * @param cursor 子评论 cursor，为空从第一条开始
+     * @param limit  最多返回条数；0=默认值；&lt;0 抛异常
+     */
+    public Result<CommentList> commentReplies(String feedId, String xsecToken, String rootCommentId, String cursor, int limit) {
+        if (StringUtils.isBlank(feedId)) {
+            throw new IllegalArgumentException("feedId must not be blank");
+        }
+        if (StringUtils.isBlank(rootCommentId)) {
+            throw new IllegalArgumentException("rootCommentId must not be blank");
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must be >= 0");
+        }
+        final int want = (limit == 0 ? DEFAULT_LIMIT : limit);
+        xsecToken = tokens.noteToken(feedId, xsecToken);
+        final String token = xsecToken == null ? "" : xsecToken;
+
+        try (Page page = bm.context().newPage()) {
+            Result<CommentList> denied = openNote(page, feedId, xsecToken);
+            if (denied != null) {
+                return denied;
+            }
+            final long deadlineNs = System.nanoTime() + TOTAL_BUDGET.toNanos();
+            List<Comment> out = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            String next = cursor == null ? "" : cursor;
+            boolean hasMore = true;
+            int pages = 0;
+
+            while (hasMore && out.size() < want && System.nanoTime() < deadlineNs) {
+                if (pages > 0) {
+                    page.waitForTimeout(PAGE_INTERVAL_MS);
+                }
+                JsonNode root = XhsApi.get(page, subCommentPageUri(feedId, rootCommentId, next, token));
+                if (!XhsApi.isOk(root)) {
+                    log.warn("Sub comment api failed. feedId={}, rootId={}, code={}",
+                            feedId, rootCommentId, root.path("code").asText());
+                    if (pages == 0) {
+                        return Result.fail(BizErrorCode.GET_COMMENTS_FAILED, "子评论接口返回失败：" + root.path("msg").asText());
+                    }
+                    break;
+                }
+                pages++;
+                JsonNode data = root.path("data");
+                String consumed = next;
+                boolean truncated = false;
+                for (Comment r : toComments(data.path("comments"))) {
+                    if (out.size() >= want) {
+                        truncated = true;
+                        break;
+                    }
+                    if (r.getId() == null) continue;
+                    consumed = r.getId();
+                    if (seen.add(r.getId())) {
+                        out.add(r);
+                    }
+                }
+                String pageCursor = data.path("cursor").asText("");
+                if (truncated) {
+                    next = consumed;
+                } else {
+                    next = pageCursor;
+                    hasMore = data.path("has_more").asBoolean(false) && StringUtils.isNotBlank(pageCursor);
+                }
+            }
+
+            log.info("Comment replies done. feedId={}, rootId={}, total={}, pages={}, hasMore={}",
+                    feedId, rootCommentId, out.size(), pages, hasMore);
+            return Result.ok(new CommentList(out, hasMore ? next : null, hasMore));
+
+        } catch (PlaywrightException e) {
+            log.error("Comment replies system error. feedId={}, rootId={}, err={}", feedId, rootCommentId, e.getMessage(), e);
+            throw new RuntimeException("获取子评论发生系统异常", e);
+        }
+    }
+
+    /**
+     * 打开笔记页：签名函数、Cookie 都依赖站内页面
+     *
+     * @return 跳转到登录或人机验证页时为失败结果，否则为 null
+     */
+    private Result<CommentList> openNote(Page page, String feedId, String xsecToken) {
+        page.setDefaultTimeout(PAGE_DEFAULT_TIMEOUT_MS);
+        String url = makeFeedDetailURL(feedId, xsecToken);
+        log.info("Navigate to feed detail for comments. feedId={}, url={}", feedId, url);
+        page.navigate(url, new Page.NavigateOptions()
+                .setWaitUntil(WaitUntilState.DOMCONTENTLOADED)
+                .setTimeout(NAV_TIMEOUT_MS));
+        page.waitForTimeout(STABLE_SLEEP_MS);
+
+        if (isLoginOrCaptcha(page.url())) {
+            log.warn("Redirected to login/captcha. url={}", page.url());
+            return Result.fail(BizErrorCode.AUTH_REQUIRED, "跳转至登录或人机验证页");
+        }
+        return null;
+    }
+
+    /* ================= 辅助方法 ================= */
+
+    private static int parseSkip(String s) {
+        try {
+            return Math.max(0, Integer.parseInt(s));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid cursor");
+        }
+    }
+
+    private static List<Comment> toComments(JsonNode arr) {
+        if (arr == null || !arr.isArray()) {
+            return List.of();
+        }
+        try {
+            List<Comment> list = Json.M.convertValue(arr, new TypeReference<>() {});
+            return list == null ? List.of() : list;
+        } catch (IllegalArgumentException e) {
+            log.warn("Parse comments failed. err={}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    private static String commentPageUri(String feedId, String cursor, String token) {
+        return API_COMMENT_PAGE
+                + "?note_id=" + enc(feedId)
+                + "&cursor=" + enc(cursor)
+                + "&top_comment_id="
+                + "&image_formats=" + IMAGE_FORMATS
+                + "&xsec_token=" + enc(token);
+    }
+
+    private static String subCommentPageUri(String feedId, String rootId, String cursor, String token) {
+        return API_SUB_COMMENT_PAGE
+                + "?note_id=" + enc(feedId)
+                + "&root_comment_id=" + enc(rootId)
+                + "&num=" + SUB_PAGE_SIZE
+                + "&cursor=" + enc(cursor)
+                + "&image_formats=" + IMAGE_FORMATS
+                + "&top_comment_id="
+                + "&xsec_token=" + enc(token);
+    }
+
+    private static String enc(String s) {
+        return URLEncoder.encode(s == null ? "" : s, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isLoginOrCaptcha(String url) {
+        if (StringUtils.isBlank(url)) {
+            return false;
+        }
+        String u = url.toLowerCase();
+        return u.contains("/login") || u.contains("captcha") || u.contains("passport");
+    }
+
+    private static String makeFeedDetailURL(String feedId, String xsecToken) {
+        String base = "https://www.xiaohongshu.com/explore/" + feedId;
+        if (StringUtils.isBlank(xsecToken)) {
+            return base;
+        }
+        return base + "?xsec_token=" + enc(xsecToken) + "&xsec_source=pc_feed";
+    }
+}
@@ -0,0 +1,265 @@
+package com.lv.xhsmcp.service;
+
+import com.lv.xhsmcp.browser.BrowserManager;
+import com.lv.xhsmcp.cache.ToolCache;
+import com.lv.xhsmcp.cache.XsecTokenRegistry;
+import com.lv.xhsmcp.model.Feed;
+import com.lv.xhsmcp.model.FeedDetailResponse;
+import com.lv.xhsmcp.xhs.BizErrorCode;
+import com.lv.xhsmcp.xhs.Progress;
+import com.lv.xhsmcp.xhs.Result;
+import com.lv.xhsmcp.xhs.StatsSource;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.PlaywrightException;
+import io.micrometer.common.util.StringUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 搜索结果前 K 条的详情预取：空闲时用单个低优先级后台页面把详情写入 {@link ToolCache}
+ * <p>
+ * - 前台页面数（{@link BrowserManager#foregroundPages()}）超过 xhs.prefetch.max-foreground-pages 时不启动新任务；
+ *   正在进行的预取由看门狗置取消标记，预取线程在下一阶段自行放弃（页面操作超时较短），任务放回队首，空闲后重试
+ * - 页面经准入控制（{@value #ADMISSION_TOOL}，BULK 级）获取，与批量抓取共用份额
+ * - 新一次搜索的条目排在队首（越新的搜索越可能被接着查看）；排队过久的任务直接丢弃
+ * - 命中率 = 被 feedDetail 用到的预取条数 / 预取成功条数，用于调整 top-k
+ */
+@Slf4j
+@Service
+public class DetailPrefetcher implements StatsSource {
+    /* ===================== 常量 ===================== */
+    static final String ADMISSION_TOOL = "detailPrefetch";
+    private static final long POLL_MS = 200;
+    private static final int LOAD_TIMEOUT_MS = 15_000;
+    private static final int MAX_QUEUE = 64;
+    private static final long JOB_MAX_AGE_MS = 120_000;
+    private static final int MAX_TRACKED = 4096;
+
+    @Value("${xhs.prefetch.enabled:true}")
+    private boolean enabled;
+    @Value("${xhs.prefetch.top-k:3}")
+    private int topK;
+    @Value("${xhs.prefetch.max-foreground-pages:1}")
+    private int maxForeground;
+
+    @Resource
+    private BrowserManager bm;
+    @Resource
+    private FeedDetailService feedDetailService;
+    @Resource
+    private ToolCache toolCache;
+    @Resource
+    private XsecTokenRegistry tokens;
+    @Resource
+    private AdmissionController admission;
+
+    private final LinkedBlockingDeque<Job> queue = new LinkedBlockingDeque<>();
+    /** 已预取成功、尚未被查看的笔记（按插入顺序淘汰） */
+    private final Map<String, Long> prefetched = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_TRACKED;
+        }
+    });
+
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "prefetch-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+    private Thread worker;
+    private volatile boolean running;
+    private volatile boolean cancelled;
+
+    private final LongAdder scheduled = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder skippedCached = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder cancels = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+    private final LongAdder used = new LongAdder();
+
+    /** 搜索返回后调用：把前 top-k 条放到队首 */
+    public void offer(List<Feed> feeds) {
+        if (!enabled || feeds == null || feeds.isEmpty()) {
+            return;
+        }
+        List<Job> jobs = new ArrayList<>();
+        for (Feed f : feeds) {
+            if (jobs.size() >= topK) break;
+            if (f != null && StringUtils.isNotBlank(f.getId()) && !"ads".equals(f.getModelType())) {
+                jobs.add(new Job(f.getId(), f.getXsecToken(), System.currentTimeMillis()));
+            }
+        }
+        for (int i = jobs.size() - 1; i >= 0; i--) {
+            queue.offerFirst(jobs.get(i));
+            scheduled.increment();
+        }
+        while (queue.size() > MAX_QUEUE && queue.pollLast() != null) {
+            dropped.increment();
+        }
+    }
+
+    /** feedDetail 查缓存之前调用，用于统计预取命中 */
+    public void recordLookup(String feedId) {
+        if (feedId != null && prefetched.remove(feedId) != null
+                && toolCache.containsFresh(ToolCache.FEED_DETAIL, feedId)) {
+            used.increment();
+        }
+    }
+
+    /* =============== 后台执行 =============== */
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        worker = new Thread(this::loop, "detail-prefetch");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+        watchdog.scheduleWithFixedDelay(this::checkLoad, POLL_MS, POLL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        watchdog.shutdownNow();
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    private void loop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Job j = queue.takeFirst();
+                if (expired(j)) {
+                    dropped.increment();
+                    continue;
+                }
+                if (toolCache.containsFresh(ToolCache.FEED_DETAIL, j.feedId)) {
+                    skippedCached.increment();
+                    continue;
+                }
+                // 等待前台空闲
+                while (bm.foregroundPages() > maxForeground && !expired(j)) {
+                    Thread.sleep(POLL_MS);
+                }
+                if (expired(j)) {
+                    dropped.increment();
+                    continue;
+                }
+                runJob(j);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runJob(Job j) {
+        cancelled = false;
+        running = true;
+        Result<FeedDetailResponse> r;
+        try {
+            r = admission.admit(ADMISSION_TOOL, () -> load(j));
+        } catch (CancellationException e) {
+            cancels.increment();
+            queue.offerFirst(j); // 前台空闲后重试
+            log.debug("Prefetch cancelled by foreground load. feedId={}", j.feedId);
+            return;
+        } catch (PlaywrightException e) {
+            if (cancelled) {
+                // 取消标记置上后的超时，同样算取消
+                cancels.increment();
+                queue.offerFirst(j);
+                log.debug("Prefetch cancelled by foreground load. feedId={}", j.feedId);
+            } else {
+                failed.increment();
+                log.info("Prefetch failed. feedId={}, err={}", j.feedId, e.getMessage());
+            }
+            return;
+        } catch (Exception e) {
+            failed.increment();
+            log.warn("Prefetch failed. feedId={}, err={}", j.feedId, e.getMessage());
+            return;
+        } finally {
+            running = false;
+        }
+        if (r.getCode() == BizErrorCode.OVERLOADED) {
+            deferred.increment();
+            queue.offerFirst(j);
+        } else if (r.isSuccess()) {
+            toolCache.put(ToolCache.FEED_DETAIL, j.feedId, r);
+            prefetched.put(j.feedId, System.currentTimeMillis());
+            completed.increment();
+        } else {
+            failed.increment();
+        }
+    }
+
+    /** 在预取线程上开页加载；每个阶段结束时检查取消标记 */
+    private Result<FeedDetailResponse> load(Job j) {
+        checkCancelled();
+        try (Page page = bm.context().newPage()) {
+            bm.markBackground(page, true);
+            return feedDetailService.load(page, j.feedId, tokens.noteToken(j.feedId, j.xsecToken),
+                    (progress, total, message) -> checkCancelled(), LOAD_TIMEOUT_MS);
+        }
+    }
+
+    private void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("prefetch cancelled");
+        }
+    }
+
+    /** 前台负载升高时给进行中的预取置取消标记（Playwright 对象不跨线程操作，页面由预取线程自己关闭） */
+    private void checkLoad() {
+        if (running && bm.foregroundPages() > maxForeground) {
+            cancelled = true;
+        }
+    }
+
+    private static boolean expired(Job j) {
+        return System.currentTimeMillis() - j.enqueuedAt > JOB_MAX_AGE_MS;
+    }
+
+    /* =============== 指标 =============== */
+
+    @Override
+    public String statsName() {
+        return "prefetch";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        long done = completed.sum();
+        long hit = used.sum();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("topK", topK);
+        out.put("queued", queue.size());
+        out.put("scheduled", scheduled.sum());
+        out.put("completed", done);
+        out.put("used", hit);
+        out.put("hitRate", done == 0 ? 0.0 : Math.round(hit * 10_000.0 / done) / 10_000.0);
+        out.put("skippedCached", skippedCached.sum());
+        out.put("cancelled", cancels.sum());
+        out.put("deferredBusy", deferred.sum());
+        out.put("failed", failed.sum());
+        out.put("dropped", dropped.sum());
+        return out;
+    }
+
+    private record Job(String feedId, String xsecToken, long enqueuedAt) {}
+}
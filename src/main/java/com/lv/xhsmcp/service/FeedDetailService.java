@@ -1,11 +1,14 @@
 package com.lv.xhsmcp.service;
 
 import com.lv.xhsmcp.browser.BrowserManager;
+import com.lv.xhsmcp.cache.XsecTokenRegistry;
 import com.lv.xhsmcp.model.CommentList;
 import com.lv.xhsmcp.model.FeedDetail;
 import com.lv.xhsmcp.model.FeedDetailResponse;
+import com.lv.xhsmcp.store.NoteStore;
 import com.lv.xhsmcp.util.Json;
 import com.lv.xhsmcp.xhs.BizErrorCode;
+import com.lv.xhsmcp.xhs.Progress;
 import com.lv.xhsmcp.xhs.Result;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -27,6 +30,7 @@ public class FeedDetailService {
     private static final int PAGE_DEFAULT_TIMEOUT_MS = 60_000;
     private static final int NAV_TIMEOUT_MS          = 60_000;
     private static final int STABLE_SLEEP_MS         = 1_000;
+    private static final double PHASES               = 3;
 
     /** 读取初始状态（优先 __INITIAL_STATE__，兜底 __XHS_DATA__） */
     private static final String JS_READ_STATE = """
@@ -40,7 +44,11 @@ public class FeedDetailService {
         """;
 
     private final BrowserManager bm;
-    public FeedDetailService(BrowserManager bm){ this.bm = bm; }
+    private final XsecTokenRegistry tokens;
+    private final NoteStore noteStore;
+    public FeedDetailService(BrowserManager bm, XsecTokenRegistry tokens, NoteStore noteStore){
+        this.bm = bm; this.tokens = tokens; this.noteStore = noteStore;
+    }
     /**
      * 获取笔记详情与评论摘要
      *
@@ -48,78 +56,109 @@ public class FeedDetailService {
      * @param xsecToken 可选
      */
     public Result<FeedDetailResponse> feedDetail(String feedId, String xsecToken) {
+        return feedDetail(feedId, xsecToken, Progress.NOOP);
+    }
+
+    /**
+     * 获取笔记详情，按阶段（导航完成 / 读取状态 / 解析完成）回报进度
+     */
+    public Result<FeedDetailResponse> feedDetail(String feedId, String xsecToken, Progress progress) {
         // 参数校验（契约问题 -> IllegalArgumentException）
         if (StringUtils.isBlank(feedId)) {
             throw new IllegalArgumentException("feedId must not be blank");
         }
+        // 未带 token 时从登记表补全（来自此前的搜索/信息流/主页结果）
+        xsecToken = tokens.noteToken(feedId, xsecToken);
 
         try (Page page = bm.context().newPage()) {
-            page.setDefaultTimeout(PAGE_DEFAULT_TIMEOUT_MS);
-
-            // 1) 构建并导航
-            String url = makeFeedDetailURL(feedId, xsecToken);
-            log.info("Navigate to feed detail. feedId={}, url={}", feedId, url);
-            page.navigate(url, new Page.NavigateOptions()
-                    .setWaitUntil(WaitUntilState.DOMCONTENTLOADED)
-                    .setTimeout(NAV_TIMEOUT_MS));
-            page.waitForTimeout(STABLE_SLEEP_MS);
-
-            // 2) 登录/人机检测（业务可预期错误）
-            if (isLoginOrCaptcha(page.url())) {
-                log.warn("Redirected to login/captcha. url={}", page.url());
-                return Result.fail(BizErrorCode.AUTH_REQUIRED, "跳转至登录或人机验证页");
-            }
+            return load(page, feedId, xsecToken, progress, NAV_TIMEOUT_MS);
+        } catch (PlaywrightException e) {
+            log.error("Feed detail system error. feedId={}, err={}", feedId, e.getMessage(), e);
+            throw new RuntimeException("获取笔记详情发生系统异常", e);
+        }
+    }
 
-            // 3) 读取初始状态 JSON
-            String json = (String) page.evaluate(JS_READ_STATE);
-            if (StringUtils.isBlank(json)) {
-                log.warn("Initial state not found.");
-                return Result.fail(BizErrorCode.DATA_NOT_FOUND, "__INITIAL_STATE__ 数据不存在");
-            }
+    /**
+     * 在调用方提供的页面上加载详情（调用方负责关闭页面）
+     * <p>
+     * 预取用较短的 timeoutMs，并在进度回调里抛异常取消，页面只由调用线程操作
+     *
+     * @param timeoutMs 导航与页面操作的超时
+     */
+    Result<FeedDetailResponse> load(Page page, String feedId, String xsecToken, Progress progress, int timeoutMs) {
+        page.setDefaultTimeout(Math.min(timeoutMs, PAGE_DEFAULT_TIMEOUT_MS));
+
+        // 1) 构建并导航
+        String url = makeFeedDetailURL(feedId, xsecToken);
+        log.info("Navigate to feed detail. feedId={}, url={}", feedId, url);
+        page.navigate(url, new Page.NavigateOptions()
+                .setWaitUntil(WaitUntilState.DOMCONTENTLOADED)
+                .setTimeout(timeoutMs));
+        progress.report(1, PHASES, "已打开笔记页");
+        page.waitForTimeout(STABLE_SLEEP_MS);
+
+        // 2) 登录/人机检测（业务可预期错误）
+        if (isLoginOrCaptcha(page.url())) {
+            log.warn("Redirected to login/captcha. url={}", page.url());
+            return Result.fail(BizErrorCode.AUTH_REQUIRED, "跳转至登录或人机验证页");
+        }
 
-            // 4) 解析并定位 noteDetailMap[feedId]
-            JsonNode root;
-            try {
-                root = Json.M.readTree(json);
-            } catch (Exception parseEx) {
-                log.warn("Parse initial state failed. err={}", parseEx.getMessage());
-                return Result.fail(BizErrorCode.DATA_PARSE_ERROR, "初始数据解析失败");
-            }
+        // 3) 读取初始状态 JSON
+        String json = (String) page.evaluate(JS_READ_STATE);
+        if (StringUtils.isBlank(json)) {
+            log.warn("Initial state not found.");
+            return Result.fail(BizErrorCode.DATA_NOT_FOUND, "__INITIAL_STATE__ 数据不存在");
+        }
+        progress.report(2, PHASES, "已读取页面状态");
+
+        // 4) 解析并定位 noteDetailMap[feedId]
+        JsonNode root;
+        try {
+            root = Json.M.readTree(json);
+        } catch (Exception parseEx) {
+            log.warn("Parse initial state failed. err={}", parseEx.getMessage());
+            return Result.fail(BizErrorCode.DATA_PARSE_ERROR, "初始数据解析失败");
+        }
 
-            JsonNode detailMap = root.path("note").path("noteDetailMap");
-            if (detailMap.isMissingNode() || !detailMap.isObject()) {
-                log.warn("noteDetailMap not found or not object.");
-                return Result.fail(BizErrorCode.DATA_NOT_FOUND, "noteDetailMap 不存在或类型异常");
-            }
+        JsonNode detailMap = root.path("note").path("noteDetailMap");
+        if (detailMap.isMissingNode() || !detailMap.isObject()) {
+            log.warn("noteDetailMap not found or not object.");
+            return Result.fail(BizErrorCode.DATA_NOT_FOUND, "noteDetailMap 不存在或类型异常");
+        }
 
-            JsonNode entry = detailMap.path(feedId);
-            if (entry.isMissingNode() || entry.isNull() || entry.isEmpty()) {
-                // 兜底：有些页面 key 不是 feedId，取第一个
-                Iterator<String> it = detailMap.fieldNames();
-                if (it.hasNext()) {
-                    String firstKey = it.next();
-                    log.info("feedId key not found, fallback to first key: {}", firstKey);
-                    entry = detailMap.path(firstKey);
-                }
-            }
-            if (entry.isMissingNode() || entry.isNull() || entry.isEmpty()) {
-                log.warn("Feed entry not found in noteDetailMap. feedId={}", feedId);
-                return Result.fail(BizErrorCode.DATA_NOT_FOUND, "未在 noteDetailMap 中找到目标笔记");
+        JsonNode entry = detailMap.path(feedId);
+        if (entry.isMissingNode() || entry.isNull() || entry.isEmpty()) {
+            // 兜底：有些页面 key 不是 feedId，取第一个
+            Iterator<String> it = detailMap.fieldNames();
+            if (it.hasNext()) {
+                String firstKey = it.next();
+                log.info("feedId key not found, fallback to first key: {}", firstKey);
+                entry = detailMap.path(firstKey);
             }
+        }
+        if (entry.isMissingNode() || entry.isNull() || entry.isEmpty()) {
+            log.warn("Feed entry not found in noteDetailMap. feedId={}", feedId);
+            return Result.fail(BizErrorCode.DATA_NOT_FOUND, "未在 noteDetailMap 中找到目标笔记");
+        }
 
-            // 5) 提取 note / comments
-            // 若你已有强类型 FeedDetailResponse，可换成 mapper.convertValue(entry, FeedDetailResponse.class)
-            FeedDetailResponse raw = Json.M.convertValue(entry, new TypeReference<>() {});
-            FeedDetail feedDetail     = raw.getNote();
-            CommentList comments = raw.getComments();
-            log.info("Feed detail parsed. feedId={}, hasNote={}, hasComments={}",
-                    feedId, feedDetail != null , comments != null);
-            return Result.ok(raw);
-
-        } catch (PlaywrightException e) {
-            log.error("Feed detail system error. feedId={}, err={}", feedId, e.getMessage(), e);
-            throw new RuntimeException("获取笔记详情发生系统异常", e);
+        // 5) 提取 note / comments
+        // 若你已有强类型 FeedDetailResponse，可换成 mapper.convertValue(entry, FeedDetailResponse.class)
+        FeedDetailResponse raw = Json.M.convertValue(entry, new TypeReference<>() {});
+        FeedDetail feedDetail     = raw.getNote();
+        CommentList comments = raw.getComments();
+        log.info("Feed detail parsed. feedId={}, hasNote={}, hasComments={}",
+                feedId, feedDetail != null , comments != null);
+        tokens.learnNote(feedId, xsecToken);
+        if (feedDetail != null) {
+            tokens.learnNote(feedDetail.getNoteId(), feedDetail.getXsecToken());
+            tokens.learnUser(feedDetail.getUser());
+        }
+        if (comments != null) {
+            tokens.learnComments(comments.getList());
         }
+        noteStore.saveDetail(feedId, raw);
+        progress.report(3, PHASES, "解析完成");
+        return Result.ok(raw);
     }
 
     /* ================= 辅助方法 ================= */
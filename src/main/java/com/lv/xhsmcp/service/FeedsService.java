@@ -1,20 +1,31 @@
 package com.lv.xhsmcp.service;
 
 import com.lv.xhsmcp.browser.BrowserManager;
+import com.lv.xhsmcp.cache.XsecTokenRegistry;
 import com.lv.xhsmcp.model.Feed;
 import com.lv.xhsmcp.model.FeedResponse;
+import com.lv.xhsmcp.store.NoteStore;
 import com.lv.xhsmcp.util.Json;
+import com.lv.xhsmcp.util.OpenHashSet;
 import com.lv.xhsmcp.xhs.BizErrorCode;
 import com.lv.xhsmcp.xhs.Result;
 import com.microsoft.playwright.Page;
 import com.microsoft.playwright.PlaywrightException;
+import com.microsoft.playwright.Response;
 import com.microsoft.playwright.options.WaitUntilState;
 import io.micrometer.common.util.StringUtils;
 import jakarta.annotation.Resource;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
@@ -22,10 +33,24 @@ public class FeedsService {
 
     /* ===================== 常量 ===================== */
     private static final String URL_HOME = "https://www.xiaohongshu.com";
+    private static final String URL_EXPLORE = "https://www.xiaohongshu.com/explore";
+    private static final String API_HOMEFEED = "/api/sns/web/v1/homefeed";
+    private static final String CHANNEL_RECOMMEND = "homefeed_recommend";
     private static final int PAGE_DEFAULT_TIMEOUT_MS = 60_000;
     private static final int NAV_TIMEOUT_MS = 60_000;
     private static final int STABLE_SLEEP_MS = 1_000;
     private static final int DEFAULT_LIMIT = 10;
+    /** 单次调用最多返回的条数，更大的 limit 按此截断（30 秒时限内也滚不出更多） */
+    private static final int MAX_LIMIT = 200;
+
+    private static final int MAX_SCROLLS = 200;
+    private static final int WHEEL_STEP = 1600;
+    private static final int WAIT_AFTER_SCROLL_MS = 300;
+    private static final int WAIT_AFTER_BOTTOM_MS = 900;
+    private static final long NO_GROWTH_QUIT_NS = 5_000_000_000L; // 5s
+
+    @Value("${xhs.feeds.budget-seconds:30}")
+    private long budgetSeconds;
 
     /**
      * 读取初始 state 的 JS 片段（优先 __INITIAL_STATE__，兜底 __XHS_DATA__）
@@ -42,6 +67,10 @@ public class FeedsService {
 
     @Resource
     private BrowserManager browserManager;
+    @Resource
+    private XsecTokenRegistry tokens;
+    @Resource
+    private NoteStore noteStore;
 
 //    public FeedsService(BrowserManager browserManager) {
 //        this.browserManager = browserManager;
@@ -56,17 +85,51 @@ public class FeedsService {
      * - 系统异常（Playwright 等）：抛 RuntimeException
      */
     public Result<List<Feed>> listFeeds(int limit) {
+        return listFeeds(limit, null);
+    }
+
+    /**
+     * 获取首页信息流，超过首屏数量时继续滚动，按 homefeed 接口响应增量收集
+     * <p>
+     * 以 Feed.id 去重，恰好返回 limit 条（最多 {@value #MAX_LIMIT} 条）；达到时限（xhs.feeds.budget-seconds）或接口无下一页时提前返回已收集部分。
+     *
+     * @param channel 频道：空=推荐；支持完整 id（如 homefeed.food_v3）或简写（如 food）
+     */
+    public Result<List<Feed>> listFeeds(int limit, String channel) {
         if (limit < 0) {
             throw new IllegalArgumentException("limit must be >= 0");
         }
-        int max = (limit == 0 ? DEFAULT_LIMIT : limit);
+        int max = Math.min(limit == 0 ? DEFAULT_LIMIT : limit, MAX_LIMIT);
+        String url = makeChannelURL(channel);
+
+        // 接口响应先进 arrived，由调用线程按顺序去重并入结果（首屏数据始终排在前面）
+        List<Feed> arrived = new ArrayList<>();
+        boolean[] hasMore = {true};
+        Consumer<Response> onHomefeed = resp -> {
+            if (!resp.url().contains(API_HOMEFEED)) {
+                return;
+            }
+            try {
+                JsonNode data = Json.M.readTree(resp.text()).path("data");
+                List<Feed> items = Json.M.convertValue(data.path("items"), new TypeReference<>() {});
+                if (items == null || items.isEmpty()) {
+                    hasMore[0] = false;
+                    return;
+                }
+                arrived.addAll(items);
+            } catch (Exception ex) {
+                // 可预期的解析异常：记录告警级别日志，避免中断整体流程
+                log.warn("Parse homefeed response failed. err={}", ex.getMessage());
+            }
+        };
 
         try (Page page = browserManager.context().newPage()) {
             page.setDefaultTimeout(PAGE_DEFAULT_TIMEOUT_MS);
+            page.onResponse(onHomefeed);
 
             // 1) 进入首页并轻量等待（避免网络空闲卡死）
-            log.info("Navigate to home. url={}", URL_HOME);
-            page.navigate(URL_HOME, new Page.NavigateOptions()
+            log.info("Navigate to home. url={}", url);
+            page.navigate(url, new Page.NavigateOptions()
                     .setWaitUntil(WaitUntilState.DOMCONTENTLOADED)
                     .setTimeout(NAV_TIMEOUT_MS));
 
@@ -102,11 +165,21 @@ public class FeedsService {
                 return Result.fail(BizErrorCode.DATA_NOT_FOUND, "feeds 值在初始数据中缺失");
             }
 
-            List<Feed> all = state.getFeed().getFeeds().getValue();
-            int n = Math.min(max, all.size());
-            List<Feed> top = all.stream().limit(n).toList();
+            // 5) 首屏数据优先，已到达的接口增量排在其后
+            List<Feed> collected = new ArrayList<>();
+            OpenHashSet seen = new OpenHashSet();
+            addUnique(collected, seen, state.getFeed().getFeeds().getValue(), max);
+            drain(arrived, collected, seen, max);
 
-            log.info("List feeds success. requested={}, returned={}", max, top.size());
+            // 6) 不够则滚动，由 homefeed 响应驱动收集
+            if (collected.size() < max) {
+                scrollUntil(page, arrived, collected, seen, max, hasMore);
+            }
+
+            List<Feed> top = List.copyOf(collected);
+            tokens.learnFeeds(top);
+            noteStore.saveFeeds(top);
+            log.info("List feeds success. channel={}, requested={}, returned={}", channel, max, top.size());
             return Result.ok(top);
 
         } catch (PlaywrightException e) {
@@ -115,8 +188,69 @@ public class FeedsService {
         }
     }
 
+    /** 滚动到底触发下一页，直到收集够、接口无下一页、无增长或超出时限 */
+    private void scrollUntil(Page page, List<Feed> arrived, List<Feed> collected, OpenHashSet seen,
+                             int max, boolean[] hasMore) {
+        final long deadlineNs = System.nanoTime() + budgetSeconds * 1_000_000_000L;
+        int prevCount = collected.size();
+        long lastGrowTs = System.nanoTime();
+        for (int i = 0; i < MAX_SCROLLS && collected.size() < max && hasMore[0]; i++) {
+            if (System.nanoTime() > deadlineNs) {
+                log.warn("List feeds hit total budget. collected={}, requested={}", collected.size(), max);
+                break;
+            }
+            page.mouse().wheel(0, WHEEL_STEP);
+            page.waitForTimeout(WAIT_AFTER_SCROLL_MS);
+            page.evaluate("() => window.scrollTo(0, document.body.scrollHeight)");
+            page.waitForTimeout(WAIT_AFTER_BOTTOM_MS);
+            drain(arrived, collected, seen, max);
+
+            int cur = collected.size();
+            if (cur > prevCount) {
+                prevCount = cur;
+                lastGrowTs = System.nanoTime();
+            } else if (System.nanoTime() - lastGrowTs > NO_GROWTH_QUIT_NS) {
+                log.info("No growth for 5s, stop scrolling. collected={}", cur);
+                break;
+            }
+        }
+    }
+
     /* ===================== 私有工具 ===================== */
 
+    /** 把已到达的接口条目去重并入结果 */
+    private static void drain(List<Feed> arrived, List<Feed> out, OpenHashSet seen, int max) {
+        addUnique(out, seen, arrived, max);
+        arrived.clear();
+    }
+
+    /** 追加未见过的条目，达到 max 即停 */
+    private static void addUnique(List<Feed> out, OpenHashSet seen, List<Feed> items, int max) {
+        for (Feed f : items) {
+            if (out.size() >= max) {
+                return;
+            }
+            if (f != null && StringUtils.isNotBlank(f.getId()) && seen.add(f.getId())) {
+                out.add(f);
+            }
+        }
+    }
+
+    /** 频道 URL：空=推荐；简写 food -> homefeed.food_v3 */
+    private static String makeChannelURL(String channel) {
+        if (StringUtils.isBlank(channel)) {
+            return URL_HOME;
+        }
+        String c = channel.trim();
+        if (!c.startsWith("homefeed")) {
+            c = "homefeed." + c + "_v3";
+        }
+        if (CHANNEL_RECOMMEND.equals(c)) {
+            return URL_HOME;
+        }
+        return URL_EXPLORE + "?channel_id=" + URLEncoder.encode(c, StandardCharsets.UTF_8);
+    }
+
     private static boolean isLoginOrCaptchaUrl(String url) {
         if (StringUtils.isBlank(url)) {
             return false;
@@ -0,0 +1,171 @@
+package com.lv.xhsmcp.service;
+
+import com.lv.xhsmcp.model.*;
+import com.lv.xhsmcp.util.CountParser;
+import com.lv.xhsmcp.xhs.BizErrorCode;
+import com.lv.xhsmcp.xhs.Progress;
+import com.lv.xhsmcp.xhs.Result;
+import io.micrometer.common.util.StringUtils;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多关键词搜索：各关键词并行搜索，按笔记 id 去重后统一打分排序
+ * <p>
+ * score = Σ(各关键词名次得分) + 互动得分：
+ * - 名次得分 RRF_K / (RRF_K + rank)，每个关键词第一名约为 1，命中越多关键词越靠前
+ * - 互动得分 INTERACT_WEIGHT * log(1+点赞+收藏+评论) / log(1+ENGAGE_SATURATION)，封顶 INTERACT_WEIGHT
+ */
+@Service
+@Slf4j
+public class MultiSearchService {
+    /* ===================== 常量 ===================== */
+    private static final int MAX_KEYWORDS = 20;
+    private static final int DEFAULT_PER_KEYWORD = 10;
+    private static final int DEFAULT_TOTAL = 50;
+    private static final double RRF_K = 10;
+    private static final double INTERACT_WEIGHT = 0.5;
+    private static final double ENGAGE_SATURATION = 100_000;
+
+    @Resource
+    private SearchService searchService;
+    @Resource
+    private AdmissionController admission;
+
+    /**
+     * @param perKeywordLimit 每个关键词取多少条；0=默认值
+     * @param totalLimit      合并后最多返回多少条；0=默认值
+     * @param priority        准入优先级，null 取工具默认（BULK）
+     */
+    public Result<MultiSearchResponse> multiSearch(List<String> keywords, int perKeywordLimit, int totalLimit,
+                                                   AdmissionController.Priority priority, Progress progress) {
+        if (perKeywordLimit < 0 || totalLimit < 0) {
+            throw new IllegalArgumentException("limit must be >= 0");
+        }
+        List<String> kws = normalize(keywords);
+        if (kws.isEmpty()) {
+            throw new IllegalArgumentException("keywords must not be empty");
+        }
+        if (kws.size() > MAX_KEYWORDS) {
+            throw new IllegalArgumentException("keywords must be <= " + MAX_KEYWORDS);
+        }
+        final int per = perKeywordLimit == 0 ? DEFAULT_PER_KEYWORD : perKeywordLimit;
+        final int total = totalLimit == 0 ? DEFAULT_TOTAL : totalLimit;
+        final Progress p = progress == null ? Progress.NOOP : progress;
+        long t0 = System.nanoTime();
+
+        // 1) 并行搜索：扇出宽度取准入控制给 multiSearch 的并发上限，每个关键词单独准入
+        AtomicInteger done = new AtomicInteger();
+        int width = admission.concurrency("multiSearch", priority);
+        ExecutorService lanes = Executors.newFixedThreadPool(Math.min(width, kws.size()), Thread.ofVirtual().factory());
+        Map<String, Future<Result<SearchFeedResponse>>> futures = new LinkedHashMap<>();
+        try (lanes) {
+            for (String kw : kws) {
+                futures.put(kw, lanes.submit(() -> {
+                    try {
+                        return admission.admit("multiSearch", priority, () -> searchService.search(kw, per, Progress.NOOP, null, false));
+                    } finally {
+                        int n = done.incrementAndGet();
+                        p.report(n, (double) kws.size(), "已完成关键词 " + n + "/" + kws.size());
+                    }
+                }));
+            }
+        }
+
+        // 2) 按关键词顺序合并：同一笔记累加名次得分并记录命中的关键词
+        Map<String, Merged> merged = new LinkedHashMap<>();
+        Map<String, Integer> perKeyword = new LinkedHashMap<>();
+        Map<String, String> failed = new LinkedHashMap<>();
+        for (Map.Entry<String, Future<Result<SearchFeedResponse>>> e : futures.entrySet()) {
+            String kw = e.getKey();
+            Result<SearchFeedResponse> r;
+            try {
+                r = e.getValue().get();
+            } catch (Exception ex) {
+                Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+                log.warn("Multi search keyword failed. keyword='{}', err={}", kw, cause.getMessage());
+                failed.put(kw, "搜索发生系统异常");
+                continue;
+            }
+            if (!r.isSuccess() || r.getData() == null || r.getData().getItems() == null) {
+                failed.put(kw, r.getMessage());
+                continue;
+            }
+            List<Feed> items = r.getData().getItems();
+            perKeyword.put(kw, items.size());
+            for (int rank = 0; rank < items.size(); rank++) {
+                Feed f = items.get(rank);
+                if (f == null || StringUtils.isBlank(f.getId())) continue;
+                Merged m = merged.computeIfAbsent(f.getId(), id -> new Merged(f));
+                m.rankScore += RRF_K / (RRF_K + rank);
+                m.bestRank = Math.min(m.bestRank, rank + 1);
+                m.keywords.add(kw);
+            }
+        }
+
+        if (merged.isEmpty()) {
+            return Result.fail(BizErrorCode.DATA_NOT_FOUND, "所有关键词均未获取到搜索结果");
+        }
+
+        // 3) 加互动得分并排序截断
+        List<MultiSearchItem> ranked = merged.values().stream()
+                .map(m -> MultiSearchItem.builder()
+                        .feed(m.feed)
+                        .score(round(m.rankScore + interactScore(m.feed)))
+                        .matchedKeywords(List.copyOf(m.keywords))
+                        .bestRank(m.bestRank)
+                        .build())
+                .sorted(Comparator.comparingDouble(MultiSearchItem::getScore).reversed()
+                        .thenComparingInt(MultiSearchItem::getBestRank))
+                .limit(total)
+                .toList();
+
+        log.info("Multi search done. keywords={}, failed={}, unique={}, returned={}, elapsedMs={}",
+                kws.size(), failed.size(), merged.size(), ranked.size(), (System.nanoTime() - t0) / 1_000_000);
+        return Result.ok(new MultiSearchResponse(ranked, perKeyword, failed.isEmpty() ? null : failed, merged.size()));
+    }
+
+    /* ================= 辅助方法 ================= */
+
+    private static double interactScore(Feed f) {
+        NoteCard card = f.getNoteCard();
+        InteractInfo info = card == null ? null : card.getInteractInfo();
+        if (info == null) {
+            return 0;
+        }
+        long engage = CountParser.parse(info.getLikedCount())
+                + CountParser.parse(info.getCollectedCount())
+                + CountParser.parse(info.getCommentCount());
+        return INTERACT_WEIGHT * Math.min(1.0, Math.log1p(engage) / Math.log1p(ENGAGE_SATURATION));
+    }
+
+    private static double round(double v) {
+        return Math.round(v * 10_000) / 10_000.0;
+    }
+
+    /** 去空白、去重，保持顺序 */
+    private static List<String> normalize(List<String> keywords) {
+        if (keywords == null) return List.of();
+        LinkedHashSet<String> set = new LinkedHashSet<>();
+        for (String k : keywords) {
+            if (StringUtils.isNotBlank(k)) set.add(k.trim());
+        }
+        return new ArrayList<>(set);
+    }
+
+    private static final class Merged {
+        final Feed feed;
+        final Set<String> keywords = new LinkedHashSet<>();
+        double rankScore;
+        int bestRank = Integer.MAX_VALUE;
+
+        Merged(Feed feed) { this.feed = feed; }
+    }
+}
@@ -1,11 +1,15 @@
 package com.lv.xhsmcp.service;
 
 import com.lv.xhsmcp.browser.BrowserManager;
+import com.lv.xhsmcp.cache.XsecTokenRegistry;
+import com.lv.xhsmcp.xhs.ApiAck;
 import com.lv.xhsmcp.xhs.BizErrorCode;
 import com.lv.xhsmcp.xhs.Result;
 import com.microsoft.playwright.Locator;
 import com.microsoft.playwright.Page;
 import com.microsoft.playwright.PlaywrightException;
+import com.microsoft.playwright.Response;
+import com.microsoft.playwright.TimeoutError;
 import com.microsoft.playwright.options.WaitUntilState;
 import io.micrometer.common.util.StringUtils;
 import jakarta.annotation.Resource;
@@ -32,23 +36,31 @@ public class PostCommentService {
     private static final int CLICK_TIMEOUT_MS      = 2_000;
     private static final int SLEEP_AFTER_INPUT_MS  = 1_000;
     private static final int SUBMIT_TIMEOUT_MS     = 5_000;
-    private static final int SLEEP_AFTER_SUBMIT_MS = 1_000;
+    private static final int ACK_TIMEOUT_MS        = 15_000;
+
+    /* ===================== 接口 ===================== */
+    private static final String API_COMMENT_POST   = "/api/sns/web/v1/comment/post";
 
     @Resource
     private BrowserManager browserManager;
+    @Resource
+    private XsecTokenRegistry tokens;
 
 //    public PostCommentService(BrowserManager bm) {
 //        this.browserManager = bm;
 //    }
 
     /**
-     * 发布评论
+     * 发布评论，以评论接口的响应为准判断成败
+     *
+     * @return 成功时 data 为新评论 id
      */
-    public Result<Void> postComment(String feedId, String xsecToken, String content) {
+    public Result<String> postComment(String feedId, String xsecToken, String content) {
         // 1) 参数校验 —— 手册建议：前置校验，用成熟类库；契约问题抛异常
         if (StringUtils.isBlank(feedId)) {
             throw new IllegalArgumentException("发表评论失败: 缺少feed_id参数");
         }
+        xsecToken = tokens.noteToken(feedId, xsecToken);
         if (StringUtils.isBlank(xsecToken)) {
             throw new IllegalArgumentException("发表评论失败: 缺少xsec_token参数");
         }
@@ -104,13 +116,28 @@ public class PostCommentService {
                 return Result.fail(BizErrorCode.ELEMENT_NOT_FOUND, "未找到提交按钮");
             }
             submitBtn.scrollIntoViewIfNeeded();
-            submitBtn.click(new Locator.ClickOptions().setTimeout(SUBMIT_TIMEOUT_MS));
-            page.waitForTimeout(SLEEP_AFTER_SUBMIT_MS);
 
-            // 2.7 刷新会话（例如持久化 Cookie）
+            // 2.7 点击并等待评论接口返回（不再固定 sleep）
+            Response resp;
+            try {
+                resp = page.waitForResponse(
+                        r -> r.url().contains(API_COMMENT_POST) && "POST".equals(r.request().method()),
+                        new Page.WaitForResponseOptions().setTimeout(ACK_TIMEOUT_MS),
+                        () -> submitBtn.click(new Locator.ClickOptions().setTimeout(SUBMIT_TIMEOUT_MS)));
+            } catch (TimeoutError e) {
+                log.warn("Comment API response timeout. feedId={}", feedId);
+                return Result.fail(BizErrorCode.POST_COMMENT_FAILED, "未收到评论接口响应，评论结果未知");
+            }
+            ApiAck ack = ApiAck.parse(resp.text(), "comment.id", "id");
+            if (!ack.success()) {
+                log.warn("Comment rejected by server. feedId={}, code={}, msg={}", feedId, ack.code(), ack.message());
+                return Result.fail(BizErrorCode.POST_COMMENT_FAILED, "评论被拒绝: " + ack.code() + " " + ack.message());
+            }
+
+            // 2.8 刷新会话（例如持久化 Cookie）
             browserManager.persistCookies();
-            log.info("Post comment success. feedId={}", feedId);
-            return Result.ok();
+            log.info("Post comment success. feedId={}, commentId={}", feedId, ack.id());
+            return Result.ok(ack.id(), "评论成功");
 
         } catch (PlaywrightException e) {
             // 3) 系统异常 —— 抛出运行时异常；日志记录异常栈；不吞异常
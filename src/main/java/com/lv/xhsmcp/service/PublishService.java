@@ -1,11 +1,16 @@
 package com.lv.xhsmcp.service;
 
 import com.lv.xhsmcp.browser.BrowserManager;
+import com.lv.xhsmcp.model.PublishItem;
+import com.lv.xhsmcp.util.Json;
+import com.lv.xhsmcp.xhs.ApiAck;
 import com.lv.xhsmcp.xhs.BizErrorCode;
 import com.lv.xhsmcp.xhs.Result;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.microsoft.playwright.*;
 import com.microsoft.playwright.options.*;
 import io.micrometer.common.util.StringUtils;
+import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -19,7 +24,11 @@ import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 @Service
@@ -38,27 +47,69 @@ public class PublishService {
     private static final String SEL_TOPIC_DROPDOWN  = "#creator-editor-topic-container";
     private static final String SEL_TOPIC_ITEM      = ".item";
 
+    /** 话题联想接口 */
+    private static final String API_TOPIC_SUGGEST   = "/web_api/sns/v1/search/topic";
+    private static final int TOPIC_TYPE_DELAY_MS      = 30;
+    private static final int TOPIC_KNOWN_WAIT_MS      = 3_000;
+    private static final int TOPIC_UNKNOWN_WAIT_MS    = 1_500;
+    private static final Duration TOPIC_CACHE_TTL     = Duration.ofHours(6);
+    private static final int TOPIC_CACHE_MAX_ENTRIES  = 4_096;
+
     private static final int PAGE_DEFAULT_TIMEOUT_MS  = 60_000;
     private static final int NAV_TIMEOUT_MS           = 60_000;
     private static final int STABLE_SLEEP_SHORT_MS    = 1_000;
-    private static final int STABLE_SLEEP_LONG_MS     = 3_000;
     private static final int CLICK_TIMEOUT_MS         = 2_000;
     private static final int UPLOAD_POLL_INTERVAL_MS  = 500;
     private static final Duration UPLOAD_MAX_WAIT     = Duration.ofSeconds(60);
 
+    private static final int WARM_RESET_TIMEOUT_MS    = 5_000;
+    private static final int PUBLISH_ACK_TIMEOUT_MS   = 30_000;
+
+    /** 创作中心发布笔记接口 */
+    private static final String API_NOTE_PUBLISH      = "/web_api/sns/v2/note";
+    private static final Duration WARM_IDLE_MAX       = Duration.ofMinutes(10);
+
+    /** 光标移到可编辑区末尾 */
+    private static final String JS_CARET_TO_END = """
+            el => {
+              el.focus();
+              const range = document.createRange();
+              range.selectNodeContents(el);
+              range.collapse(false);
+              const sel = window.getSelection();
+              sel.removeAllRanges();
+              sel.addRange(range);
+            }
+            """;
+
+    /** 站内路由跳转（SPA 内切换，不整页刷新） */
+    private static final String JS_ROUTE_TO = """
+            url => {
+              history.pushState({}, "", url);
+              window.dispatchEvent(new PopStateEvent("popstate", { state: {} }));
+            }
+            """;
+
     private static final Path LOCAL_IMAGE_DIR         = Paths.get("images");
     private static final Pattern TAG_PATTERN          = Pattern.compile("#([\\p{L}\\p{N}_]+)");
 
     @Resource
     private BrowserManager browserManager;
 
+    /** 当前 BrowserContext 即一个账号，对应一个常驻的创作中心标签页；同一时刻只允许一个批次使用 */
+    private final ReentrantLock creatorLock = new ReentrantLock();
+    private volatile CreatorSession creatorSession;
+
+    private final TopicCache topicCache = new TopicCache(TOPIC_CACHE_TTL, TOPIC_CACHE_MAX_ENTRIES);
+
     /**
      * 发布图文
      * - 参数错误 -> IllegalArgumentException
      * - 业务可预期错误 -> Result.fail(...)
      * - 系统异常 -> RuntimeException
+     * 成功与否以发布接口响应为准，成功时 data 为笔记 id
      */
-    public Result<Void> publish(String title, String content, List<String> imagePaths) {
+    public Result<String> publish(String title, String content, List<String> imagePaths) {
         // 1) 参数校验（契约问题直接抛异常）
         if (StringUtils.isBlank(title)) {
             throw new IllegalArgumentException("标题不能为空");
@@ -81,88 +132,327 @@ public class PublishService {
         try (Page page = browserManager.context().newPage()) {
             page.setDefaultTimeout(PAGE_DEFAULT_TIMEOUT_MS);
 
-            // 3.1 进入发布页
-            log.info("Navigate to publish page. url={}", URL_PUBLISH);
-            page.navigate(URL_PUBLISH, new Page.NavigateOptions()
-                    .setWaitUntil(WaitUntilState.DOMCONTENTLOADED)
-                    .setTimeout(NAV_TIMEOUT_MS));
+            // 3.1 ~ 3.4 进入发布页并切到“上传图文”
+            Result<Void> openRet = openEditor(page);
+            if (!openRet.isSuccess()) {
+                return Result.fail(openRet.getCode(), openRet.getMessage());
+            }
 
-            // 3.2 登录/人机检测（业务可预期错误）
-            if (isCaptchaOrLogin(page)) {
-                log.warn("Captcha or login required. url={}", page.url());
-                return Result.fail(BizErrorCode.AUTH_REQUIRED, "需要登录或通过人机验证");
+            // 3.5 ~ 3.10 上传、填写并发布
+            Result<String> ret = fillAndSubmit(page, new EditorLocators(), title, content, localImages);
+            if (!ret.isSuccess()) {
+                return ret;
             }
 
-            // 3.3 等上传区域可见
-            Locator uploadContent = page.locator(SEL_UPLOAD_CONTENT);
-            uploadContent.waitFor(new Locator.WaitForOptions().setState(WaitForSelectorState.VISIBLE));
-            page.waitForTimeout(STABLE_SLEEP_SHORT_MS);
+            browserManager.persistCookies();
+            log.info("Publish success. noteId={}", ret.getData());
+            return ret;
 
-            removePopCover(page);
+        } catch (PlaywrightException e) {
+            log.error("Publish system error. err={}", e.getMessage(), e);
+            throw new RuntimeException("发布图文发生系统异常", e);
+        }
+    }
 
-            // 3.4 点击“上传图文”Tab
-            clickVisibleTabByExactText(page, SEL_CREATOR_TAB, "上传图文");
-            page.waitForTimeout(STABLE_SLEEP_SHORT_MS);
+    /**
+     * 批量发布图文：复用同一个创作中心标签页
+     * <p>
+     * - 首篇冷启动（导航 + 等上传区 + 切 Tab），之后通过站内路由回到空白编辑器，不再整页刷新
+     * - 已定位到的输入框/按钮缓存复用
+     * - 任一步骤状态不一致（元素丢失、路由未生效、Playwright 异常）即关闭标签页，下一篇冷启动
+     * - 单篇失败不影响后续，逐篇返回结果
+     */
+    public List<Result<String>> publishBatch(List<PublishItem> items) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("发布列表不能为空");
+        }
+        List<Result<String>> results = new ArrayList<>(items.size());
+        creatorLock.lock();
+        try {
+            for (int i = 0; i < items.size(); i++) {
+                PublishItem item = items.get(i);
+                Result<String> r;
+                try {
+                    r = publishWarm(item);
+                } catch (IllegalArgumentException e) {
+                    r = Result.fail(BizErrorCode.PUBLISH_FAILED, e.getMessage());
+                } catch (RuntimeException e) {
+                    // Playwright 异常及上传超时等包装异常：页面状态不可信，关掉后继续下一篇，已发布的结果不能丢
+                    log.warn("Batch publish item failed, reset session. index={}, err={}", i, e.getMessage());
+                    closeCreatorSession();
+                    r = Result.fail(BizErrorCode.PUBLISH_FAILED, "发布图文发生系统异常: " + e.getMessage());
+                }
+                results.add(r);
+            }
+            browserManager.persistCookies();
+            log.info("Batch publish finished. total={}, success={}", items.size(),
+                    results.stream().filter(Result::isSuccess).count());
+            return results;
+        } finally {
+            CreatorSession s = creatorSession;
+            if (s != null) {
+                s.lastUsedNs = System.nanoTime();
+                browserManager.markBackground(s.page, true); // 闲置保留，不算前台负载
+                CompletableFuture.runAsync(this::closeIfIdle,
+                        CompletableFuture.delayedExecutor(WARM_IDLE_MAX.toMillis(), TimeUnit.MILLISECONDS));
+            }
+            creatorLock.unlock();
+        }
+    }
 
-            // 3.5 上传图片
-            Result<Void> uploadRet = uploadImages(page, localImages);
-            if (!uploadRet.isSuccess()) {
-                return uploadRet; // 携带明确的业务错误码
+    /** 批次结束后闲置满 WARM_IDLE_MAX 仍未复用则关掉，不让已登录的编辑器页一直开着 */
+    private void closeIfIdle() {
+        if (!creatorLock.tryLock()) {
+            return; // 正在发布，该批次结束时会重新计时
+        }
+        try {
+            CreatorSession s = creatorSession;
+            if (s != null && System.nanoTime() - s.lastUsedNs >= WARM_IDLE_MAX.toNanos()) {
+                log.info("Close idle creator tab. warmPosts={}", s.published);
+                closeCreatorSession();
             }
+        } finally {
+            creatorLock.unlock();
+        }
+    }
+
+    private Result<String> publishWarm(PublishItem item) {
+        if (item == null || StringUtils.isBlank(item.getTitle())) {
+            throw new IllegalArgumentException("标题不能为空");
+        }
+        if (StringUtils.isBlank(item.getContent())) {
+            throw new IllegalArgumentException("正文内容不能为空");
+        }
+        if (item.getImages() == null || item.getImages().isEmpty()) {
+            throw new IllegalArgumentException("图片地址不能为空");
+        }
+        Result<ImagesReady> readyRet = checkAndDownload(item.getImages());
+        if (!readyRet.isSuccess()) {
+            return Result.fail(readyRet.getCode(), readyRet.getMessage());
+        }
 
-            // 3.6 等待上传完成
-            waitForUploadComplete(page, localImages.size(), UPLOAD_MAX_WAIT);
+        CreatorSession session = acquireCreatorSession();
+        if (session == null) {
+            return Result.fail(BizErrorCode.AUTH_REQUIRED, "需要登录或通过人机验证");
+        }
+        Result<String> ret = fillAndSubmit(session.page, session.locators, item.getTitle(), item.getContent(),
+                readyRet.getData().getLocalPaths());
+        if (!ret.isSuccess()) {
+            // 元素缺失等说明页面状态已不可信，下一篇冷启动
+            closeCreatorSession();
+            return ret;
+        }
+        session.published++;
+        session.dirty = true;
+        log.info("Batch publish item success. noteId={}, warmPosts={}", ret.getData(), session.published);
+        return ret;
+    }
 
-            // 3.7 填标题
-            Locator titleInput = page.locator(SEL_TITLE_INPUT).first();
-            if (titleInput.count() == 0) {
-                log.warn("Title input not found.");
-                return Result.fail(BizErrorCode.ELEMENT_NOT_FOUND, "未找到标题输入框");
+    /** 拿到一个处于空白编辑器状态的标签页：优先站内路由复位，失败则冷启动 */
+    private CreatorSession acquireCreatorSession() {
+        CreatorSession s = creatorSession;
+        if (s != null && System.nanoTime() - s.lastUsedNs > WARM_IDLE_MAX.toNanos()) {
+            // 闲置太久，登录态/页面状态都不可信
+            closeCreatorSession();
+            s = null;
+        }
+        if (s != null && !s.page.isClosed()) {
+            s.lastUsedNs = System.nanoTime();
+            browserManager.markBackground(s.page, false);
+            if (!s.dirty) {
+                return s;
             }
-            titleInput.fill(title);
-            page.waitForTimeout(STABLE_SLEEP_SHORT_MS);
-
-            // 3.8 填正文
-            Locator contentBox = resolveContentEditor(page);
-            if (contentBox == null) {
-                log.warn("Content editor not found.");
-                return Result.fail(BizErrorCode.ELEMENT_NOT_FOUND, "未找到内容输入框");
+            if (resetEditorInApp(s.page)) {
+                s.dirty = false;
+                return s;
             }
-            contentBox.fill("");
-            contentBox.type(content);
-
-            // 3.9 输入标签（从正文提取）
-            inputTags(page, contentBox, extractTags(content));
-            page.waitForTimeout(STABLE_SLEEP_SHORT_MS);
-
-            // 3.10 发布
-            Locator publishBtn = page.locator(SEL_SUBMIT_BTN).first();
-            if (publishBtn.count() == 0) {
-                log.warn("Publish button not found.");
-                return Result.fail(BizErrorCode.ELEMENT_NOT_FOUND, "未找到发布按钮");
+            log.info("In-app editor reset failed, fallback to cold start.");
+            closeCreatorSession();
+        }
+        Page page = browserManager.context().newPage();
+        page.setDefaultTimeout(PAGE_DEFAULT_TIMEOUT_MS);
+        Result<Void> openRet;
+        try {
+            openRet = openEditor(page);
+        } catch (PlaywrightException e) {
+            safeClose(page);
+            throw e;
+        }
+        if (!openRet.isSuccess()) {
+            safeClose(page);
+            return null;
+        }
+        creatorSession = new CreatorSession(page);
+        return creatorSession;
+    }
+
+    /** 通过 history 路由回到发布页，并确认上传区已重新渲染 */
+    private boolean resetEditorInApp(Page page) {
+        try {
+            page.evaluate(JS_ROUTE_TO, URL_PUBLISH);
+            page.locator(SEL_UPLOAD_CONTENT).waitFor(new Locator.WaitForOptions()
+                    .setState(WaitForSelectorState.VISIBLE)
+                    .setTimeout(WARM_RESET_TIMEOUT_MS));
+            if (isCaptchaOrLogin(page) || page.locator(SEL_PREVIEW_ITEM).count() > 0) {
+                // 残留上一篇的图片预览，说明编辑器没有复位
+                return false;
             }
-            publishBtn.click(new Locator.ClickOptions().setTimeout(CLICK_TIMEOUT_MS));
-            page.waitForTimeout(STABLE_SLEEP_LONG_MS);
+            removePopCover(page);
+            clickVisibleTabByExactText(page, SEL_CREATOR_TAB, "上传图文");
+            page.locator(SEL_FILE_INPUT).first().waitFor(new Locator.WaitForOptions()
+                    .setState(WaitForSelectorState.ATTACHED)
+                    .setTimeout(WARM_RESET_TIMEOUT_MS));
+            return true;
+        } catch (PlaywrightException e) {
+            log.info("Reset editor failed. err={}", e.getMessage());
+            return false;
+        }
+    }
 
-            browserManager.persistCookies();
-            log.info("Publish success.");
-            return Result.ok("发布成功");
+    @PreDestroy
+    public void destroy() {
+        closeCreatorSession();
+    }
 
-        } catch (PlaywrightException e) {
-            log.error("Publish system error. err={}", e.getMessage(), e);
-            throw new RuntimeException("发布图文发生系统异常", e);
+    private void closeCreatorSession() {
+        CreatorSession s = creatorSession;
+        creatorSession = null;
+        if (s != null) {
+            safeClose(s.page);
         }
     }
 
+    private static void safeClose(Page page) {
+        try {
+            if (page != null && !page.isClosed()) page.close();
+        } catch (Exception ignore) {
+            // 已关闭/浏览器已退出，忽略
+        }
+    }
+
+    /* ===================== 发布步骤 ===================== */
+
+    /** 冷启动：进入发布页并切到“上传图文” */
+    private Result<Void> openEditor(Page page) {
+        // 3.1 进入发布页
+        log.info("Navigate to publish page. url={}", URL_PUBLISH);
+        page.navigate(URL_PUBLISH, new Page.NavigateOptions()
+                .setWaitUntil(WaitUntilState.DOMCONTENTLOADED)
+                .setTimeout(NAV_TIMEOUT_MS));
+
+        // 3.2 登录/人机检测（业务可预期错误）
+        if (isCaptchaOrLogin(page)) {
+            log.warn("Captcha or login required. url={}", page.url());
+            return Result.fail(BizErrorCode.AUTH_REQUIRED, "需要登录或通过人机验证");
+        }
+
+        // 3.3 等上传区域可见
+        Locator uploadContent = page.locator(SEL_UPLOAD_CONTENT);
+        uploadContent.waitFor(new Locator.WaitForOptions().setState(WaitForSelectorState.VISIBLE));
+        page.waitForTimeout(STABLE_SLEEP_SHORT_MS);
+
+        removePopCover(page);
+
+        // 3.4 点击“上传图文”Tab
+        clickVisibleTabByExactText(page, SEL_CREATOR_TAB, "上传图文");
+        page.waitForTimeout(STABLE_SLEEP_SHORT_MS);
+        return Result.ok();
+    }
+
+    /** 上传图片、填写标题正文标签并点击发布；locators 中已有的定位结果直接复用 */
+    private Result<String> fillAndSubmit(Page page, EditorLocators locators, String title, String content,
+                                       List<String> localImages) {
+        // 3.5 上传图片
+        Result<Void> uploadRet = uploadImages(page, localImages);
+        if (!uploadRet.isSuccess()) {
+            return Result.fail(uploadRet.getCode(), uploadRet.getMessage()); // 携带明确的业务错误码
+        }
+
+        // 3.6 等待上传完成
+        waitForUploadComplete(page, localImages.size(), UPLOAD_MAX_WAIT);
+
+        // 3.7 填标题
+        if (locators.titleInput == null) {
+            locators.titleInput = page.locator(SEL_TITLE_INPUT).first();
+        }
+        if (locators.titleInput.count() == 0) {
+            log.warn("Title input not found.");
+            locators.titleInput = null;
+            return Result.fail(BizErrorCode.ELEMENT_NOT_FOUND, "未找到标题输入框");
+        }
+        locators.titleInput.fill(title);
+        page.waitForTimeout(STABLE_SLEEP_SHORT_MS);
+
+        // 3.8 填正文
+        if (locators.contentBox == null || locators.contentBox.count() == 0) {
+            locators.contentBox = resolveContentEditor(page);
+        }
+        Locator contentBox = locators.contentBox;
+        if (contentBox == null) {
+            log.warn("Content editor not found.");
+            return Result.fail(BizErrorCode.ELEMENT_NOT_FOUND, "未找到内容输入框");
+        }
+        contentBox.fill("");
+        contentBox.type(content);
+
+        // 3.9 输入标签（从正文提取）
+        inputTags(page, contentBox, extractTags(content));
+        page.waitForTimeout(STABLE_SLEEP_SHORT_MS);
+
+        // 3.10 发布
+        if (locators.publishBtn == null) {
+            locators.publishBtn = page.locator(SEL_SUBMIT_BTN).first();
+        }
+        if (locators.publishBtn.count() == 0) {
+            log.warn("Publish button not found.");
+            locators.publishBtn = null;
+            return Result.fail(BizErrorCode.ELEMENT_NOT_FOUND, "未找到发布按钮");
+        }
+        return submitAndConfirm(page, locators.publishBtn);
+    }
+
+    /** 点击发布并等待发布接口返回，解析结果码与笔记 id */
+    private Result<String> submitAndConfirm(Page page, Locator publishBtn) {
+        Response resp;
+        try {
+            resp = page.waitForResponse(PublishService::isNotePublishResponse,
+                    new Page.WaitForResponseOptions().setTimeout(PUBLISH_ACK_TIMEOUT_MS),
+                    () -> publishBtn.click(new Locator.ClickOptions().setTimeout(CLICK_TIMEOUT_MS)));
+        } catch (TimeoutError e) {
+            log.warn("Publish API response timeout.");
+            return Result.fail(BizErrorCode.PUBLISH_FAILED, "未收到发布接口响应，发布结果未知");
+        }
+        ApiAck ack = ApiAck.parse(resp.text(), "id", "note_id", "noteId");
+        if (!ack.success()) {
+            log.warn("Publish rejected by server. code={}, msg={}", ack.code(), ack.message());
+            return Result.fail(BizErrorCode.PUBLISH_FAILED, "发布被拒绝: " + ack.code() + " " + ack.message());
+        }
+        return Result.ok(ack.id(), "发布成功");
+    }
+
+    /** 创作中心发布笔记接口（图文/视频共用） */
+    static boolean isNotePublishResponse(Response r) {
+        return r.url().contains(API_NOTE_PUBLISH) && "POST".equals(r.request().method());
+    }
+
     /* ===================== 资源准备：下载/校验图片 ===================== */
 
     public Result<ImagesReady> checkAndDownload(List<String> imagePaths) {
+        return checkAndDownload(imagePaths, LOCAL_IMAGE_DIR);
+    }
+
+    /**
+     * 远程图片下载到 downloadDir，本地图片只校验存在
+     *
+     * @param downloadDir 需要跨重启保留的素材（如定时发布预取）应放在数据目录下
+     */
+    public Result<ImagesReady> checkAndDownload(List<String> imagePaths, Path downloadDir) {
         if (imagePaths == null || imagePaths.isEmpty()) {
             throw new IllegalArgumentException("imagePaths must not be empty");
         }
         try {
-            if (!Files.exists(LOCAL_IMAGE_DIR)) {
-                Files.createDirectories(LOCAL_IMAGE_DIR);
+            if (!Files.exists(downloadDir)) {
+                Files.createDirectories(downloadDir);
             }
             List<String> newPaths = new ArrayList<>(imagePaths.size());
             for (String p : imagePaths) {
@@ -170,7 +460,7 @@ public class PublishService {
                     throw new IllegalArgumentException("image path must not be blank");
                 }
                 if (p.startsWith("http://") || p.startsWith("https://")) {
-                    String saved = downloadImageToLocal(p);
+                    String saved = downloadImageToLocal(p, downloadDir);
                     if (saved == null) {
                         return Result.fail(BizErrorCode.DOWNLOAD_FAILED, "下载远程图片失败: " + p);
                     }
@@ -190,10 +480,10 @@ public class PublishService {
         }
     }
 
-    private String downloadImageToLocal(String url) {
+    private String downloadImageToLocal(String url, Path dir) {
         try (InputStream in = new URL(url).openStream()) {
             String fileName = UUID.randomUUID() + ".jpg"; // 简单命名，真实场景可按 Content-Type/扩展名优化
-            Path localFile = LOCAL_IMAGE_DIR.resolve(fileName);
+            Path localFile = dir.resolve(fileName);
             Files.copy(in, localFile, StandardCopyOption.REPLACE_EXISTING);
             return localFile.toAbsolutePath().toString();
         } catch (IOException e) {
@@ -319,43 +609,89 @@ public class PublishService {
         if (tags == null || tags.isEmpty()) {
             return;
         }
-        // 让光标到合适位置（与原逻辑对齐）
-        for (int i = 0; i < 20; i++) {
-            contentBox.press("ArrowDown");
-            page.waitForTimeout(10);
-        }
+        // 直接把光标放到正文末尾，再换两行
+        contentBox.evaluate(JS_CARET_TO_END);
         contentBox.press("Enter");
         contentBox.press("Enter");
-        page.waitForTimeout(STABLE_SLEEP_SHORT_MS);
-
-        for (String raw : tags) {
-            if (StringUtils.isBlank(raw)) {
-                continue;
-            }
-            String tag = raw.startsWith("#") ? raw.substring(1) : raw;
-
-            contentBox.type("#");
-            page.waitForTimeout(200);
 
-            for (char c : tag.toCharArray()) {
-                contentBox.type(String.valueOf(c));
-                page.waitForTimeout(50);
-            }
+        // 记录本页面上的话题联想响应，供后续发布复用
+        Consumer<Response> recorder = this::recordTopicSuggest;
+        page.onResponse(recorder);
+        try {
+            for (String raw : tags) {
+                if (StringUtils.isBlank(raw)) {
+                    continue;
+                }
+                String tag = raw.startsWith("#") ? raw.substring(1) : raw;
+                TopicCache.Hint hint = topicCache.hint(tag);
 
-            page.waitForTimeout(STABLE_SLEEP_SHORT_MS);
+                if (hint == TopicCache.Hint.EMPTY) {
+                    // 已知无联想：直接输入纯文本标签，不等下拉
+                    contentBox.type("#" + tag + " ");
+                    continue;
+                }
 
-            Locator dropdown = page.locator(SEL_TOPIC_DROPDOWN);
-            if (dropdown.count() > 0 && isElementVisible(dropdown)) {
-                Locator firstItem = dropdown.locator(SEL_TOPIC_ITEM).first();
-                if (firstItem.count() > 0) {
-                    firstItem.click();
+                contentBox.type("#");
+                contentBox.type(tag, new Locator.TypeOptions().setDelay(TOPIC_TYPE_DELAY_MS));
+
+                // 已知有联想：等文本与缓存话题名一致的项出现就选；未知：最多等一个联想往返，且项须含标签文本。
+                // 上一个标签或输入到一半时的下拉可能还在，只认与本标签对得上的项
+                boolean known = hint == TopicCache.Hint.KNOWN;
+                List<String> names = known ? topicCache.topics(tag) : List.of();
+                int waitMs = known ? TOPIC_KNOWN_WAIT_MS : TOPIC_UNKNOWN_WAIT_MS;
+                Locator item = topicItem(page, names.isEmpty() ? List.of(tag) : names);
+                if (waitVisible(item, waitMs)) {
+                    item.click();
                     page.waitForTimeout(200);
                     continue;
                 }
+                // 无联想则空格结束
+                contentBox.type(" ");
             }
-            // 无联想则空格结束
-            contentBox.type(" ");
-            page.waitForTimeout(500);
+        } finally {
+            page.offResponse(recorder);
+        }
+    }
+
+    /** 话题下拉中文本含 names 之一的第一项 */
+    private static Locator topicItem(Page page, List<String> names) {
+        StringJoiner alt = new StringJoiner("|");
+        for (String n : names) alt.add(Pattern.quote(n));
+        return page.locator(SEL_TOPIC_DROPDOWN).locator(SEL_TOPIC_ITEM)
+                .filter(new Locator.FilterOptions().setHasText(Pattern.compile(alt.toString(), Pattern.CASE_INSENSITIVE)))
+                .first();
+    }
+
+    private void recordTopicSuggest(Response resp) {
+        try {
+            if (!resp.url().contains(API_TOPIC_SUGGEST)) {
+                return;
+            }
+            String keyword = null;
+            String postData = resp.request().postData();
+            if (StringUtils.isNotBlank(postData)) {
+                keyword = Json.M.readTree(postData).path("keyword").asText(null);
+            }
+            if (StringUtils.isBlank(keyword)) {
+                return;
+            }
+            List<String> names = new ArrayList<>();
+            for (JsonNode t : Json.M.readTree(resp.text()).path("data").path("topic_info_dtos")) {
+                String name = t.path("name").asText("");
+                if (!name.isBlank()) names.add(name);
+            }
+            topicCache.put(keyword, names);
+        } catch (Exception e) {
+            log.debug("Parse topic suggest response failed. err={}", e.getMessage());
+        }
+    }
+
+    private static boolean waitVisible(Locator el, int timeoutMs) {
+        try {
+            el.waitFor(new Locator.WaitForOptions().setState(WaitForSelectorState.VISIBLE).setTimeout(timeoutMs));
+            return true;
+        } catch (TimeoutError e) {
+            return false;
         }
     }
 
@@ -408,6 +744,24 @@ public class PublishService {
         @Override public String toString() { return "ImagesReady{localPaths=" + localPaths + '}'; }
     }
 
+    /** 编辑器内已定位的元素，批量发布时跨篇复用 */
+    private static final class EditorLocators {
+        private Locator titleInput;
+        private Locator contentBox;
+        private Locator publishBtn;
+    }
+
+    /** 常驻的创作中心标签页 */
+    private static final class CreatorSession {
+        private final Page page;
+        private final EditorLocators locators = new EditorLocators();
+        private boolean dirty;     // 已发布过，需复位编辑器
+        private int published;
+        private long lastUsedNs = System.nanoTime();
+
+        private CreatorSession(Page page) { this.page = page; }
+    }
+
     /** 移除弹窗封面，并兜底点击空白位置 */
     public static void removePopCover(Page page) {
         try {
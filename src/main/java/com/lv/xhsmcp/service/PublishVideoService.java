@@ -1,11 +1,15 @@
 package com.lv.xhsmcp.service;
 
 import com.lv.xhsmcp.browser.BrowserManager;
+import com.lv.xhsmcp.xhs.ApiAck;
+import com.lv.xhsmcp.xhs.BizErrorCode;
 import com.lv.xhsmcp.xhs.Result;
 import com.microsoft.playwright.Locator;
 import com.microsoft.playwright.Mouse;
 import com.microsoft.playwright.Page;
 import com.microsoft.playwright.PlaywrightException;
+import com.microsoft.playwright.Response;
+import com.microsoft.playwright.TimeoutError;
 import com.microsoft.playwright.options.*;
 import io.micrometer.common.util.StringUtils;
 import jakarta.annotation.Resource;
@@ -28,7 +32,7 @@ public class PublishVideoService {
     private static final int PAGE_DEFAULT_TIMEOUT_MS  = 60_000;
     private static final int NAV_TIMEOUT_MS           = 60_000;
     private static final int STABLE_SLEEP_SHORT_MS    = 1_000;
-    private static final int STABLE_SLEEP_LONG_MS     = 3_000;
+    private static final int PUBLISH_ACK_TIMEOUT_MS   = 30_000;
 
     @Resource
     private BrowserManager browserManager;
@@ -38,8 +42,9 @@ public class PublishVideoService {
      * - 参数错误 -> IllegalArgumentException
      * - 业务可预期错误 -> Result.fail(...)
      * - 系统异常 -> RuntimeException
+     * 成功与否以发布接口响应为准，成功时 data 为笔记 id
      */
-    public Result<Void> publish(String title, String content, String videoPath) {
+    public Result<String> publish(String title, String content, String videoPath) {
         // 1) 参数校验（契约问题直接抛异常）
         if (StringUtils.isBlank(title)) {
             throw new IllegalArgumentException("标题不能为空");
@@ -63,11 +68,13 @@ public class PublishVideoService {
             removePopCover(page);
             this.switchToVideoTab(page);
             uploadVideo(page,videoPath);
-            submitPublishVideo(page,title,content);
-            page.waitForTimeout(STABLE_SLEEP_LONG_MS);
+            Result<String> ret = submitPublishVideo(page,title,content);
+            if (!ret.isSuccess()) {
+                return ret;
+            }
             browserManager.persistCookies();
-            log.info("Publish success.");
-            return Result.ok("发布成功");
+            log.info("Publish success. noteId={}", ret.getData());
+            return ret;
         }
     }
 
@@ -131,7 +138,7 @@ public class PublishVideoService {
 
 
     /** ===== 填写标题、正文、标签并点击发布（等价 submitPublishVideo） ===== */
-    private void submitPublishVideo(Page page,String title, String content) {
+    private Result<String> submitPublishVideo(Page page,String title, String content) {
         // 标题（TODO 选择器：按你的 DOM 调整）
         Locator titleInput = page.locator("div.d-input input").first();
         if (titleInput.count() == 0) {
@@ -161,8 +168,21 @@ public class PublishVideoService {
 
         // 等按钮可点，再提交
         Locator publishBtn = waitForPublishButtonClickable(page,Duration.ofMinutes(10));
-        publishBtn.click();
-        page.waitForTimeout(3000);
+        Response resp;
+        try {
+            resp = page.waitForResponse(PublishService::isNotePublishResponse,
+                    new Page.WaitForResponseOptions().setTimeout(PUBLISH_ACK_TIMEOUT_MS),
+                    publishBtn::click);
+        } catch (TimeoutError e) {
+            log.warn("Publish video API response timeout.");
+            return Result.fail(BizErrorCode.PUBLISH_FAILED, "未收到发布接口响应，发布结果未知");
+        }
+        ApiAck ack = ApiAck.parse(resp.text(), "id", "note_id", "noteId");
+        if (!ack.success()) {
+            log.warn("Publish video rejected by server. code={}, msg={}", ack.code(), ack.message());
+            return Result.fail(BizErrorCode.PUBLISH_FAILED, "发布被拒绝: " + ack.code() + " " + ack.message());
+        }
+        return Result.ok(ack.id(), "发布成功");
     }
 
     /** 获取内容输入框：contenteditable 或 textarea（二选一） */
@@ -1,28 +1,35 @@
 package com.lv.xhsmcp.service;
 
 import com.lv.xhsmcp.browser.BrowserManager;
+import com.lv.xhsmcp.cache.XsecTokenRegistry;
 import com.lv.xhsmcp.model.Feed;
 import com.lv.xhsmcp.model.SearchFeedResponse;
-import com.lv.xhsmcp.util.Json;
+import com.lv.xhsmcp.store.FullTextIndex;
+import com.lv.xhsmcp.store.NoteStore;
 import com.lv.xhsmcp.xhs.BizErrorCode;
+import com.lv.xhsmcp.xhs.Progress;
 import com.lv.xhsmcp.xhs.Result;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.microsoft.playwright.Page;
 import com.microsoft.playwright.PlaywrightException;
-import com.microsoft.playwright.Response;
 import com.microsoft.playwright.options.WaitUntilState;
 import io.micrometer.common.util.StringUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Service
 @Slf4j
@@ -44,9 +51,29 @@ public class SearchService {
     private static final int WAIT_AFTER_BOTTOM_MS = 900;
     private static final int STABLE_WAIT_AFTER_NAV_MS = 3000;
     private static final long NO_GROWTH_QUIT_NS = 3_000_000_000L; // 3s
+    private static final long JANITOR_INTERVAL_S = 10;
+
+    @Value("${xhs.search.max-sessions:4}")
+    private int maxSessions;
+    @Value("${xhs.search.session-idle-seconds:60}")
+    private long sessionIdleSeconds;
+
+    /** cursor -> 保留中的搜索会话 */
+    private final Map<String, SearchSession> sessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService janitor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "search-session-janitor");
+        t.setDaemon(true);
+        return t;
+    });
 
     @Resource
     private BrowserManager browserManager;
+    @Resource
+    private XsecTokenRegistry tokens;
+    @Resource
+    private NoteStore noteStore;
+    @Resource
+    private FullTextIndex fullTextIndex;
 
     /**
      * 搜索笔记
@@ -55,114 +82,316 @@ public class SearchService {
      * @param limit    返回条数；0=默认值；&lt;0 抛异常
      */
     public Result<SearchFeedResponse> search(String keyword, int limit) {
+        return search(keyword, limit, Progress.NOOP);
+    }
+
+    /**
+     * 搜索笔记，并在导航完成、每收集到新结果时回报进度
+     */
+    public Result<SearchFeedResponse> search(String keyword, int limit, Progress progress) {
+        return search(keyword, limit, progress, null);
+    }
+
+    /**
+     * 流式搜索：每解析到一页接口响应，立即把其中新去重的条目（不超过 limit）交给 onBatch
+     * <p>
+     * 结果还有剩余时保留搜索会话，返回体中的 cursor 可用于 {@link #searchMore} 续取。
+     *
+     * @param onBatch 在 Playwright 事件回调中同步调用，应尽快返回
+     */
+    public Result<SearchFeedResponse> search(String keyword, int limit, Progress progress,
+                                             Consumer<List<Feed>> onBatch) {
+        return search(keyword, limit, progress, onBatch, true);
+    }
+
+    /**
+     * @param keepSession false 时不保留会话（一次性搜索，如多关键词汇总），返回体不含 cursor
+     */
+    public Result<SearchFeedResponse> search(String keyword, int limit, Progress progress,
+                                             Consumer<List<Feed>> onBatch, boolean keepSession) {
         if (limit < 0) {
             throw new IllegalArgumentException("limit must be >= 0");
         }
         final int want = (limit == 0 ? DEFAULT_LIMIT : limit);
-
-        final long deadlineNs = System.nanoTime() + TOTAL_BUDGET.toNanos();
         final String searchURL = makeSearchURL(keyword);
 
-        final Map<String, Feed> byId = new LinkedHashMap<>();
-        final AtomicBoolean hasMore = new AtomicBoolean(false);
-
-        try (Page page = browserManager.context().newPage()) {
+        Page page = browserManager.context().newPage();
+        SearchSession session = null;
+        boolean keep = false;
+        try {
+            // 注册响应监听也可能抛异常，放在 try 内，保证新开的页面一定被关掉
+            session = new SearchSession(keyword, page, API_SEARCH_NOTES);
+            session.lock.lock();
             page.setDefaultTimeout(PAGE_DEFAULT_TIMEOUT_MS);
-
-            // 监听搜索接口响应，增量收集 items
-            Consumer<Response> handler = resp -> {
-                try {
-                    String url = resp.url();
-                    if (url.contains(API_SEARCH_NOTES)) {
-                        String body = resp.text();
-                        JsonNode root = Json.M.readTree(body);
-                        JsonNode data = root.path("data");
-                        JsonNode items = data.path("items");
-                        if (items != null && items.isArray()) {
-                            SearchFeedResponse tmp = Json.M.convertValue(data, new TypeReference<>() {});
-                            hasMore.set(Boolean.TRUE.equals(tmp.getHasMore()));
-                            if (tmp.getItems() != null) {
-                                for (Feed f : tmp.getItems()) {
-                                    String id = (f == null) ? null : f.getId();
-                                    if (StringUtils.isNotBlank(id) && !byId.containsKey(id)) {
-                                        byId.put(id, f);
-                                    }
-                                }
-                            }
-                        }
-                    }
-                } catch (Exception ex) {
-                    // 可预期的解析异常：记录告警级别日志，避免中断整体流程
-                    log.warn("Parse search response failed. err={}", ex.getMessage());
-                }
-            };
-            page.onResponse(handler);
+            session.begin(want, progress, onBatch);
 
             // 1) 导航到搜索页（轻等待，避免 NETWORKIDLE）
             log.info("Navigate to search page. url={}", searchURL);
             page.navigate(searchURL, new Page.NavigateOptions()
                     .setWaitUntil(WaitUntilState.DOMCONTENTLOADED)
                     .setTimeout(NAV_TIMEOUT_MS));
+            progress.report(0, (double) want, "已打开搜索页");
             page.waitForTimeout(STABLE_WAIT_AFTER_NAV_MS);
 
             // 2) 滚动加载，直到满足条件
-            int prevCount = -1;
-            long lastGrowTs = System.nanoTime();
-            for (int i = 0; i < MAX_SCROLLS; i++) {
-                if (byId.size() >= want) {
-                    break;
-                }
-                if (!hasMore.get() && !byId.isEmpty()) {
-                    break;
-                }
-                if (System.nanoTime() > deadlineNs) {
-                    log.warn("Search loop hit total budget. collected={}", byId.size());
-                    break;
-                }
-
-                // 模拟人类滚动：小滚两次 + 滚到底
-                page.mouse().wheel(0, WHEEL_STEP_1);
-                page.waitForTimeout(WAIT_AFTER_SCROLL_MS_1);
-                page.mouse().wheel(0, WHEEL_STEP_2);
-                page.waitForTimeout(WAIT_AFTER_SCROLL_MS_2);
-                page.evaluate("() => window.scrollTo(0, document.body.scrollHeight)");
-                page.waitForTimeout(WAIT_AFTER_BOTTOM_MS);
-
-                int cur = byId.size();
-                if (cur > prevCount) {
-                    prevCount = cur;
-                    lastGrowTs = System.nanoTime();
-                } else if (System.nanoTime() - lastGrowTs > NO_GROWTH_QUIT_NS) {
-                    log.info("No growth for 3s, stop scrolling. collected={}", cur);
-                    break;
-                }
-            }
+            scrollUntil(session, want);
 
             // 3) 结果汇总
-            page.offResponse(handler);
-
-            if (byId.isEmpty()) {
+            if (session.collected() == 0) {
                 log.warn("No feeds collected from search API.");
                 return Result.fail(BizErrorCode.DATA_NOT_FOUND, "未获取到搜索结果");
             }
+            List<Feed> feeds = session.take();
+            tokens.learnFeeds(feeds);
+            noteStore.saveFeeds(feeds);
+            keep = keepSession && session.resumable() && register(session);
+
+            log.info("Search success. keyword='{}', requested={}, returned={}, hasMore={}, cursor={}",
+                    keyword, want, feeds.size(), session.hasMore(), keep ? session.id : null);
+
+            return Result.ok(new SearchFeedResponse(feeds, session.resumable(), keep ? session.id : null));
+
+        } catch (PlaywrightException e) {
+            log.error("Search system error. keyword='{}', err={}", keyword, e.getMessage(), e);
+            throw new RuntimeException("搜索发生系统异常", e);
+        } finally {
+            if (session == null) {
+                closeQuietly(page);
+            } else {
+                session.end();
+                session.lock.unlock();
+                if (keep) {
+                    browserManager.markBackground(session.page, true);
+                } else {
+                    session.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * 站点搜索与本地全文索引合并
+     * <p>
+     * 本地索引在 localMaxAgeSeconds 内已有不少于 limit 条命中时直接返回，不打开浏览器；
+     * 否则执行 remote，两边按名次做倒数排名融合（两边都命中的靠前），去重后截取 limit 条。
+     * 站点结果带 cursor 时，站点条目全部保留（会话已越过它们，丢了就再也续取不到），本地条目只补空位。
+     *
+     * @param remote 站点搜索（由调用方决定是否走缓存）
+     */
+    public Result<SearchFeedResponse> searchWithLocal(String keyword, int limit, long localMaxAgeSeconds,
+                                                      Supplier<Result<SearchFeedResponse>> remote) {
+        if (StringUtils.isBlank(keyword)) {
+            throw new IllegalArgumentException("keyword must not be blank");
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must be >= 0");
+        }
+        final int want = (limit == 0 ? DEFAULT_LIMIT : limit);
+        List<Feed> local = fullTextIndex.searchFeeds(keyword, Math.min(want, 100), localMaxAgeSeconds);
+        if (local.size() >= want) {
+            log.info("Search served from local index. keyword='{}', returned={}", keyword, local.size());
+            return Result.ok(new SearchFeedResponse(local, false), "来自本地索引");
+        }
+        Result<SearchFeedResponse> r = remote.get();
+        if (!r.isSuccess() || r.getData() == null) {
+            return local.isEmpty() ? r : Result.ok(new SearchFeedResponse(local, false), "站点搜索失败，仅返回本地索引结果");
+        }
+        boolean resumable = r.getData().getCursor() != null;
+        List<Feed> merged = fuse(r.getData().getItems(), local, want, resumable);
+        log.info("Search merged with local index. keyword='{}', remote={}, local={}, returned={}",
+                keyword, r.getData().getItems().size(), local.size(), merged.size());
+        return Result.ok(new SearchFeedResponse(merged, r.getData().getHasMore(), r.getData().getCursor()), r.getMessage());
+    }
 
-            List<Feed> feeds = new ArrayList<>(byId.values());
-            if (feeds.size() > want) {
-                feeds = feeds.subList(0, want);
+    /**
+     * 倒数排名融合：score = Σ 1/(60 + rank)，同分时站点结果在前
+     *
+     * @param keepRemote 站点条目一律保留，只有剩余名额给仅本地命中的条目
+     */
+    private static List<Feed> fuse(List<Feed> remote, List<Feed> local, int limit, boolean keepRemote) {
+        Map<String, Feed> byId = new LinkedHashMap<>();
+        Map<String, Double> score = new HashMap<>();
+        List<List<Feed>> lists = List.of(remote == null ? List.of() : remote, local);
+        for (List<Feed> list : lists) {
+            for (int rank = 0; rank < list.size(); rank++) {
+                Feed f = list.get(rank);
+                if (f == null || f.getId() == null) continue;
+                byId.putIfAbsent(f.getId(), f);
+                score.merge(f.getId(), 1.0 / (60 + rank + 1), Double::sum);
+            }
+        }
+        List<String> ids = new ArrayList<>(byId.keySet());
+        ids.sort(Comparator.comparingDouble((String id) -> score.get(id)).reversed());
+        Set<String> remoteIds = new HashSet<>();
+        if (keepRemote && remote != null) {
+            for (Feed f : remote) {
+                if (f != null && f.getId() != null) remoteIds.add(f.getId());
             }
+        }
+        int localSlots = Math.max(0, limit - remoteIds.size());
+        List<Feed> out = new ArrayList<>();
+        for (String id : ids) {
+            if (remoteIds.contains(id)) {
+                out.add(byId.get(id));
+            } else if (keepRemote ? localSlots-- > 0 : out.size() < limit) {
+                out.add(byId.get(id));
+            }
+        }
+        return out;
+    }
 
-            log.info("Search success. keyword='{}', requested={}, returned={}, hasMore={}",
-                    keyword, want, feeds.size(), hasMore.get());
+    /**
+     * 基于 cursor 续取：在保留的搜索页上继续滚动，返回接下来的 n 条
+     */
+    public Result<SearchFeedResponse> searchMore(String cursor, int n, Progress progress,
+                                                 Consumer<List<Feed>> onBatch) {
+        if (StringUtils.isBlank(cursor)) {
+            throw new IllegalArgumentException("cursor must not be blank");
+        }
+        if (n < 0) {
+            throw new IllegalArgumentException("n must be >= 0");
+        }
+        final int want = (n == 0 ? DEFAULT_LIMIT : n);
+        SearchSession session = sessions.get(cursor);
+        if (session == null) {
+            return Result.fail(BizErrorCode.DATA_NOT_FOUND, "搜索会话不存在或已过期，请重新搜索");
+        }
+        boolean drop = false;
+        session.lock.lock();
+        try {
+            if (session.page.isClosed() || sessions.get(cursor) != session) {
+                return Result.fail(BizErrorCode.DATA_NOT_FOUND, "搜索会话不存在或已过期，请重新搜索");
+            }
+            browserManager.markBackground(session.page, false);
+            int target = session.returned() + want;
+            session.begin(target, progress, onBatch);
+            scrollUntil(session, target);
 
-            return Result.ok(new SearchFeedResponse(feeds,hasMore.get()));
+            List<Feed> feeds = session.take();
+            tokens.learnFeeds(feeds);
+            noteStore.saveFeeds(feeds);
+            drop = !session.resumable();
+            log.info("Search more. keyword='{}', requested={}, returned={}, totalReturned={}, hasMore={}",
+                    session.keyword, want, feeds.size(), session.returned(), session.hasMore());
+            return Result.ok(new SearchFeedResponse(feeds, session.resumable(), drop ? null : session.id));
 
         } catch (PlaywrightException e) {
-            log.error("Search system error. keyword='{}', err={}", keyword, e.getMessage(), e);
+            drop = true;
+            log.error("Search more system error. cursor={}, err={}", cursor, e.getMessage(), e);
             throw new RuntimeException("搜索发生系统异常", e);
+        } finally {
+            session.end();
+            session.lock.unlock();
+            if (drop) {
+                sessions.remove(cursor, session);
+                session.close();
+            } else {
+                browserManager.markBackground(session.page, true);
+            }
+        }
+    }
+
+    /** 模拟人类滚动，直到累计收集 target 条、没有下一页、无增长或超出单次时限 */
+    private void scrollUntil(SearchSession session, int target) {
+        final Page page = session.page;
+        final long deadlineNs = System.nanoTime() + TOTAL_BUDGET.toNanos();
+        int prevCount = -1;
+        long lastGrowTs = System.nanoTime();
+        for (int i = 0; i < MAX_SCROLLS; i++) {
+            int cur = session.collected();
+            if (cur >= target) {
+                break;
+            }
+            if (!session.hasMore() && cur > 0) {
+                break;
+            }
+            if (System.nanoTime() > deadlineNs) {
+                log.warn("Search loop hit total budget. collected={}", cur);
+                break;
+            }
+
+            // 模拟人类滚动：小滚两次 + 滚到底
+            page.mouse().wheel(0, WHEEL_STEP_1);
+            page.waitForTimeout(WAIT_AFTER_SCROLL_MS_1);
+            page.mouse().wheel(0, WHEEL_STEP_2);
+            page.waitForTimeout(WAIT_AFTER_SCROLL_MS_2);
+            page.evaluate("() => window.scrollTo(0, document.body.scrollHeight)");
+            page.waitForTimeout(WAIT_AFTER_BOTTOM_MS);
+
+            cur = session.collected();
+            if (cur > prevCount) {
+                prevCount = cur;
+                lastGrowTs = System.nanoTime();
+            } else if (System.nanoTime() - lastGrowTs > NO_GROWTH_QUIT_NS) {
+                log.info("No growth for 3s, stop scrolling. collected={}", cur);
+                break;
+            }
         }
     }
 
+    /* =============== 会话管理 =============== */
+
+    /** 登记会话；达到上限时淘汰最久未使用且空闲的会话，淘汰不了则不保留 */
+    private boolean register(SearchSession session) {
+        while (sessions.size() >= maxSessions) {
+            SearchSession eldest = sessions.values().stream()
+                    .filter(x -> x != session)
+                    .max(Comparator.comparingLong(SearchSession::idleNanos))
+                    .orElse(null);
+            if (eldest == null || !evict(eldest)) {
+                log.info("Search sessions full, drop new session. max={}", maxSessions);
+                return false;
+            }
+        }
+        sessions.put(session.id, session);
+        return true;
+    }
+
+    private boolean evict(SearchSession s) {
+        if (!s.lock.tryLock()) {
+            return false; // 正在被使用
+        }
+        try {
+            if (sessions.remove(s.id, s)) {
+                s.close();
+                log.info("Search session evicted. cursor={}, keyword='{}', returned={}", s.id, s.keyword, s.returned());
+            }
+            return true;
+        } finally {
+            s.lock.unlock();
+        }
+    }
+
+    private void evictIdle() {
+        long idleMax = Duration.ofSeconds(sessionIdleSeconds).toNanos();
+        for (SearchSession s : sessions.values()) {
+            if (s.idleNanos() > idleMax) {
+                evict(s);
+            }
+        }
+    }
+
+    @PostConstruct
+    public void startJanitor() {
+        janitor.scheduleWithFixedDelay(this::evictIdle, JANITOR_INTERVAL_S, JANITOR_INTERVAL_S, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void closeSessions() {
+        janitor.shutdownNow();
+        sessions.values().forEach(SearchSession::close);
+        sessions.clear();
+    }
+
     /* =============== 辅助方法 =============== */
+    private static void closeQuietly(Page page) {
+        try {
+            if (!page.isClosed()) page.close();
+        } catch (Exception ignore) {
+            // 浏览器已退出
+        }
+    }
+
     private String makeSearchURL(String keyword) {
         String k = keyword == null ? "" : keyword;
         String qs = "keyword=" + URLEncoder.encode(k, StandardCharsets.UTF_8)
@@ -0,0 +1,147 @@
+package com.lv.xhsmcp.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.lv.xhsmcp.model.Feed;
+import com.lv.xhsmcp.model.SearchFeedResponse;
+import com.lv.xhsmcp.util.Json;
+import com.lv.xhsmcp.xhs.Progress;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Response;
+import io.micrometer.common.util.StringUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 一次搜索的服务端会话：保留搜索页、接口分页状态（hasMore）与已收集/已返回的结果
+ * <p>
+ * 续取时在同一页面上继续滚动，已拿到的页不会重新加载。
+ * 所有读写都在持有 {@link #lock} 的调用线程上进行（Playwright 事件也在该线程回调）。
+ */
+@Slf4j
+final class SearchSession implements AutoCloseable {
+    final String id = UUID.randomUUID().toString();
+    final String keyword;
+    final Page page;
+    final ReentrantLock lock = new ReentrantLock();
+
+    /** 已收集结果（按到达顺序去重） */
+    private final List<Feed> feeds = new ArrayList<>();
+    private final Set<String> seen = new HashSet<>();
+    private boolean hasMore;
+    /** 已返回给调用方的条数 */
+    private int returned;
+
+    /* 单次调用内有效的回调状态 */
+    private int target;
+    private int streamed;
+    private Progress progress = Progress.NOOP;
+    private Consumer<List<Feed>> onBatch;
+
+    private final Consumer<Response> handler = this::onResponse;
+    private final String apiPath;
+    private volatile long lastAccessNs = System.nanoTime();
+
+    SearchSession(String keyword, Page page, String apiPath) {
+        this.keyword = keyword;
+        this.page = page;
+        this.apiPath = apiPath;
+        page.onResponse(handler);
+    }
+
+    /** 开始一次取数：目标是累计收集到 target 条；先把缓冲中尚未推送的条目推出去 */
+    void begin(int target, Progress progress, Consumer<List<Feed>> onBatch) {
+        this.target = target;
+        this.progress = progress == null ? Progress.NOOP : progress;
+        this.onBatch = onBatch;
+        this.streamed = returned;
+        touch();
+        flushBuffered();
+    }
+
+    void end() {
+        this.progress = Progress.NOOP;
+        this.onBatch = null;
+        touch();
+    }
+
+    int collected() { return feeds.size(); }
+    boolean hasMore() { return hasMore; }
+    int returned() { return returned; }
+
+    /** 取出下一段结果 [returned, target) 并推进游标 */
+    List<Feed> take() {
+        int from = returned;
+        int to = Math.min(target, feeds.size());
+        if (to <= from) return List.of();
+        returned = to;
+        return List.copyOf(feeds.subList(from, to));
+    }
+
+    /** 还有可续取的内容：缓冲中有未返回的，或接口声明还有下一页 */
+    boolean resumable() {
+        return feeds.size() > returned || hasMore;
+    }
+
+    void touch() { lastAccessNs = System.nanoTime(); }
+    long idleNanos() { return System.nanoTime() - lastAccessNs; }
+
+    private void onResponse(Response resp) {
+        try {
+            if (!resp.url().contains(apiPath)) {
+                return;
+            }
+            SearchFeedResponse tmp = Json.M.convertValue(
+                    Json.M.readTree(resp.text()).path("data"), new TypeReference<>() {});
+            if (tmp == null) {
+                return;
+            }
+            hasMore = Boolean.TRUE.equals(tmp.getHasMore());
+            if (tmp.getItems() == null) {
+                return;
+            }
+            for (Feed f : tmp.getItems()) {
+                String fid = (f == null) ? null : f.getId();
+                if (StringUtils.isNotBlank(fid) && seen.add(fid)) {
+                    feeds.add(f);
+                }
+            }
+            int done = Math.min(feeds.size(), target) - returned;
+            int want = target - returned;
+            if (done > 0) {
+                progress.report(done, (double) want, "已收集 " + done + "/" + want + " 条结果");
+            }
+            flushBuffered();
+        } catch (Exception ex) {
+            // 可预期的解析异常：记录告警级别日志，避免中断整体流程
+            log.warn("Parse search response failed. err={}", ex.getMessage());
+        }
+    }
+
+    /** 把 [streamed, min(target, size)) 推给 onBatch */
+    private void flushBuffered() {
+        if (onBatch == null) return;
+        int to = Math.min(target, feeds.size());
+        if (to > streamed) {
+            List<Feed> batch = List.copyOf(feeds.subList(streamed, to));
+            streamed = to;
+            onBatch.accept(batch);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            page.offResponse(handler);
+        } catch (Exception ignore) {
+            // 页面已关闭
+        }
+        try {
+            if (!page.isClosed()) page.close();
+        } catch (Exception ignore) {
+            // 浏览器已退出
+        }
+    }
+}
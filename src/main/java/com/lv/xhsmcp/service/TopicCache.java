@@ -0,0 +1,63 @@
+package com.lv.xhsmcp.service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 话题联想缓存：按输入前缀记录话题联想接口的返回，带 TTL 与容量上限（LRU）
+ * <p>
+ * 用来判断某个标签“肯定有联想”（下拉一出现就点）还是“肯定没有”（直接空格跳过），
+ * 只有未知的标签才需要等联想接口。
+ */
+final class TopicCache {
+
+    enum Hint { KNOWN, EMPTY, UNKNOWN }
+
+    private final long ttlNanos;
+    private final Map<String, Entry> entries;
+
+    TopicCache(Duration ttl, int maxEntries) {
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /** 记录某个前缀的联想结果（空列表同样记录，表示无联想） */
+    synchronized void put(String prefix, List<String> topics) {
+        if (prefix == null || prefix.isBlank()) return;
+        entries.put(key(prefix), new Entry(List.copyOf(topics), System.nanoTime() + ttlNanos));
+    }
+
+    synchronized Hint hint(String tag) {
+        Entry e = entries.get(key(tag));
+        if (e == null) return Hint.UNKNOWN;
+        if (System.nanoTime() > e.expiresAtNanos) {
+            entries.remove(key(tag));
+            return Hint.UNKNOWN;
+        }
+        return e.topics.isEmpty() ? Hint.EMPTY : Hint.KNOWN;
+    }
+
+    /** 缓存中该前缀的联想话题名，未缓存或已过期返回空列表 */
+    synchronized List<String> topics(String tag) {
+        Entry e = entries.get(key(tag));
+        return e == null || System.nanoTime() > e.expiresAtNanos ? List.of() : e.topics;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private static String key(String s) {
+        return s.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private record Entry(List<String> topics, long expiresAtNanos) {}
+}
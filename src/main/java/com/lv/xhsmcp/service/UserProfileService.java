@@ -1,10 +1,15 @@
 package com.lv.xhsmcp.service;
 
 import com.lv.xhsmcp.browser.BrowserManager;
+import com.lv.xhsmcp.cache.XsecTokenRegistry;
 import com.lv.xhsmcp.model.*;
+import com.lv.xhsmcp.store.NoteStore;
 import com.lv.xhsmcp.util.Json;
+import com.lv.xhsmcp.util.OpenHashSet;
 import com.lv.xhsmcp.xhs.BizErrorCode;
+import com.lv.xhsmcp.xhs.Progress;
 import com.lv.xhsmcp.xhs.Result;
+import com.lv.xhsmcp.xhs.XhsApi;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.microsoft.playwright.Page;
@@ -17,6 +22,7 @@ import org.springframework.stereotype.Service;
 
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
 
 @Service
@@ -26,6 +32,13 @@ public class UserProfileService {
     private static final int PAGE_DEFAULT_TIMEOUT_MS = 60_000;
     private static final int NAV_TIMEOUT_MS          = 60_000;
     private static final int STATE_WAIT_TIMEOUT_MS   = 10_000;
+    private static final double PHASES               = 3;
+
+    private static final String API_USER_POSTED = "/api/sns/web/v1/user_posted";
+    private static final int NOTES_PAGE_SIZE         = 30;
+    private static final int DEFAULT_NOTES_LIMIT     = 30;
+    private static final int MAX_NOTES_LIMIT         = 1_000;   // 更大的 limit 按此截断
+    private static final Duration NOTES_BUDGET       = Duration.ofSeconds(60);
 
     /** 读取初始状态（优先 __INITIAL_STATE__，兜底 __XHS_DATA__） */
     private static final String JS_READ_STATE = """
@@ -45,12 +58,24 @@ public class UserProfileService {
 
     @Resource
     private BrowserManager bm;
+    @Resource
+    private XsecTokenRegistry tokens;
+    @Resource
+    private NoteStore noteStore;
 
     public Result<UserProfileResponse> userProfile(String userId, String xsecToken) {
+        return userProfile(userId, xsecToken, Progress.NOOP);
+    }
+
+    /**
+     * 获取用户主页，按阶段（导航完成 / 读取状态 / 解析完成）回报进度
+     */
+    public Result<UserProfileResponse> userProfile(String userId, String xsecToken, Progress progress) {
         // 参数校验（契约问题）
         if (StringUtils.isBlank(userId)) {
             throw new IllegalArgumentException("userId must not be blank");
         }
+        xsecToken = tokens.userToken(userId, xsecToken);
 
         try (Page page = bm.context().newPage()) {
             page.setDefaultTimeout(PAGE_DEFAULT_TIMEOUT_MS);
@@ -61,6 +86,7 @@ public class UserProfileService {
             page.navigate(url, new Page.NavigateOptions()
                     .setWaitUntil(WaitUntilState.DOMCONTENTLOADED)
                     .setTimeout(NAV_TIMEOUT_MS));
+            progress.report(1, PHASES, "已打开用户主页");
 
             // 2) 登录/人机检测（业务可预期错误）
             if (isLoginOrCaptcha(page.url())) {
@@ -78,6 +104,7 @@ public class UserProfileService {
                 log.warn("Initial state not found.");
                 return Result.fail(BizErrorCode.DATA_NOT_FOUND, "__INITIAL_STATE__ 数据不存在");
             }
+            progress.report(2, PHASES, "已读取页面状态");
 
             JsonNode root;
             try {
@@ -133,6 +160,11 @@ public class UserProfileService {
             UserProfileResponse userProfileResponse = new UserProfileResponse(basicInfo,interactInfo,feeds);
             log.info("User profile parsed. userId={}, hasBasic={}, interactions={}, feeds={}",
                     userId, basicInfo!=null, interactionItems.size(), feeds.size());
+            tokens.learnUser(userId, xsecToken);
+            tokens.learnFeeds(feeds);
+            noteStore.saveUser(userId, userProfileResponse);
+            noteStore.saveFeeds(feeds);
+            progress.report(3, PHASES, "解析完成，笔记 " + feeds.size() + " 条");
             return Result.ok(userProfileResponse);
         } catch (PlaywrightException e) {
             log.error("User profile system error. userId={}, err={}", userId, e.getMessage(), e);
@@ -140,6 +172,158 @@ public class UserProfileService {
         }
     }
 
+    /**
+     * 获取用户发布的全部笔记卡片（不含详情），按 cursor 翻页直到 limit、无下一页或超出时限
+     * <p>
+     * 只打开一次主页：首屏笔记直接取自页面状态，之后在同一页面内调用 user_posted 接口续页；
+     * 每取回一页即在页面内发出下一页请求，Java 侧解析与网络请求重叠。
+     *
+     * @param limit 返回条数；0=默认值；超过 {@value #MAX_NOTES_LIMIT} 按其截断；&lt;0 抛异常
+     */
+    public Result<List<Feed>> userNotes(String userId, String xsecToken, int limit, Progress progress) {
+        if (StringUtils.isBlank(userId)) {
+            throw new IllegalArgumentException("userId must not be blank");
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must be >= 0");
+        }
+        final int want = Math.min(limit == 0 ? DEFAULT_NOTES_LIMIT : limit, MAX_NOTES_LIMIT);
+        xsecToken = tokens.userToken(userId, xsecToken);
+
+        try (Page page = bm.context().newPage()) {
+            page.setDefaultTimeout(PAGE_DEFAULT_TIMEOUT_MS);
+
+            // 1) 打开主页（签名函数与首屏笔记都来自这里）
+            String url = makeUserProfileURL(userId, xsecToken);
+            log.info("Navigate to user profile for notes. userId={}, url={}", userId, url);
+            page.navigate(url, new Page.NavigateOptions()
+                    .setWaitUntil(WaitUntilState.DOMCONTENTLOADED)
+                    .setTimeout(NAV_TIMEOUT_MS));
+            if (isLoginOrCaptcha(page.url())) {
+                log.warn("Redirected to login/captcha. url={}", page.url());
+                return Result.fail(BizErrorCode.AUTH_REQUIRED, "跳转至登录或人机验证页");
+            }
+            page.waitForFunction(JS_WAIT_STATE, null,
+                    new Page.WaitForFunctionOptions().setTimeout(STATE_WAIT_TIMEOUT_MS));
+
+            // 2) 首屏笔记与续页 cursor
+            List<Feed> feeds = new ArrayList<>();
+            OpenHashSet seen = new OpenHashSet();
+            String cursor = "";
+            boolean hasMore = true;
+            String json = (String) page.evaluate(JS_READ_STATE);
+            if (StringUtils.isNotBlank(json)) {
+                try {
+                    JsonNode user = Json.M.readTree(json).path("user");
+                    JsonNode notesRaw = user.path("notes").path("_rawValue");
+                    if (notesRaw.isArray() && notesRaw.size() > 0) {
+                        addUnique(feeds, seen, Json.M.convertValue(notesRaw.get(0), new TypeReference<List<Feed>>() {}), want);
+                    }
+                    JsonNode query = user.path("noteQueries").path("_rawValue").path(0);
+                    if (!feeds.isEmpty() && query.path("cursor").isTextual()) {
+                        cursor = query.path("cursor").asText();
+                        hasMore = query.path("hasMore").asBoolean(true);
+                    }
+                } catch (Exception parseEx) {
+                    // 首屏解析失败不影响接口翻页，从第一页开始
+                    log.warn("Parse initial notes failed. err={}", parseEx.getMessage());
+                }
+            }
+            if (StringUtils.isBlank(cursor)) {
+                cursor = "";
+            }
+            progress.report(feeds.size(), (double) want, "已读取首屏笔记 " + feeds.size() + " 条");
+
+            // 3) 接口翻页（带预取）
+            int pages = 0;
+            if (feeds.size() < want && hasMore) {
+                final String key = "userNotes:" + userId;
+                final long deadlineNs = System.nanoTime() + NOTES_BUDGET.toNanos();
+                XhsApi.openPager(page, key, userPostedUriTemplate(userId, xsecToken), cursor);
+                try {
+                    while (feeds.size() < want) {
+                        if (System.nanoTime() > deadlineNs) {
+                            log.warn("User notes hit total budget. userId={}, collected={}", userId, feeds.size());
+                            break;
+                        }
+                        JsonNode root = XhsApi.nextPage(page, key);
+                        if (root == null) {
+                            hasMore = false;
+                            break;
+                        }
+                        if (!XhsApi.isOk(root)) {
+                            log.warn("User posted api failed. userId={}, code={}, msg={}",
+                                    userId, root.path("code").asText(), root.path("msg").asText());
+                            if (feeds.isEmpty()) {
+                                return Result.fail(BizErrorCode.GET_USER_PROFILE_FAILED, "笔记列表接口返回失败：" + root.path("msg").asText());
+                            }
+                            break;
+                        }
+                        pages++;
+                        JsonNode data = root.path("data");
+                        addUnique(feeds, seen, toFeeds(data.path("notes")), want);
+                        hasMore = data.path("has_more").asBoolean(false);
+                        progress.report(feeds.size(), (double) want, "已获取笔记 " + feeds.size() + "/" + want + " 条");
+                        if (!hasMore) {
+                            break;
+                        }
+                    }
+                } finally {
+                    XhsApi.closePager(page, key);
+                }
+            }
+
+            log.info("User notes done. userId={}, requested={}, returned={}, apiPages={}, hasMore={}",
+                    userId, want, feeds.size(), pages, hasMore);
+            tokens.learnUser(userId, xsecToken);
+            tokens.learnFeeds(feeds);
+            noteStore.saveFeeds(feeds);
+            return Result.ok(feeds);
+        } catch (PlaywrightException e) {
+            log.error("User notes system error. userId={}, err={}", userId, e.getMessage(), e);
+            throw new RuntimeException("获取用户笔记发生系统异常", e);
+        }
+    }
+
+    /** user_posted 的 notes 条目是扁平结构（note_id + 卡片字段），整理成与首屏一致的 Feed 形态 */
+    private static List<Feed> toFeeds(JsonNode notes) {
+        if (!notes.isArray()) {
+            return List.of();
+        }
+        List<Feed> out = new ArrayList<>(notes.size());
+        for (JsonNode n : notes) {
+            NoteCard card = Json.M.convertValue(n, NoteCard.class);
+            out.add(Feed.builder()
+                    .id(n.path("note_id").asText(null))
+                    .xsecToken(n.path("xsec_token").asText(null))
+                    .modelType("note")
+                    .noteCard(card)
+                    .build());
+        }
+        return out;
+    }
+
+    private static void addUnique(List<Feed> out, OpenHashSet seen, List<Feed> items, int max) {
+        if (items == null) return;
+        for (Feed f : items) {
+            if (out.size() >= max) return;
+            if (f != null && StringUtils.isNotBlank(f.getId()) && seen.add(f.getId())) {
+                out.add(f);
+            }
+        }
+    }
+
+    private static String userPostedUriTemplate(String userId, String xsecToken) {
+        String token = StringUtils.isBlank(xsecToken) ? "" : URLEncoder.encode(xsecToken, StandardCharsets.UTF_8);
+        return API_USER_POSTED
+                + "?num=" + NOTES_PAGE_SIZE
+                + "&cursor={cursor}"
+                + "&user_id=" + URLEncoder.encode(userId, StandardCharsets.UTF_8)
+                + "&image_formats=jpg,webp,avif"
+                + "&xsec_token=" + token
+                + "&xsec_source=pc_note";
+    }
+
     public static InteractInfo mapToInfo(List<InteractionItem> items) {
         InteractInfo info = new InteractInfo();
         for (InteractionItem it : items) {
@@ -1,17 +1,34 @@
 package com.lv.xhsmcp.service;
 
 import com.lv.xhsmcp.browser.BrowserManager;
+import com.lv.xhsmcp.cache.ToolCache;
 import com.lv.xhsmcp.model.*;
+import com.lv.xhsmcp.schedule.PublishScheduler;
+import com.lv.xhsmcp.store.FullTextIndex;
+import com.lv.xhsmcp.store.NearDupIndex;
+import com.lv.xhsmcp.store.NoteStore;
+import com.lv.xhsmcp.store.SeenFilter;
+import com.lv.xhsmcp.util.Json;
+import com.lv.xhsmcp.watch.CreatorWatcher;
+import com.lv.xhsmcp.watch.EngagementTracker;
+import com.lv.xhsmcp.watch.TrendMonitor;
 import com.lv.xhsmcp.xhs.*;
+import io.modelcontextprotocol.server.McpSyncServerExchange;
 import io.modelcontextprotocol.spec.McpSchema;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springaicommunity.mcp.annotation.McpProgressToken;
+import org.springaicommunity.mcp.annotation.McpResource;
 import org.springaicommunity.mcp.annotation.McpTool;
+import org.springaicommunity.mcp.annotation.McpToolParam;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 @Slf4j
@@ -34,17 +51,54 @@ public class XhsService {
     private UserProfileService userProfileService;
     @Resource
     private LoginService loginService;
+    @Resource
+    private PublishScheduler publishScheduler;
+    @Resource
+    private CommentService commentService;
+    @Resource
+    private BatchService batchService;
+    @Resource
+    private MultiSearchService multiSearchService;
+    @Resource
+    private ToolCache toolCache;
+    @Resource
+    private AdmissionController admission;
+    @Resource
+    private DetailPrefetcher prefetcher;
+    @Resource
+    private NoteStore noteStore;
+    @Resource
+    private FullTextIndex fullTextIndex;
+    @Resource
+    private SeenFilter seenFilter;
+    @Resource
+    private NearDupIndex nearDupIndex;
+    @Resource
+    private CreatorWatcher creatorWatcher;
+    @Resource
+    private EngagementTracker engagementTracker;
+    @Resource
+    private TrendMonitor trendMonitor;
+    @Resource
+    private ObjectProvider<StatsSource> statsSources;
 
     @Tool(description = "检查小红书登录状态")
     public Result<LoginCheck> checkLogin() {
         try {
-            return this.loginService.checkLogin();
+            return admission.admit("checkLogin", this.loginService::checkLogin);
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             return Result.fail(BizErrorCode.STATUS_CHECK_FAILED, "检查登录状态失败");
         }
     }
 
+    @Tool(description = "查看服务运行指标：各工具缓存命中率、缓存占用等")
+    public Result<Map<String, Object>> serverStats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        statsSources.orderedStream().forEach(s -> out.put(s.statsName(), s.stats()));
+        return Result.ok(out);
+    }
+
     @McpTool(description = "获取小红书登录二维码")
     public McpSchema.CallToolResult getLoginQrcode() {
         Result<LoginQrcodeResponse> loginQrcodeResponseResult = this.loginService.getLoginQrcode();
@@ -57,72 +111,555 @@ public class XhsService {
         return McpSchema.CallToolResult.builder().content(List.of(text)).build();
     }
 
-    @Tool(description = "发布小红书图文内容")
-    public Result<Void> publish(@ToolParam(description = "内容标题（小红书限制：最多20个中文字或英文单词）") String title, @ToolParam(description = "正文内容，不包含以#开头的标签内容，所有话题标签都用tags参数来生成和提供即可") String content, List<String> images) {
+    @Tool(description = "发布小红书图文内容，成功时返回笔记 id")
+    public Result<String> publish(@ToolParam(description = "内容标题（小红书限制：最多20个中文字或英文单词）") String title, @ToolParam(description = "正文内容，不包含以#开头的标签内容，所有话题标签都用tags参数来生成和提供即可") String content, List<String> images) {
         try {
-            return publishService.publish(title, content, images);
+            return admission.admit("publish", () -> publishService.publish(title, content, images));
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             return Result.fail(BizErrorCode.PUBLISH_FAILED, "发布失败");
         }
     }
 
-    @Tool(description = "发布小红书视频内容")
-    public Result<Void> publishVideo(@ToolParam(description = "内容标题（小红书限制：最多20个中文字或英文单词）") String title, @ToolParam(description = "正文内容，不包含以#开头的标签内容，所有话题标签都用tags参数来生成和提供即可") String content, String videoPath) {
+    @Tool(description = "批量发布小红书图文内容，复用同一个创作中心页面，逐篇返回发布结果")
+    public Result<List<Result<String>>> publishBatch(@ToolParam(description = "待发布的图文列表，每项包含 title、content、images") List<PublishItem> items) {
+        try {
+            return admission.admit("publishBatch", () -> Result.ok(publishService.publishBatch(items)));
+        } catch (IllegalArgumentException e) {
+            return Result.fail(BizErrorCode.PUBLISH_FAILED, e.getMessage());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return Result.fail(BizErrorCode.PUBLISH_FAILED, "批量发布失败");
+        }
+    }
+
+    @Tool(description = "定时发布小红书图文内容，到点自动发布；服务重启后任务仍然有效")
+    public Result<ScheduledPublish> schedulePublish(@ToolParam(description = "内容标题（小红书限制：最多20个中文字或英文单词）") String title, @ToolParam(description = "正文内容，不包含以#开头的标签内容，所有话题标签都用tags参数来生成和提供即可") String content, List<String> images, @ToolParam(description = "发布时间，格式 yyyy-MM-dd HH:mm（默认 Asia/Shanghai），也支持 ISO-8601 或 epoch 毫秒") String publishAt) {
         try {
-            return publishVideoService.publish(title, content, videoPath);
+            return publishScheduler.schedule(title, content, images, publishAt);
+        } catch (IllegalArgumentException e) {
+            return Result.fail(BizErrorCode.SCHEDULE_FAILED, e.getMessage());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return Result.fail(BizErrorCode.SCHEDULE_FAILED, "定时发布失败");
+        }
+    }
+
+    @Tool(description = "查看定时发布任务列表及状态")
+    public Result<List<ScheduledPublish>> listScheduledPublishes() {
+        return Result.ok(publishScheduler.list());
+    }
+
+    @Tool(description = "取消尚未执行的定时发布任务")
+    public Result<Void> cancelScheduledPublish(@ToolParam(description = "定时任务 id") String id) {
+        return publishScheduler.cancel(id);
+    }
+
+    @Tool(description = "发布小红书视频内容，成功时返回笔记 id")
+    public Result<String> publishVideo(@ToolParam(description = "内容标题（小红书限制：最多20个中文字或英文单词）") String title, @ToolParam(description = "正文内容，不包含以#开头的标签内容，所有话题标签都用tags参数来生成和提供即可") String content, String videoPath) {
+        try {
+            return admission.admit("publishVideo", () -> publishVideoService.publish(title, content, videoPath));
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             return Result.fail(BizErrorCode.PUBLISH_FAILED, "发布失败");
         }
     }
 
-    @Tool(description = "获取用户发布的内容列表")
-    public Result<List<Feed>> listFeeds(@ToolParam(description = "需要返回的数量") int limit) {
+    @Tool(description = "获取首页推荐信息流；数量超过首屏时自动滚动翻页，可指定频道")
+    public Result<List<Feed>> listFeeds(@ToolParam(description = "需要返回的数量，0 表示默认 10，最多 200") int limit,
+                                        @ToolParam(description = "频道，如 food、fashion、travel 或完整 channel_id（homefeed.food_v3）；不填为推荐", required = false) String channel,
+                                        @ToolParam(description = "只返回此前未抓取过详情的笔记（过滤后可能少于 limit）", required = false) Boolean unseenOnly,
+                                        @ToolParam(description = "折叠标题/正文近似的重复笔记（转载、轻微改动的搬运），只保留排在最前的一篇（折叠后可能少于 limit）", required = false) Boolean collapseDuplicates,
+                                        @ToolParam(description = "调度优先级：interactive（默认，即时查询）或 bulk（后台批量抓取时使用，让位于即时查询）", required = false) String priority) {
         try {
-            return this.feedsService.listFeeds(limit); // 默认 10 条，可加参数
+            AdmissionController.Priority prio = AdmissionController.Priority.of(priority);
+            return collapse(unseen(admission.admit("listFeeds", prio, () -> this.feedsService.listFeeds(limit, channel)), unseenOnly), collapseDuplicates);
+        } catch (IllegalArgumentException e) {
+            return Result.fail(BizErrorCode.LIST_FEEDS_FAILED, e.getMessage());
         } catch (Exception e) {
             return Result.fail(BizErrorCode.LIST_FEEDS_FAILED, "获取Feeds列表失败");
         }
     }
 
-    @Tool(description = "搜索小红书内容（需要已登录）")
-    public Result<SearchFeedResponse> search(@ToolParam(description = "搜索关键词") String keyword, @ToolParam(description = "需要返回的数量") int limit) {
+    @McpTool(description = "搜索小红书内容（需要已登录）；带 progressToken 时按收集条数推送进度；结果未取完时返回 cursor，可用 searchMore 续取")
+    public Result<SearchFeedResponse> search(McpSyncServerExchange exchange, @McpProgressToken String progressToken,
+                                             @McpToolParam(description = "搜索关键词") String keyword, @McpToolParam(description = "需要返回的数量") int limit,
+                                             @McpToolParam(description = "同时检索本地全文索引：该时长（秒）内抓取过的笔记足够时直接返回，否则与站点结果合并排序；不填则只搜站点", required = false) Integer localMaxAgeSeconds,
+                                             @McpToolParam(description = "折叠标题/正文近似的重复笔记（转载、轻微改动的搬运），只保留排名最前的一篇（折叠后可能少于 limit）", required = false) Boolean collapseDuplicates,
+                                             @McpToolParam(description = "调度优先级：interactive（默认，即时查询）或 bulk（后台批量抓取时使用，让位于即时查询）", required = false) String priority) {
         try {
-            return this.searchService.search(keyword, limit); // 支持滚动加载的那版
+            AdmissionController.Priority prio = AdmissionController.Priority.of(priority);
+            Result<SearchFeedResponse> r = localMaxAgeSeconds == null || localMaxAgeSeconds <= 0
+                    ? remoteSearch(exchange, progressToken, keyword, limit, prio)
+                    : this.searchService.searchWithLocal(keyword, limit, localMaxAgeSeconds,
+                            () -> remoteSearch(exchange, progressToken, keyword, limit, prio));
+            if (r.isSuccess() && r.getData() != null && Boolean.TRUE.equals(collapseDuplicates)) {
+                Result<List<Feed>> c = collapse(Result.ok(r.getData().getItems(), r.getMessage()), true);
+                r = Result.ok(new SearchFeedResponse(c.getData(), r.getData().getHasMore(), r.getData().getCursor()), c.getMessage());
+            }
+            if (r.isSuccess() && r.getData() != null) {
+                prefetcher.offer(r.getData().getItems());
+            }
+            return r;
+        } catch (IllegalArgumentException e) {
+            return Result.fail(BizErrorCode.SEARCH_FEEDS_FAILED, e.getMessage());
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             return Result.fail(BizErrorCode.SEARCH_FEEDS_FAILED, "搜索Feeds失败");
         }
     }
 
-    @Tool(description = "获取小红书笔记详情，返回笔记内容、图片、作者信息、互动数据（点赞/收藏/分享数）及评论列表")
-    public Result<FeedDetailResponse> feedDetail(@ToolParam(description = "feed_id") String feedId, @ToolParam(description = "xsec_token") String xsecToken) {
+    /** 站点搜索（走缓存）；命中缓存或合并到他人的在途请求时不返回 cursor：搜索会话只属于实际执行搜索的调用方 */
+    private Result<SearchFeedResponse> remoteSearch(McpSyncServerExchange exchange, String progressToken, String keyword, int limit,
+                                                    AdmissionController.Priority priority) {
+        AtomicBoolean loaded = new AtomicBoolean();
+        Result<SearchFeedResponse> r = toolCache.get(ToolCache.SEARCH, limit + "|" + keyword, () -> {
+            loaded.set(true);
+            return admission.admit("search", priority, () -> this.searchService.search(keyword, limit, Progress.mcp(exchange, progressToken)));
+        });
+        if (!loaded.get() && r.isSuccess() && r.getData() != null && r.getData().getCursor() != null) {
+            return Result.ok(new SearchFeedResponse(r.getData().getItems(), r.getData().getHasMore()), r.getMessage());
+        }
+        return r;
+    }
+
+    @McpTool(description = "在本地全文索引（此前抓取过的笔记标题、正文、话题标签与评论）中检索，BM25 排序，毫秒级返回，不打开浏览器")
+    public Result<LocalSearchResponse> localSearch(@McpToolParam(description = "检索词") String query,
+                                                   @McpToolParam(description = "返回数量，0 表示默认 10，最多 100") int limit,
+                                                   @McpToolParam(description = "只返回该时长（秒）内抓取过的笔记；不填则不限", required = false) Integer maxAgeSeconds) {
+        try {
+            LocalSearchResponse r = this.fullTextIndex.search(query, limit, maxAgeSeconds == null ? 0 : maxAgeSeconds);
+            return Result.ok(r);
+        } catch (IllegalArgumentException e) {
+            return Result.fail(BizErrorCode.SEARCH_FEEDS_FAILED, e.getMessage());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return Result.fail(BizErrorCode.SEARCH_FEEDS_FAILED, "本地检索失败");
+        }
+    }
+
+    @McpTool(description = "基于 search 返回的 cursor 继续获取后续搜索结果，不会重新导航和重复滚动已加载的页")
+    public Result<SearchFeedResponse> searchMore(McpSyncServerExchange exchange, @McpProgressToken String progressToken,
+                                                 @McpToolParam(description = "search/searchMore 返回的 cursor") String cursor, @McpToolParam(description = "继续获取的数量") int n,
+                                                 @McpToolParam(description = "调度优先级：interactive（默认，即时查询）或 bulk（后台批量抓取时使用，让位于即时查询）", required = false) String priority) {
         try {
-            return this.feedDetailService.feedDetail(feedId, xsecToken);
+            AdmissionController.Priority prio = AdmissionController.Priority.of(priority);
+            Result<SearchFeedResponse> r = admission.admit("searchMore", prio,
+                    () -> this.searchService.searchMore(cursor, n, Progress.mcp(exchange, progressToken), null));
+            if (r.isSuccess() && r.getData() != null) {
+                prefetcher.offer(r.getData().getItems());
+            }
+            return r;
+        } catch (IllegalArgumentException e) {
+            return Result.fail(BizErrorCode.SEARCH_FEEDS_FAILED, e.getMessage());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return Result.fail(BizErrorCode.SEARCH_FEEDS_FAILED, "搜索Feeds失败");
+        }
+    }
+
+    @McpTool(description = "流式搜索小红书内容：每解析到一页结果即通过 notifications/message 推送新条目，最后返回汇总（含 hasMore）")
+    public Result<SearchSummary> searchStream(McpSyncServerExchange exchange, @McpProgressToken String progressToken,
+                                              @McpToolParam(description = "搜索关键词") String keyword, @McpToolParam(description = "需要返回的数量") int limit,
+                                              @McpToolParam(description = "调度优先级：interactive（默认，即时查询）或 bulk（后台批量抓取时使用，让位于即时查询）", required = false) String priority) {
+        ContentSink sink = ContentSink.mcp(exchange, "search");
+        AtomicInteger total = new AtomicInteger();
+        AtomicInteger batches = new AtomicInteger();
+        try {
+            AdmissionController.Priority prio = AdmissionController.Priority.of(priority);
+            Result<SearchFeedResponse> r = admission.admit("searchStream", prio, () -> this.searchService.search(keyword, limit, Progress.mcp(exchange, progressToken), batch -> {
+                total.addAndGet(batch.size());
+                batches.incrementAndGet();
+                sink.send(List.of(McpContent.json(Map.of("keyword", keyword == null ? "" : keyword, "items", batch))));
+            }));
+            if (!r.isSuccess()) {
+                return r.getRetryAfterSeconds() == null ? Result.fail(r.getCode(), r.getMessage())
+                        : Result.fail(r.getCode(), r.getMessage(), r.getRetryAfterSeconds());
+            }
+            prefetcher.offer(r.getData().getItems());
+            return Result.ok(new SearchSummary(keyword, total.get(), batches.get(), r.getData().getHasMore()));
+        } catch (IllegalArgumentException e) {
+            return Result.fail(BizErrorCode.SEARCH_FEEDS_FAILED, e.getMessage());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return Result.fail(BizErrorCode.SEARCH_FEEDS_FAILED, "搜索Feeds失败");
+        }
+    }
+
+    @McpTool(description = "多关键词并行搜索小红书内容，按笔记 id 去重，综合名次与互动数据排序，并标注每条命中的关键词")
+    public Result<MultiSearchResponse> multiSearch(McpSyncServerExchange exchange, @McpProgressToken String progressToken,
+                                                   @McpToolParam(description = "关键词列表") List<String> keywords,
+                                                   @McpToolParam(description = "每个关键词获取的数量，0 表示默认 10") int perKeywordLimit,
+                                                   @McpToolParam(description = "合并后最多返回的数量，0 表示默认 50") int totalLimit,
+                                                   @McpToolParam(description = "调度优先级：bulk（默认）或 interactive（条目少且急需结果时使用）", required = false) String priority) {
+        try {
+            AdmissionController.Priority prio = AdmissionController.Priority.of(priority);
+            return this.multiSearchService.multiSearch(keywords, perKeywordLimit, totalLimit, prio,
+                    Progress.mcp(exchange, progressToken));
+        } catch (IllegalArgumentException e) {
+            return Result.fail(BizErrorCode.SEARCH_FEEDS_FAILED, e.getMessage());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return Result.fail(BizErrorCode.SEARCH_FEEDS_FAILED, "搜索Feeds失败");
+        }
+    }
+
+    @McpTool(description = "查找与某笔记标题/正文近似的其他笔记（转载、轻微改动的搬运），只在本地抓取过的笔记中查找，不打开浏览器")
+    public Result<List<NearDuplicate>> nearDuplicates(@McpToolParam(description = "feed_id") String feedId,
+                                                      @McpToolParam(description = "返回数量，0 表示默认 10，最多 50") int limit) {
+        try {
+            List<NearDuplicate> out = this.nearDupIndex.duplicatesOf(feedId, limit);
+            if (out == null) {
+                return Result.fail(BizErrorCode.DATA_NOT_FOUND, "本地没有该笔记的标题/正文记录，请先通过搜索、信息流或详情获取: " + feedId);
+            }
+            return Result.ok(out);
+        } catch (IllegalArgumentException e) {
+            return Result.fail(BizErrorCode.NEAR_DUP_FAILED, e.getMessage());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return Result.fail(BizErrorCode.NEAR_DUP_FAILED, "查找近似笔记失败");
+        }
+    }
+
+    @McpTool(description = "获取小红书笔记详情，返回笔记内容、图片、作者信息、互动数据（点赞/收藏/分享数）及评论列表")
+    public Result<FeedDetailResponse> feedDetail(McpSyncServerExchange exchange, @McpProgressToken String progressToken,
+                                                 @McpToolParam(description = "feed_id") String feedId, @McpToolParam(description = "xsec_token，可不填：会从此前的搜索/信息流/主页结果中自动补全", required = false) String xsecToken,
+                                                 @McpToolParam(description = "可接受的本地存储结果的最大时长（秒），在此时长内抓取过则直接返回，不打开浏览器；不填则实时获取", required = false) Integer maxAgeSeconds,
+                                                 @McpToolParam(description = "调度优先级：interactive（默认，即时查询）或 bulk（后台批量抓取时使用，让位于即时查询）", required = false) String priority) {
+        try {
+            AdmissionController.Priority prio = AdmissionController.Priority.of(priority);
+            Result<FeedDetailResponse> stored = fromStore(NoteStore.DETAIL, feedId, FeedDetailResponse.class, maxAgeSeconds);
+            if (stored != null) {
+                return stored;
+            }
+            prefetcher.recordLookup(feedId);
+            return toolCache.get(ToolCache.FEED_DETAIL, feedId,
+                    () -> admission.admit("feedDetail", prio, () -> this.feedDetailService.feedDetail(feedId, xsecToken, Progress.mcp(exchange, progressToken))));
+        } catch (IllegalArgumentException e) {
+            return Result.fail(BizErrorCode.GET_FEED_DETAIL_FAILED, e.getMessage());
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             return Result.fail(BizErrorCode.GET_FEED_DETAIL_FAILED, "获取Feed详情失败");
         }
     }
 
-    @Tool(description = "发表评论到小红书笔记")
-    public Result<Void> postComment(@ToolParam(description = "feed_id") String feedId, @ToolParam(description = "xsec_token") String xsecToken, @ToolParam(description = "content") String content) {
+    @McpTool(description = "按 cursor 翻页抓取小红书笔记的全部评论，可并发展开子评论；每翻完一页即通过 notifications/message 推送该批评论")
+    public Result<CommentList> feedComments(McpSyncServerExchange exchange, @McpProgressToken String progressToken,
+                                            @McpToolParam(description = "feed_id") String feedId, @McpToolParam(description = "xsec_token", required = false) String xsecToken,
+                                            @McpToolParam(description = "主评论与子评论合计的最大条数，0 表示默认 100") int limit,
+                                            @McpToolParam(description = "是否展开子评论", required = false) Boolean includeReplies,
+                                            @McpToolParam(description = "上次返回的 cursor，从该处继续抓取；不填从第一页开始", required = false) String cursor,
+                                            @McpToolParam(description = "调度优先级：interactive（默认，即时查询）或 bulk（后台批量抓取时使用，让位于即时查询）", required = false) String priority) {
+        ContentSink sink = ContentSink.mcp(exchange, "comments");
+        try {
+            AdmissionController.Priority prio = AdmissionController.Priority.of(priority);
+            return admission.admit("feedComments", prio, () -> this.commentService.feedComments(feedId, xsecToken, limit, Boolean.TRUE.equals(includeReplies),
+                    cursor, Progress.mcp(exchange, progressToken),
+                    batch -> sink.send(List.of(McpContent.json(Map.of("feedId", feedId, "comments", batch))))));
+        } catch (IllegalArgumentException e) {
+            return Result.fail(BizErrorCode.GET_COMMENTS_FAILED, e.getMessage());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return Result.fail(BizErrorCode.GET_COMMENTS_FAILED, "获取评论失败");
+        }
+    }
+
+    @McpTool(description = "翻页抓取某条主评论下的子评论；从 feedComments 返回的该主评论的 subCommentCursor 继续，可取回因条数上限未返回的子评论")
+    public Result<CommentList> commentReplies(@McpToolParam(description = "feed_id") String feedId,
+                                              @McpToolParam(description = "xsec_token", required = false) String xsecToken,
+                                              @McpToolParam(description = "主评论 id") String rootCommentId,
+                                              @McpToolParam(description = "子评论 cursor（主评论的 subCommentCursor 或上次返回的 cursor）；不填从第一条开始", required = false) String cursor,
+                                              @McpToolParam(description = "最多返回的子评论条数，0 表示默认 100") int limit) {
+        try {
+            return admission.admit("commentReplies", () -> this.commentService.commentReplies(feedId, xsecToken, rootCommentId, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return Result.fail(BizErrorCode.GET_COMMENTS_FAILED, e.getMessage());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return Result.fail(BizErrorCode.GET_COMMENTS_FAILED, "获取子评论失败");
+        }
+    }
+
+    @McpTool(description = "批量获取小红书笔记详情（并行执行），每完成一项即通过 notifications/message 推送该项结果；单项失败不影响其他项")
+    public Result<List<BatchItemResult<FeedDetailResponse>>> feedDetails(McpSyncServerExchange exchange, @McpProgressToken String progressToken,
+                                                                         @McpToolParam(description = "笔记列表，每项包含 feedId、xsecToken") List<FeedRef> items,
+                                                                         @McpToolParam(description = "跳过此前（含以往会话）已抓取过详情的笔记，该项返回 skipped=true", required = false) Boolean skipSeen,
+                                                                         @McpToolParam(description = "跳过与列表中靠前的某项、或与已抓取过详情的其他笔记内容近似的笔记，该项返回 skipped=true，message 中给出近似的笔记 id", required = false) Boolean skipDuplicates,
+                                                                         @McpToolParam(description = "调度优先级：bulk（默认）或 interactive（条目少且急需结果时使用）", required = false) String priority) {
+        ContentSink sink = ContentSink.mcp(exchange, "batch");
+        try {
+            AdmissionController.Priority prio = AdmissionController.Priority.of(priority);
+            return Result.ok(this.batchService.feedDetails(items, Boolean.TRUE.equals(skipSeen), Boolean.TRUE.equals(skipDuplicates),
+                    prio, Progress.mcp(exchange, progressToken),
+                    r -> sink.send(List.of(McpContent.json(r)))));
+        } catch (IllegalArgumentException e) {
+            return Result.fail(BizErrorCode.GET_FEED_DETAIL_FAILED, e.getMessage());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return Result.fail(BizErrorCode.GET_FEED_DETAIL_FAILED, "批量获取Feed详情失败");
+        }
+    }
+
+    @Tool(description = "发表评论到小红书笔记，成功时返回评论 id")
+    public Result<String> postComment(@ToolParam(description = "feed_id") String feedId, @ToolParam(description = "xsec_token，可不填：会从此前的搜索/信息流/主页结果中自动补全", required = false) String xsecToken, @ToolParam(description = "content") String content) {
         try {
-            return this.postCommentService.postComment(feedId, xsecToken, content);
+            return admission.admit("postComment", () -> this.postCommentService.postComment(feedId, xsecToken, content));
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             return Result.fail(BizErrorCode.POST_COMMENT_FAILED, "发表评论失败");
         }
     }
 
-    @Tool(description = "获取小红书用户主页，返回用户基本信息，关注、粉丝、获赞量及其笔记内容")
-    public Result<UserProfileResponse> userProfile(@ToolParam(description = "user_id") String userId, @ToolParam(description = "xsec_token") String xsecToken) {
+    @McpTool(description = "获取小红书用户主页，返回用户基本信息，关注、粉丝、获赞量及其笔记内容")
+    public Result<UserProfileResponse> userProfile(McpSyncServerExchange exchange, @McpProgressToken String progressToken,
+                                                   @McpToolParam(description = "user_id") String userId, @McpToolParam(description = "xsec_token，可不填：会从此前的搜索/信息流/主页结果中自动补全", required = false) String xsecToken,
+                                                   @McpToolParam(description = "可接受的本地存储结果的最大时长（秒），在此时长内抓取过则直接返回，不打开浏览器；不填则实时获取", required = false) Integer maxAgeSeconds,
+                                                   @McpToolParam(description = "调度优先级：interactive（默认，即时查询）或 bulk（后台批量抓取时使用，让位于即时查询）", required = false) String priority) {
         try {
-            return this.userProfileService.userProfile(userId, xsecToken);
+            AdmissionController.Priority prio = AdmissionController.Priority.of(priority);
+            Result<UserProfileResponse> stored = fromStore(NoteStore.USER, userId, UserProfileResponse.class, maxAgeSeconds);
+            if (stored != null) {
+                return stored;
+            }
+            return toolCache.get(ToolCache.USER_PROFILE, userId,
+                    () -> admission.admit("userProfile", prio, () -> this.userProfileService.userProfile(userId, xsecToken, Progress.mcp(exchange, progressToken))));
+        } catch (IllegalArgumentException e) {
+            return Result.fail(BizErrorCode.GET_USER_PROFILE_FAILED, e.getMessage());
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             return Result.fail(BizErrorCode.GET_USER_PROFILE_FAILED, "获取用户主页失败");
         }
     }
-}
\ No newline at end of file
+
+    @McpTool(description = "获取小红书用户发布的全部笔记卡片（按接口翻页，不含详情）；带 progressToken 时按已获取条数推送进度")
+    public Result<List<Feed>> userNotes(McpSyncServerExchange exchange, @McpProgressToken String progressToken,
+                                        @McpToolParam(description = "user_id") String userId, @McpToolParam(description = "xsec_token", required = false) String xsecToken,
+                                        @McpToolParam(description = "需要返回的数量，0 表示默认 30，最多 1000") int limit,
+                                        @McpToolParam(description = "只返回此前未抓取过详情的笔记（过滤后可能少于 limit）", required = false) Boolean unseenOnly,
+                                        @McpToolParam(description = "调度优先级：interactive（默认，即时查询）或 bulk（后台批量抓取时使用，让位于即时查询）", required = false) String priority) {
+        try {
+            AdmissionController.Priority prio = AdmissionController.Priority.of(priority);
+            return unseen(admission.admit("userNotes", prio,
+                    () -> this.userProfileService.userNotes(userId, xsecToken, limit, Progress.mcp(exchange, progressToken))), unseenOnly);
+        } catch (IllegalArgumentException e) {
+            return Result.fail(BizErrorCode.GET_USER_PROFILE_FAILED, e.getMessage());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return Result.fail(BizErrorCode.GET_USER_PROFILE_FAILED, "获取用户笔记失败");
+        }
+    }
+
+    @McpTool(description = "批量获取小红书用户主页（并行执行），每完成一项即通过 notifications/message 推送该项结果；单项失败不影响其他项")
+    public Result<List<BatchItemResult<UserProfileResponse>>> userProfiles(McpSyncServerExchange exchange, @McpProgressToken String progressToken,
+                                                                           @McpToolParam(description = "用户列表，每项包含 userId、xsecToken") List<UserRef> items,
+                                                                           @McpToolParam(description = "跳过此前（含以往会话）已抓取过主页的用户，该项返回 skipped=true", required = false) Boolean skipSeen,
+                                                                           @McpToolParam(description = "调度优先级：bulk（默认）或 interactive（条目少且急需结果时使用）", required = false) String priority) {
+        ContentSink sink = ContentSink.mcp(exchange, "batch");
+        try {
+            AdmissionController.Priority prio = AdmissionController.Priority.of(priority);
+            return Result.ok(this.batchService.userProfiles(items, Boolean.TRUE.equals(skipSeen), prio,
+                    Progress.mcp(exchange, progressToken),
+                    r -> sink.send(List.of(McpContent.json(r)))));
+        } catch (IllegalArgumentException e) {
+            return Result.fail(BizErrorCode.GET_USER_PROFILE_FAILED, e.getMessage());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return Result.fail(BizErrorCode.GET_USER_PROFILE_FAILED, "批量获取用户主页失败");
+        }
+    }
+
+    @McpTool(description = "订阅博主：按自适应间隔检查其主页（活跃博主查得勤、长期不更新的查得少），发现新增或改动的笔记时发送 notifications/resources/updated（uri 为 xhs://creator-watch/{userId}）；重复订阅会更新间隔")
+    public Result<CreatorWatch> watchCreator(@McpToolParam(description = "user_id") String userId,
+                                             @McpToolParam(description = "xsec_token，可不填：会从此前的搜索/信息流/主页结果中自动补全", required = false) String xsecToken,
+                                             @McpToolParam(description = "期望检查间隔（秒），实际间隔会在其 1/4 到 8 倍之间自适应；不填为默认 3600", required = false) Integer intervalSeconds) {
+        try {
+            return this.creatorWatcher.watch(userId, xsecToken, intervalSeconds);
+        } catch (IllegalArgumentException e) {
+            return Result.fail(BizErrorCode.WATCH_FAILED, e.getMessage());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return Result.fail(BizErrorCode.WATCH_FAILED, "订阅博主失败");
+        }
+    }
+
+    @McpTool(description = "取消博主订阅")
+    public Result<Void> unwatchCreator(@McpToolParam(description = "user_id") String userId) {
+        return this.creatorWatcher.unwatch(userId);
+    }
+
+    @McpTool(description = "列出所有博主订阅及其当前检查间隔、上次检查/更新时间")
+    public Result<List<CreatorWatch>> listWatches() {
+        return Result.ok(this.creatorWatcher.list());
+    }
+
+    @McpTool(description = "获取订阅博主的新增/改动笔记（保留最近 20 次变更）")
+    public Result<List<WatchUpdate>> watchUpdates(@McpToolParam(description = "user_id") String userId,
+                                                  @McpToolParam(description = "只返回该时间（epoch 毫秒）之后发现的变更；不填返回全部", required = false) Long sinceEpochMs) {
+        List<WatchUpdate> updates = this.creatorWatcher.updates(userId, sinceEpochMs == null ? 0 : sinceEpochMs);
+        if (updates == null) {
+            return Result.fail(BizErrorCode.DATA_NOT_FOUND, "订阅不存在: " + userId);
+        }
+        return Result.ok(updates);
+    }
+
+    @McpTool(description = "追踪笔记互动数：按间隔打开详情，记录点赞/收藏/评论/分享数的时间序列（其他途径获取该笔记详情时也会顺带记录）；重复调用会更新间隔")
+    public Result<TrackedNote> trackNote(@McpToolParam(description = "feed_id") String feedId,
+                                         @McpToolParam(description = "xsec_token，可不填：会从此前的搜索/信息流/主页结果中自动补全", required = false) String xsecToken,
+                                         @McpToolParam(description = "采样间隔（秒），不填为默认 1800", required = false) Integer intervalSeconds) {
+        try {
+            return this.engagementTracker.track(feedId, xsecToken, intervalSeconds);
+        } catch (IllegalArgumentException e) {
+            return Result.fail(BizErrorCode.TRACK_FAILED, e.getMessage());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return Result.fail(BizErrorCode.TRACK_FAILED, "追踪笔记失败");
+        }
+    }
+
+    @McpTool(description = "取消笔记互动数追踪（已记录的数据保留，仍可查询）")
+    public Result<Void> untrackNote(@McpToolParam(description = "feed_id") String feedId) {
+        return this.engagementTracker.untrack(feedId);
+    }
+
+    @McpTool(description = "列出所有被追踪互动数的笔记")
+    public Result<List<TrackedNote>> listTrackedNotes() {
+        return Result.ok(this.engagementTracker.list());
+    }
+
+    @McpTool(description = "查询笔记互动数时间序列及区间内各项增长（增量、每小时增量、增幅%）；计数为“1.2万”等约数时标记 approximate")
+    public Result<EngagementSeries> engagementSeries(@McpToolParam(description = "feed_id") String feedId,
+                                                     @McpToolParam(description = "起始时间（epoch 毫秒），不填为 7 天前", required = false) Long sinceEpochMs,
+                                                     @McpToolParam(description = "结束时间（epoch 毫秒），不填为当前", required = false) Long untilEpochMs,
+                                                     @McpToolParam(description = "降采样步长（秒），每步取最后一条；不填时超过 2000 点自动降采样", required = false) Integer stepSeconds) {
+        try {
+            long until = untilEpochMs == null ? System.currentTimeMillis() : untilEpochMs;
+            long since = sinceEpochMs == null ? until - 7 * 86_400_000L : sinceEpochMs;
+            EngagementSeries series = this.engagementTracker.series(feedId, since, until, stepSeconds);
+            if (series == null) {
+                return Result.fail(BizErrorCode.DATA_NOT_FOUND, "该笔记没有互动数记录: " + feedId);
+            }
+            return Result.ok(series);
+        } catch (IllegalArgumentException e) {
+            return Result.fail(BizErrorCode.TRACK_FAILED, e.getMessage());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return Result.fail(BizErrorCode.TRACK_FAILED, "查询互动数序列失败");
+        }
+    }
+
+    @McpTool(description = "监控关键词趋势：按间隔在后台搜索该关键词，记录每次结果中各笔记的名次；重复调用会更新间隔和名次数")
+    public Result<TrendKeyword> monitorKeyword(@McpToolParam(description = "搜索关键词") String keyword,
+                                               @McpToolParam(description = "巡检间隔（秒），不填为默认 3600", required = false) Integer intervalSeconds,
+                                               @McpToolParam(description = "每次记录的名次数（1-100），不填为默认 40", required = false) Integer limit) {
+        try {
+            return this.trendMonitor.monitor(keyword, intervalSeconds, limit);
+        } catch (IllegalArgumentException e) {
+            return Result.fail(BizErrorCode.TREND_FAILED, e.getMessage());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return Result.fail(BizErrorCode.TREND_FAILED, "监控关键词失败");
+        }
+    }
+
+    @McpTool(description = "停止监控关键词（已记录的名次保留，仍可查询）")
+    public Result<Void> unmonitorKeyword(@McpToolParam(description = "搜索关键词") String keyword) {
+        return this.trendMonitor.unmonitor(keyword);
+    }
+
+    @McpTool(description = "列出所有监控中的关键词及巡检情况")
+    public Result<List<TrendKeyword>> listMonitoredKeywords() {
+        return Result.ok(this.trendMonitor.list());
+    }
+
+    @McpTool(description = "关键词结果中的新进笔记：指定时间之后进入前 N 名、此前从未进入过的笔记，含首次出现时间、最好名次、当前名次")
+    public Result<List<TrendEntrant>> trendNewEntrants(@McpToolParam(description = "搜索关键词") String keyword,
+                                                       @McpToolParam(description = "起始时间（epoch 毫秒），不填为 24 小时前", required = false) Long sinceEpochMs,
+                                                       @McpToolParam(description = "只看前 N 名，不填为全部记录的名次", required = false) Integer top) {
+        try {
+            long since = sinceEpochMs == null ? System.currentTimeMillis() - 86_400_000L : sinceEpochMs;
+            List<TrendEntrant> out = this.trendMonitor.newEntrants(keyword, since, top);
+            if (out == null) {
+                return Result.fail(BizErrorCode.DATA_NOT_FOUND, "该关键词没有巡检记录: " + keyword);
+            }
+            return Result.ok(out);
+        } catch (IllegalArgumentException e) {
+            return Result.fail(BizErrorCode.TREND_FAILED, e.getMessage());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return Result.fail(BizErrorCode.TREND_FAILED, "查询新进笔记失败");
+        }
+    }
+
+    @McpTool(description = "笔记在某关键词历次巡检中的名次（不在结果中的巡检 rank 为空）")
+    public Result<List<RankPoint>> trendRankHistory(@McpToolParam(description = "搜索关键词") String keyword,
+                                                    @McpToolParam(description = "feed_id") String feedId,
+                                                    @McpToolParam(description = "起始时间（epoch 毫秒），不填为 7 天前", required = false) Long sinceEpochMs) {
+        try {
+            long since = sinceEpochMs == null ? System.currentTimeMillis() - 7 * 86_400_000L : sinceEpochMs;
+            List<RankPoint> out = this.trendMonitor.rankHistory(keyword, feedId, since);
+            if (out == null) {
+                return Result.fail(BizErrorCode.DATA_NOT_FOUND, "该关键词没有巡检记录: " + keyword);
+            }
+            return Result.ok(out);
+        } catch (IllegalArgumentException e) {
+            return Result.fail(BizErrorCode.TREND_FAILED, e.getMessage());
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return Result.fail(BizErrorCode.TREND_FAILED, "查询名次历史失败");
+        }
+    }
+
+    @McpResource(uri = CreatorWatcher.URI_PREFIX + "{userId}", name = "creator-watch", mimeType = "application/json",
+            description = "博主订阅的当前状态与最近的新增/改动笔记；有更新时服务端发送 notifications/resources/updated")
+    public McpSchema.ReadResourceResult creatorWatchResource(String userId) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("watch", this.creatorWatcher.get(userId));
+        List<WatchUpdate> updates = this.creatorWatcher.updates(userId, 0);
+        body.put("updates", updates == null ? List.of() : updates);
+        String text;
+        try {
+            text = Json.M.writeValueAsString(body);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return new McpSchema.ReadResourceResult(List.of(
+                new McpSchema.TextResourceContents(CreatorWatcher.uri(userId), "application/json", text)));
+    }
+
+    /** 指定了 maxAgeSeconds 且本地存储（含其他副本写入的）有足够新的记录时直接返回，否则返回 null */
+    private <T> Result<T> fromStore(String kind, String id, Class<T> type, Integer maxAgeSeconds) {
+        if (maxAgeSeconds == null || maxAgeSeconds <= 0) {
+            return null;
+        }
+        NoteStore.Stored<T> s = noteStore.get(kind, id, type, maxAgeSeconds);
+        return s == null ? null : Result.ok(s.value(), "来自本地存储（" + s.ageSeconds() + " 秒前抓取）");
+    }
+
+    /** unseenOnly 时去掉已抓取过详情的笔记卡片 */
+    private Result<List<Feed>> unseen(Result<List<Feed>> r, Boolean unseenOnly) {
+        if (!Boolean.TRUE.equals(unseenOnly) || !r.isSuccess() || r.getData() == null) {
+            return r;
+        }
+        List<Feed> out = new ArrayList<>(r.getData().size());
+        for (Feed f : r.getData()) {
+            if (f != null && !seenFilter.mightContain(SeenFilter.NOTE, f.getId())) {
+                out.add(f);
+            }
+        }
+        return Result.ok(out, r.getMessage());
+    }
+
+    /** collapseDuplicates 时折叠近似重复的笔记卡片，保留排在最前的一篇 */
+    private Result<List<Feed>> collapse(Result<List<Feed>> r, Boolean collapseDuplicates) {
+        if (!Boolean.TRUE.equals(collapseDuplicates) || !r.isSuccess() || r.getData() == null) {
+            return r;
+        }
+        NearDupIndex.Collapsed<Feed> c = nearDupIndex.collapse(r.getData(), Feed::getId,
+                f -> f.getNoteCard() == null ? null : f.getNoteCard().getDisplayTitle(), false);
+        if (c.duplicateOf().isEmpty()) {
+            return r;
+        }
+        String note = "已折叠 " + c.duplicateOf().size() + " 条近似重复笔记";
+        return Result.ok(c.kept(), r.getMessage() == null || "OK".equals(r.getMessage()) ? note : r.getMessage() + "；" + note);
+    }
+}
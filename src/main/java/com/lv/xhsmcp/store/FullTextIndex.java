@@ -0,0 +1,550 @@
+package com.lv.xhsmcp.store;
+
+import com.lv.xhsmcp.model.*;
+import com.lv.xhsmcp.util.CjkTokenizer;
+import com.lv.xhsmcp.util.DataPaths;
+import com.lv.xhsmcp.xhs.StatsSource;
+import io.micrometer.common.util.StringUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * 本地全文索引：对抓取过的笔记标题、正文、话题标签与评论建倒排索引，BM25 排序
+ * <p>
+ * - 切词见 {@link CjkTokenizer}：文档按字与二元组建索引，查询按二元组匹配（单字查询按字匹配）；标题、标签词频加权
+ * - 倒排表为 (文档号差值, 词频) 的 varint 序列；笔记内容变化时分配新文档号、旧文档号作废，
+ *   作废数超过存活数时整体重建
+ * - 随 {@link NoteStore} 写入增量更新；快照与回放见 {@link SnapshotIndex}
+ * - 每个副本各自维护（快照在本机数据目录）
+ */
+@Slf4j
+@Service
+public class FullTextIndex extends SnapshotIndex implements StatsSource {
+    /* ===================== 常量 ===================== */
+    private static final int MAGIC = 0x58465449; // "XFTI"
+    private static final int VERSION = 3;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int TITLE_WEIGHT = 2;
+    private static final int TAG_WEIGHT = 2;
+    private static final int MAX_COMMENT_CHARS = 8_000;
+    private static final int DEFAULT_LIMIT = 10;
+    private static final int MAX_LIMIT = 100;
+    private static final int MIN_DELETED_TO_REBUILD = 1_000;
+    /** Doc.at 的下标：各来源最近一次写入时间 */
+    private static final int AT_CARD = 0, AT_DETAIL = 1, AT_COMMENTS = 2;
+
+    @Value("${xhs.fulltext.enabled:true}")
+    private boolean enabled;
+    @Value("${xhs.fulltext.persist-interval-seconds:60}")
+    private long persistIntervalSeconds;
+
+    @Resource
+    private NoteStore noteStore;
+
+    /** 文档号 -> 文档；被替换的文档号置 null */
+    private final List<Doc> docs = new ArrayList<>();
+    private final Map<String, Doc> byId = new HashMap<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private long totalLen;
+    private int deleted;
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder queryMicros = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+
+    public FullTextIndex() {
+        super("fulltext-index", "Full-text index", MAGIC, VERSION, List.of(
+                Map.entry(NoteStore.FEED, Feed.class),
+                Map.entry(NoteStore.DETAIL, FeedDetailResponse.class),
+                Map.entry(NoteStore.COMMENTS, CommentList.class)));
+    }
+
+    /* =============== 生命周期 =============== */
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            open(noteStore, DataPaths.dir("fulltext").resolve("index.bin"), persistIntervalSeconds);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        close();
+    }
+
+    /* =============== 增量更新 =============== */
+
+    @Override
+    public void onSaved(String kind, String id, Object value) {
+        if (enabled) {
+            apply(kind, id, value, System.currentTimeMillis());
+        }
+    }
+
+    @Override
+    protected void apply(String kind, String id, Object value, long ts) {
+        switch (kind) {
+            case NoteStore.FEED -> {
+                Feed f = (Feed) value;
+                NoteCard card = f.getNoteCard();
+                update(id, AT_CARD, f.getXsecToken(), ts, d -> d.cardTitle = card == null ? null : card.getDisplayTitle());
+            }
+            case NoteStore.DETAIL -> {
+                FeedDetail n = ((FeedDetailResponse) value).getNote();
+                if (n == null) return;
+                String tags = n.getTagList() == null ? null : n.getTagList().stream()
+                        .map(NoteTag::getName).filter(Objects::nonNull).collect(Collectors.joining(" "));
+                update(id, AT_DETAIL, n.getXsecToken(), ts, d -> {
+                    d.title = n.getTitle();
+                    d.desc = n.getDesc();
+                    d.tags = tags;
+                });
+            }
+            case NoteStore.COMMENTS -> {
+                List<Comment> list = ((CommentList) value).getList();
+                if (list == null || list.isEmpty()) return;
+                StringBuilder sb = new StringBuilder();
+                appendComments(sb, list);
+                update(id, AT_COMMENTS, null, ts, d -> d.comments = sb.toString());
+            }
+            default -> {
+                // 用户主页不进全文索引（其笔记卡片已按 FEED 单独写入）
+            }
+        }
+    }
+
+    private static void appendComments(StringBuilder sb, List<Comment> list) {
+        for (Comment c : list) {
+            if (c == null || sb.length() >= MAX_COMMENT_CHARS) continue;
+            if (c.getContent() != null) {
+                sb.append(c.getContent(), 0, Math.min(c.getContent().length(), MAX_COMMENT_CHARS - sb.length())).append('\n');
+            }
+            if (c.getSubComments() != null) {
+                appendComments(sb, c.getSubComments());
+            }
+        }
+    }
+
+    /** 文本未变只刷新时间与 token；变了则作废旧文档号并重新索引 */
+    private void update(String id, int source, String xsecToken, long ts, Consumer<Doc> change) {
+        rw.writeLock().lock();
+        try {
+            Doc old = byId.get(id);
+            if (old != null && ts < old.at[source]) {
+                return; // 回放的旧记录
+            }
+            Doc next = old == null ? new Doc(id) : old.copy();
+            change.accept(next);
+            if (StringUtils.isNotBlank(xsecToken)) next.xsecToken = xsecToken;
+            next.at[source] = ts;
+            next.fetchedAt = Math.max(next.fetchedAt, ts);
+            if (old != null && old.sameText(next)) {
+                old.xsecToken = next.xsecToken;
+                old.at[source] = ts;
+                old.fetchedAt = next.fetchedAt;
+            } else {
+                if (old != null) {
+                    docs.set(old.docNo, null);
+                    totalLen -= old.len;
+                    deleted++;
+                }
+                addDoc(next);
+            }
+            changedLocked(ts);
+        } finally {
+            rw.writeLock().unlock();
+        }
+    }
+
+    /** 持有写锁 */
+    private void addDoc(Doc d) {
+        Map<String, Integer> tf = new HashMap<>();
+        d.len = count(tf, d.title != null ? d.title : d.cardTitle, TITLE_WEIGHT)
+                + count(tf, d.tags, TAG_WEIGHT)
+                + count(tf, d.desc, 1)
+                + count(tf, d.comments, 1);
+        d.docNo = docs.size();
+        docs.add(d);
+        byId.put(d.noteId, d);
+        totalLen += d.len;
+        tf.forEach((term, n) -> postings.computeIfAbsent(term, t -> new Postings()).add(d.docNo, n));
+    }
+
+    private static int count(Map<String, Integer> tf, String text, int weight) {
+        List<String> tokens = CjkTokenizer.tokenizeForIndex(text);
+        for (String t : tokens) {
+            tf.merge(t, weight, Integer::sum);
+        }
+        return tokens.size() * weight;
+    }
+
+    /* =============== 查询 =============== */
+
+    /**
+     * BM25 检索；查询词不超过 2 个时命中任一即可，否则至少命中一半
+     *
+     * @param maxAgeSeconds 只返回该时长内抓取过的笔记；&lt;=0 不限
+     */
+    public LocalSearchResponse search(String query, int limit, long maxAgeSeconds) {
+        if (StringUtils.isBlank(query)) {
+            throw new IllegalArgumentException("query must not be blank");
+        }
+        if (limit < 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 0 and " + MAX_LIMIT);
+        }
+        final int want = limit == 0 ? DEFAULT_LIMIT : limit;
+        final long t0 = System.nanoTime();
+        final long cutoff = maxAgeSeconds > 0 ? System.currentTimeMillis() - maxAgeSeconds * 1000 : Long.MIN_VALUE;
+        List<String> terms = CjkTokenizer.tokenize(query).stream().distinct().toList();
+
+        List<Hit> hits = new ArrayList<>();
+        int matched = 0;
+        int indexed;
+        rw.readLock().lock();
+        try {
+            indexed = docs.size() - deleted;
+            if (indexed > 0 && !terms.isEmpty()) {
+                double avgLen = Math.max(1.0, (double) totalLen / indexed);
+                Acc acc = new Acc(docs.size());
+                for (String term : terms) {
+                    Postings p = postings.get(term);
+                    if (p != null) {
+                        p.score(docs, indexed, avgLen, cutoff, acc);
+                    }
+                }
+                int minMatch = terms.size() <= 2 ? 1 : (terms.size() + 1) / 2;
+                PriorityQueue<Hit> top = new PriorityQueue<>(Comparator.comparingDouble(Hit::score));
+                for (int i = 0; i < acc.touchedCount; i++) {
+                    int doc = acc.touched[i];
+                    if (acc.matches[doc] < minMatch) continue;
+                    matched++;
+                    if (top.size() == want && acc.scores[doc] <= top.peek().score()) continue;
+                    Doc d = docs.get(doc);
+                    top.add(new Hit(d.noteId, d.xsecToken, d.title != null ? d.title : d.cardTitle, d.fetchedAt, acc.scores[doc]));
+                    if (top.size() > want) top.poll();
+                }
+                hits.addAll(top);
+                hits.sort(Comparator.comparingDouble(Hit::score).reversed());
+            }
+        } finally {
+            rw.readLock().unlock();
+        }
+
+        List<LocalSearchItem> items = new ArrayList<>(hits.size());
+        for (Hit h : hits) {
+            NoteStore.Stored<Feed> card = noteStore.get(NoteStore.FEED, h.noteId, Feed.class, 0);
+            items.add(new LocalSearchItem(h.noteId, h.xsecToken, h.title, Math.round(h.score * 1000) / 1000.0,
+                    h.fetchedAt, card == null ? null : card.value()));
+        }
+        long micros = (System.nanoTime() - t0) / 1_000;
+        queries.increment();
+        queryMicros.add(micros);
+        return new LocalSearchResponse(items, matched, indexed, micros);
+    }
+
+    /** 检索结果转为笔记卡片（本地没有卡片时用标题与 token 拼一个最小卡片），供与站点搜索结果合并 */
+    public List<Feed> searchFeeds(String query, int limit, long maxAgeSeconds) {
+        if (!enabled) {
+            return List.of();
+        }
+        List<Feed> out = new ArrayList<>();
+        for (LocalSearchItem it : search(query, limit, maxAgeSeconds).getItems()) {
+            if (it.getFeed() != null) {
+                out.add(it.getFeed());
+            } else {
+                NoteCard card = new NoteCard();
+                card.setDisplayTitle(it.getTitle());
+                out.add(Feed.builder().id(it.getFeedId()).xsecToken(it.getXsecToken()).modelType("note").noteCard(card).build());
+            }
+        }
+        return out;
+    }
+
+    /* =============== 维护 / 持久化 =============== */
+
+    @Override
+    protected void maintainLocked() {
+        if (deleted > MIN_DELETED_TO_REBUILD && deleted > docs.size() - deleted) {
+            rebuildLocked();
+        }
+    }
+
+    /** 丢弃作废文档号，重新编号并重建倒排表 */
+    private void rebuildLocked() {
+        List<Doc> live = docs.stream().filter(Objects::nonNull).toList();
+        clearLocked();
+        live.forEach(this::addDoc);
+        changedLocked(0);
+        rebuilds.increment();
+        log.info("Full-text index rebuilt. docs={}, terms={}", live.size(), postings.size());
+    }
+
+    /** 文档逐个复制（时间与 token 会原地刷新），倒排表只取当前长度的视图；写出文档与倒排表原样 */
+    @Override
+    protected Snapshot snapshotLocked() {
+        long len = totalLen;
+        List<Doc> ds = new ArrayList<>(docs.size());
+        for (Doc d : docs) {
+            ds.add(d == null ? null : d.copy());
+        }
+        Map<String, Postings> ps = new HashMap<>(postings.size() * 4 / 3 + 1);
+        postings.forEach((term, p) -> ps.put(term, p.view()));
+        return out -> {
+            out.writeLong(len);
+            out.writeInt(ds.size());
+            for (Doc d : ds) {
+                out.writeBoolean(d != null);
+                if (d != null) d.write(out);
+            }
+            out.writeInt(ps.size());
+            for (Map.Entry<String, Postings> e : ps.entrySet()) {
+                writeString(out, e.getKey());
+                e.getValue().write(out);
+            }
+        };
+    }
+
+    @Override
+    protected boolean readLocked(DataInputStream in) throws IOException {
+        totalLen = in.readLong();
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            Doc d = in.readBoolean() ? Doc.read(in, i) : null;
+            docs.add(d);
+            if (d != null) byId.put(d.noteId, d);
+            else deleted++;
+        }
+        int terms = in.readInt();
+        for (int i = 0; i < terms; i++) {
+            postings.put(readString(in), Postings.read(in));
+        }
+        log.info("Full-text index loaded. docs={}, terms={}", byId.size(), postings.size());
+        return true;
+    }
+
+    @Override
+    protected void clearLocked() {
+        docs.clear();
+        byId.clear();
+        postings.clear();
+        totalLen = 0;
+        deleted = 0;
+    }
+
+    /* =============== 指标 =============== */
+
+    @Override
+    public String statsName() {
+        return "fulltext";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        rw.readLock().lock();
+        try {
+            long bytes = 0;
+            for (Postings p : postings.values()) bytes += p.size;
+            out.put("docs", byId.size());
+            out.put("deletedDocNos", deleted);
+            out.put("terms", postings.size());
+            out.put("postingsBytes", bytes);
+        } finally {
+            rw.readLock().unlock();
+        }
+        long q = queries.sum();
+        out.put("queries", q);
+        out.put("avgQueryMicros", q == 0 ? 0 : queryMicros.sum() / q);
+        out.put("rebuilds", rebuilds.sum());
+        return out;
+    }
+
+    /* =============== 内部结构 =============== */
+
+    /** 单次查询的得分累加器（按文档号下标的稠密数组） */
+    private static final class Acc {
+        final double[] scores;
+        final int[] matches;
+        int[] touched = new int[64];
+        int touchedCount;
+
+        Acc(int docs) {
+            scores = new double[docs];
+            matches = new int[docs];
+        }
+
+        void add(int doc, double s) {
+            if (matches[doc]++ == 0) {
+                if (touchedCount == touched.length) touched = Arrays.copyOf(touched, touchedCount * 2);
+                touched[touchedCount++] = doc;
+            }
+            scores[doc] += s;
+        }
+    }
+
+    private record Hit(String noteId, String xsecToken, String title, long fetchedAt, double score) {}
+
+    private static final class Doc {
+        final String noteId;
+        String xsecToken;
+        String cardTitle;
+        String title;
+        String desc;
+        String tags;
+        String comments;
+        final long[] at = new long[3];
+        long fetchedAt;
+        int docNo;
+        int len;
+
+        Doc(String noteId) {
+            this.noteId = noteId;
+        }
+
+        Doc copy() {
+            Doc d = new Doc(noteId);
+            d.xsecToken = xsecToken;
+            d.cardTitle = cardTitle;
+            d.title = title;
+            d.desc = desc;
+            d.tags = tags;
+            d.comments = comments;
+            System.arraycopy(at, 0, d.at, 0, at.length);
+            d.fetchedAt = fetchedAt;
+            d.docNo = docNo;
+            d.len = len;
+            return d;
+        }
+
+        boolean sameText(Doc o) {
+            return Objects.equals(cardTitle, o.cardTitle) && Objects.equals(title, o.title)
+                    && Objects.equals(desc, o.desc) && Objects.equals(tags, o.tags)
+                    && Objects.equals(comments, o.comments);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            writeString(out, noteId);
+            writeString(out, xsecToken);
+            writeString(out, cardTitle);
+            writeString(out, title);
+            writeString(out, desc);
+            writeString(out, tags);
+            writeString(out, comments);
+            for (long t : at) out.writeLong(t);
+            out.writeLong(fetchedAt);
+            out.writeInt(len);
+        }
+
+        static Doc read(DataInputStream in, int docNo) throws IOException {
+            Doc d = new Doc(readString(in));
+            d.xsecToken = readString(in);
+            d.cardTitle = readString(in);
+            d.title = readString(in);
+            d.desc = readString(in);
+            d.tags = readString(in);
+            d.comments = readString(in);
+            for (int i = 0; i < d.at.length; i++) d.at[i] = in.readLong();
+            d.fetchedAt = in.readLong();
+            d.len = in.readInt();
+            d.docNo = docNo;
+            return d;
+        }
+    }
+
+    /** 一个词的倒排表：按文档号递增追加的 varint(文档号差值), varint(词频) */
+    private static final class Postings {
+        byte[] data = new byte[8];
+        int size;
+        int count;
+        int lastDoc;
+
+        void add(int docNo, int tf) {
+            ensure(10);
+            writeVarint(docNo - lastDoc);
+            writeVarint(tf);
+            lastDoc = docNo;
+            count++;
+        }
+
+        /** 累加 BM25 得分 */
+        void score(List<Doc> docs, int liveDocs, double avgLen, long cutoff, Acc acc) {
+            int df = Math.min(count, liveDocs);
+            double idf = Math.log(1 + (liveDocs - df + 0.5) / (df + 0.5));
+            int pos = 0;
+            int doc = 0;
+            for (int i = 0; i < count; i++) {
+                int delta = 0, tf = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = data[pos++];
+                    delta |= (b & 0x7f) << shift;
+                    if (b >= 0) break;
+                }
+                for (int shift = 0; ; shift += 7) {
+                    byte b = data[pos++];
+                    tf |= (b & 0x7f) << shift;
+                    if (b >= 0) break;
+                }
+                doc += delta;
+                Doc d = docs.get(doc);
+                if (d == null || d.fetchedAt < cutoff) {
+                    continue;
+                }
+                acc.add(doc, idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * d.len / avgLen)));
+            }
+        }
+
+        private void writeVarint(int v) {
+            while ((v & ~0x7f) != 0) {
+                data[size++] = (byte) ((v & 0x7f) | 0x80);
+                v >>>= 7;
+            }
+            data[size++] = (byte) v;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+            }
+        }
+
+        /** 当前内容的只读视图：add 只在 size 之后写入（或换新数组），共享的前 size 字节不会再变 */
+        Postings view() {
+            Postings p = new Postings();
+            p.data = data;
+            p.size = size;
+            p.count = count;
+            p.lastDoc = lastDoc;
+            return p;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(count);
+            out.writeInt(lastDoc);
+            out.writeInt(size);
+            out.write(data, 0, size);
+        }
+
+        static Postings read(DataInputStream in) throws IOException {
+            Postings p = new Postings();
+            p.count = in.readInt();
+            p.lastDoc = in.readInt();
+            p.size = in.readInt();
+            p.data = in.readNBytes(p.size);
+            if (p.data.length != p.size) throw new EOFException();
+            return p;
+        }
+    }
+}
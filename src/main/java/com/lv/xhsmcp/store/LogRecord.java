@@ -0,0 +1,124 @@
+package com.lv.xhsmcp.store;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * 段文件中的一条记录（长度前缀 + CRC + JSON 负载）
+ * <pre>
+ * int bodyLength | int crc32c(body) | body = long ts | short keyLength | key(UTF-8) | value(JSON)
+ * </pre>
+ * 写一半崩溃时，尾部记录的长度或 CRC 校验不过，恢复时从该处截断。
+ */
+final class LogRecord {
+    /* ===================== 常量 ===================== */
+    static final int HEADER = 8;
+    private static final int MIN_BODY = 10;
+    private static final int MAX_BODY = 16 << 20;
+
+    final String key;
+    final long ts;
+    final byte[] value;
+    final long offset;
+    final int length;
+
+    private LogRecord(String key, long ts, byte[] value, long offset, int length) {
+        this.key = key;
+        this.ts = ts;
+        this.value = value;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    static ByteBuffer encode(String key, long ts, byte[] value) {
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        if (k.length > 0xffff) {
+            throw new IllegalArgumentException("key too long");
+        }
+        int body = MIN_BODY + k.length + value.length;
+        if (body > MAX_BODY) {
+            throw new IllegalArgumentException("record too large: " + body);
+        }
+        ByteBuffer b = ByteBuffer.allocate(HEADER + body);
+        b.putInt(body).putInt(0).putLong(ts).putShort((short) k.length).put(k).put(value);
+        CRC32C crc = new CRC32C();
+        crc.update(b.array(), HEADER, body);
+        b.putInt(4, (int) crc.getValue());
+        return b.flip();
+    }
+
+    /** 按索引给出的位置读取并校验；位置失效（被压缩、截断、槽位读到一半）时返回 null */
+    static LogRecord read(FileChannel ch, long offset, int length) throws IOException {
+        if (length < HEADER + MIN_BODY || length > HEADER + MAX_BODY) {
+            return null;
+        }
+        ByteBuffer b = ByteBuffer.allocate(length);
+        try {
+            readFully(ch, b, offset);
+        } catch (EOFException e) {
+            return null;
+        }
+        int body = b.getInt(0);
+        if (body != length - HEADER) {
+            return null;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(b.array(), HEADER, body);
+        if ((int) crc.getValue() != b.getInt(4)) {
+            return null;
+        }
+        long ts = b.getLong(HEADER);
+        int keyLen = b.getShort(HEADER + 8) & 0xffff;
+        int valueAt = HEADER + MIN_BODY + keyLen;
+        if (valueAt > length) {
+            return null;
+        }
+        String key = new String(b.array(), HEADER + MIN_BODY, keyLen, StandardCharsets.UTF_8);
+        byte[] value = new byte[length - valueAt];
+        System.arraycopy(b.array(), valueAt, value, 0, value.length);
+        return new LogRecord(key, ts, value, offset, length);
+    }
+
+    /** 从头顺序读出所有完整记录，返回最后一条完整记录的结束位置 */
+    static long scan(FileChannel ch, Consumer<LogRecord> onRecord) throws IOException {
+        long size = ch.size();
+        long pos = 0;
+        ByteBuffer head = ByteBuffer.allocate(HEADER);
+        while (pos + HEADER <= size) {
+            head.clear();
+            readFully(ch, head, pos);
+            int body = head.getInt(0);
+            if (body < MIN_BODY || body > MAX_BODY || pos + HEADER + body > size) {
+                break;
+            }
+            LogRecord r = read(ch, pos, HEADER + body);
+            if (r == null) {
+                break;
+            }
+            onRecord.accept(r);
+            pos += HEADER + body;
+        }
+        return pos;
+    }
+
+    static void readFully(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+        while (b.hasRemaining()) {
+            int n = ch.read(b, pos + b.position());
+            if (n < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    static void writeFully(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+        long p = pos;
+        while (b.hasRemaining()) {
+            p += ch.write(b, p);
+        }
+    }
+}
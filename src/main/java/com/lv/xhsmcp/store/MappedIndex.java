@@ -0,0 +1,265 @@
+package com.lv.xhsmcp.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * 内存映射的 id → 记录位置索引：开放寻址（线性探测）哈希表，槽位按 key 的 64 位哈希定位
+ * <p>
+ * 文件布局：64 字节头 + capacity 个 32 字节槽位
+ * <pre>
+ * 头：  int magic | int version | int capacity | int used | int live | int clean
+ * 槽位：long hash | long ts | long offset | int segment | int length（0 = 已删除）
+ * </pre>
+ * - 只有所属节点写入（调用方持锁）；其他节点以只读方式映射同一文件
+ * - 槽位更新不是原子的，读到的位置只是线索：读记录时用 CRC 与 key 校验，校验失败按未命中处理
+ * - 哈希为 0 表示空槽；删除只把 length 置 0（墓碑），扩容时丢弃
+ */
+final class MappedIndex {
+    /* ===================== 常量 ===================== */
+    private static final int MAGIC = 0x584E4958; // "XNIX"
+    private static final int VERSION = 1;
+    private static final int HEADER = 64;
+    private static final int SLOT = 32;
+    private static final int MIN_CAPACITY = 1 << 12;
+    private static final int MAX_CAPACITY = 1 << 25; // 映射上限约 1GB
+    private static final double MAX_LOAD = 0.7;
+
+    private static final int H_MAGIC = 0, H_VERSION = 4, H_CAPACITY = 8, H_USED = 12, H_LIVE = 16, H_CLEAN = 20;
+
+    private final Path path;
+    private final MappedByteBuffer buf;
+    private final int capacity;
+    private final int mask;
+    private final boolean readOnly;
+
+    private MappedIndex(Path path, MappedByteBuffer buf, int capacity, boolean readOnly) {
+        this.path = path;
+        this.buf = buf;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.readOnly = readOnly;
+    }
+
+    /** 记录位置 */
+    record Loc(int segment, long offset, int length, long ts) {}
+
+    /* =============== 打开 / 创建 =============== */
+
+    /** 新建（覆盖）索引文件 */
+    static MappedIndex create(Path path, int minCapacity) throws IOException {
+        int cap = MIN_CAPACITY;
+        while (cap < minCapacity && cap < MAX_CAPACITY) cap <<= 1;
+        Files.deleteIfExists(path);
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) cap * SLOT);
+            b.putInt(H_MAGIC, MAGIC);
+            b.putInt(H_VERSION, VERSION);
+            b.putInt(H_CAPACITY, cap);
+            b.putInt(H_CLEAN, 0);
+            return new MappedIndex(path, b, cap, false);
+        }
+    }
+
+    /** 打开已有索引；文件不存在或头部不合法时返回 null */
+    static MappedIndex open(Path path, boolean readOnly) throws IOException {
+        if (!Files.exists(path) || Files.size(path) < HEADER) {
+            return null;
+        }
+        OpenOption[] opts = readOnly
+                ? new OpenOption[]{StandardOpenOption.READ}
+                : new OpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE};
+        try (FileChannel ch = FileChannel.open(path, opts)) {
+            ByteBuffer head = ByteBuffer.allocate(HEADER);
+            ch.read(head, 0);
+            int cap = head.getInt(H_CAPACITY);
+            if (head.getInt(H_MAGIC) != MAGIC || head.getInt(H_VERSION) != VERSION
+                    || Integer.bitCount(cap) != 1 || ch.size() < HEADER + (long) cap * SLOT) {
+                return null;
+            }
+            MappedByteBuffer b = ch.map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE,
+                    0, HEADER + (long) cap * SLOT);
+            return new MappedIndex(path, b, cap, readOnly);
+        }
+    }
+
+    /* =============== 读写 =============== */
+
+    Loc get(long hash) {
+        int i = (int) hash & mask;
+        for (int n = 0; n < capacity; n++, i = (i + 1) & mask) {
+            int p = HEADER + i * SLOT;
+            long h = buf.getLong(p);
+            if (h == 0) {
+                return null;
+            }
+            if (h == hash) {
+                int len = buf.getInt(p + 28);
+                return len == 0 ? null : new Loc(buf.getInt(p + 24), buf.getLong(p + 16), len, buf.getLong(p + 8));
+            }
+        }
+        return null;
+    }
+
+    /** 写入并返回旧位置（没有则 null）；调用方持有写锁 */
+    Loc put(long hash, Loc loc) {
+        checkWritable();
+        int i = (int) hash & mask;
+        for (int n = 0; n < capacity; n++, i = (i + 1) & mask) {
+            int p = HEADER + i * SLOT;
+            long h = buf.getLong(p);
+            if (h == hash) {
+                int oldLen = buf.getInt(p + 28);
+                Loc old = oldLen == 0 ? null : new Loc(buf.getInt(p + 24), buf.getLong(p + 16), oldLen, buf.getLong(p + 8));
+                writeSlot(p, loc);
+                if (old == null) addHeader(H_LIVE, 1);
+                return old;
+            }
+            if (h == 0) {
+                writeSlot(p, loc);
+                buf.putLong(p, hash); // 最后写哈希，只读方不会看到半个新槽位
+                addHeader(H_USED, 1);
+                addHeader(H_LIVE, 1);
+                return null;
+            }
+        }
+        throw new IllegalStateException("index full: " + path);
+    }
+
+    /** 仅当当前位置仍是 expect 时删除（压缩丢弃过期记录时用） */
+    boolean removeIf(long hash, Loc expect) {
+        checkWritable();
+        int i = (int) hash & mask;
+        for (int n = 0; n < capacity; n++, i = (i + 1) & mask) {
+            int p = HEADER + i * SLOT;
+            long h = buf.getLong(p);
+            if (h == 0) {
+                return false;
+            }
+            if (h == hash) {
+                if (buf.getInt(p + 28) == 0 || buf.getInt(p + 24) != expect.segment()
+                        || buf.getLong(p + 16) != expect.offset()) {
+                    return false;
+                }
+                buf.putInt(p + 28, 0);
+                addHeader(H_LIVE, -1);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** 遍历所有有效槽位 */
+    void forEach(SlotConsumer c) {
+        for (int i = 0; i < capacity; i++) {
+            int p = HEADER + i * SLOT;
+            long h = buf.getLong(p);
+            int len = buf.getInt(p + 28);
+            if (h != 0 && len != 0) {
+                c.accept(h, new Loc(buf.getInt(p + 24), buf.getLong(p + 16), len, buf.getLong(p + 8)));
+            }
+        }
+    }
+
+    interface SlotConsumer {
+        void accept(long hash, Loc loc);
+    }
+
+    /** 装载（含墓碑）超过阈值需要扩容 */
+    boolean needsGrow() {
+        return capacity < MAX_CAPACITY && buf.getInt(H_USED) > capacity * MAX_LOAD;
+    }
+
+    /**
+     * 复制到新文件后原子替换，返回新索引（旧映射对只读方仍可用，直到其重新映射）
+     * <p>
+     * 墓碑占多数时按原容量重建即可，否则容量翻倍。
+     */
+    MappedIndex grow() throws IOException {
+        return copyTo(path, live() > capacity * MAX_LOAD / 2 ? capacity * 2 : capacity);
+    }
+
+    /** 复制有效槽位到 target（先写临时文件再替换） */
+    MappedIndex copyTo(Path target, int minCapacity) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        MappedIndex next = create(tmp, minCapacity);
+        forEach(next::put);
+        return next.renameTo(target);
+    }
+
+    /** 落盘后原子改名为 target（映射不受影响） */
+    MappedIndex renameTo(Path target) throws IOException {
+        force();
+        try {
+            Files.move(path, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(path, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return new MappedIndex(target, buf, capacity, readOnly);
+    }
+
+    /* =============== 头部 =============== */
+
+    int live() {
+        return buf.getInt(H_LIVE);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    boolean clean() {
+        return buf.getInt(H_CLEAN) == 1;
+    }
+
+    void setClean(boolean clean) {
+        checkWritable();
+        buf.putInt(H_CLEAN, clean ? 1 : 0);
+    }
+
+    void force() {
+        if (!readOnly) {
+            buf.force();
+        }
+    }
+
+    Path path() {
+        return path;
+    }
+
+    private void writeSlot(int p, Loc loc) {
+        buf.putLong(p + 8, loc.ts());
+        buf.putLong(p + 16, loc.offset());
+        buf.putInt(p + 24, loc.segment());
+        buf.putInt(p + 28, loc.length());
+    }
+
+    private void addHeader(int off, int delta) {
+        buf.putInt(off, buf.getInt(off) + delta);
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new IllegalStateException("index is read-only: " + path);
+        }
+    }
+
+    /** key 的 64 位哈希（FNV-1a + fmix64），保证非 0 */
+    static long hash(byte[] key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            h ^= (b & 0xff);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe53ec94dL;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+}
@@ -0,0 +1,692 @@
+package com.lv.xhsmcp.store;
+
+import com.lv.xhsmcp.model.*;
+import com.lv.xhsmcp.util.CjkTokenizer;
+import com.lv.xhsmcp.util.DataPaths;
+import com.lv.xhsmcp.xhs.StatsSource;
+import io.micrometer.common.util.StringUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+/**
+ * 笔记近似重复检测：标题/正文的 MinHash 签名 + LSH 分段索引
+ * <p>
+ * - 切词见 {@link CjkTokenizer}，相邻两个词组成一个 shingle（中文即字符三元组）；可选把图片文件 id 也计入正文签名
+ * - 每篇笔记至多两份签名：标题签名（卡片或详情的标题）与正文签名（详情的标题+正文，抓取过详情才有）；
+ *   两篇都有正文签名时按正文比较，否则按标题比较（阈值更高）
+ * - 签名为 {@value #K} 个最小哈希，分成 {@value #BANDS} 段 × {@value #ROWS} 行，段哈希放进一张开放寻址的 int 多值表；
+ *   候选再按签名一致的比例（估计 Jaccard）确认。每篇笔记常驻约 1KB（签名 + 表项）
+ * - 笔记内容变化时分配新文档号、旧文档号作废；作废数超过存活数或笔记数超过上限时整体重建（超限时丢弃最久未更新的）
+ * - 随 {@link NoteStore} 写入增量更新；快照与回放见 {@link SnapshotIndex}
+ */
+@Slf4j
+@Service
+public class NearDupIndex extends SnapshotIndex implements StatsSource {
+    /* ===================== 常量 ===================== */
+    private static final int MAGIC = 0x584E4450; // "XNDP"
+    private static final int VERSION = 2;
+    static final int K = 64;
+    static final int BANDS = 16;
+    static final int ROWS = K / BANDS;
+    private static final long SEED = 0x5EED_0D0CL;
+    private static final int MIN_TITLE_SHINGLES = 6;
+    private static final int MIN_CONTENT_SHINGLES = 16;
+    private static final int MAX_CONTENT_CHARS = 4_000;
+    private static final int MIN_DELETED_TO_REBUILD = 1_000;
+    private static final int DEFAULT_LIMIT = 10;
+    private static final int MAX_LIMIT = 50;
+    /** 签名种类，参与段哈希，两类签名共用一张表 */
+    private static final int TITLE = 0, CONTENT = 1;
+    /** 第 i 个哈希函数：h_i(x) = (x * MUL[i] + ADD[i]) 的高 32 位 */
+    private static final long[] MUL = new long[K];
+    private static final long[] ADD = new long[K];
+
+    static {
+        SplittableRandom r = new SplittableRandom(SEED);
+        for (int i = 0; i < K; i++) {
+            MUL[i] = r.nextLong() | 1;
+            ADD[i] = r.nextLong();
+        }
+    }
+
+    /** 折叠结果：保留项（保持原顺序）与被折叠项 id -> 其近似的笔记 id */
+    public record Collapsed<T>(List<T> kept, Map<String, String> duplicateOf) {}
+
+    @Value("${xhs.neardup.enabled:true}")
+    private boolean enabled;
+    @Value("${xhs.neardup.threshold:0.6}")
+    private double threshold;
+    @Value("${xhs.neardup.title-threshold:0.8}")
+    private double titleThreshold;
+    @Value("${xhs.neardup.include-images:false}")
+    private boolean includeImages;
+    @Value("${xhs.neardup.max-docs:50000}")
+    private int maxDocs;
+    @Value("${xhs.neardup.persist-interval-seconds:60}")
+    private long persistIntervalSeconds;
+
+    @Resource
+    private NoteStore noteStore;
+
+    /** 文档号 -> 文档；被替换的文档号置 null */
+    private final List<Doc> docs = new ArrayList<>();
+    private final Map<String, Doc> byId = new HashMap<>();
+    private BandTable table = new BandTable(0);
+    private int deleted;
+
+    private final LongAdder signed = new LongAdder();
+    private final LongAdder signNanos = new LongAdder();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder folded = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+
+    public NearDupIndex() {
+        super("neardup-index", "Near-duplicate index", MAGIC, VERSION, List.of(
+                Map.entry(NoteStore.FEED, Feed.class),
+                Map.entry(NoteStore.DETAIL, FeedDetailResponse.class)));
+    }
+
+    /* =============== 生命周期 =============== */
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (threshold <= 0 || threshold > 1 || titleThreshold <= 0 || titleThreshold > 1) {
+            throw new IllegalStateException("xhs.neardup.threshold / title-threshold must be in (0, 1]");
+        }
+        open(noteStore, DataPaths.dir("neardup").resolve("index.bin"), persistIntervalSeconds);
+    }
+
+    @PreDestroy
+    public void stop() {
+        close();
+    }
+
+    /* =============== 增量更新 =============== */
+
+    @Override
+    public void onSaved(String kind, String id, Object value) {
+        if (enabled) {
+            apply(kind, id, value, System.currentTimeMillis());
+        }
+    }
+
+    @Override
+    protected void apply(String kind, String id, Object value, long ts) {
+        switch (kind) {
+            case NoteStore.FEED -> {
+                NoteCard card = ((Feed) value).getNoteCard();
+                if (card == null) return;
+                update(id, false, ts, card.getDisplayTitle(), sign(card.getDisplayTitle(), null, MIN_TITLE_SHINGLES), null);
+            }
+            case NoteStore.DETAIL -> {
+                FeedDetail n = ((FeedDetailResponse) value).getNote();
+                if (n == null) return;
+                String desc = n.getDesc();
+                if (desc != null && desc.length() > MAX_CONTENT_CHARS) desc = desc.substring(0, MAX_CONTENT_CHARS);
+                String content = StringUtils.isBlank(n.getTitle()) ? desc : n.getTitle() + "\n" + (desc == null ? "" : desc);
+                List<String> images = includeImages ? imageKeys(n.getImageList()) : null;
+                update(id, true, ts, StringUtils.isNotBlank(n.getTitle()) ? n.getTitle() : null,
+                        sign(n.getTitle(), null, MIN_TITLE_SHINGLES), sign(content, images, MIN_CONTENT_SHINGLES));
+            }
+            default -> {
+                // 评论与用户主页不参与
+            }
+        }
+    }
+
+    /**
+     * 签名不变只刷新时间；变了则作废旧文档号并重新入表。
+     * 卡片只提供标题签名，且已有详情时不覆盖（详情的标题更准确）
+     */
+    private void update(String id, boolean detail, long ts, String title, Sig titleSig, Sig contentSig) {
+        if (titleSig == null && contentSig == null) {
+            return;
+        }
+        rw.writeLock().lock();
+        try {
+            Doc old = byId.get(id);
+            if (old != null && ts < (detail ? old.detailAt : old.cardAt)) {
+                return; // 回放的旧记录
+            }
+            Doc next = old == null ? new Doc(id) : old.copy();
+            if (detail) {
+                next.detailAt = ts;
+                next.content = contentSig;
+                if (titleSig != null) next.titleSig = titleSig;
+                if (title != null) next.title = title;
+            } else {
+                next.cardAt = ts;
+                if (next.content == null || next.titleSig == null) {
+                    next.titleSig = titleSig;
+                    if (title != null) next.title = title;
+                }
+            }
+            if (old != null && Sig.same(old.titleSig, next.titleSig) && Sig.same(old.content, next.content)) {
+                old.cardAt = next.cardAt;
+                old.detailAt = next.detailAt;
+                old.title = next.title;
+            } else {
+                if (old != null) {
+                    docs.set(old.docNo, null);
+                    deleted++;
+                }
+                addDoc(next);
+                if (byId.size() > maxDocs + maxDocs / 4) {
+                    rebuildLocked();
+                }
+            }
+            changedLocked(ts);
+        } finally {
+            rw.writeLock().unlock();
+        }
+    }
+
+    /** 持有写锁 */
+    private void addDoc(Doc d) {
+        d.docNo = docs.size();
+        docs.add(d);
+        byId.put(d.noteId, d);
+        if (d.titleSig != null) table.putAll(TITLE, d.titleSig, d.docNo);
+        if (d.content != null) table.putAll(CONTENT, d.content, d.docNo);
+    }
+
+    /* =============== 查询 =============== */
+
+    /**
+     * 按顺序折叠近似重复项：与排在前面的某个保留项近似则折叠到该项
+     *
+     * @param titleOf        索引中没有该笔记时用来临时计算标题签名，可为 null
+     * @param againstFetched 同时折叠与列表外已抓取过详情的笔记近似的项
+     */
+    public <T> Collapsed<T> collapse(List<T> items, Function<T, String> idOf, Function<T, String> titleOf, boolean againstFetched) {
+        if (!enabled || items == null || items.isEmpty()) {
+            return new Collapsed<>(items == null ? List.of() : items, Map.of());
+        }
+        Set<String> inList = new HashSet<>();
+        for (T item : items) {
+            String id = item == null ? null : idOf.apply(item);
+            if (id != null) inList.add(id);
+        }
+        List<T> kept = new ArrayList<>(items.size());
+        List<Doc> keptDocs = new ArrayList<>();
+        Map<String, String> duplicateOf = new LinkedHashMap<>();
+        lookups.increment();
+        rw.readLock().lock();
+        try {
+            for (T item : items) {
+                String id = item == null ? null : idOf.apply(item);
+                Doc d = id == null ? null : byId.get(id);
+                if (d == null && id != null && titleOf != null) {
+                    String title = titleOf.apply(item);
+                    Sig s = sign(title, null, MIN_TITLE_SHINGLES);
+                    if (s != null) {
+                        d = new Doc(id);
+                        d.titleSig = s;
+                        d.title = title;
+                    }
+                }
+                String dup = null;
+                if (d != null) {
+                    for (Doc k : keptDocs) {
+                        if (match(d, k) != null) {
+                            dup = k.noteId;
+                            break;
+                        }
+                    }
+                    if (dup == null && againstFetched) {
+                        for (Doc c : candidates(d)) {
+                            if (c.content != null && !inList.contains(c.noteId) && match(d, c) != null) {
+                                dup = c.noteId;
+                                break;
+                            }
+                        }
+                    }
+                }
+                if (dup != null) {
+                    duplicateOf.put(id, dup);
+                } else {
+                    kept.add(item);
+                    if (d != null) keptDocs.add(d);
+                }
+            }
+        } finally {
+            rw.readLock().unlock();
+        }
+        folded.add(duplicateOf.size());
+        return new Collapsed<>(kept, duplicateOf);
+    }
+
+    /**
+     * 与指定笔记内容近似的其他笔记，按相似度降序
+     *
+     * @return 本地没有该笔记的标题/正文时返回 null
+     */
+    public List<NearDuplicate> duplicatesOf(String noteId, int limit) {
+        if (StringUtils.isBlank(noteId)) {
+            throw new IllegalArgumentException("feedId must not be blank");
+        }
+        if (limit < 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be in [0, " + MAX_LIMIT + "]");
+        }
+        if (!enabled) {
+            return null;
+        }
+        int n = limit == 0 ? DEFAULT_LIMIT : limit;
+        lookups.increment();
+        rw.readLock().lock();
+        try {
+            Doc d = byId.get(noteId);
+            if (d == null) {
+                return null;
+            }
+            List<NearDuplicate> out = new ArrayList<>();
+            for (Doc c : candidates(d)) {
+                NearDuplicate m = match(d, c);
+                if (m != null) out.add(m);
+            }
+            out.sort(Comparator.comparingDouble(NearDuplicate::getSimilarity).reversed());
+            return out.size() > n ? new ArrayList<>(out.subList(0, n)) : out;
+        } finally {
+            rw.readLock().unlock();
+        }
+    }
+
+    /** 与 d 至少一段相同的存活文档（不含 d 自身）；持有读锁 */
+    private List<Doc> candidates(Doc d) {
+        LinkedHashSet<Integer> seen = new LinkedHashSet<>();
+        IntConsumer collect = docNo -> {
+            Doc c = docs.get(docNo);
+            if (c != null && !c.noteId.equals(d.noteId)) seen.add(docNo);
+        };
+        if (d.content != null) table.forEach(CONTENT, d.content, collect);
+        if (d.titleSig != null) table.forEach(TITLE, d.titleSig, collect);
+        List<Doc> out = new ArrayList<>(seen.size());
+        for (int docNo : seen) out.add(docs.get(docNo));
+        return out;
+    }
+
+    /** 两篇都有正文签名时按正文判断，否则按标题判断；不近似返回 null */
+    private NearDuplicate match(Doc a, Doc b) {
+        double sim;
+        String basis;
+        if (a.content != null && b.content != null) {
+            sim = Sig.similarity(a.content, b.content);
+            basis = "content";
+            if (sim < threshold) return null;
+        } else if (a.titleSig != null && b.titleSig != null) {
+            sim = Sig.similarity(a.titleSig, b.titleSig);
+            basis = "title";
+            if (sim < titleThreshold) return null;
+        } else {
+            return null;
+        }
+        return NearDuplicate.builder()
+                .feedId(b.noteId)
+                .title(b.title)
+                .similarity(Math.round(sim * 1000) / 1000.0)
+                .basis(basis)
+                .fetched(b.content != null)
+                .build();
+    }
+
+    /* =============== 签名 =============== */
+
+    /** shingle 数不足 min（过短的文本区分度太低）时返回 null */
+    private Sig sign(String text, List<String> images, int min) {
+        long t0 = System.nanoTime();
+        long[] sh = shingles(text, images);
+        if (sh.length < min) {
+            return null;
+        }
+        int[] mins = new int[K];
+        Arrays.fill(mins, Integer.MAX_VALUE);
+        for (long x : sh) {
+            for (int i = 0; i < K; i++) {
+                int h = (int) ((x * MUL[i] + ADD[i]) >>> 32);
+                if (h < mins[i]) mins[i] = h;
+            }
+        }
+        Sig s = Sig.of(mins);
+        signed.increment();
+        signNanos.add(System.nanoTime() - t0);
+        return s;
+    }
+
+    /** 去重后的 shingle 哈希 */
+    static long[] shingles(String text, List<String> images) {
+        List<String> tokens = CjkTokenizer.tokenize(text);
+        int extra = images == null ? 0 : images.size();
+        long[] out = new long[Math.max(1, tokens.size()) + extra];
+        int n = 0;
+        if (tokens.size() == 1) {
+            out[n++] = mix(fnv(tokens.get(0)));
+        } else if (tokens.size() > 1) {
+            long prev = fnv(tokens.get(0));
+            for (int i = 1; i < tokens.size(); i++) {
+                long h = fnv(tokens.get(i));
+                out[n++] = mix(prev * 31 + h);
+                prev = h;
+            }
+        }
+        if (images != null) {
+            for (String img : images) out[n++] = mix(fnv(img) ^ 0x1D8E4E27C47D124FL);
+        }
+        Arrays.sort(out, 0, n);
+        int u = 0;
+        for (int i = 0; i < n; i++) {
+            if (u == 0 || out[i] != out[u - 1]) out[u++] = out[i];
+        }
+        return Arrays.copyOf(out, u);
+    }
+
+    /** 图片地址里签名/尺寸参数每次不同，取路径最后一段（文件 id）并去掉 !样式 与查询串 */
+    static List<String> imageKeys(List<DetailImageInfo> list) {
+        if (list == null || list.isEmpty()) {
+            return null;
+        }
+        List<String> out = new ArrayList<>(list.size());
+        for (DetailImageInfo img : list) {
+            String url = img == null ? null : StringUtils.isNotBlank(img.getUrlDefault()) ? img.getUrlDefault() : img.getUrlPre();
+            if (StringUtils.isBlank(url)) continue;
+            int end = url.length();
+            int q = url.indexOf('?');
+            if (q >= 0) end = q;
+            int bang = url.indexOf('!');
+            if (bang >= 0 && bang < end) end = bang;
+            int slash = url.lastIndexOf('/', end - 1);
+            String key = url.substring(slash + 1, end);
+            if (!key.isEmpty()) out.add(key);
+        }
+        return out;
+    }
+
+    private static long fnv(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    /* =============== 维护 / 持久化 =============== */
+
+    @Override
+    protected void maintainLocked() {
+        if ((deleted > MIN_DELETED_TO_REBUILD && deleted > docs.size() - deleted) || byId.size() > maxDocs) {
+            rebuildLocked();
+        }
+    }
+
+    /** 丢弃作废文档号（超过上限时再丢弃最久未更新的），重新编号并重建段哈希表 */
+    private void rebuildLocked() {
+        List<Doc> live = new ArrayList<>(byId.values());
+        if (live.size() > maxDocs) {
+            live.sort(Comparator.comparingLong(Doc::updatedAt).reversed());
+            live = new ArrayList<>(live.subList(0, maxDocs));
+        }
+        live.sort(Comparator.comparingInt(d -> d.docNo));
+        docs.clear();
+        byId.clear();
+        table = new BandTable(live.size() * BANDS * 2);
+        deleted = 0;
+        live.forEach(this::addDoc);
+        changedLocked(0);
+        rebuilds.increment();
+        log.info("Near-duplicate index rebuilt. docs={}, tableEntries={}", live.size(), table.size);
+    }
+
+    /** 只复制存活文档（签名不可变，时间与标题会原地刷新）；段哈希表加载时重建 */
+    @Override
+    protected Snapshot snapshotLocked() {
+        List<Doc> live = new ArrayList<>(byId.size());
+        for (Doc d : docs) {
+            if (d != null) live.add(d.copy());
+        }
+        return out -> {
+            out.writeInt(K);
+            out.writeInt(BANDS);
+            out.writeLong(SEED);
+            out.writeInt(live.size());
+            for (Doc d : live) d.write(out);
+        };
+    }
+
+    @Override
+    protected boolean readLocked(DataInputStream in) throws IOException {
+        if (in.readInt() != K || in.readInt() != BANDS || in.readLong() != SEED) {
+            return false;
+        }
+        int n = in.readInt();
+        table = new BandTable(n * BANDS * 2);
+        for (int i = 0; i < n; i++) {
+            addDoc(Doc.read(in));
+        }
+        log.info("Near-duplicate index loaded. docs={}", byId.size());
+        return true;
+    }
+
+    @Override
+    protected void clearLocked() {
+        docs.clear();
+        byId.clear();
+        table = new BandTable(0);
+        deleted = 0;
+    }
+
+    /* =============== 指标 =============== */
+
+    @Override
+    public String statsName() {
+        return "neardup";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        rw.readLock().lock();
+        try {
+            int titles = 0, contents = 0;
+            for (Doc d : byId.values()) {
+                if (d.titleSig != null) titles++;
+                if (d.content != null) contents++;
+            }
+            out.put("docs", byId.size());
+            out.put("titleSignatures", titles);
+            out.put("contentSignatures", contents);
+            out.put("deletedDocNos", deleted);
+            out.put("tableEntries", table.size);
+            out.put("tableBytes", (long) table.keys.length * 8);
+        } finally {
+            rw.readLock().unlock();
+        }
+        long s = signed.sum();
+        out.put("signed", s);
+        out.put("avgSignMicros", s == 0 ? 0 : signNanos.sum() / s / 1000);
+        out.put("lookups", lookups.sum());
+        out.put("folded", folded.sum());
+        out.put("rebuilds", rebuilds.sum());
+        return out;
+    }
+
+    /* =============== 内部结构 =============== */
+
+    /** 一份签名：各段哈希（入表用）与各最小哈希的低 16 位（估计相似度用，碰撞带来的偏差约 1/65536） */
+    static final class Sig {
+        final int[] bands;
+        final short[] mins;
+
+        private Sig(int[] bands, short[] mins) {
+            this.bands = bands;
+            this.mins = mins;
+        }
+
+        static Sig of(int[] mins) {
+            int[] bands = new int[BANDS];
+            short[] low = new short[K];
+            for (int b = 0; b < BANDS; b++) {
+                long h = b;
+                for (int r = 0; r < ROWS; r++) {
+                    h = h * 0x9E3779B97F4A7C15L + mins[b * ROWS + r];
+                }
+                bands[b] = (int) (mix(h) >>> 32);
+            }
+            for (int i = 0; i < K; i++) low[i] = (short) mins[i];
+            return new Sig(bands, low);
+        }
+
+        static double similarity(Sig a, Sig b) {
+            int eq = 0;
+            for (int i = 0; i < K; i++) {
+                if (a.mins[i] == b.mins[i]) eq++;
+            }
+            return (double) eq / K;
+        }
+
+        static boolean same(Sig a, Sig b) {
+            return a == b || (a != null && b != null && Arrays.equals(a.bands, b.bands) && Arrays.equals(a.mins, b.mins));
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            for (int v : bands) out.writeInt(v);
+            for (short v : mins) out.writeShort(v);
+        }
+
+        static Sig read(DataInputStream in) throws IOException {
+            int[] bands = new int[BANDS];
+            short[] mins = new short[K];
+            for (int i = 0; i < BANDS; i++) bands[i] = in.readInt();
+            for (int i = 0; i < K; i++) mins[i] = in.readShort();
+            return new Sig(bands, mins);
+        }
+    }
+
+    private static final class Doc {
+        final String noteId;
+        int docNo;
+        String title;
+        long cardAt;
+        long detailAt;
+        Sig titleSig;
+        Sig content;
+
+        Doc(String noteId) {
+            this.noteId = noteId;
+        }
+
+        Doc copy() {
+            Doc d = new Doc(noteId);
+            d.title = title;
+            d.cardAt = cardAt;
+            d.detailAt = detailAt;
+            d.titleSig = titleSig;
+            d.content = content;
+            return d;
+        }
+
+        long updatedAt() {
+            return Math.max(cardAt, detailAt);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            writeString(out, noteId);
+            writeString(out, title);
+            out.writeLong(cardAt);
+            out.writeLong(detailAt);
+            out.writeBoolean(titleSig != null);
+            if (titleSig != null) titleSig.write(out);
+            out.writeBoolean(content != null);
+            if (content != null) content.write(out);
+        }
+
+        static Doc read(DataInputStream in) throws IOException {
+            Doc d = new Doc(readString(in));
+            d.title = readString(in);
+            d.cardAt = in.readLong();
+            d.detailAt = in.readLong();
+            if (in.readBoolean()) d.titleSig = Sig.read(in);
+            if (in.readBoolean()) d.content = Sig.read(in);
+            return d;
+        }
+    }
+
+    /**
+     * 段哈希 -> 文档号 的多值表：开放寻址、线性探测，同一键可出现多次；键 0 表示空槽。
+     * 只增不删，作废的文档号由查询方跳过、重建时清理
+     */
+    static final class BandTable {
+        int[] keys;
+        int[] vals;
+        int size;
+
+        /** 按预计表项数预留，装载率不超过 3/4 */
+        BandTable(int expected) {
+            int cap = Integer.highestOneBit(Math.max(1 << 12, expected / 3 * 4) - 1) << 1;
+            keys = new int[cap];
+            vals = new int[cap];
+        }
+
+        void putAll(int kind, Sig s, int docNo) {
+            for (int b = 0; b < BANDS; b++) put(key(kind, b, s.bands[b]), docNo);
+        }
+
+        void forEach(int kind, Sig s, IntConsumer sink) {
+            for (int b = 0; b < BANDS; b++) {
+                int k = key(kind, b, s.bands[b]);
+                int mask = keys.length - 1;
+                for (int i = slot(k, mask); keys[i] != 0; i = (i + 1) & mask) {
+                    if (keys[i] == k) sink.accept(vals[i]);
+                }
+            }
+        }
+
+        private void put(int k, int v) {
+            if ((size + 1) * 4L > keys.length * 3L) grow();
+            int mask = keys.length - 1;
+            int i = slot(k, mask);
+            while (keys[i] != 0) i = (i + 1) & mask;
+            keys[i] = k;
+            vals[i] = v;
+            size++;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys, oldVals = vals;
+            keys = new int[oldKeys.length * 2];
+            vals = new int[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) put(oldKeys[i], oldVals[i]);
+            }
+        }
+
+        private static int key(int kind, int band, int h) {
+            int k = h ^ ((kind * BANDS + band + 1) * 0x9E3779B9);
+            return k == 0 ? 1 : k;
+        }
+
+        private static int slot(int k, int mask) {
+            return (k * 0x85EBCA6B ^ k >>> 15) & mask;
+        }
+    }
+}
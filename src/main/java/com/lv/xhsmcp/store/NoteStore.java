@@ -0,0 +1,671 @@
+package com.lv.xhsmcp.store;
+
+import com.lv.xhsmcp.model.CommentList;
+import com.lv.xhsmcp.model.Feed;
+import com.lv.xhsmcp.model.FeedDetailResponse;
+import com.lv.xhsmcp.model.UserProfileResponse;
+import com.lv.xhsmcp.util.DataPaths;
+import com.lv.xhsmcp.util.Json;
+import com.lv.xhsmcp.xhs.StatsSource;
+import com.lv.xhsmcp.store.MappedIndex.Loc;
+import io.micrometer.common.util.StringUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * 本地笔记存储：抓取到的笔记卡片、详情、评论、用户主页落盘，重启后和多个副本之间都可复用
+ * <p>
+ * 目录结构（xhs.store.dir，默认数据目录下的 notes/）：
+ * <pre>
+ * notes/&lt;nodeId&gt;/00000001.seg ...   只追加的段文件（{@link LogRecord}）
+ * notes/&lt;nodeId&gt;/index.bin          内存映射的 key → 位置索引（{@link MappedIndex}）
+ * </pre>
+ * - 每个进程只写自己的 nodeId 目录（文件锁保证独占），读时同时查其他节点的索引，取最新的一条；
+ *   多副本共享同一个卷即可互相复用抓取结果（需本机卷，跨主机的网络文件系统不保证 mmap 可见性）
+ * - 崩溃恢复：索引头部记录是否正常关闭；非正常关闭时从段文件重建索引，并截掉最后一段写了一半的记录
+ * - 后台压缩：已封存段中失效字节占比超过 xhs.store.compact-garbage-ratio 时，把仍有效的记录搬到当前段后删除该段
+ * - 写入失败只记日志，不影响工具调用
+ */
+@Slf4j
+@Service
+public class NoteStore implements StatsSource {
+    /* ===================== 常量 ===================== */
+    public static final String FEED = "feed";
+    public static final String DETAIL = "detail";
+    public static final String USER = "user";
+    public static final String COMMENTS = "comments";
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String INDEX_FILE = "index.bin";
+    private static final String LOCK_FILE = "LOCK";
+    private static final long FLUSH_MS = 1_000;
+
+    @Value("${xhs.store.enabled:true}")
+    private boolean enabled;
+    @Value("${xhs.store.dir:}")
+    private String dir;
+    @Value("${xhs.store.node-id:${HOSTNAME:local}}")
+    private String nodeId;
+    @Value("${xhs.store.segment-mb:64}")
+    private long segmentMb;
+    @Value("${xhs.store.compact-interval-seconds:300}")
+    private long compactIntervalSeconds;
+    @Value("${xhs.store.compact-garbage-ratio:0.5}")
+    private double compactGarbageRatio;
+    @Value("${xhs.store.retention-days:0}")
+    private long retentionDays;
+    @Value("${xhs.store.peer-refresh-seconds:5}")
+    private long peerRefreshSeconds;
+
+    private Path root;
+    private Node self;
+    private final Map<String, Node> peers = new ConcurrentHashMap<>();
+    private final List<StoreListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean open;
+
+    /** 以下字段只在 writeLock 内访问 */
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private FileChannel lockChannel;
+    private FileLock fileLock;
+    private FileChannel active;
+    private int activeSeg;
+    private long activeSize;
+    private final Map<Integer, Long> liveBytes = new HashMap<>();
+    private boolean dirty;
+
+    private final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "note-store");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder writeErrors = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+    private final LongAdder reclaimedBytes = new LongAdder();
+
+    /** 读到的记录及其写入时间 */
+    public record Stored<T>(T value, long storedAt, String node) {
+        public long ageSeconds() {
+            return Math.max(0, (System.currentTimeMillis() - storedAt) / 1000);
+        }
+    }
+
+    /* =============== 写入 =============== */
+
+    public void saveFeeds(Collection<Feed> feeds) {
+        if (feeds == null) return;
+        for (Feed f : feeds) {
+            if (f != null && !"ads".equals(f.getModelType())) {
+                put(FEED, f.getId(), f);
+            }
+        }
+    }
+
+    public void saveDetail(String feedId, FeedDetailResponse detail) {
+        put(DETAIL, feedId, detail);
+    }
+
+    public void saveUser(String userId, UserProfileResponse profile) {
+        put(USER, userId, profile);
+    }
+
+    public void saveComments(String feedId, CommentList comments) {
+        put(COMMENTS, feedId, comments);
+    }
+
+    public void addListener(StoreListener listener) {
+        listeners.add(listener);
+    }
+
+    /** 追加一条记录并更新索引；存储未启用或写失败时静默跳过 */
+    public void put(String kind, String id, Object value) {
+        if (StringUtils.isBlank(id) || value == null) {
+            return;
+        }
+        for (StoreListener l : listeners) {
+            try {
+                l.onSaved(kind, id, value);
+            } catch (Exception e) {
+                log.warn("Note store listener failed. kind={}, id={}, err={}", kind, id, e.getMessage());
+            }
+        }
+        if (!open) {
+            return;
+        }
+        try {
+            byte[] json = Json.M.writeValueAsBytes(value);
+            writeLock.lock();
+            try {
+                if (open) {
+                    append(kind + ':' + id, System.currentTimeMillis(), json);
+                    puts.increment();
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        } catch (Exception e) {
+            writeErrors.increment();
+            log.warn("Note store write failed. kind={}, id={}, err={}", kind, id, e.getMessage());
+        }
+    }
+
+    /* =============== 读取 =============== */
+
+    /**
+     * 读取所有节点中最新的一条
+     *
+     * @param maxAgeSeconds 只接受该时长内写入的记录；&lt;=0 不限
+     * @return 不存在、过旧或读取失败时返回 null
+     */
+    public <T> Stored<T> get(String kind, String id, Class<T> type, long maxAgeSeconds) {
+        if (!open || StringUtils.isBlank(id)) {
+            return null;
+        }
+        String key = kind + ':' + id;
+        long hash = MappedIndex.hash(key.getBytes(StandardCharsets.UTF_8));
+        long cutoff = maxAgeSeconds > 0 ? System.currentTimeMillis() - maxAgeSeconds * 1000 : Long.MIN_VALUE;
+
+        // 按槽位时间从新到旧尝试，第一条通过校验的即为结果
+        List<Map.Entry<Node, Loc>> candidates = new ArrayList<>(1 + peers.size());
+        addCandidate(candidates, self, hash, cutoff);
+        for (Node n : peers.values()) {
+            addCandidate(candidates, n, hash, cutoff);
+        }
+        candidates.sort((a, b) -> Long.compare(b.getValue().ts(), a.getValue().ts()));
+        for (Map.Entry<Node, Loc> c : candidates) {
+            LogRecord r = read(c.getKey(), hash, c.getValue());
+            if (r != null && key.equals(r.key) && r.ts >= cutoff) {
+                try {
+                    T v = Json.M.readValue(r.value, type);
+                    hits.increment();
+                    return new Stored<>(v, r.ts, c.getKey().id);
+                } catch (IOException e) {
+                    log.warn("Note store record unreadable. key={}, node={}, err={}", key, c.getKey().id, e.getMessage());
+                }
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 遍历某类记录（本节点与其他节点，各取其索引中的当前版本），用于派生数据的首次构建
+     * <p>
+     * 同一 key 在多个节点都有时会回调多次，调用方按 storedAt 取新即可。
+     */
+    public <T> void forEach(String kind, Class<T> type, BiConsumer<String, Stored<T>> action) {
+        forEach(kind, type, Long.MIN_VALUE, action);
+    }
+
+    /** 同上，只遍历 sinceTs 及之后写入的记录（按索引中的时间过滤，不读取更早的记录），用于派生数据的追赶 */
+    public <T> void forEach(String kind, Class<T> type, long sinceTs, BiConsumer<String, Stored<T>> action) {
+        if (!open) {
+            return;
+        }
+        String prefix = kind + ':';
+        List<Node> nodes = new ArrayList<>(peers.values());
+        nodes.add(0, self);
+        for (Node n : nodes) {
+            List<Loc> locs = new ArrayList<>();
+            n.index.forEach((h, loc) -> {
+                if (loc.ts() >= sinceTs) locs.add(loc);
+            });
+            locs.sort(Comparator.comparingInt(Loc::segment).thenComparingLong(Loc::offset));
+            for (Loc loc : locs) {
+                LogRecord r = read(n, 0, loc);
+                if (r == null || !r.key.startsWith(prefix)) {
+                    continue;
+                }
+                try {
+                    action.accept(r.key.substring(prefix.length()), new Stored<>(Json.M.readValue(r.value, type), r.ts, n.id));
+                } catch (IOException e) {
+                    log.warn("Note store record unreadable. key={}, node={}, err={}", r.key, n.id, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void addCandidate(List<Map.Entry<Node, Loc>> out, Node n, long hash, long cutoff) {
+        Loc loc = n.index.get(hash);
+        if (loc != null && loc.ts() >= cutoff) {
+            out.add(Map.entry(n, loc));
+        }
+    }
+
+    /** 位置可能因压缩失效：失败时按最新索引再试一次（hash 为 0 时不重试） */
+    private LogRecord read(Node n, long hash, Loc loc) {
+        for (int attempt = 0; attempt < 2 && loc != null; attempt++) {
+            try {
+                LogRecord r = LogRecord.read(n.channel(loc.segment()), loc.offset(), loc.length());
+                if (r != null) {
+                    return r;
+                }
+            } catch (IOException | UncheckedIOException e) {
+                n.dropChannel(loc.segment());
+            }
+            loc = hash == 0 ? null : n.index.get(hash);
+        }
+        return null;
+    }
+
+    /* =============== 打开 / 恢复 =============== */
+
+    @PostConstruct
+    public void open() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            root = StringUtils.isBlank(dir) ? DataPaths.dir("notes") : Files.createDirectories(Paths.get(dir));
+            String id = lockNodeDir(nodeId.replaceAll("[^A-Za-z0-9_.-]", "_"));
+            Path nodeDir = root.resolve(id);
+            List<Integer> segs = listSegments(nodeDir);
+
+            MappedIndex index = MappedIndex.open(nodeDir.resolve(INDEX_FILE), false);
+            if (index == null || !index.clean()) {
+                if (!segs.isEmpty()) {
+                    log.info("Note store rebuilding index. node={}, segments={}", id, segs.size());
+                }
+                index = rebuild(nodeDir, segs);
+            }
+            index.setClean(false);
+            index.force();
+
+            activeSeg = segs.isEmpty() ? 1 : segs.get(segs.size() - 1);
+            active = FileChannel.open(segmentPath(nodeDir, activeSeg), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            activeSize = active.size();
+            self = new Node(id, nodeDir, index, null);
+            index.forEach((h, loc) -> liveBytes.merge(loc.segment(), (long) loc.length(), Long::sum));
+            refreshPeers();
+            open = true;
+
+            maintenance.scheduleWithFixedDelay(this::flush, FLUSH_MS, FLUSH_MS, TimeUnit.MILLISECONDS);
+            maintenance.scheduleWithFixedDelay(this::refreshPeersQuietly, peerRefreshSeconds, peerRefreshSeconds, TimeUnit.SECONDS);
+            maintenance.scheduleWithFixedDelay(this::compact, compactIntervalSeconds, compactIntervalSeconds, TimeUnit.SECONDS);
+            log.info("Note store opened. dir={}, node={}, keys={}, segments={}, peers={}",
+                    nodeDir, id, index.live(), Math.max(1, segs.size()), peers.size());
+        } catch (Exception e) {
+            open = false;
+            log.error("Note store disabled, open failed. dir={}, err={}", root, e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!open) {
+            return;
+        }
+        maintenance.shutdownNow();
+        writeLock.lock();
+        try {
+            open = false;
+            active.force(false);
+            active.close();
+            self.index.setClean(true);
+            self.index.force();
+            fileLock.release();
+            lockChannel.close();
+        } catch (IOException e) {
+            log.warn("Note store close failed. err={}", e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+        self.closeChannels();
+        peers.values().forEach(Node::closeChannels);
+    }
+
+    /** 独占 nodeId 目录；已被其他进程占用（例如同主机名的多个实例）时改用带 pid 的目录 */
+    private String lockNodeDir(String id) throws IOException {
+        for (String candidate : List.of(id, id + "-" + ProcessHandle.current().pid())) {
+            Path d = Files.createDirectories(root.resolve(candidate));
+            FileChannel ch = FileChannel.open(d.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = ch.tryLock();
+            if (lock != null) {
+                lockChannel = ch;
+                fileLock = lock;
+                return candidate;
+            }
+            ch.close();
+            log.warn("Note store node dir is locked by another process. node={}", candidate);
+        }
+        throw new IOException("no lockable node dir under " + root);
+    }
+
+    /** 从段文件重建索引；同一 key 以时间戳最新（相同则位置靠后）的为准，最后一段的残缺尾部截掉 */
+    private MappedIndex rebuild(Path nodeDir, List<Integer> segs) throws IOException {
+        MappedIndex[] idx = {MappedIndex.create(nodeDir.resolve(INDEX_FILE + ".rebuild"), 0)};
+        for (int i = 0; i < segs.size(); i++) {
+            int seg = segs.get(i);
+            try (FileChannel ch = FileChannel.open(segmentPath(nodeDir, seg), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long end = LogRecord.scan(ch, r -> {
+                    long h = MappedIndex.hash(r.key.getBytes(StandardCharsets.UTF_8));
+                    Loc old = idx[0].get(h);
+                    if (old == null || old.ts() <= r.ts) {
+                        idx[0].put(h, new Loc(seg, r.offset, r.length, r.ts));
+                    }
+                    if (idx[0].needsGrow()) {
+                        try {
+                            idx[0] = idx[0].grow();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
+                if (end < ch.size()) {
+                    if (i == segs.size() - 1) {
+                        log.warn("Note store truncating torn tail. seg={}, validBytes={}, fileBytes={}", seg, end, ch.size());
+                        ch.truncate(end);
+                        ch.force(true);
+                    } else {
+                        log.warn("Note store ignoring corrupt tail of sealed segment. seg={}, validBytes={}, fileBytes={}",
+                                seg, end, ch.size());
+                    }
+                }
+            }
+        }
+        return idx[0].renameTo(nodeDir.resolve(INDEX_FILE));
+    }
+
+    /* =============== 追加 / 分段（持有 writeLock） =============== */
+
+    private void append(String key, long ts, byte[] value) throws IOException {
+        ByteBuffer rec = LogRecord.encode(key, ts, value);
+        int len = rec.remaining();
+        if (activeSize > 0 && activeSize + len > segmentMb * 1024 * 1024) {
+            roll();
+        }
+        long off = activeSize;
+        LogRecord.writeFully(active, rec, off);
+        activeSize += len;
+
+        Loc old = self.index.put(MappedIndex.hash(key.getBytes(StandardCharsets.UTF_8)), new Loc(activeSeg, off, len, ts));
+        liveBytes.merge(activeSeg, (long) len, Long::sum);
+        if (old != null) {
+            liveBytes.merge(old.segment(), (long) -old.length(), Long::sum);
+        }
+        if (self.index.needsGrow()) {
+            self.index = self.index.grow();
+            log.info("Note store index grown. capacity={}", self.index.capacity());
+        }
+        dirty = true;
+    }
+
+    private void roll() throws IOException {
+        active.force(false);
+        active.close();
+        activeSeg++;
+        active = FileChannel.open(segmentPath(self.dir, activeSeg), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        activeSize = 0;
+        log.info("Note store rolled segment. node={}, seg={}", self.id, activeSeg);
+    }
+
+    /* =============== 后台任务 =============== */
+
+    private void flush() {
+        writeLock.lock();
+        try {
+            if (open && dirty) {
+                active.force(false);
+                self.index.force();
+                dirty = false;
+            }
+        } catch (IOException e) {
+            log.warn("Note store flush failed. err={}", e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /** 压缩已封存的段：失效字节过多或整段超出保留期 */
+    private void compact() {
+        try {
+            long now = System.currentTimeMillis();
+            long retentionMs = retentionDays * 86_400_000L;
+            for (int seg : listSegments(self.dir)) {
+                int current;
+                long live;
+                writeLock.lock();
+                try {
+                    current = activeSeg;
+                    live = liveBytes.getOrDefault(seg, 0L);
+                } finally {
+                    writeLock.unlock();
+                }
+                if (!open || seg >= current) {
+                    continue;
+                }
+                Path file = segmentPath(self.dir, seg);
+                long size = Files.size(file);
+                boolean expired = retentionMs > 0 && Files.getLastModifiedTime(file).toMillis() < now - retentionMs;
+                double garbage = size == 0 ? 1 : 1 - (double) live / size;
+                if (expired || garbage >= compactGarbageRatio) {
+                    compactSegment(seg, file, size, retentionMs > 0 ? now - retentionMs : Long.MIN_VALUE);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Note store compaction failed. err={}", e.getMessage(), e);
+        }
+    }
+
+    private void compactSegment(int seg, Path file, long size, long expireBefore) throws IOException {
+        long[] copied = {0};
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            LogRecord.scan(ch, r -> {
+                long h = MappedIndex.hash(r.key.getBytes(StandardCharsets.UTF_8));
+                writeLock.lock();
+                try {
+                    Loc cur = self.index.get(h);
+                    if (!open || cur == null || cur.segment() != seg || cur.offset() != r.offset) {
+                        return; // 已被覆盖
+                    }
+                    if (r.ts < expireBefore) {
+                        if (self.index.removeIf(h, cur)) {
+                            liveBytes.merge(seg, (long) -cur.length(), Long::sum);
+                        }
+                    } else {
+                        append(r.key, r.ts, r.value);
+                        copied[0] += r.length;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    writeLock.unlock();
+                }
+            });
+        }
+        writeLock.lock();
+        try {
+            if (!open) {
+                return;
+            }
+            // 搬迁的记录先落盘，再删旧段
+            active.force(false);
+            self.index.force();
+            liveBytes.remove(seg);
+            Files.deleteIfExists(file);
+            self.dropChannel(seg);
+        } finally {
+            writeLock.unlock();
+        }
+        compactions.increment();
+        reclaimedBytes.add(size - copied[0]);
+        log.info("Note store compacted segment. seg={}, bytes={}, copied={}", seg, size, copied[0]);
+    }
+
+    private void refreshPeersQuietly() {
+        try {
+            refreshPeers();
+        } catch (Exception e) {
+            log.warn("Note store peer refresh failed. err={}", e.getMessage());
+        }
+    }
+
+    /** 发现其他节点目录；对方索引文件被替换（扩容/重建）时重新映射 */
+    private void refreshPeers() throws IOException {
+        Set<String> seen = new HashSet<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path d : ds) {
+                String id = d.getFileName().toString();
+                Path indexPath = d.resolve(INDEX_FILE);
+                if ((self != null && id.equals(self.id)) || !Files.exists(indexPath)) {
+                    continue;
+                }
+                seen.add(id);
+                Object key = Files.readAttributes(indexPath, BasicFileAttributes.class).fileKey();
+                Node n = peers.get(id);
+                if (n != null && key != null && key.equals(n.indexKey)) {
+                    n.dropMissingChannels();
+                    continue;
+                }
+                MappedIndex idx = MappedIndex.open(indexPath, true);
+                if (idx == null) {
+                    continue;
+                }
+                if (n == null) {
+                    peers.put(id, new Node(id, d, idx, key));
+                    log.info("Note store peer found. node={}, keys={}", id, idx.live());
+                } else {
+                    n.index = idx;
+                    n.indexKey = key;
+                    n.dropMissingChannels();
+                }
+            }
+        }
+        peers.keySet().removeIf(id -> !seen.contains(id));
+    }
+
+    /* =============== 辅助 =============== */
+
+    private static Path segmentPath(Path nodeDir, int seg) {
+        return nodeDir.resolve(String.format("%08d%s", seg, SEGMENT_SUFFIX));
+    }
+
+    private static List<Integer> listSegments(Path nodeDir) throws IOException {
+        List<Integer> out = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(nodeDir, "*" + SEGMENT_SUFFIX)) {
+            for (Path p : ds) {
+                String name = p.getFileName().toString();
+                try {
+                    out.add(Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException ignore) {
+                    // 非段文件
+                }
+            }
+        }
+        Collections.sort(out);
+        return out;
+    }
+
+    /* =============== 指标 =============== */
+
+    @Override
+    public String statsName() {
+        return "store";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", open);
+        if (!open) {
+            return out;
+        }
+        writeLock.lock();
+        try {
+            out.put("node", self.id);
+            out.put("keys", self.index.live());
+            out.put("indexCapacity", self.index.capacity());
+            out.put("segments", liveBytes.size());
+            out.put("activeSegment", activeSeg);
+            out.put("liveBytes", liveBytes.values().stream().mapToLong(Long::longValue).sum());
+        } finally {
+            writeLock.unlock();
+        }
+        out.put("peers", new TreeSet<>(peers.keySet()));
+        out.put("puts", puts.sum());
+        out.put("writeErrors", writeErrors.sum());
+        out.put("hits", hits.sum());
+        out.put("misses", misses.sum());
+        out.put("compactions", compactions.sum());
+        out.put("reclaimedBytes", reclaimedBytes.sum());
+        return out;
+    }
+
+    /** 一个节点（本进程或其他副本）的索引与段文件读句柄 */
+    private static final class Node {
+        final String id;
+        final Path dir;
+        volatile MappedIndex index;
+        volatile Object indexKey;
+        private final Map<Integer, FileChannel> channels = new ConcurrentHashMap<>();
+
+        Node(String id, Path dir, MappedIndex index, Object indexKey) {
+            this.id = id;
+            this.dir = dir;
+            this.index = index;
+            this.indexKey = indexKey;
+        }
+
+        FileChannel channel(int seg) {
+            return channels.computeIfAbsent(seg, s -> {
+                try {
+                    return FileChannel.open(segmentPath(dir, s), StandardOpenOption.READ);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+
+        void dropChannel(int seg) {
+            FileChannel ch = channels.remove(seg);
+            if (ch != null) {
+                try {
+                    ch.close();
+                } catch (IOException ignore) {
+                    // 忽略
+                }
+            }
+        }
+
+        /** 对方压缩删掉的段不再持有句柄 */
+        void dropMissingChannels() {
+            for (Integer seg : List.copyOf(channels.keySet())) {
+                if (!Files.exists(segmentPath(dir, seg))) {
+                    dropChannel(seg);
+                }
+            }
+        }
+
+        void closeChannels() {
+            for (Integer seg : List.copyOf(channels.keySet())) {
+                dropChannel(seg);
+            }
+        }
+    }
+}
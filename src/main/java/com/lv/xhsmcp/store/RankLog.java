@@ -0,0 +1,232 @@
+package com.lv.xhsmcp.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+/**
+ * 一个关键词历次巡检的名次记录：笔记 id 字典 + 定长头的巡检记录
+ * <pre>
+ * &lt;name&gt;.ids   字典，每行一个笔记 id，行号即编号；只追加
+ * &lt;name&gt;.rank  记录序列：int payloadLength | int crc32c(payload) | payload
+ *               payload = varint ts | varint (n &lt;&lt; 1 | repeat) | n × varint 编号（按名次）
+ *               repeat=1 表示与上一次巡检结果完全相同，不再存名单
+ * </pre>
+ * - 每条名次约 1~2 字节；结果不变的巡检只占十几字节
+ * - 先写字典再写记录，都 force 后才返回；写一半的行/记录在打开时截掉
+ * <p>
+ * 非线程安全，由调用方加锁。
+ */
+public final class RankLog {
+    /* ===================== 常量 ===================== */
+    private static final int HEADER = 8;
+    private static final int MAX_PAYLOAD = 1 << 20;
+
+    /** 一次巡检：按名次排列的笔记 id */
+    public record Sweep(long ts, List<String> ids) {}
+
+    private final Path idsFile;
+    private final Path rankFile;
+    private final List<String> dict = new ArrayList<>();
+    private final Map<String, Integer> codes = new HashMap<>();
+    private long end;
+    private int sweeps;
+    private long lastTs = Long.MIN_VALUE;
+    private int[] last;
+
+    private RankLog(Path idsFile, Path rankFile) {
+        this.idsFile = idsFile;
+        this.rankFile = rankFile;
+    }
+
+    public static RankLog open(Path dir, String name) throws IOException {
+        RankLog r = new RankLog(dir.resolve(name + ".ids"), dir.resolve(name + ".rank"));
+        r.recover();
+        return r;
+    }
+
+    private void recover() throws IOException {
+        if (Files.exists(idsFile)) {
+            byte[] all = Files.readAllBytes(idsFile);
+            int start = 0;
+            for (int i = 0; i < all.length; i++) {
+                if (all[i] == '\n') {
+                    addCode(new String(all, start, i - start, StandardCharsets.UTF_8));
+                    start = i + 1;
+                }
+            }
+            if (start < all.length) {
+                // 末行没写完
+                try (FileChannel ch = FileChannel.open(idsFile, StandardOpenOption.WRITE)) {
+                    ch.truncate(start);
+                }
+            }
+        }
+        if (Files.exists(rankFile)) {
+            try (FileChannel ch = FileChannel.open(rankFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long valid = scan(ch, (ts, ids) -> {
+                    sweeps++;
+                    lastTs = ts;
+                    last = ids;
+                });
+                if (valid < ch.size()) {
+                    ch.truncate(valid);
+                }
+                end = valid;
+            }
+        }
+    }
+
+    /**
+     * 追加一次巡检
+     *
+     * @return 与上一次结果完全相同（按 repeat 记录）时返回 false
+     */
+    public boolean append(long ts, List<String> ids) throws IOException {
+        if (ts <= lastTs) {
+            throw new IllegalArgumentException("sweep ts must increase");
+        }
+        for (String id : ids) {
+            // 先整体校验，避免中途抛出时内存字典已多出未落盘的编号
+            if (id.indexOf('\n') >= 0) {
+                throw new IllegalArgumentException("invalid id: " + id);
+            }
+        }
+        StringBuilder newIds = new StringBuilder();
+        int[] enc = new int[ids.size()];
+        int before = dict.size();
+        for (int i = 0; i < ids.size(); i++) {
+            String id = ids.get(i);
+            Integer c = codes.get(id);
+            if (c == null) {
+                c = addCode(id);
+                newIds.append(id).append('\n');
+            }
+            enc[i] = c;
+        }
+        boolean repeat = Arrays.equals(enc, last);
+        if (newIds.length() > 0) {
+            try (FileChannel ch = FileChannel.open(idsFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer b = ByteBuffer.wrap(newIds.toString().getBytes(StandardCharsets.UTF_8));
+                while (b.hasRemaining()) ch.write(b);
+                ch.force(false);
+            } catch (IOException e) {
+                // 回滚内存字典，保持与文件一致
+                for (int i = dict.size() - 1; i >= before; i--) codes.remove(dict.remove(i));
+                throw e;
+            }
+        }
+        SeriesFile.Varints p = new SeriesFile.Varints(16 + enc.length * 2);
+        p.put(ts);
+        p.put(repeat ? 1 : (long) enc.length << 1);
+        if (!repeat) {
+            for (int c : enc) p.put(c);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(p.buf, 0, p.len);
+        ByteBuffer b = ByteBuffer.allocate(HEADER + p.len);
+        b.putInt(p.len).putInt((int) crc.getValue()).put(p.buf, 0, p.len).flip();
+        try (FileChannel ch = FileChannel.open(rankFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ch.position(end);
+            while (b.hasRemaining()) ch.write(b);
+            ch.force(false);
+        }
+        end += HEADER + p.len;
+        sweeps++;
+        lastTs = ts;
+        last = enc;
+        return !repeat;
+    }
+
+    /** [from, to] 内的巡检，按时间升序 */
+    public List<Sweep> read(long from, long to) throws IOException {
+        List<Sweep> out = new ArrayList<>();
+        if (end == 0 || from > lastTs) {
+            return out;
+        }
+        try (FileChannel ch = FileChannel.open(rankFile, StandardOpenOption.READ)) {
+            MappedByteBuffer m = ch.map(FileChannel.MapMode.READ_ONLY, 0, end);
+            decodeAll(m, (ts, ids) -> {
+                if (ts < from || ts > to) return;
+                List<String> list = new ArrayList<>(ids.length);
+                for (int c : ids) list.add(dict.get(c));
+                out.add(new Sweep(ts, list));
+            });
+        }
+        return out;
+    }
+
+    public int sweeps() {
+        return sweeps;
+    }
+
+    public long bytes() {
+        long ids = 0;
+        for (String s : dict) ids += s.length() + 1;
+        return end + ids;
+    }
+
+    /* =============== 编解码 =============== */
+
+    private interface SweepConsumer {
+        void accept(long ts, int[] ids);
+    }
+
+    private int addCode(String id) {
+        int c = dict.size();
+        dict.add(id);
+        codes.put(id, c);
+        return c;
+    }
+
+    private long scan(FileChannel ch, SweepConsumer sink) throws IOException {
+        long size = ch.size();
+        if (size == 0) {
+            return 0;
+        }
+        return decodeAll(ch.map(FileChannel.MapMode.READ_ONLY, 0, size), sink);
+    }
+
+    /** 顺序校验并解码，repeat 记录展开为上一条的名单；返回最后一条有效记录的结尾 */
+    private long decodeAll(ByteBuffer m, SweepConsumer sink) {
+        int pos = 0;
+        int limit = m.limit();
+        int[] prev = null;
+        CRC32C crc = new CRC32C();
+        while (pos + HEADER <= limit) {
+            int len = m.getInt(pos);
+            if (len <= 0 || len > MAX_PAYLOAD || pos + HEADER + len > limit) break;
+            ByteBuffer p = m.slice(pos + HEADER, len);
+            crc.reset();
+            crc.update(p.duplicate());
+            if ((int) crc.getValue() != m.getInt(pos + 4)) break;
+            long ts = SeriesFile.Varints.get(p);
+            long head = SeriesFile.Varints.get(p);
+            int[] ids;
+            if ((head & 1) != 0) {
+                ids = prev == null ? new int[0] : prev;
+            } else {
+                int n = (int) (head >>> 1);
+                ids = new int[n];
+                boolean ok = true;
+                for (int i = 0; i < n; i++) {
+                    ids[i] = (int) SeriesFile.Varints.get(p);
+                    ok &= ids[i] < dict.size();
+                }
+                // 字典缺行（字典文件丢失等）：视为损坏
+                if (!ok) break;
+            }
+            sink.accept(ts, ids);
+            prev = ids;
+            pos += HEADER + len;
+        }
+        return pos;
+    }
+}
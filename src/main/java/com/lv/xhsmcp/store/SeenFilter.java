@@ -0,0 +1,354 @@
+package com.lv.xhsmcp.store;
+
+import com.lv.xhsmcp.model.Comment;
+import com.lv.xhsmcp.model.CommentList;
+import com.lv.xhsmcp.util.DataPaths;
+import com.lv.xhsmcp.xhs.StatsSource;
+import io.micrometer.common.util.StringUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 已处理 id 的持久化去重过滤器：按命名空间（笔记/评论/用户）各一个可扩展 Bloom 过滤器
+ * <p>
+ * - 第 i 级容量 n0·2^i、误判率 p0·(1/2)^i（p0 = 目标误判率 / 2），总误判率不超过目标值；
+ *   当前级写满后追加新的一级，已有位不动
+ * - 每级一个内存映射文件（数据目录 seen/&lt;ns&gt;.&lt;i&gt;.bloom），写入直接落在映射页上，定期 force
+ * - 只会误报“已见过”，不会漏报；默认 1e-3 误判率时第一级 p0 = 5e-4，约 15.8 bit/id（每百万 id 约 1.98MB），
+ *   此后每级误判率减半、每 id 多约 1.44 bit
+ * - 笔记详情、评论、用户主页写入 {@link NoteStore} 时自动登记（详情抓过才算“处理过”，卡片不算）
+ */
+@Slf4j
+@Service
+public class SeenFilter implements StoreListener, StatsSource {
+    /* ===================== 常量 ===================== */
+    public static final String NOTE = "note";
+    public static final String COMMENT = "comment";
+    public static final String USER = "user";
+
+    private static final int MAGIC = 0x58534246; // "XSBF"
+    private static final int VERSION = 1;
+    private static final int HEADER = 64;
+    private static final int H_MAGIC = 0, H_VERSION = 4, H_BITS = 8, H_K = 16, H_CAPACITY = 24, H_COUNT = 32;
+    private static final double LN2_SQ = Math.log(2) * Math.log(2);
+    private static final long FLUSH_SECONDS = 30;
+
+    @Value("${xhs.seen.enabled:true}")
+    private boolean enabled;
+    @Value("${xhs.seen.fp-rate:0.001}")
+    private double fpRate;
+    @Value("${xhs.seen.initial-capacity:1000000}")
+    private long initialCapacity;
+
+    @Resource
+    private NoteStore noteStore;
+
+    private Path dir;
+    private final Map<String, Filter> filters = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "seen-filter");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        dir = DataPaths.dir("seen");
+        for (String ns : List.of(NOTE, COMMENT, USER)) {
+            try {
+                filters.put(ns, Filter.open(dir, ns, initialCapacity, fpRate / 2));
+            } catch (IOException e) {
+                log.error("Seen filter open failed. ns={}, err={}", ns, e.getMessage(), e);
+            }
+        }
+        noteStore.addListener(this);
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_SECONDS, FLUSH_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    /* =============== 查询 / 登记 =============== */
+
+    /** 可能见过（有极小误报）；未启用时恒为 false */
+    public boolean mightContain(String ns, String id) {
+        Filter f = filters.get(ns);
+        return f != null && StringUtils.isNotBlank(id) && f.contains(key(id));
+    }
+
+    /** 登记；此前未见过返回 true */
+    public boolean add(String ns, String id) {
+        Filter f = filters.get(ns);
+        if (f == null || StringUtils.isBlank(id)) {
+            return false;
+        }
+        try {
+            return f.add(key(id), dir);
+        } catch (IOException e) {
+            log.warn("Seen filter grow failed. ns={}, err={}", ns, e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void onSaved(String kind, String id, Object value) {
+        switch (kind) {
+            case NoteStore.DETAIL -> add(NOTE, id);
+            case NoteStore.USER -> add(USER, id);
+            case NoteStore.COMMENTS -> addComments(((CommentList) value).getList());
+            default -> {
+                // 卡片只是列表里出现过，不算处理过
+            }
+        }
+    }
+
+    private void addComments(List<Comment> list) {
+        if (list == null) return;
+        for (Comment c : list) {
+            if (c == null) continue;
+            add(COMMENT, c.getId());
+            addComments(c.getSubComments());
+        }
+    }
+
+    private static long key(String id) {
+        return MappedIndex.hash(id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void flush() {
+        filters.values().forEach(Filter::force);
+    }
+
+    /* =============== 指标 =============== */
+
+    @Override
+    public String statsName() {
+        return "seen";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("targetFpRate", fpRate);
+        filters.forEach((ns, f) -> out.put(ns, f.stats()));
+        return out;
+    }
+
+    /* =============== 可扩展 Bloom 过滤器 =============== */
+
+    private static final class Filter {
+        final String ns;
+        final long n0;
+        final double p0;
+        /** 写时复制，contains 无锁遍历 */
+        volatile List<Stage> stages;
+        final ReentrantLock lock = new ReentrantLock();
+
+        private Filter(String ns, long n0, double p0, List<Stage> stages) {
+            this.ns = ns;
+            this.n0 = n0;
+            this.p0 = p0;
+            this.stages = stages;
+        }
+
+        static Filter open(Path dir, String ns, long n0, double p0) throws IOException {
+            List<Stage> stages = new ArrayList<>();
+            for (int i = 0; ; i++) {
+                Path p = dir.resolve(ns + "." + i + ".bloom");
+                if (!Files.exists(p)) break;
+                Stage s = Stage.open(p);
+                if (s == null) {
+                    // 损坏的一级及其后各级丢弃（只会少记，不会误判）
+                    log.warn("Seen filter stage unreadable, discarded. file={}", p);
+                    for (int j = i; Files.deleteIfExists(dir.resolve(ns + "." + j + ".bloom")); j++) ;
+                    break;
+                }
+                stages.add(s);
+            }
+            Filter f = new Filter(ns, n0, p0, stages);
+            if (stages.isEmpty()) {
+                f.stages = List.of(Stage.create(dir.resolve(ns + ".0.bloom"), n0, p0));
+            }
+            log.info("Seen filter opened. ns={}, stages={}, count={}", ns, f.stages.size(), f.count());
+            return f;
+        }
+
+        boolean contains(long h) {
+            for (Stage s : stages) {
+                if (s.contains(h)) return true;
+            }
+            return false;
+        }
+
+        boolean add(long h, Path dir) throws IOException {
+            lock.lock();
+            try {
+                if (contains(h)) {
+                    return false;
+                }
+                List<Stage> cur = stages;
+                Stage last = cur.get(cur.size() - 1);
+                if (last.count() >= last.capacity) {
+                    int i = cur.size();
+                    last.force();
+                    last = Stage.create(dir.resolve(ns + "." + i + ".bloom"), n0 << i, p0 / (1L << i));
+                    List<Stage> next = new ArrayList<>(cur);
+                    next.add(last);
+                    stages = List.copyOf(next);
+                    log.info("Seen filter grown. ns={}, stages={}, capacity={}", ns, next.size(), last.capacity);
+                }
+                last.add(h);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long count() {
+            long c = 0;
+            for (Stage s : stages) c += s.count();
+            return c;
+        }
+
+        void force() {
+            for (Stage s : stages) s.force();
+        }
+
+        Map<String, Object> stats() {
+            long bytes = 0;
+            double fp = 1;
+            for (Stage s : stages) {
+                bytes += s.bits / 8;
+                fp *= 1 - s.estimatedFp();
+            }
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("count", count());
+            m.put("stages", stages.size());
+            m.put("bytes", bytes);
+            m.put("estimatedFpRate", Math.round((1 - fp) * 1e7) / 1e7);
+            return m;
+        }
+    }
+
+    /** 一级 Bloom 过滤器：64 字节头 + 位数组，整体内存映射 */
+    private static final class Stage {
+        final MappedByteBuffer buf;
+        final long bits;
+        final int k;
+        final long capacity;
+
+        private Stage(MappedByteBuffer buf) {
+            this.buf = buf;
+            this.bits = buf.getLong(H_BITS);
+            this.k = buf.getInt(H_K);
+            this.capacity = buf.getLong(H_CAPACITY);
+        }
+
+        static Stage create(Path p, long capacity, double fp) throws IOException {
+            long bits = (long) Math.ceil(capacity * Math.log(1 / fp) / LN2_SQ);
+            bits = (bits + 63) & ~63L;
+            int k = Math.max(1, (int) Math.round(Math.log(1 / fp) / Math.log(2)));
+            if (HEADER + bits / 8 > Integer.MAX_VALUE) {
+                throw new IOException("bloom stage too large: " + bits + " bits");
+            }
+            Path tmp = p.resolveSibling(p.getFileName() + ".tmp");
+            Files.deleteIfExists(tmp);
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + bits / 8);
+                b.putInt(H_MAGIC, MAGIC);
+                b.putInt(H_VERSION, VERSION);
+                b.putLong(H_BITS, bits);
+                b.putInt(H_K, k);
+                b.putLong(H_CAPACITY, capacity);
+                b.force();
+            }
+            try {
+                Files.move(tmp, p, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return open(p);
+        }
+
+        /** 头部不合法返回 null */
+        static Stage open(Path p) throws IOException {
+            try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                if (ch.size() < HEADER) return null;
+                ByteBuffer head = ByteBuffer.allocate(HEADER);
+                ch.read(head, 0);
+                long bits = head.getLong(H_BITS);
+                if (head.getInt(H_MAGIC) != MAGIC || head.getInt(H_VERSION) != VERSION || bits <= 0
+                        || (bits & 63) != 0 || ch.size() != HEADER + bits / 8) {
+                    return null;
+                }
+                return new Stage(ch.map(FileChannel.MapMode.READ_WRITE, 0, ch.size()));
+            }
+        }
+
+        /** Kirsch–Mitzenmacher 双重哈希：g_i = h1 + i·h2 */
+        boolean contains(long h) {
+            long h2 = mix(h);
+            for (int i = 0; i < k; i++) {
+                long bit = Math.floorMod(h + i * h2, bits);
+                if ((buf.getLong(HEADER + (int) (bit >>> 6) * 8) & (1L << (bit & 63))) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** 调用方持有 Filter.lock */
+        void add(long h) {
+            long h2 = mix(h);
+            for (int i = 0; i < k; i++) {
+                long bit = Math.floorMod(h + i * h2, bits);
+                int at = HEADER + (int) (bit >>> 6) * 8;
+                buf.putLong(at, buf.getLong(at) | (1L << (bit & 63)));
+            }
+            buf.putLong(H_COUNT, buf.getLong(H_COUNT) + 1);
+        }
+
+        long count() {
+            return buf.getLong(H_COUNT);
+        }
+
+        void force() {
+            buf.force();
+        }
+
+        /** (1 - e^(-kn/m))^k */
+        double estimatedFp() {
+            return Math.pow(1 - Math.exp(-(double) k * count() / bits), k);
+        }
+
+        private static long mix(long h) {
+            long x = Long.rotateLeft(h, 31) * 0x9E3779B97F4A7C15L;
+            x ^= x >>> 29;
+            return x | 1;
+        }
+    }
+}
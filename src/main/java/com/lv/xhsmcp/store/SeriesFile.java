@@ -0,0 +1,310 @@
+package com.lv.xhsmcp.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * 单条笔记的互动数时间序列：列式块文件 + 行式尾部文件
+ * <pre>
+ * &lt;id&gt;.ts   块序列：int payloadLength | int crc32c(payload) | payload
+ *            payload = varint count | byte zeroMask | 各列：首值 + 差分（时间列为二阶差分），zigzag varint
+ *            zeroMask 第 c 位表示第 c 列差分全为 0，该列只存首值
+ * &lt;id&gt;.tail 未封块的样本，定长行：long ts | long × METRICS | byte approxMask
+ * </pre>
+ * - 尾部攒满 {@value #BLOCK_SAMPLES} 条后编码成块追加到 .ts 并 force，再清空尾部
+ * - 封块后、清空尾部前崩溃：打开时丢弃时间不晚于最后一块的尾部行；写一半的块/行在打开时截掉
+ * - 按分钟采样时每条样本约 4~5 字节（千条笔记一天约 6MB）
+ * <p>
+ * 非线程安全，由调用方按笔记加锁。
+ */
+public final class SeriesFile {
+    /* ===================== 常量 ===================== */
+    /** 点赞、收藏、评论、分享 */
+    public static final int METRICS = 4;
+    static final int BLOCK_SAMPLES = 128;
+    private static final int COLUMNS = METRICS + 2;   // ts | metrics | approxMask
+    private static final int ROW = 8 + 8 * METRICS + 1;
+    private static final int BLOCK_HEADER = 8;
+    private static final int MAX_PAYLOAD = 1 << 20;
+
+    /**
+     * @param values     各项计数，顺序见 {@link #METRICS}
+     * @param approxMask 第 i 位表示 values[i] 由“1.2万”之类的约数解析而来
+     */
+    public record Sample(long ts, long[] values, int approxMask) {}
+
+    private final Path blocks;
+    private final Path tail;
+    private long blocksEnd;
+    private long lastBlockTs = Long.MIN_VALUE;
+    private Sample lastSealed;
+    private final List<Sample> pending = new ArrayList<>();
+
+    private SeriesFile(Path blocks, Path tail) {
+        this.blocks = blocks;
+        this.tail = tail;
+    }
+
+    /** 打开（不存在则视为空序列），并完成崩溃恢复 */
+    public static SeriesFile open(Path dir, String id) throws IOException {
+        SeriesFile f = new SeriesFile(dir.resolve(id + ".ts"), dir.resolve(id + ".tail"));
+        f.recover();
+        return f;
+    }
+
+    private void recover() throws IOException {
+        if (Files.exists(blocks)) {
+            try (FileChannel ch = FileChannel.open(blocks, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                Sample[] lastS = {null};
+                long end = scan(ch, s -> lastS[0] = s);
+                if (end < ch.size()) {
+                    ch.truncate(end);
+                }
+                blocksEnd = end;
+                lastSealed = lastS[0];
+                lastBlockTs = lastSealed == null ? Long.MIN_VALUE : lastSealed.ts();
+            }
+        }
+        if (Files.exists(tail)) {
+            try (FileChannel ch = FileChannel.open(tail, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long size = ch.size() - ch.size() % ROW;
+                ByteBuffer b = ByteBuffer.allocate((int) size);
+                while (b.hasRemaining() && ch.read(b, b.position()) >= 0) ;
+                b.flip();
+                while (b.remaining() >= ROW) {
+                    long ts = b.getLong();
+                    long[] v = new long[METRICS];
+                    for (int i = 0; i < METRICS; i++) v[i] = b.getLong();
+                    int mask = b.get() & 0xff;
+                    if (ts > lastBlockTs) {
+                        pending.add(new Sample(ts, v, mask));
+                    }
+                }
+            }
+            rewriteTail();
+        }
+    }
+
+    /** 追加一条样本；时间须晚于最后一条 */
+    public void append(Sample s) throws IOException {
+        Sample last = last();
+        if (last != null && s.ts() <= last.ts()) {
+            throw new IllegalArgumentException("sample ts must increase");
+        }
+        ByteBuffer row = ByteBuffer.allocate(ROW);
+        row.putLong(s.ts());
+        for (int i = 0; i < METRICS; i++) row.putLong(s.values()[i]);
+        row.put((byte) s.approxMask()).flip();
+        try (FileChannel ch = FileChannel.open(tail, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (row.hasRemaining()) ch.write(row);
+        }
+        pending.add(s);
+        if (pending.size() >= BLOCK_SAMPLES) {
+            seal();
+        }
+    }
+
+    /** 最后一条样本，空序列返回 null */
+    public Sample last() {
+        return pending.isEmpty() ? lastSealed : pending.get(pending.size() - 1);
+    }
+
+    /** [from, to] 内的样本，按时间升序；封存块走只读内存映射 */
+    public List<Sample> read(long from, long to) throws IOException {
+        List<Sample> out = new ArrayList<>();
+        if (blocksEnd > 0 && from <= lastBlockTs) {
+            try (FileChannel ch = FileChannel.open(blocks, StandardOpenOption.READ)) {
+                MappedByteBuffer m = ch.map(FileChannel.MapMode.READ_ONLY, 0, blocksEnd);
+                decodeAll(m, s -> {
+                    if (s.ts() >= from && s.ts() <= to) out.add(s);
+                });
+            }
+        }
+        for (Sample s : pending) {
+            if (s.ts() >= from && s.ts() <= to) out.add(s);
+        }
+        return out;
+    }
+
+    public long bytes() {
+        return blocksEnd + (long) pending.size() * ROW;
+    }
+
+    /* =============== 封块 =============== */
+
+    private void seal() throws IOException {
+        byte[] payload = encode(pending);
+        ByteBuffer b = ByteBuffer.allocate(BLOCK_HEADER + payload.length);
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        b.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        try (FileChannel ch = FileChannel.open(blocks, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ch.position(blocksEnd);
+            while (b.hasRemaining()) ch.write(b);
+            ch.force(false);
+        }
+        blocksEnd += BLOCK_HEADER + payload.length;
+        lastSealed = pending.get(pending.size() - 1);
+        lastBlockTs = lastSealed.ts();
+        pending.clear();
+        rewriteTail();
+    }
+
+    private void rewriteTail() throws IOException {
+        if (pending.isEmpty()) {
+            Files.deleteIfExists(tail);
+            return;
+        }
+        ByteBuffer b = ByteBuffer.allocate(pending.size() * ROW);
+        for (Sample s : pending) {
+            b.putLong(s.ts());
+            for (int i = 0; i < METRICS; i++) b.putLong(s.values()[i]);
+            b.put((byte) s.approxMask());
+        }
+        b.flip();
+        try (FileChannel ch = FileChannel.open(tail, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (b.hasRemaining()) ch.write(b);
+        }
+    }
+
+    /* =============== 编解码 =============== */
+
+    private static long column(Sample s, int c) {
+        if (c == 0) return s.ts();
+        if (c <= METRICS) return s.values()[c - 1];
+        return s.approxMask();
+    }
+
+    static byte[] encode(List<Sample> samples) {
+        int n = samples.size();
+        long[][] deltas = new long[COLUMNS][n];
+        int zeroMask = 0;
+        for (int c = 0; c < COLUMNS; c++) {
+            boolean zero = true;
+            long prev = column(samples.get(0), c);
+            long prevDelta = 0;
+            for (int i = 1; i < n; i++) {
+                long v = column(samples.get(i), c);
+                long d = v - prev;
+                // 时间列存二阶差分：近似等间隔采样时接近 0
+                deltas[c][i] = c == 0 ? d - prevDelta : d;
+                zero &= deltas[c][i] == 0;
+                prev = v;
+                prevDelta = d;
+            }
+            if (zero) zeroMask |= 1 << c;
+        }
+        Varints out = new Varints(16 + n * COLUMNS);
+        out.put(n);
+        out.buf[out.len++] = (byte) zeroMask;
+        for (int c = 0; c < COLUMNS; c++) {
+            out.put(zigzag(column(samples.get(0), c)));
+            if ((zeroMask & (1 << c)) != 0) continue;
+            for (int i = 1; i < n; i++) out.put(zigzag(deltas[c][i]));
+        }
+        return Arrays.copyOf(out.buf, out.len);
+    }
+
+    static void decode(ByteBuffer p, Consumer<Sample> sink) {
+        int n = (int) Varints.get(p);
+        int zeroMask = p.get() & 0xff;
+        long[][] cols = new long[COLUMNS][n];
+        for (int c = 0; c < COLUMNS; c++) {
+            long v = unzigzag(Varints.get(p));
+            cols[c][0] = v;
+            boolean zero = (zeroMask & (1 << c)) != 0;
+            long d = 0;
+            for (int i = 1; i < n; i++) {
+                long x = zero ? 0 : unzigzag(Varints.get(p));
+                if (c == 0) {
+                    d += x;
+                    v += d;
+                } else {
+                    v += x;
+                }
+                cols[c][i] = v;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            long[] v = new long[METRICS];
+            for (int m = 0; m < METRICS; m++) v[m] = cols[m + 1][i];
+            sink.accept(new Sample(cols[0][i], v, (int) cols[COLUMNS - 1][i]));
+        }
+    }
+
+    /** 顺序校验并解码所有块，返回最后一个有效块的结尾位置 */
+    private static long scan(FileChannel ch, Consumer<Sample> sink) throws IOException {
+        long size = ch.size();
+        if (size == 0) {
+            return 0;
+        }
+        MappedByteBuffer m = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        return decodeAll(m, sink);
+    }
+
+    private static long decodeAll(ByteBuffer m, Consumer<Sample> sink) {
+        int pos = 0;
+        int limit = m.limit();
+        CRC32C crc = new CRC32C();
+        while (pos + BLOCK_HEADER <= limit) {
+            int len = m.getInt(pos);
+            if (len <= 0 || len > MAX_PAYLOAD || pos + BLOCK_HEADER + len > limit) break;
+            ByteBuffer p = m.slice(pos + BLOCK_HEADER, len);
+            crc.reset();
+            crc.update(p.duplicate());
+            if ((int) crc.getValue() != m.getInt(pos + 4)) break;
+            decode(p, sink);
+            pos += BLOCK_HEADER + len;
+        }
+        return pos;
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /** 可增长字节缓冲 + LEB128 变长整数 */
+    static final class Varints {
+        byte[] buf;
+        int len;
+
+        Varints(int cap) {
+            buf = new byte[Math.max(16, cap)];
+        }
+
+        void put(long v) {
+            if (len + 10 > buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+            while ((v & ~0x7FL) != 0) {
+                buf[len++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[len++] = (byte) v;
+        }
+
+        static long get(ByteBuffer b) {
+            long v = 0;
+            int shift = 0;
+            byte x;
+            do {
+                x = b.get();
+                v |= (long) (x & 0x7F) << shift;
+                shift += 7;
+            } while (x < 0 && shift < 64);
+            return v;
+        }
+    }
+}
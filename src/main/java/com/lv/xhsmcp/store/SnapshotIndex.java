@@ -0,0 +1,224 @@
+package com.lv.xhsmcp.store;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 随 {@link NoteStore} 增量更新、定期快照到数据目录的内存索引（{@link FullTextIndex}、{@link NearDupIndex}）的公共部分
+ * <p>
+ * - 子类的读写都在 {@link #rw} 下进行，每次修改调用 {@link #changedLocked(long)}；版本与已落盘的不同即需要快照
+ * - 快照时读锁内只复制状态（{@link #snapshotLocked()}），序列化与写文件在锁外，先写临时文件再原子替换
+ * - 快照头记录已应用记录的最大写入时间：启动时有快照则只回放 NoteStore 中此后写入的记录（补上快照之后、
+ *   停机之前的写入，以及其他节点同步来的记录），没有快照则全量回放
+ */
+@Slf4j
+abstract class SnapshotIndex implements StoreListener {
+    /* ===================== 常量 ===================== */
+    /** 追赶回放向前多取的时长：覆盖节点间时钟偏差与并发写入的先后；重复回放的记录只刷新时间 */
+    private static final long REPLAY_SLACK_MS = 5 * 60_000L;
+
+    /** 锁外写出已复制好的快照内容 */
+    protected interface Snapshot {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    protected final ReentrantReadWriteLock rw = new ReentrantReadWriteLock();
+    private final String label;
+    private final int magic;
+    private final int formatVersion;
+    private final List<Map.Entry<String, Class<?>>> replayKinds;
+    private final ScheduledExecutorService maintenance;
+
+    /** 每次修改加一（写锁内）；与已落盘的版本不同即需要快照 */
+    private long version;
+    /** 已应用记录的最大写入时间（写锁内） */
+    private long highWater;
+    private volatile long persistedVersion;
+    private Path file;
+
+    /**
+     * @param threadName  维护线程名
+     * @param label       日志中的索引名
+     * @param replayKinds 回放的记录种类及其模型类型，按顺序回放
+     */
+    protected SnapshotIndex(String threadName, String label, int magic, int formatVersion,
+                            List<Map.Entry<String, Class<?>>> replayKinds) {
+        this.label = label;
+        this.magic = magic;
+        this.formatVersion = formatVersion;
+        this.replayKinds = replayKinds;
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, threadName);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /* =============== 子类实现 =============== */
+
+    /** 应用一条记录；ts 为其写入时间 */
+    protected abstract void apply(String kind, String id, Object value, long ts);
+
+    /** 持有读锁：复制写出快照所需的状态，返回的内容不得再引用会被原地修改的对象 */
+    protected abstract Snapshot snapshotLocked();
+
+    /** 持有写锁：读入快照内容；格式不符返回 false（此时不得已修改状态） */
+    protected abstract boolean readLocked(DataInputStream in) throws IOException;
+
+    /** 持有写锁：清空状态 */
+    protected abstract void clearLocked();
+
+    /** 持有写锁：定期维护（如作废过多时重建） */
+    protected abstract void maintainLocked();
+
+    /* =============== 生命周期 =============== */
+
+    /** 加载快照、开始接收写入通知，并在维护线程上回放与定期快照 */
+    protected void open(NoteStore noteStore, Path file, long persistIntervalSeconds) {
+        this.file = file;
+        long since = load();
+        noteStore.addListener(this);
+        maintenance.execute(() -> replay(noteStore, since));
+        maintenance.scheduleWithFixedDelay(this::maintain, persistIntervalSeconds, persistIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    protected void close() {
+        maintenance.shutdownNow();
+        persist();
+    }
+
+    /** 持有写锁；ts 为该修改对应记录的写入时间，重建等不对应记录的修改传 0 */
+    protected void changedLocked(long ts) {
+        version++;
+        if (ts > highWater) {
+            highWater = ts;
+        }
+    }
+
+    /* =============== 回放 / 维护 / 持久化 =============== */
+
+    /** since &lt; 0 表示没有快照，全量回放 */
+    private void replay(NoteStore noteStore, long since) {
+        long t0 = System.currentTimeMillis();
+        long from = since < 0 ? Long.MIN_VALUE : since - REPLAY_SLACK_MS;
+        long[] n = {0};
+        for (Map.Entry<String, Class<?>> k : replayKinds) {
+            String kind = k.getKey();
+            noteStore.forEach(kind, k.getValue(), from, (id, s) -> {
+                apply(kind, id, s.value(), s.storedAt());
+                n[0]++;
+            });
+        }
+        log.info("{} replayed from note store. full={}, records={}, elapsedMs={}",
+                label, since < 0, n[0], System.currentTimeMillis() - t0);
+    }
+
+    private void maintain() {
+        try {
+            rw.writeLock().lock();
+            try {
+                maintainLocked();
+            } finally {
+                rw.writeLock().unlock();
+            }
+            persist();
+        } catch (Exception e) {
+            log.warn("{} maintenance failed. err={}", label, e.getMessage(), e);
+        }
+    }
+
+    /** 快照：头部为 magic、格式版本与已应用的最大写入时间，其后为子类内容；维护线程与停机时可能并发调用 */
+    private synchronized void persist() {
+        if (file == null) {
+            return;
+        }
+        long v;
+        long hw;
+        Snapshot snapshot;
+        rw.readLock().lock();
+        try {
+            v = version;
+            if (v == persistedVersion) {
+                return;
+            }
+            hw = highWater;
+            snapshot = snapshotLocked();
+        } finally {
+            rw.readLock().unlock();
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                out.writeInt(magic);
+                out.writeInt(formatVersion);
+                out.writeLong(hw);
+                snapshot.write(out);
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            persistedVersion = v;
+        } catch (IOException e) {
+            log.warn("{} persist failed. file={}, err={}", label, file, e.getMessage());
+        }
+    }
+
+    /** @return 快照中已应用的最大写入时间；没有可用快照时返回 -1 */
+    private long load() {
+        if (!Files.exists(file)) {
+            return -1;
+        }
+        rw.writeLock().lock();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != magic || in.readInt() != formatVersion) {
+                log.warn("{} snapshot has unknown format, ignored. file={}", label, file);
+                return -1;
+            }
+            long hw = in.readLong();
+            if (!readLocked(in)) {
+                log.warn("{} snapshot has unknown format, ignored. file={}", label, file);
+                return -1;
+            }
+            highWater = hw;
+            version = persistedVersion = 1;
+            return hw;
+        } catch (Exception e) {
+            log.warn("{} snapshot unreadable, starting empty. file={}, err={}", label, file, e.getMessage());
+            clearLocked();
+            return -1;
+        } finally {
+            rw.writeLock().unlock();
+        }
+    }
+
+    /* =============== 序列化工具 =============== */
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) return null;
+        byte[] b = in.readNBytes(n);
+        if (b.length != n) throw new EOFException();
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
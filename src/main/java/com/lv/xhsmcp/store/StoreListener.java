@@ -0,0 +1,15 @@
+package com.lv.xhsmcp.store;
+
+/**
+ * {@link NoteStore} 写入通知（全文索引等派生数据据此增量更新）
+ * <p>
+ * 在写入线程上同步调用，实现需足够轻量且自行处理异常；存储未启用时仍会通知。
+ */
+public interface StoreListener {
+
+    /**
+     * @param kind  {@link NoteStore#FEED} 等
+     * @param value 对应的模型对象（Feed、FeedDetailResponse、CommentList、UserProfileResponse）
+     */
+    void onSaved(String kind, String id, Object value);
+}
@@ -0,0 +1,84 @@
+package com.lv.xhsmcp.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * 面向中日韩文本的切词：CJK 连续片段切成重叠二元组（单字片段保留单字），字母数字片段整词小写
+ * <p>
+ * 先做 NFKC 归一化（全角转半角等），并去掉小红书表情/话题标记，如 "[笑哭R]"、"[话题]"。
+ * 建索引时用 {@link #tokenizeForIndex}，多字片段的每个字再各出一个单字词，单字查询（如 "猫"）才能命中 "小猫咪"。
+ */
+public final class CjkTokenizer {
+    /* ===================== 常量 ===================== */
+    private static final Pattern XHS_MARKUP = Pattern.compile("\\[[^\\[\\]\\s]{1,8}]");
+    private static final int MAX_WORD = 32;
+
+    private CjkTokenizer() {}
+
+    /** 查询用：CJK 只出二元组（单字片段出单字） */
+    public static List<String> tokenize(String text) {
+        return tokenize(text, false);
+    }
+
+    /** 建索引用：在 {@link #tokenize} 的基础上，多字 CJK 片段的每个字再各出一个单字词 */
+    public static List<String> tokenizeForIndex(String text) {
+        return tokenize(text, true);
+    }
+
+    private static List<String> tokenize(String text, boolean unigrams) {
+        List<String> out = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return out;
+        }
+        String s = XHS_MARKUP.matcher(Normalizer.normalize(text, Normalizer.Form.NFKC)).replaceAll(" ")
+                .toLowerCase(Locale.ROOT);
+        int n = s.length();
+        int i = 0;
+        while (i < n) {
+            int cp = s.codePointAt(i);
+            if (isCjk(cp)) {
+                int start = i;
+                while (i < n && isCjk(s.codePointAt(i))) i += Character.charCount(s.codePointAt(i));
+                bigrams(s.substring(start, i), unigrams, out);
+            } else if (Character.isLetterOrDigit(cp)) {
+                int start = i;
+                while (i < n) {
+                    int c = s.codePointAt(i);
+                    if (!Character.isLetterOrDigit(c) || isCjk(c)) break;
+                    i += Character.charCount(c);
+                }
+                String w = s.substring(start, i);
+                out.add(w.length() > MAX_WORD ? w.substring(0, MAX_WORD) : w);
+            } else {
+                i += Character.charCount(cp);
+            }
+        }
+        return out;
+    }
+
+    private static void bigrams(String run, boolean unigrams, List<String> out) {
+        int[] cps = run.codePoints().toArray();
+        if (cps.length == 1) {
+            out.add(run);
+            return;
+        }
+        for (int k = 0; k + 1 < cps.length; k++) {
+            out.add(new String(cps, k, 2));
+        }
+        if (unigrams) {
+            for (int k = 0; k < cps.length; k++) {
+                out.add(new String(cps, k, 1));
+            }
+        }
+    }
+
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript sc = Character.UnicodeScript.of(cp);
+        return sc == Character.UnicodeScript.HAN || sc == Character.UnicodeScript.HIRAGANA
+                || sc == Character.UnicodeScript.KATAKANA || sc == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,50 @@
+package com.lv.xhsmcp.util;
+
+/**
+ * 解析页面上的计数文本："1.2万"、"3千"、"10w+"、"1,234" -> long
+ * <p>
+ * 空值、"赞"/"评论"等占位文本按 0 处理。
+ */
+public final class CountParser {
+    private CountParser() {}
+
+    public static long parse(String text) {
+        if (text == null) {
+            return 0;
+        }
+        String s = text.trim().replace(",", "").replace("+", "");
+        if (s.isEmpty()) {
+            return 0;
+        }
+        long unit = 1;
+        char last = Character.toLowerCase(s.charAt(s.length() - 1));
+        if (last == '万' || last == 'w') {
+            unit = 10_000;
+        } else if (last == '千' || last == 'k') {
+            unit = 1_000;
+        } else if (last == '亿') {
+            unit = 100_000_000;
+        }
+        if (unit != 1) {
+            s = s.substring(0, s.length() - 1).trim();
+        }
+        try {
+            return Math.round(Double.parseDouble(s) * unit);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /** 是否为约数（带 万/千/亿/w/k 单位或 "+"），这类文本解析出的值只精确到显示位数 */
+    public static boolean isApproximate(String text) {
+        if (text == null) {
+            return false;
+        }
+        String s = text.trim();
+        if (s.isEmpty()) {
+            return false;
+        }
+        char last = Character.toLowerCase(s.charAt(s.length() - 1));
+        return last == '+' || last == '万' || last == 'w' || last == '千' || last == 'k' || last == '亿';
+    }
+}
@@ -0,0 +1,36 @@
+package com.lv.xhsmcp.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 本地数据目录（与 CookieStore 一致：优先环境变量，兜底用户目录）
+ * <p>
+ * Docker 中指向挂载卷，重启后数据仍在。
+ */
+public final class DataPaths {
+    private static final Path ROOT;
+    static {
+        String env = System.getenv("XHS_DATA_DIR");
+        if (env == null || env.isBlank()) env = System.getProperty("user.home") + "/.xhs/data";
+        ROOT = Paths.get(env).toAbsolutePath();
+    }
+
+    private DataPaths() {}
+
+    public static Path root() { return ROOT; }
+
+    /** 返回 root 下的子目录，不存在则创建 */
+    public static Path dir(String name) {
+        Path p = ROOT.resolve(name);
+        try {
+            Files.createDirectories(p);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return p;
+    }
+}
@@ -0,0 +1,56 @@
+package com.lv.xhsmcp.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 整表 JSON 的本地存储（定时发布任务、博主订阅、互动数追踪、趋势关键词等小表）
+ * <p>
+ * 先写临时文件再原子替换，避免写一半时崩溃导致文件损坏；文件系统不支持原子移动时退化为普通替换。
+ */
+public class JsonListStore<T> {
+    private final Path path;
+    private final TypeReference<List<T>> type;
+    private final String label;
+
+    /**
+     * @param type  列表类型，如 {@code new TypeReference<List<CreatorWatch>>() {}}
+     * @param label 出错信息中的表名，如 "博主订阅"
+     */
+    public JsonListStore(Path path, TypeReference<List<T>> type, String label) {
+        this.path = path.toAbsolutePath();
+        this.type = type;
+        this.label = label;
+    }
+
+    public List<T> read() {
+        try {
+            if (!Files.exists(path)) return List.of();
+            return Json.M.readValue(path.toFile(), type);
+        } catch (IOException e) {
+            throw new IllegalStateException("读取" + label + "失败: " + path, e);
+        }
+    }
+
+    public synchronized void write(Collection<T> items) {
+        try {
+            Files.createDirectories(path.getParent());
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            Json.M.writeValue(tmp.toFile(), items);
+            try {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入" + label + "失败: " + path, e);
+        }
+    }
+
+    public Path path() { return path; }
+}
@@ -0,0 +1,97 @@
+package com.lv.xhsmcp.util;
+
+/**
+ * 字符串开放寻址哈希集合（线性探测，容量 2 的幂，负载因子 0.5）
+ * <p>
+ * 只支持插入与查询，专用于抓取去重：比 HashSet 少一层 Node 包装，
+ * 同时缓存哈希值，探测时先比哈希再比字符串。非线程安全。
+ */
+public final class OpenHashSet {
+    private static final int MIN_CAPACITY = 16;
+
+    private String[] keys;
+    private int[] hashes;
+    private int mask;
+    private int size;
+
+    public OpenHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    /** @param expected 预计元素个数，用于预分配避免扩容 */
+    public OpenHashSet(int expected) {
+        int cap = MIN_CAPACITY;
+        while (cap < expected * 2L && cap < (1 << 30)) {
+            cap <<= 1;
+        }
+        alloc(cap);
+    }
+
+    /** 不存在时插入；返回是否为新元素（null 视为已存在） */
+    public boolean add(String key) {
+        if (key == null) {
+            return false;
+        }
+        int h = mix(key.hashCode());
+        int i = h & mask;
+        while (keys[i] != null) {
+            if (hashes[i] == h && keys[i].equals(key)) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        hashes[i] = h;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length << 1);
+        }
+        return true;
+    }
+
+    public boolean contains(String key) {
+        if (key == null) {
+            return false;
+        }
+        int h = mix(key.hashCode());
+        int i = h & mask;
+        while (keys[i] != null) {
+            if (hashes[i] == h && keys[i].equals(key)) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void alloc(int cap) {
+        keys = new String[cap];
+        hashes = new int[cap];
+        mask = cap - 1;
+    }
+
+    private void rehash(int cap) {
+        String[] oldKeys = keys;
+        int[] oldHashes = hashes;
+        alloc(cap);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != null) {
+                int i = oldHashes[j] & mask;
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                hashes[i] = oldHashes[j];
+            }
+        }
+    }
+
+    /** 打散低位，避免 String.hashCode 低位聚集导致长探测链 */
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,22 @@
+package com.lv.xhsmcp.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 线程工厂
+ */
+public final class Threads {
+
+    private Threads() {}
+
+    /** 守护线程，依次命名为 prefix-1、prefix-2 …… */
+    public static ThreadFactory daemon(String prefix) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
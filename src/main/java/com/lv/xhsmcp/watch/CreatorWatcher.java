@@ -0,0 +1,410 @@
+package com.lv.xhsmcp.watch;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.lv.xhsmcp.model.*;
+import com.lv.xhsmcp.schedule.BackgroundScheduler;
+import com.lv.xhsmcp.service.AdmissionController;
+import com.lv.xhsmcp.service.UserProfileService;
+import com.lv.xhsmcp.util.DataPaths;
+import com.lv.xhsmcp.util.JsonListStore;
+import com.lv.xhsmcp.xhs.BizErrorCode;
+import com.lv.xhsmcp.xhs.Result;
+import com.lv.xhsmcp.xhs.StatsSource;
+import io.micrometer.common.util.StringUtils;
+import io.modelcontextprotocol.server.McpSyncServer;
+import io.modelcontextprotocol.spec.McpSchema;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 博主订阅：按自适应间隔检查订阅博主的主页，与上次快照比对，只把新增/变更的笔记推给客户端
+ * <p>
+ * - 所有订阅挂在共享时间轮（{@link BackgroundScheduler}）上，检查由固定数量的 worker 串行执行（每次一个主页页面）；
+ *   挂载、抖动、退避与落盘见 {@link ScheduledSubscriptions}
+ * - 发现更新时间隔减半（不低于订阅间隔的 1/4 及 xhs.watch.min-interval-seconds），
+ *   无更新时间隔乘 1.5（不超过订阅间隔的 8 倍及 xhs.watch.max-interval-seconds）；失败按次数指数退避，同样不超过后者
+ * - 检查以工具名 {@value #ADMISSION_TOOL}（默认 BULK 级）过准入控制，与交互请求按页面池配额分享浏览器；被拒时稍后再查
+ * - 有更新时发 notifications/resources/updated（uri = xhs://creator-watch/{userId}），
+ *   客户端读该资源或调用 watchUpdates 取变更内容
+ * - 首次检查只建立快照，不推送；“变更”指标题或类型变化（点赞数等计数不算）
+ */
+@Slf4j
+@Service
+public class CreatorWatcher extends ScheduledSubscriptions<CreatorWatch> implements StatsSource {
+    /* ===================== 常量 ===================== */
+    public static final String URI_PREFIX = "xhs://creator-watch/";
+    static final String ADMISSION_TOOL = "watchCheck";
+    private static final int MAX_SNAPSHOT = 500;
+    private static final int MAX_UPDATES = 20;
+    private static final double GROW = 1.5;
+
+    @Value("${xhs.watch.enabled:true}")
+    private boolean enabled;
+    @Value("${xhs.watch.default-interval-seconds:3600}")
+    private int defaultInterval;
+    @Value("${xhs.watch.min-interval-seconds:300}")
+    private int minInterval;
+    @Value("${xhs.watch.max-interval-seconds:86400}")
+    private int maxInterval;
+    @Value("${xhs.watch.max-watches:1000}")
+    private int maxWatches;
+    @Value("${xhs.watch.workers:1}")
+    private int workers;
+
+    @Resource
+    private UserProfileService userProfileService;
+    @Resource
+    private AdmissionController admission;
+    @Resource
+    private ObjectProvider<McpSyncServer> mcpServer;
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder changed = new LongAdder();
+    private final LongAdder unchanged = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder notified = new LongAdder();
+
+    public CreatorWatcher() {
+        super(new JsonListStore<>(DataPaths.dir("watch").resolve("creators.json"), new TypeReference<>() {}, "博主订阅"),
+                "watch-worker");
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        restore(workers);
+        log.info("Creator watcher started. watches={}, store={}", items.size(), store.path());
+    }
+
+    @PreDestroy
+    public void stop() {
+        shutdown();
+    }
+
+    /* ===================== 订阅管理 ===================== */
+
+    /**
+     * 新增或更新订阅；新订阅立即做一次检查以建立快照
+     *
+     * @param intervalSeconds 期望检查间隔，为空使用 xhs.watch.default-interval-seconds
+     */
+    public Result<CreatorWatch> watch(String userId, String xsecToken, Integer intervalSeconds) {
+        if (StringUtils.isBlank(userId)) {
+            throw new IllegalArgumentException("userId must not be blank");
+        }
+        if (intervalSeconds != null && intervalSeconds < minInterval) {
+            throw new IllegalArgumentException("intervalSeconds must be >= " + minInterval);
+        }
+        if (!enabled) {
+            return Result.fail(BizErrorCode.WATCH_FAILED, "博主订阅未启用");
+        }
+        int base = Math.min(maxInterval, intervalSeconds == null ? defaultInterval : intervalSeconds);
+        long now = System.currentTimeMillis();
+        CreatorWatch w = items.get(userId);
+        boolean created = false;
+        if (w == null) {
+            if (items.size() >= maxWatches) {
+                return Result.fail(BizErrorCode.WATCH_FAILED, "订阅数已达上限: " + maxWatches);
+            }
+            w = CreatorWatch.builder()
+                    .userId(userId)
+                    .xsecToken(xsecToken)
+                    .baseIntervalSeconds(base)
+                    .intervalSeconds(base)
+                    .nextCheckAt(now)
+                    .checks(0)
+                    .failures(0)
+                    .createdAt(now)
+                    .updates(new ArrayList<>())
+                    .build();
+            CreatorWatch prev = items.putIfAbsent(userId, w);
+            created = prev == null;
+            if (prev != null) {
+                w = prev;
+            }
+        }
+        synchronized (w) {
+            if (StringUtils.isNotBlank(xsecToken)) {
+                w.setXsecToken(xsecToken);
+            }
+            if (!created) {
+                // 已有订阅：按新间隔重新开始自适应
+                w.setBaseIntervalSeconds(base);
+                w.setIntervalSeconds(base);
+                w.setNextCheckAt(Math.min(w.getNextCheckAt(), now + base * 1000L));
+            }
+        }
+        rearm(w);
+        log.info("Creator watched. userId={}, intervalSeconds={}", userId, base);
+        return Result.ok(summary(w), "已订阅，更新将通过资源 " + uri(userId) + " 通知");
+    }
+
+    public Result<Void> unwatch(String userId) {
+        if (remove(userId) == null) {
+            return Result.fail(BizErrorCode.DATA_NOT_FOUND, "订阅不存在: " + userId);
+        }
+        log.info("Creator unwatched. userId={}", userId);
+        return Result.ok("已取消订阅");
+    }
+
+    /** 单个订阅（不含快照与变更内容），不存在返回 null */
+    public CreatorWatch get(String userId) {
+        CreatorWatch w = items.get(userId);
+        return w == null ? null : summary(w);
+    }
+
+    /** 所有订阅（不含快照与变更内容），按下次检查时间排序 */
+    public List<CreatorWatch> list() {
+        List<CreatorWatch> all = new ArrayList<>(items.size());
+        for (CreatorWatch w : items.values()) {
+            all.add(summary(w));
+        }
+        all.sort(Comparator.comparing(CreatorWatch::getNextCheckAt));
+        return all;
+    }
+
+    /**
+     * 指定时间之后发现的变更（最多保留最近 {@value #MAX_UPDATES} 次）
+     *
+     * @return 订阅不存在时为 null
+     */
+    public List<WatchUpdate> updates(String userId, long sinceEpochMs) {
+        CreatorWatch w = items.get(userId);
+        if (w == null) {
+            return null;
+        }
+        synchronized (w) {
+            List<WatchUpdate> out = new ArrayList<>();
+            for (WatchUpdate u : w.getUpdates()) {
+                if (u.getDetectedAt() > sinceEpochMs) out.add(u);
+            }
+            return out;
+        }
+    }
+
+    public static String uri(String userId) {
+        return URI_PREFIX + userId;
+    }
+
+    /* ===================== 检查 ===================== */
+
+    @Override
+    protected void run(String userId) {
+        CreatorWatch w = items.get(userId);
+        if (w == null || !isDue(w)) {
+            return;
+        }
+        String token;
+        synchronized (w) {
+            token = w.getXsecToken();
+        }
+        Result<UserProfileResponse> r;
+        try {
+            r = admission.admit(ADMISSION_TOOL, () -> userProfileService.userProfile(userId, token));
+        } catch (Exception e) {
+            log.warn("Creator watch check failed. userId={}, err={}", userId, e.getMessage());
+            r = Result.fail(BizErrorCode.GET_USER_PROFILE_FAILED, e.getMessage());
+        }
+        if (deferIfBusy(w, r)) {
+            return;
+        }
+        checks.increment();
+
+        WatchUpdate update = null;
+        long delayMs;
+        synchronized (w) {
+            long now = System.currentTimeMillis();
+            w.setLastCheckAt(now);
+            w.setChecks(w.getChecks() + 1);
+            if (!r.isSuccess() || r.getData() == null) {
+                failed.increment();
+                w.setFailures(w.getFailures() + 1);
+                w.setMessage(r.getMessage());
+                delayMs = Math.min(maxIntervalOf(w) * 1000L, backoffMs(w.getIntervalSeconds(), w.getFailures()));
+            } else {
+                w.setFailures(0);
+                w.setMessage(null);
+                if (r.getData().getUserBasicInfo() != null) {
+                    w.setNickname(r.getData().getUserBasicInfo().getNickname());
+                }
+                update = diff(w, r.getData().getFeeds(), now);
+                if (update != null) {
+                    changed.increment();
+                    w.setLastChangeAt(now);
+                    w.setIntervalSeconds(Math.max(minIntervalOf(w), w.getIntervalSeconds() / 2));
+                    w.getUpdates().add(update);
+                    if (w.getUpdates().size() > MAX_UPDATES) {
+                        w.getUpdates().remove(0);
+                    }
+                } else {
+                    unchanged.increment();
+                    w.setIntervalSeconds((int) Math.min(maxIntervalOf(w), (long) (w.getIntervalSeconds() * GROW)));
+                }
+                delayMs = w.getIntervalSeconds() * 1000L;
+            }
+        }
+        reschedule(w, delayMs);
+        if (update != null) {
+            log.info("Creator watch update. userId={}, new={}, changed={}", userId,
+                    update.getNewNotes().size(), update.getChangedNotes().size());
+            notifyUpdated(userId);
+        }
+    }
+
+    /**
+     * 与快照比对并更新快照；首次检查只建快照。无变化返回 null
+     */
+    private WatchUpdate diff(CreatorWatch w, List<Feed> feeds, long now) {
+        if (feeds == null) {
+            feeds = List.of();
+        }
+        boolean baseline = w.getSnapshot() == null;
+        LinkedHashMap<String, Long> snap = baseline ? new LinkedHashMap<>() : w.getSnapshot();
+        List<Feed> added = new ArrayList<>();
+        List<Feed> modified = new ArrayList<>();
+        // 主页按新到旧排列：倒序写入，快照里越新的越靠后，超限时淘汰最早的
+        for (int i = feeds.size() - 1; i >= 0; i--) {
+            Feed f = feeds.get(i);
+            if (f == null || StringUtils.isBlank(f.getId())) continue;
+            long fp = fingerprint(f);
+            Long old = snap.put(f.getId(), fp);
+            if (old == null) {
+                added.add(0, f);
+            } else if (old != fp) {
+                modified.add(0, f);
+            }
+        }
+        Iterator<String> it = snap.keySet().iterator();
+        while (snap.size() > MAX_SNAPSHOT && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+        w.setSnapshot(snap);
+        markDirty();
+        if (baseline || (added.isEmpty() && modified.isEmpty())) {
+            return null;
+        }
+        return WatchUpdate.builder()
+                .userId(w.getUserId())
+                .detectedAt(now)
+                .newNotes(added)
+                .changedNotes(modified)
+                .build();
+    }
+
+    /** 卡片指纹：标题 + 类型（封面 URL 带时效签名，每次都不同，不参与） */
+    private static long fingerprint(Feed f) {
+        NoteCard c = f.getNoteCard();
+        String s = f.getModelType() + '\u0001' + (c == null ? "" : c.getType() + '\u0001' + c.getDisplayTitle());
+        long h = 1125899906842597L;
+        for (int i = 0; i < s.length(); i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h;
+    }
+
+    private void notifyUpdated(String userId) {
+        McpSyncServer server = mcpServer.getIfAvailable();
+        if (server == null) {
+            return;
+        }
+        try {
+            server.notifyResourcesUpdated(new McpSchema.ResourcesUpdatedNotification(uri(userId)));
+            notified.increment();
+        } catch (Exception e) {
+            log.warn("Resource updated notification failed. userId={}, err={}", userId, e.getMessage());
+        }
+    }
+
+    private int minIntervalOf(CreatorWatch w) {
+        return Math.max(minInterval, w.getBaseIntervalSeconds() / 4);
+    }
+
+    private int maxIntervalOf(CreatorWatch w) {
+        return (int) Math.min(maxInterval, w.getBaseIntervalSeconds() * 8L);
+    }
+
+    private static CreatorWatch summary(CreatorWatch w) {
+        synchronized (w) {
+            return w.toBuilder().snapshot(null).updates(null).build();
+        }
+    }
+
+    /* ===================== 调度与持久化 ===================== */
+
+    @Override
+    protected String keyOf(CreatorWatch w) {
+        return w.getUserId();
+    }
+
+    @Override
+    protected Long nextRunAt(CreatorWatch w) {
+        return w.getNextCheckAt();
+    }
+
+    @Override
+    protected void setNextRunAt(CreatorWatch w, long epochMs) {
+        w.setNextCheckAt(epochMs);
+    }
+
+    @Override
+    protected int intervalSecondsOf(CreatorWatch w) {
+        return w.getIntervalSeconds();
+    }
+
+    @Override
+    protected void onRestore(CreatorWatch w) {
+        if (w.getUpdates() == null) {
+            w.setUpdates(new ArrayList<>());
+        }
+    }
+
+    @Override
+    protected CreatorWatch copyForStore(CreatorWatch w) {
+        synchronized (w) {
+            return w.toBuilder()
+                    .snapshot(w.getSnapshot() == null ? null : new LinkedHashMap<>(w.getSnapshot()))
+                    .updates(new ArrayList<>(w.getUpdates()))
+                    .build();
+        }
+    }
+
+    /* ===================== 指标 ===================== */
+
+    @Override
+    public String statsName() {
+        return "watch";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        long sum = 0;
+        int dormant = 0;
+        for (CreatorWatch w : items.values()) {
+            sum += w.getIntervalSeconds();
+            if (w.getIntervalSeconds() >= maxIntervalOf(w)) dormant++;
+        }
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", enabled);
+        m.put("watches", items.size());
+        m.put("dormant", dormant);
+        m.put("avgIntervalSeconds", items.isEmpty() ? 0 : sum / items.size());
+        m.put("checks", checks.sum());
+        m.put("changed", changed.sum());
+        m.put("unchanged", unchanged.sum());
+        m.put("failed", failed.sum());
+        m.put("deferredBusy", deferredCount());
+        m.put("notified", notified.sum());
+        return m;
+    }
+}
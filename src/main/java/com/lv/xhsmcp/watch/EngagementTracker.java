@@ -0,0 +1,449 @@
+package com.lv.xhsmcp.watch;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.lv.xhsmcp.model.*;
+import com.lv.xhsmcp.service.AdmissionController;
+import com.lv.xhsmcp.service.FeedDetailService;
+import com.lv.xhsmcp.store.NoteStore;
+import com.lv.xhsmcp.store.SeriesFile;
+import com.lv.xhsmcp.store.StoreListener;
+import com.lv.xhsmcp.util.CountParser;
+import com.lv.xhsmcp.util.DataPaths;
+import com.lv.xhsmcp.util.JsonListStore;
+import com.lv.xhsmcp.xhs.BizErrorCode;
+import com.lv.xhsmcp.xhs.Result;
+import com.lv.xhsmcp.xhs.StatsSource;
+import io.micrometer.common.util.StringUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 笔记互动数追踪：定时打开被追踪笔记的详情，把点赞/收藏/评论/分享数解析成整数写入 {@link SeriesFile}
+ * <p>
+ * - 采样来自 {@link NoteStore} 的详情写入通知：定时检查、用户调用 feedDetail、批量详情都会顺带记一笔
+ * - 同一笔记两次样本间隔不小于 xhs.engagement.min-sample-seconds（分钟级分辨率）
+ * - 页面上的计数是“1.2万”之类的显示文本时只能精确到显示位数，样本和增长率会标记 approximate
+ * - 定时检查由 {@link ScheduledSubscriptions} 挂载，以工具名 {@value #ADMISSION_TOOL}（默认 BULK 级）过准入控制，
+ *   被拒时稍后再查；取消追踪不删除已有数据
+ */
+@Slf4j
+@Service
+public class EngagementTracker extends ScheduledSubscriptions<TrackedNote> implements StoreListener, StatsSource {
+    /* ===================== 常量 ===================== */
+    public static final String[] METRIC_NAMES = {"likes", "collects", "comments", "shares"};
+    static final String ADMISSION_TOOL = "engagementCheck";
+    private static final int MAX_OPEN_FILES = 1_024;
+    private static final int MAX_POINTS = 2_000;
+    /** 笔记 id 用作文件名 */
+    private static final Pattern SAFE_ID = Pattern.compile("[0-9A-Za-z_-]{1,64}");
+
+    @Value("${xhs.engagement.enabled:true}")
+    private boolean enabled;
+    @Value("${xhs.engagement.default-interval-seconds:1800}")
+    private int defaultInterval;
+    @Value("${xhs.engagement.min-interval-seconds:60}")
+    private int minInterval;
+    @Value("${xhs.engagement.min-sample-seconds:50}")
+    private int minSampleSeconds;
+    @Value("${xhs.engagement.max-tracked:5000}")
+    private int maxTracked;
+    @Value("${xhs.engagement.workers:1}")
+    private int workers;
+
+    @Resource
+    private FeedDetailService feedDetailService;
+    @Resource
+    private AdmissionController admission;
+    @Resource
+    private NoteStore noteStore;
+
+    /** 打开的序列文件（只缓存末条样本与未封块部分，不占文件句柄）；所有读写在其监视器内进行 */
+    private final LinkedHashMap<String, SeriesFile> files = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SeriesFile> eldest) {
+            return size() > MAX_OPEN_FILES;
+        }
+    };
+
+    private Path seriesDir;
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder tooSoon = new LongAdder();
+
+    public EngagementTracker() {
+        super(new JsonListStore<>(DataPaths.dir("engagement").resolve("tracked.json"), new TypeReference<>() {}, "互动数追踪列表"),
+                "engagement-worker");
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        // 定时检查的间隔带 ±JITTER 抖动，抖动后仍须超过样本最小间隔，否则定时检查的结果会被当作“太近”丢弃
+        if (minInterval * (1 - JITTER) <= minSampleSeconds) {
+            throw new IllegalStateException("xhs.engagement.min-interval-seconds * " + (1 - JITTER)
+                    + " must be > xhs.engagement.min-sample-seconds (" + minSampleSeconds + ")");
+        }
+        seriesDir = DataPaths.dir("engagement/series");
+        restore(workers);
+        noteStore.addListener(this);
+        log.info("Engagement tracker started. tracked={}, dir={}", items.size(), seriesDir);
+    }
+
+    @PreDestroy
+    public void stop() {
+        shutdown();
+    }
+
+    /* ===================== 追踪管理 ===================== */
+
+    /**
+     * 新增或更新追踪；新追踪立即采样一次
+     *
+     * @param intervalSeconds 采样间隔，为空使用 xhs.engagement.default-interval-seconds
+     */
+    public Result<TrackedNote> track(String feedId, String xsecToken, Integer intervalSeconds) {
+        if (StringUtils.isBlank(feedId) || !SAFE_ID.matcher(feedId).matches()) {
+            throw new IllegalArgumentException("invalid feedId: " + feedId);
+        }
+        if (intervalSeconds != null && intervalSeconds < minInterval) {
+            throw new IllegalArgumentException("intervalSeconds must be >= " + minInterval);
+        }
+        if (!enabled) {
+            return Result.fail(BizErrorCode.TRACK_FAILED, "互动数追踪未启用");
+        }
+        int interval = intervalSeconds == null ? defaultInterval : intervalSeconds;
+        long now = System.currentTimeMillis();
+        TrackedNote n = items.get(feedId);
+        if (n == null) {
+            if (items.size() >= maxTracked) {
+                return Result.fail(BizErrorCode.TRACK_FAILED, "追踪数已达上限: " + maxTracked);
+            }
+            TrackedNote fresh = TrackedNote.builder()
+                    .feedId(feedId)
+                    .xsecToken(xsecToken)
+                    .intervalSeconds(interval)
+                    .nextCheckAt(now)
+                    .failures(0)
+                    .createdAt(now)
+                    .build();
+            n = items.putIfAbsent(feedId, fresh);
+            if (n == null) {
+                n = fresh;
+            }
+        }
+        synchronized (n) {
+            if (StringUtils.isNotBlank(xsecToken)) {
+                n.setXsecToken(xsecToken);
+            }
+            n.setIntervalSeconds(interval);
+            n.setNextCheckAt(Math.min(n.getNextCheckAt(), now + interval * 1000L));
+        }
+        rearm(n);
+        log.info("Note tracked. feedId={}, intervalSeconds={}", feedId, interval);
+        return Result.ok(copy(n), "已开始追踪");
+    }
+
+    public Result<Void> untrack(String feedId) {
+        if (remove(feedId) == null) {
+            return Result.fail(BizErrorCode.DATA_NOT_FOUND, "未追踪该笔记: " + feedId);
+        }
+        log.info("Note untracked. feedId={}", feedId);
+        return Result.ok("已取消追踪（已有数据保留）");
+    }
+
+    /** 所有追踪，按下次采样时间排序 */
+    public List<TrackedNote> list() {
+        List<TrackedNote> all = new ArrayList<>(items.size());
+        for (TrackedNote n : items.values()) {
+            all.add(copy(n));
+        }
+        all.sort(Comparator.comparing(TrackedNote::getNextCheckAt));
+        return all;
+    }
+
+    /* ===================== 采样 ===================== */
+
+    @Override
+    public void onSaved(String kind, String id, Object value) {
+        if (!enabled || !NoteStore.DETAIL.equals(kind)) {
+            return;
+        }
+        TrackedNote n = items.get(id);
+        FeedDetail note = ((FeedDetailResponse) value).getNote();
+        if (n == null || note == null || note.getInteractInfo() == null) {
+            return;
+        }
+        if (record(id, note.getInteractInfo())) {
+            synchronized (n) {
+                n.setLastSampleAt(System.currentTimeMillis());
+                if (StringUtils.isNotBlank(note.getTitle())) {
+                    n.setTitle(note.getTitle());
+                }
+            }
+            markDirty();
+        }
+    }
+
+    /** 写入一条样本；距上一条太近时忽略并返回 false */
+    private boolean record(String feedId, InteractInfo info) {
+        String[] texts = {info.getLikedCount(), info.getCollectedCount(), info.getCommentCount(), info.getSharedCount()};
+        long[] values = new long[SeriesFile.METRICS];
+        int approx = 0;
+        for (int i = 0; i < texts.length; i++) {
+            values[i] = CountParser.parse(texts[i]);
+            if (CountParser.isApproximate(texts[i])) approx |= 1 << i;
+        }
+        // 秒级对齐，时间列的二阶差分更小
+        long ts = System.currentTimeMillis() / 1000 * 1000;
+        synchronized (files) {
+            try {
+                SeriesFile f = file(feedId);
+                SeriesFile.Sample last = f.last();
+                if (last != null && (ts <= last.ts() || ts - last.ts() < minSampleSeconds * 1000L)) {
+                    tooSoon.increment();
+                    return false;
+                }
+                f.append(new SeriesFile.Sample(ts, values, approx));
+                samples.increment();
+                return true;
+            } catch (IOException e) {
+                log.warn("Engagement sample write failed. feedId={}, err={}", feedId, e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    private SeriesFile file(String feedId) throws IOException {
+        if (!SAFE_ID.matcher(feedId).matches()) {
+            throw new IllegalArgumentException("invalid feedId: " + feedId);
+        }
+        SeriesFile f = files.get(feedId);
+        if (f == null) {
+            f = SeriesFile.open(seriesDir, feedId);
+            files.put(feedId, f);
+        }
+        return f;
+    }
+
+    @Override
+    protected void run(String feedId) {
+        TrackedNote n = items.get(feedId);
+        if (n == null || !isDue(n)) {
+            return;
+        }
+        String token;
+        synchronized (n) {
+            token = n.getXsecToken();
+        }
+        Result<FeedDetailResponse> r;
+        try {
+            // 成功时详情经 NoteStore 写入通知落成样本
+            r = admission.admit(ADMISSION_TOOL, () -> feedDetailService.feedDetail(feedId, token));
+        } catch (Exception e) {
+            log.warn("Engagement check failed. feedId={}, err={}", feedId, e.getMessage());
+            r = Result.fail(BizErrorCode.GET_FEED_DETAIL_FAILED, e.getMessage());
+        }
+        if (deferIfBusy(n, r)) {
+            return;
+        }
+        checks.increment();
+        long delayMs;
+        synchronized (n) {
+            if (r.isSuccess()) {
+                n.setFailures(0);
+                n.setMessage(null);
+                delayMs = n.getIntervalSeconds() * 1000L;
+            } else {
+                failed.increment();
+                n.setFailures(n.getFailures() + 1);
+                n.setMessage(r.getMessage());
+                delayMs = backoffMs(n.getIntervalSeconds(), n.getFailures());
+            }
+        }
+        reschedule(n, delayMs);
+    }
+
+    /* ===================== 查询 ===================== */
+
+    /**
+     * 区间内的序列与增长率
+     *
+     * @param stepSeconds 降采样步长（每步取最后一条）；为空且样本超过 {@value #MAX_POINTS} 条时自动选取
+     * @return 从未采样过时为 null
+     */
+    public EngagementSeries series(String feedId, long from, long to, Integer stepSeconds) {
+        if (StringUtils.isBlank(feedId)) {
+            throw new IllegalArgumentException("feedId must not be blank");
+        }
+        if (to < from) {
+            throw new IllegalArgumentException("until must be >= since");
+        }
+        if (stepSeconds != null && stepSeconds <= 0) {
+            throw new IllegalArgumentException("stepSeconds must be > 0");
+        }
+        if (!enabled) {
+            return null;
+        }
+        List<SeriesFile.Sample> raw;
+        synchronized (files) {
+            try {
+                SeriesFile f = file(feedId);
+                if (f.last() == null) {
+                    files.remove(feedId);
+                    return null;
+                }
+                raw = f.read(from, to);
+            } catch (IOException e) {
+                throw new IllegalStateException("读取互动数序列失败: " + feedId, e);
+            }
+        }
+
+        Integer step = stepSeconds;
+        if (step == null && raw.size() > MAX_POINTS) {
+            long span = raw.get(raw.size() - 1).ts() - raw.get(0).ts();
+            step = (int) Math.max(1, span / 1000 / MAX_POINTS + 1);
+        }
+        List<SeriesFile.Sample> picked = step == null ? raw : downsample(raw, step * 1000L);
+        List<EngagementPoint> points = new ArrayList<>(picked.size());
+        for (SeriesFile.Sample s : picked) {
+            long[] v = s.values();
+            points.add(EngagementPoint.builder()
+                    .ts(s.ts()).likes(v[0]).collects(v[1]).comments(v[2]).shares(v[3])
+                    .approximate(s.approxMask() != 0 ? Boolean.TRUE : null)
+                    .build());
+        }
+        TrackedNote n = items.get(feedId);
+        return EngagementSeries.builder()
+                .feedId(feedId)
+                .title(n == null ? null : n.getTitle())
+                .samples(raw.size())
+                .stepSeconds(step)
+                .points(points)
+                .growth(raw.size() < 2 ? List.of() : growth(raw.get(0), raw.get(raw.size() - 1)))
+                .build();
+    }
+
+    /** 按步长分桶，每桶保留最后一条 */
+    private static List<SeriesFile.Sample> downsample(List<SeriesFile.Sample> raw, long stepMs) {
+        List<SeriesFile.Sample> out = new ArrayList<>();
+        long bucket = Long.MIN_VALUE;
+        for (SeriesFile.Sample s : raw) {
+            long b = Math.floorDiv(s.ts(), stepMs);
+            if (b == bucket && !out.isEmpty()) {
+                out.set(out.size() - 1, s);
+            } else {
+                out.add(s);
+                bucket = b;
+            }
+        }
+        return out;
+    }
+
+    private static List<EngagementGrowth> growth(SeriesFile.Sample first, SeriesFile.Sample last) {
+        double hours = (last.ts() - first.ts()) / 3_600_000.0;
+        List<EngagementGrowth> out = new ArrayList<>(SeriesFile.METRICS);
+        for (int i = 0; i < SeriesFile.METRICS; i++) {
+            long a = first.values()[i];
+            long b = last.values()[i];
+            boolean approx = ((first.approxMask() | last.approxMask()) & (1 << i)) != 0;
+            out.add(EngagementGrowth.builder()
+                    .metric(METRIC_NAMES[i])
+                    .first(a)
+                    .last(b)
+                    .delta(b - a)
+                    .perHour(hours <= 0 ? null : round2((b - a) / hours))
+                    .percent(a == 0 ? null : round2((b - a) * 100.0 / a))
+                    .approximate(approx ? Boolean.TRUE : null)
+                    .build());
+        }
+        return out;
+    }
+
+    private static double round2(double v) {
+        return Math.round(v * 100) / 100.0;
+    }
+
+    private static TrackedNote copy(TrackedNote n) {
+        synchronized (n) {
+            return n.toBuilder().build();
+        }
+    }
+
+    /* ===================== 调度与持久化 ===================== */
+
+    @Override
+    protected String keyOf(TrackedNote n) {
+        return n.getFeedId();
+    }
+
+    @Override
+    protected Long nextRunAt(TrackedNote n) {
+        return n.getNextCheckAt();
+    }
+
+    @Override
+    protected void setNextRunAt(TrackedNote n, long epochMs) {
+        n.setNextCheckAt(epochMs);
+    }
+
+    @Override
+    protected int intervalSecondsOf(TrackedNote n) {
+        return n.getIntervalSeconds();
+    }
+
+    @Override
+    protected TrackedNote copyForStore(TrackedNote n) {
+        return copy(n);
+    }
+
+    /* ===================== 指标 ===================== */
+
+    @Override
+    public String statsName() {
+        return "engagement";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", enabled);
+        m.put("tracked", items.size());
+        m.put("samples", samples.sum());
+        m.put("skippedTooSoon", tooSoon.sum());
+        m.put("checks", checks.sum());
+        m.put("failed", failed.sum());
+        m.put("deferredBusy", deferredCount());
+        if (seriesDir != null) {
+            long bytes = 0;
+            Set<String> series = new HashSet<>();
+            try (Stream<Path> s = Files.list(seriesDir)) {
+                for (Path p : (Iterable<Path>) s::iterator) {
+                    bytes += Files.size(p);
+                    String name = p.getFileName().toString();
+                    series.add(name.substring(0, Math.max(0, name.lastIndexOf('.'))));
+                }
+            } catch (IOException e) {
+                log.debug("Engagement dir size failed. err={}", e.getMessage());
+            }
+            m.put("series", series.size());
+            m.put("diskBytes", bytes);
+        }
+        return m;
+    }
+}
@@ -0,0 +1,204 @@
+package com.lv.xhsmcp.watch;
+
+import com.lv.xhsmcp.schedule.BackgroundScheduler;
+import com.lv.xhsmcp.schedule.HashedTimerWheel;
+import com.lv.xhsmcp.util.JsonListStore;
+import com.lv.xhsmcp.util.Threads;
+import com.lv.xhsmcp.xhs.BizErrorCode;
+import com.lv.xhsmcp.xhs.Result;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 定时订阅（{@link CreatorWatcher}、{@link EngagementTracker}、{@link TrendMonitor}）的公共部分
+ * <p>
+ * - 条目按 key 存在 {@link #items} 中，整表经 {@link JsonListStore} 落盘；改动后调用 {@link #markDirty()}，由共享刷盘任务写出
+ * - 每个条目在共享时间轮上挂一个定时器，到期交给本类的 worker 池执行 {@link #run(String)}
+ * - 重启时已过期的条目在 {@value #RESTORE_SPREAD_MS} 毫秒（且不超过其间隔）内打散，不在启动时一起执行
+ * - 下次执行时间叠加 ±{@value #JITTER} 比例的抖动；失败按次数指数退避（{@link #backoffMs}），
+ *   页面池繁忙（OVERLOADED）只延后、不计失败（{@link #deferIfBusy}）
+ * - 条目的字段由子类在该条目的监视器内读写
+ */
+@Slf4j
+abstract class ScheduledSubscriptions<T> {
+    /* ===================== 常量 ===================== */
+    static final double JITTER = 0.1;
+    private static final long FLUSH_INTERVAL_MS = 1_000;
+    private static final long BUSY_RETRY_MS = 30_000;
+    private static final long RESTORE_SPREAD_MS = 600_000;
+    private static final int MAX_BACKOFF_SHIFT = 4;
+
+    @Resource
+    private BackgroundScheduler scheduler;
+
+    protected final Map<String, T> items = new ConcurrentHashMap<>();
+    protected final JsonListStore<T> store;
+    private final String threadName;
+    private final Map<String, HashedTimerWheel.Timeout> timeouts = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    private final LongAdder deferred = new LongAdder();
+
+    private ExecutorService workers;
+    private ScheduledFuture<?> flushTask;
+
+    /**
+     * @param threadName worker 线程名
+     */
+    protected ScheduledSubscriptions(JsonListStore<T> store, String threadName) {
+        this.store = store;
+        this.threadName = threadName;
+    }
+
+    /* =============== 子类实现 =============== */
+
+    protected abstract String keyOf(T item);
+
+    protected abstract Long nextRunAt(T item);
+
+    protected abstract void setNextRunAt(T item, long epochMs);
+
+    protected abstract int intervalSecondsOf(T item);
+
+    /** 到期执行（worker 线程）；结束前须调用 {@link #reschedule} 或 {@link #deferIfBusy} 挂载下一次 */
+    protected abstract void run(String key);
+
+    /** 落盘用的副本（不持有条目锁时调用），不得再引用会被原地修改的对象 */
+    protected abstract T copyForStore(T item);
+
+    /** 读回落盘条目时修补字段（如旧版本缺失的集合），默认不做 */
+    protected void onRestore(T item) {
+    }
+
+    /* =============== 生命周期 =============== */
+
+    /** 启动 worker 与刷盘任务，读回落盘的条目并挂载 */
+    protected void restore(int workerCount) {
+        workers = Executors.newFixedThreadPool(Math.max(1, workerCount), Threads.daemon(threadName));
+        flushTask = scheduler.everyMs(FLUSH_INTERVAL_MS, this::flushIfDirty);
+
+        long now = System.currentTimeMillis();
+        for (T item : store.read()) {
+            onRestore(item);
+            Long next = nextRunAt(item);
+            if (next == null || next < now) {
+                setNextRunAt(item, now + ThreadLocalRandom.current().nextLong(
+                        Math.min(RESTORE_SPREAD_MS, intervalSecondsOf(item) * 1000L) + 1));
+            }
+            items.put(keyOf(item), item);
+            arm(item);
+        }
+    }
+
+    protected void shutdown() {
+        timeouts.values().forEach(HashedTimerWheel.Timeout::cancel);
+        if (flushTask != null) flushTask.cancel(false);
+        if (workers != null) workers.shutdownNow();
+        flushIfDirty();
+    }
+
+    /* =============== 调度 =============== */
+
+    /** 按条目当前的下次执行时间重新挂载（新增或修改后调用） */
+    protected void rearm(T item) {
+        disarm(keyOf(item));
+        arm(item);
+        markDirty();
+    }
+
+    /** 移除条目并取消其定时器；不存在返回 null */
+    protected T remove(String key) {
+        T item = items.remove(key);
+        if (item != null) {
+            disarm(key);
+            markDirty();
+        }
+        return item;
+    }
+
+    /**
+     * 条目是否到期。条目被修改后会重新挂载，旧定时器仍会触发，此时下次执行时间还没到，应直接返回
+     */
+    protected boolean isDue(T item) {
+        synchronized (item) {
+            return nextRunAt(item) <= System.currentTimeMillis() + BackgroundScheduler.TICK_MS;
+        }
+    }
+
+    /**
+     * 页面池繁忙（OVERLOADED）时按建议的重试时间（至少 {@value #BUSY_RETRY_MS} 毫秒）延后，不计失败、不退避
+     *
+     * @return 是否已延后
+     */
+    protected boolean deferIfBusy(T item, Result<?> r) {
+        if (r.getCode() != BizErrorCode.OVERLOADED) {
+            return false;
+        }
+        deferred.increment();
+        reschedule(item, Math.max(BUSY_RETRY_MS, r.getRetryAfterSeconds() == null ? 0 : r.getRetryAfterSeconds() * 1000));
+        return true;
+    }
+
+    /** 叠加抖动后设置下次执行时间并挂载；执行期间条目已被移除则不再挂载 */
+    protected void reschedule(T item, long delayMs) {
+        long jitter = (long) (delayMs * JITTER * (ThreadLocalRandom.current().nextDouble() * 2 - 1));
+        synchronized (item) {
+            setNextRunAt(item, System.currentTimeMillis() + delayMs + jitter);
+        }
+        markDirty();
+        if (items.get(keyOf(item)) == item) {
+            arm(item);
+        }
+    }
+
+    /** 连续失败 failures 次后的等待时长：间隔 × 2^failures，指数最多为 {@value #MAX_BACKOFF_SHIFT} */
+    protected static long backoffMs(int intervalSeconds, int failures) {
+        return ((long) intervalSeconds << Math.min(failures, MAX_BACKOFF_SHIFT)) * 1000L;
+    }
+
+    protected void markDirty() {
+        dirty.set(true);
+    }
+
+    /** 因页面池繁忙延后的次数 */
+    protected long deferredCount() {
+        return deferred.sum();
+    }
+
+    private void arm(T item) {
+        String key = keyOf(item);
+        long at;
+        synchronized (item) {
+            at = nextRunAt(item);
+        }
+        // tick 线程只负责投递，实际执行交给 worker 池
+        timeouts.put(key, scheduler.at(at, () -> workers.execute(() -> run(key))));
+    }
+
+    private void disarm(String key) {
+        HashedTimerWheel.Timeout t = timeouts.remove(key);
+        if (t != null) t.cancel();
+    }
+
+    /* =============== 持久化 =============== */
+
+    private void flushIfDirty() {
+        if (!dirty.getAndSet(false)) return;
+        try {
+            List<T> snapshot = new ArrayList<>(items.size());
+            for (T item : items.values()) {
+                snapshot.add(copyForStore(item));
+            }
+            store.write(snapshot);
+        } catch (Exception e) {
+            dirty.set(true);
+            log.warn("Flush subscription store failed. store={}, err={}", store.path(), e.getMessage());
+        }
+    }
+}
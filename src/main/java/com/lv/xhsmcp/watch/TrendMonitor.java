@@ -0,0 +1,411 @@
+package com.lv.xhsmcp.watch;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.lv.xhsmcp.model.*;
+import com.lv.xhsmcp.service.AdmissionController;
+import com.lv.xhsmcp.service.SearchService;
+import com.lv.xhsmcp.store.NoteStore;
+import com.lv.xhsmcp.store.RankLog;
+import com.lv.xhsmcp.util.DataPaths;
+import com.lv.xhsmcp.util.JsonListStore;
+import com.lv.xhsmcp.xhs.BizErrorCode;
+import com.lv.xhsmcp.xhs.Progress;
+import com.lv.xhsmcp.xhs.Result;
+import com.lv.xhsmcp.xhs.StatsSource;
+import io.micrometer.common.util.StringUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 关键词趋势监控：定时对配置的关键词做搜索巡检，把每次结果的名次写入 {@link RankLog}
+ * <p>
+ * - 巡检由 {@link ScheduledSubscriptions} 挂载，由固定数量的 worker 执行；以工具名 {@value #ADMISSION_TOOL}（默认 BULK 级）
+ *   过准入控制，被拒时稍后再查，失败按次数指数退避
+ * - 结果与上一次完全相同的巡检只记一个 repeat 标记（按笔记 id 序列比较）；接口分页每次都完整解析
+ * - 对外提供“某时间之后的新进笔记”和“某笔记的名次历史”两种查询
+ */
+@Slf4j
+@Service
+public class TrendMonitor extends ScheduledSubscriptions<TrendKeyword> implements StatsSource {
+    /* ===================== 常量 ===================== */
+    static final String ADMISSION_TOOL = "trendSweep";
+    private static final int MAX_LIMIT = 100;
+
+    @Value("${xhs.trend.enabled:true}")
+    private boolean enabled;
+    @Value("${xhs.trend.default-interval-seconds:3600}")
+    private int defaultInterval;
+    @Value("${xhs.trend.min-interval-seconds:300}")
+    private int minInterval;
+    @Value("${xhs.trend.default-limit:40}")
+    private int defaultLimit;
+    @Value("${xhs.trend.max-keywords:200}")
+    private int maxKeywords;
+    @Value("${xhs.trend.workers:1}")
+    private int workers;
+
+    @Resource
+    private SearchService searchService;
+    @Resource
+    private AdmissionController admission;
+    @Resource
+    private NoteStore noteStore;
+
+    /** keyword -> 名次记录；读写都在该对象的监视器内进行 */
+    private final Map<String, RankLog> logs = new ConcurrentHashMap<>();
+
+    private Path dir;
+
+    private final LongAdder sweeps = new LongAdder();
+    private final LongAdder unchanged = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public TrendMonitor() {
+        super(new JsonListStore<>(DataPaths.dir("trends").resolve("keywords.json"), new TypeReference<>() {}, "关键词趋势监控列表"),
+                "trend-worker");
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        dir = DataPaths.dir("trends");
+        restore(workers);
+        log.info("Trend monitor started. keywords={}, dir={}", items.size(), dir);
+    }
+
+    @PreDestroy
+    public void stop() {
+        shutdown();
+    }
+
+    /* ===================== 关键词管理 ===================== */
+
+    /**
+     * 新增或更新监控关键词；新关键词立即巡检一次
+     *
+     * @param intervalSeconds 巡检间隔，为空使用 xhs.trend.default-interval-seconds
+     * @param limit           每次记录的名次数，为空使用 xhs.trend.default-limit
+     */
+    public Result<TrendKeyword> monitor(String keyword, Integer intervalSeconds, Integer limit) {
+        if (StringUtils.isBlank(keyword)) {
+            throw new IllegalArgumentException("keyword must not be blank");
+        }
+        if (intervalSeconds != null && intervalSeconds < minInterval) {
+            throw new IllegalArgumentException("intervalSeconds must be >= " + minInterval);
+        }
+        if (limit != null && (limit <= 0 || limit > MAX_LIMIT)) {
+            throw new IllegalArgumentException("limit must be in (0, " + MAX_LIMIT + "]");
+        }
+        if (!enabled) {
+            return Result.fail(BizErrorCode.TREND_FAILED, "关键词趋势监控未启用");
+        }
+        String kw = keyword.trim();
+        int interval = intervalSeconds == null ? defaultInterval : intervalSeconds;
+        int n = limit == null ? defaultLimit : limit;
+        long now = System.currentTimeMillis();
+        TrendKeyword k = items.get(kw);
+        if (k == null) {
+            if (items.size() >= maxKeywords) {
+                return Result.fail(BizErrorCode.TREND_FAILED, "监控关键词数已达上限: " + maxKeywords);
+            }
+            TrendKeyword fresh = TrendKeyword.builder()
+                    .keyword(kw)
+                    .intervalSeconds(interval)
+                    .limit(n)
+                    .nextSweepAt(now)
+                    .sweeps(0)
+                    .unchangedSweeps(0)
+                    .failures(0)
+                    .createdAt(now)
+                    .build();
+            k = items.putIfAbsent(kw, fresh);
+            if (k == null) {
+                k = fresh;
+            }
+        }
+        synchronized (k) {
+            k.setIntervalSeconds(interval);
+            k.setLimit(n);
+            k.setNextSweepAt(Math.min(k.getNextSweepAt(), now + interval * 1000L));
+        }
+        rearm(k);
+        log.info("Keyword monitored. keyword='{}', intervalSeconds={}, limit={}", kw, interval, n);
+        return Result.ok(copy(k), "已开始监控");
+    }
+
+    public Result<Void> unmonitor(String keyword) {
+        String kw = keyword == null ? "" : keyword.trim();
+        if (remove(kw) == null) {
+            return Result.fail(BizErrorCode.DATA_NOT_FOUND, "未监控该关键词: " + kw);
+        }
+        log.info("Keyword unmonitored. keyword='{}'", kw);
+        return Result.ok("已停止监控（已有记录保留）");
+    }
+
+    /** 所有监控关键词，按下次巡检时间排序 */
+    public List<TrendKeyword> list() {
+        List<TrendKeyword> all = new ArrayList<>(items.size());
+        for (TrendKeyword k : items.values()) {
+            all.add(copy(k));
+        }
+        all.sort(Comparator.comparing(TrendKeyword::getNextSweepAt));
+        return all;
+    }
+
+    /* ===================== 巡检 ===================== */
+
+    @Override
+    protected void run(String keyword) {
+        TrendKeyword k = items.get(keyword);
+        if (k == null || !isDue(k)) {
+            return;
+        }
+        int limit;
+        synchronized (k) {
+            limit = k.getLimit();
+        }
+        Result<SearchFeedResponse> r;
+        try {
+            r = admission.admit(ADMISSION_TOOL, () -> searchService.search(keyword, limit, Progress.NOOP, null, false));
+        } catch (Exception e) {
+            log.warn("Trend sweep failed. keyword='{}', err={}", keyword, e.getMessage());
+            r = Result.fail(BizErrorCode.SEARCH_FEEDS_FAILED, e.getMessage());
+        }
+        if (deferIfBusy(k, r)) {
+            return;
+        }
+
+        Boolean changed = null;
+        String error = r.isSuccess() ? null : r.getMessage();
+        if (r.isSuccess() && r.getData() == null) {
+            error = "搜索结果为空";
+        } else if (r.isSuccess()) {
+            List<String> ids = new ArrayList<>(limit);
+            if (r.getData().getItems() != null) {
+                for (Feed f : r.getData().getItems()) {
+                    if (f != null && StringUtils.isNotBlank(f.getId()) && ids.size() < limit) ids.add(f.getId());
+                }
+            }
+            long ts = System.currentTimeMillis();
+            try {
+                RankLog rl = rankLog(keyword);
+                synchronized (rl) {
+                    changed = rl.append(ts, ids);
+                }
+            } catch (IOException | RuntimeException e) {
+                // 任何异常都要走到下面的重新挂载，否则该关键词不再巡检
+                log.warn("Trend rank write failed. keyword='{}', err={}", keyword, e.getMessage());
+                error = "写入名次记录失败: " + e.getMessage();
+            }
+        }
+
+        long delayMs;
+        synchronized (k) {
+            if (changed != null) {
+                sweeps.increment();
+                k.setLastSweepAt(System.currentTimeMillis());
+                k.setSweeps(k.getSweeps() + 1);
+                if (!changed) {
+                    unchanged.increment();
+                    k.setUnchangedSweeps(k.getUnchangedSweeps() + 1);
+                }
+                k.setFailures(0);
+                k.setMessage(null);
+                delayMs = k.getIntervalSeconds() * 1000L;
+            } else {
+                failed.increment();
+                k.setFailures(k.getFailures() + 1);
+                k.setMessage(error);
+                delayMs = backoffMs(k.getIntervalSeconds(), k.getFailures());
+            }
+        }
+        reschedule(k, delayMs);
+    }
+
+    /* ===================== 查询 ===================== */
+
+    /**
+     * since 之后的巡检里进入前 top 名、而 since 及之前的巡检里从未进入前 top 名的笔记，
+     * 按最近名次（已掉出的排在最后）排序
+     *
+     * @param top 只看前若干名，为空不限
+     * @return 关键词从未巡检过时为 null
+     */
+    public List<TrendEntrant> newEntrants(String keyword, long since, Integer top) {
+        List<RankLog.Sweep> all = sweepsOf(keyword, Long.MIN_VALUE, Long.MAX_VALUE);
+        if (all == null) {
+            return null;
+        }
+        int cut = top == null || top <= 0 ? Integer.MAX_VALUE : top;
+        Set<String> before = new HashSet<>();
+        Map<String, TrendEntrant> entrants = new LinkedHashMap<>();
+        for (RankLog.Sweep s : all) {
+            int n = Math.min(cut, s.ids().size());
+            for (int i = 0; i < n; i++) {
+                String id = s.ids().get(i);
+                if (s.ts() <= since) {
+                    before.add(id);
+                    continue;
+                }
+                if (before.contains(id)) continue;
+                int rank = i + 1;
+                TrendEntrant e = entrants.get(id);
+                if (e == null) {
+                    entrants.put(id, TrendEntrant.builder().feedId(id).firstSeenAt(s.ts())
+                            .firstRank(rank).bestRank(rank).build());
+                } else if (rank < e.getBestRank()) {
+                    e.setBestRank(rank);
+                }
+            }
+        }
+        if (!all.isEmpty()) {
+            List<String> latest = all.get(all.size() - 1).ids();
+            for (int i = 0; i < Math.min(cut, latest.size()); i++) {
+                TrendEntrant e = entrants.get(latest.get(i));
+                if (e != null) e.setLatestRank(i + 1);
+            }
+        }
+        List<TrendEntrant> out = new ArrayList<>(entrants.values());
+        out.sort(Comparator.comparing(TrendEntrant::getLatestRank, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(TrendEntrant::getFirstSeenAt));
+        for (TrendEntrant e : out) {
+            NoteStore.Stored<Feed> card = noteStore.get(NoteStore.FEED, e.getFeedId(), Feed.class, 0);
+            if (card != null) e.setFeed(card.value());
+        }
+        return out;
+    }
+
+    /**
+     * 某笔记在 since 之后各次巡检中的名次
+     *
+     * @return 关键词从未巡检过时为 null
+     */
+    public List<RankPoint> rankHistory(String keyword, String feedId, long since) {
+        if (StringUtils.isBlank(feedId)) {
+            throw new IllegalArgumentException("feedId must not be blank");
+        }
+        List<RankLog.Sweep> all = sweepsOf(keyword, since, Long.MAX_VALUE);
+        if (all == null) {
+            return null;
+        }
+        List<RankPoint> out = new ArrayList<>(all.size());
+        for (RankLog.Sweep s : all) {
+            int i = s.ids().indexOf(feedId);
+            out.add(new RankPoint(s.ts(), i < 0 ? null : i + 1));
+        }
+        return out;
+    }
+
+    private List<RankLog.Sweep> sweepsOf(String keyword, long from, long to) {
+        if (StringUtils.isBlank(keyword)) {
+            throw new IllegalArgumentException("keyword must not be blank");
+        }
+        if (!enabled) {
+            return null;
+        }
+        try {
+            RankLog rl = rankLog(keyword.trim());
+            synchronized (rl) {
+                if (rl.sweeps() == 0) {
+                    if (!items.containsKey(keyword.trim())) logs.remove(keyword.trim());
+                    return null;
+                }
+                return rl.read(from, to);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("读取名次记录失败: " + keyword, e);
+        }
+    }
+
+    /** 文件名取关键词的哈希，避免特殊字符 */
+    private RankLog rankLog(String keyword) throws IOException {
+        RankLog rl = logs.get(keyword);
+        if (rl == null) {
+            synchronized (logs) {
+                rl = logs.get(keyword);
+                if (rl == null) {
+                    long h = 0xcbf29ce484222325L;
+                    for (byte b : keyword.getBytes(StandardCharsets.UTF_8)) {
+                        h ^= b;
+                        h *= 0x100000001b3L;
+                    }
+                    rl = RankLog.open(dir, "kw-" + Long.toHexString(h));
+                    logs.put(keyword, rl);
+                }
+            }
+        }
+        return rl;
+    }
+
+    private static TrendKeyword copy(TrendKeyword k) {
+        synchronized (k) {
+            return k.toBuilder().build();
+        }
+    }
+
+    /* ===================== 调度与持久化 ===================== */
+
+    @Override
+    protected String keyOf(TrendKeyword k) {
+        return k.getKeyword();
+    }
+
+    @Override
+    protected Long nextRunAt(TrendKeyword k) {
+        return k.getNextSweepAt();
+    }
+
+    @Override
+    protected void setNextRunAt(TrendKeyword k, long epochMs) {
+        k.setNextSweepAt(epochMs);
+    }
+
+    @Override
+    protected int intervalSecondsOf(TrendKeyword k) {
+        return k.getIntervalSeconds();
+    }
+
+    @Override
+    protected TrendKeyword copyForStore(TrendKeyword k) {
+        return copy(k);
+    }
+
+    /* ===================== 指标 ===================== */
+
+    @Override
+    public String statsName() {
+        return "trend";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        long bytes = 0;
+        for (RankLog rl : logs.values()) {
+            synchronized (rl) {
+                bytes += rl.bytes();
+            }
+        }
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", enabled);
+        m.put("keywords", items.size());
+        m.put("sweeps", sweeps.sum());
+        m.put("unchanged", unchanged.sum());
+        m.put("failed", failed.sum());
+        m.put("deferredBusy", deferredCount());
+        m.put("openLogBytes", bytes);
+        return m;
+    }
+}
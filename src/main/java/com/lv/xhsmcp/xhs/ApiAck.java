@@ -0,0 +1,42 @@
+package com.lv.xhsmcp.xhs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.lv.xhsmcp.util.Json;
+
+/**
+ * 写接口（评论、发布笔记）的响应确认
+ * <p>
+ * 站点接口统一返回 {success, code, msg, data}，code=0 或 success=true 视为成功；
+ * id 按给定路径依次在 data 下查找（如 "comment.id"、"id"）。
+ */
+public record ApiAck(boolean success, int code, String message, String id) {
+
+    public static ApiAck parse(String body, String... idPaths) {
+        if (body == null || body.isBlank()) {
+            return new ApiAck(false, -1, "empty response", null);
+        }
+        JsonNode root;
+        try {
+            root = Json.M.readTree(body);
+        } catch (Exception e) {
+            return new ApiAck(false, -1, "invalid response: " + e.getMessage(), null);
+        }
+        int code = root.path("code").asInt(root.path("result").asInt(-1));
+        boolean success = root.path("success").asBoolean(false) || code == 0;
+        String msg = root.path("msg").asText(root.path("message").asText(""));
+        return new ApiAck(success, code, msg, findId(root.path("data"), idPaths));
+    }
+
+    private static String findId(JsonNode data, String... idPaths) {
+        for (String path : idPaths) {
+            JsonNode n = data;
+            for (String seg : path.split("\\.")) {
+                n = n.path(seg);
+            }
+            if (n.isValueNode() && !n.asText().isBlank()) {
+                return n.asText();
+            }
+        }
+        return null;
+    }
+}
@@ -9,12 +9,19 @@ public enum BizErrorCode {
         LIST_FEEDS_FAILED(1001005, "获取Feeds列表失败"),
         GET_FEED_DETAIL_FAILED(1001006, "获取Feed详情失败"),
         SEARCH_FEEDS_FAILED(1001007, "搜索Feeds失败"),
+        GET_COMMENTS_FAILED(1001008, "获取评论失败"),
+        OVERLOADED(1001009, "服务繁忙，请稍后重试"),
         GET_USER_PROFILE_FAILED(1003007, "获取用户主页失败"),
         POST_COMMENT_FAILED(1002010, "发表评论失败"),
         ELEMENT_NOT_FOUND(1002001, "页面元素未找到"),
         FILE_NOT_FOUND(1002002, "文件不存在"),
         DOWNLOAD_FAILED(1002003, "下载失败"),
         PUBLISH_FAILED(1002003, "发布失败"),
+        SCHEDULE_FAILED(1002011, "定时发布失败"),
+        WATCH_FAILED(1002012, "博主订阅失败"),
+        TRACK_FAILED(1002013, "互动数追踪失败"),
+        TREND_FAILED(1002014, "关键词趋势监控失败"),
+        NEAR_DUP_FAILED(1002015, "近似重复检测失败"),
         IO_ERROR(1002004, "IO错误");
 
         private final int code;
@@ -0,0 +1,36 @@
+package com.lv.xhsmcp.xhs;
+
+import com.lv.xhsmcp.util.Json;
+import io.modelcontextprotocol.server.McpSyncServerExchange;
+import io.modelcontextprotocol.spec.McpSchema;
+
+import java.util.List;
+
+/**
+ * 流式内容出口：工具执行过程中分批推送内容块，最终结果仍由工具返回值给出
+ * <p>
+ * 服务只开放 Streamable-HTTP，经 MCP 日志通知（notifications/message）推送，data 为内容块 JSON
+ */
+@FunctionalInterface
+public interface ContentSink {
+
+    ContentSink NOOP = contents -> {};
+
+    void send(List<McpContent> contents);
+
+    static ContentSink mcp(McpSyncServerExchange exchange, String logger) {
+        if (exchange == null) return NOOP;
+        return contents -> {
+            try {
+                String data = Json.M.writeValueAsString(contents.stream().map(McpContent::toMap).toList());
+                exchange.loggingNotification(McpSchema.LoggingMessageNotification.builder()
+                        .level(McpSchema.LoggingLevel.INFO)
+                        .logger(logger)
+                        .data(data)
+                        .build());
+            } catch (Exception ignore) {
+                // 客户端已断开等，忽略；最终结果仍会返回
+            }
+        };
+    }
+}
@@ -0,0 +1,47 @@
+package com.lv.xhsmcp.xhs;
+
+import io.modelcontextprotocol.server.McpSyncServerExchange;
+import io.modelcontextprotocol.spec.McpSchema;
+
+/**
+ * 长耗时工具的进度回调（服务层只依赖此接口，不直接依赖 MCP）
+ */
+@FunctionalInterface
+public interface Progress {
+
+    Progress NOOP = (progress, total, message) -> {};
+
+    /**
+     * @param progress 当前进度（必须单调递增）
+     * @param total    总量，未知时为 null
+     * @param message  阶段说明
+     */
+    void report(double progress, Double total, String message);
+
+    /**
+     * 转成 MCP progress 通知；客户端没带 progressToken 时不发送。
+     * 非递增的进度会被丢弃（协议要求 progress 单调递增），发送失败不影响主流程。
+     */
+    static Progress mcp(McpSyncServerExchange exchange, String progressToken) {
+        if (exchange == null || progressToken == null || progressToken.isBlank()) {
+            return NOOP;
+        }
+        return new Progress() {
+            private double last = -1;
+
+            @Override
+            public synchronized void report(double progress, Double total, String message) {
+                if (progress <= last) {
+                    return;
+                }
+                last = progress;
+                try {
+                    exchange.progressNotification(
+                            new McpSchema.ProgressNotification(progressToken, progress, total, message));
+                } catch (Exception ignore) {
+                    // 客户端已断开等，忽略
+                }
+            }
+        };
+    }
+}
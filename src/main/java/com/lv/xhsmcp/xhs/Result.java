@@ -1,5 +1,7 @@
 package com.lv.xhsmcp.xhs;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.io.Serializable;
 
 public final class Result<T> implements Serializable {
@@ -7,12 +9,19 @@ public final class Result<T> implements Serializable {
         private final BizErrorCode code;
         private final String message;
         private final T data;
+        /** 过载拒绝时建议的重试等待（秒），其他情况为空 */
+        private final Long retryAfterSeconds;
 
         private Result(boolean success, BizErrorCode code, String message, T data) {
+            this(success, code, message, data, null);
+        }
+
+        private Result(boolean success, BizErrorCode code, String message, T data, Long retryAfterSeconds) {
             this.success = success;
             this.code = code;
             this.message = message;
             this.data = data;
+            this.retryAfterSeconds = retryAfterSeconds;
         }
 
         public static <T> Result<T> ok() {
@@ -38,10 +47,16 @@ public final class Result<T> implements Serializable {
             return new Result<>(false, code, message, null);
         }
 
+        public static <T> Result<T> fail(BizErrorCode code, String message, long retryAfterSeconds) {
+            return new Result<>(false, code, message, null, retryAfterSeconds);
+        }
+
         public boolean isSuccess() { return success; }
         public BizErrorCode getCode() { return code; }
         public String getMessage() { return message; }
         public T getData() { return data; }
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        public Long getRetryAfterSeconds() { return retryAfterSeconds; }
 
         @Override
         public String toString() {
@@ -50,6 +65,7 @@ public final class Result<T> implements Serializable {
                     ", code=" + code +
                     ", message='" + message + '\'' +
                     ", data=" + data +
+                    (retryAfterSeconds == null ? "" : ", retryAfterSeconds=" + retryAfterSeconds) +
                     '}';
         }
     }
\ No newline at end of file
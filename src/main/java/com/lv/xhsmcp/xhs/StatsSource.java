@@ -0,0 +1,15 @@
+package com.lv.xhsmcp.xhs;
+
+import java.util.Map;
+
+/**
+ * 可被 serverStats 工具汇总的运行指标来源（缓存、预取、准入控制等组件实现）
+ */
+public interface StatsSource {
+
+    /** 在汇总结果中的键名 */
+    String statsName();
+
+    /** 当前指标快照，需可被 JSON 序列化 */
+    Map<String, Object> stats();
+}
@@ -0,0 +1,188 @@
+package com.lv.xhsmcp.xhs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.lv.xhsmcp.util.Json;
+import com.microsoft.playwright.Page;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 在已打开的站内页面里直接调用 web 接口（edith 域名）
+ * <p>
+ * 签名复用页面自身的 window._webmsxyw，Cookie 随页面上下文携带；
+ * 多个请求在页面内以 Promise 池并发，concurrency 控制同时在途的请求数。
+ * 页面必须先导航到 www.xiaohongshu.com 下任意页面，签名函数才会加载。
+ */
+public final class XhsApi {
+    public static final String API_HOST = "https://edith.xiaohongshu.com";
+
+    /** 签名 + fetch 单个请求；依赖外层解构出的 host 变量 */
+    private static final String JS_ONE = """
+              const sign = (uri, body) => {
+                try {
+                  if (typeof window._webmsxyw === "function") {
+                    const s = window._webmsxyw(uri, body);
+                    return { "x-s": s["X-s"], "x-t": String(s["X-t"]) };
+                  }
+                } catch (e) { /* ignore */ }
+                return {};
+              };
+              const one = async ({ uri, body }) => {
+                try {
+                  const headers = sign(uri, body === null ? undefined : body);
+                  const init = { credentials: "include", headers };
+                  if (body !== null) {
+                    init.method = "POST";
+                    init.body = JSON.stringify(body);
+                    headers["content-type"] = "application/json;charset=UTF-8";
+                  }
+                  const r = await fetch(host + uri, init);
+                  return await r.text();
+                } catch (e) {
+                  return JSON.stringify({ success: false, code: -1, msg: String(e) });
+                }
+              };
+            """;
+
+    private static final String JS_SIGNED_FETCH = "async ({ host, requests, concurrency }) => {\n" + JS_ONE + """
+              const out = new Array(requests.length);
+              let next = 0;
+              const worker = async () => {
+                while (next < requests.length) {
+                  const i = next++;
+                  out[i] = await one(requests[i]);
+                }
+              };
+              const n = Math.max(1, Math.min(concurrency, requests.length));
+              await Promise.all(Array.from({ length: n }, worker));
+              return out;
+            }
+            """;
+
+    /** 打开分页器：立即发出第一页请求，Promise 挂在 window.__xhsPagers[key] 上 */
+    private static final String JS_PAGER_OPEN = "async ({ host, key, template, cursor }) => {\n" + JS_ONE + """
+              window.__xhsPagers = window.__xhsPagers || {};
+              const uri = template.replace("{cursor}", encodeURIComponent(cursor));
+              window.__xhsPagers[key] = { template, pending: one({ uri, body: null }) };
+              return true;
+            }
+            """;
+
+    /**
+     * 取下一页：等待在途请求；拿到响应后先在页面内解析 cursor 并立刻发出下一页请求，再把本页文本交回 Java，
+     * 使 Java 侧解析本页与网络请求下一页重叠
+     */
+    private static final String JS_PAGER_NEXT = "async ({ host, key }) => {\n" + JS_ONE + """
+              const st = (window.__xhsPagers || {})[key];
+              if (!st || !st.pending) return null;
+              const text = await st.pending;
+              st.pending = null;
+              try {
+                const j = JSON.parse(text);
+                const d = j.data || {};
+                if ((j.success || j.code === 0) && d.has_more && d.cursor) {
+                  const uri = st.template.replace("{cursor}", encodeURIComponent(d.cursor));
+                  st.pending = one({ uri, body: null });
+                }
+              } catch (e) { /* 非 JSON：不再预取 */ }
+              return text;
+            }
+            """;
+
+    private static final String JS_PAGER_CLOSE = """
+            (key) => { if (window.__xhsPagers) delete window.__xhsPagers[key]; }
+            """;
+
+    private XhsApi() {}
+
+    /** 单个 GET，返回响应根节点 */
+    public static JsonNode get(Page page, String uri) {
+        return getAll(page, List.of(uri), 1).get(0);
+    }
+
+    /** 并发 GET，结果与 uris 一一对应 */
+    public static List<JsonNode> getAll(Page page, List<String> uris, int concurrency) {
+        List<Map<String, Object>> requests = new ArrayList<>(uris.size());
+        for (String u : uris) {
+            requests.add(request(u, null));
+        }
+        return call(page, requests, concurrency);
+    }
+
+    /**
+     * 打开 cursor 分页器并立即请求第一页
+     *
+     * @param uriTemplate 含 {cursor} 占位符的接口路径，接口响应需为 data.cursor / data.has_more 形态
+     * @param cursor      起始 cursor，首页为空串
+     */
+    public static void openPager(Page page, String key, String uriTemplate, String cursor) {
+        page.evaluate(JS_PAGER_OPEN, Map.of(
+                "host", API_HOST,
+                "key", key,
+                "template", uriTemplate,
+                "cursor", cursor == null ? "" : cursor));
+    }
+
+    /** 取下一页（同时预取再下一页）；没有更多页时返回 null */
+    public static JsonNode nextPage(Page page, String key) {
+        Object ret = page.evaluate(JS_PAGER_NEXT, Map.of("host", API_HOST, "key", key));
+        return ret == null ? null : parse(ret.toString());
+    }
+
+    /** 关闭分页器，丢弃在途的预取 */
+    public static void closePager(Page page, String key) {
+        if (!page.isClosed()) {
+            page.evaluate(JS_PAGER_CLOSE, key);
+        }
+    }
+
+    /** 响应是否成功（success=true 或 code=0） */
+    public static boolean isOk(JsonNode root) {
+        return root.path("success").asBoolean(false) || root.path("code").asInt(-1) == 0;
+    }
+
+    private static Map<String, Object> request(String uri, Object body) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("uri", uri);
+        m.put("body", body);
+        return m;
+    }
+
+    private static List<JsonNode> call(Page page, List<Map<String, Object>> requests, int concurrency) {
+        if (requests.isEmpty()) return List.of();
+        Object ret = page.evaluate(JS_SIGNED_FETCH, Map.of(
+                "host", API_HOST,
+                "requests", requests,
+                "concurrency", concurrency));
+        List<JsonNode> out = new ArrayList<>(requests.size());
+        if (ret instanceof List<?> list) {
+            for (Object o : list) {
+                out.add(parse(o == null ? null : o.toString()));
+            }
+        }
+        while (out.size() < requests.size()) {
+            out.add(parse(null));
+        }
+        return out;
+    }
+
+    private static JsonNode parse(String text) {
+        if (text != null && !text.isBlank()) {
+            try {
+                return Json.M.readTree(text);
+            } catch (Exception ignore) {
+                // 非 JSON（网关错误页等），按失败处理
+            }
+        }
+        ObjectNode n = JsonNodeFactory.instance.objectNode();
+        n.put("success", false);
+        n.put("code", -1);
+        n.put("msg", "invalid response");
+        return n;
+    }
+}
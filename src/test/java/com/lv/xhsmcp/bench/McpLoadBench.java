@@ -0,0 +1,137 @@
+package com.lv.xhsmcp.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.lv.xhsmcp.util.Json;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MCP 并发压测：逐级放大并发会话数，每个会话独立 initialize 后调用一次工具，统计成功数与延迟
+ * <p>
+ * 只在测试源码中，不打进发布包。用法（服务先启动；对比时分别以 spring.threads.virtual.enabled=false / true 启动一次）：
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp "target/test-classes:target/classes:$(cat target/cp.txt)" com.lv.xhsmcp.bench.McpLoadBench \
+ *      --url http://127.0.0.1:8081/mcp --tool checkLogin --levels 16,32,64,128,256
+ * </pre>
+ */
+public class McpLoadBench {
+    private static final String PROTOCOL_VERSION = "2025-03-26";
+    private static final String HDR_SESSION = "Mcp-Session-Id";
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    private final URI endpoint;
+    private final String tool;
+    private final JsonNode args;
+    private final Duration timeout;
+
+    private McpLoadBench(URI endpoint, String tool, JsonNode args, Duration timeout) {
+        this.endpoint = endpoint;
+        this.tool = tool;
+        this.args = args;
+        this.timeout = timeout;
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Map<String, String> opts = parseArgs(argv);
+        McpLoadBench t = new McpLoadBench(
+                URI.create(opts.getOrDefault("url", "http://127.0.0.1:8081/mcp")),
+                opts.getOrDefault("tool", "checkLogin"),
+                Json.M.readTree(opts.getOrDefault("args", "{}")),
+                Duration.ofSeconds(Long.parseLong(opts.getOrDefault("timeout", "120"))));
+
+        System.out.printf("%-8s %-6s %-6s %-10s %-10s %-10s%n", "sessions", "ok", "fail", "p50(ms)", "p99(ms)", "wall(ms)");
+        for (String level : opts.getOrDefault("levels", "8,16,32,64,128").split(",")) {
+            t.runLevel(Integer.parseInt(level.trim()));
+        }
+        System.exit(0);
+    }
+
+    /** 同时发起 n 个会话，全部结束后输出一行统计 */
+    private void runLevel(int n) throws InterruptedException {
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>(n));
+        AtomicInteger fail = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        long t0 = System.nanoTime();
+        try (ExecutorService exec = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < n; i++) {
+                exec.submit(() -> {
+                    try {
+                        start.await();
+                        long s = System.nanoTime();
+                        if (oneSession()) {
+                            latencies.add((System.nanoTime() - s) / 1_000_000);
+                        } else {
+                            fail.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        fail.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+        }
+        long wall = (System.nanoTime() - t0) / 1_000_000;
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        System.out.printf("%-8d %-6d %-6d %-10d %-10d %-10d%n", n, sorted.size(), fail.get(),
+                percentile(sorted, 0.50), percentile(sorted, 0.99), wall);
+    }
+
+    private boolean oneSession() throws Exception {
+        HttpResponse<String> init = post(null, Map.of(
+                "jsonrpc", "2.0", "id", 1, "method", "initialize",
+                "params", Map.of(
+                        "protocolVersion", PROTOCOL_VERSION,
+                        "capabilities", Map.of(),
+                        "clientInfo", Map.of("name", "mcp-load-test", "version", "1.0"))));
+        String session = init.headers().firstValue(HDR_SESSION).orElse(null);
+        if (init.statusCode() >= 300 || session == null) {
+            return false;
+        }
+        post(session, Map.of("jsonrpc", "2.0", "method", "notifications/initialized"));
+        HttpResponse<String> call = post(session, Map.of(
+                "jsonrpc", "2.0", "id", 2, "method", "tools/call",
+                "params", Map.of("name", tool, "arguments", args)));
+        return call.statusCode() < 300 && call.body().contains("\"result\"");
+    }
+
+    private HttpResponse<String> post(String session, Object body) throws Exception {
+        HttpRequest.Builder b = HttpRequest.newBuilder(endpoint)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json, text/event-stream")
+                .POST(HttpRequest.BodyPublishers.ofString(Json.M.writeValueAsString(body)));
+        if (session != null) {
+            b.header(HDR_SESSION, session);
+        }
+        return http.send(b.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static long percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) return -1;
+        int idx = (int) Math.ceil(p * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(idx, sorted.size() - 1)));
+    }
+
+    private static Map<String, String> parseArgs(String[] argv) {
+        Map<String, String> m = new HashMap<>();
+        for (int i = 0; i + 1 < argv.length; i += 2) {
+            if (argv[i].startsWith("--")) {
+                m.put(argv[i].substring(2), argv[i + 1]);
+            }
+        }
+        return m;
+    }
+}
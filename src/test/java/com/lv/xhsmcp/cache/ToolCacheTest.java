@@ -0,0 +1,269 @@
+package com.lv.xhsmcp.cache;
+
+import com.lv.xhsmcp.xhs.BizErrorCode;
+import com.lv.xhsmcp.xhs.Result;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static com.lv.xhsmcp.cache.ToolCache.FEED_DETAIL;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToolCacheTest {
+    private static final long BIG = 1L << 20;
+
+    private final ExecutorService pool = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    /* =============== 按字节的 LRU =============== */
+
+    @Test
+    void evictsLeastRecentlyUsedOnceOverBudget() {
+        long one = sizeOf("k1", "aaaa");
+        ToolCache cache = cache(3 * one, 600, 0, 600);
+        cache.put(FEED_DETAIL, "k1", ok("aaaa"));
+        cache.put(FEED_DETAIL, "k2", ok("bbbb"));
+        cache.put(FEED_DETAIL, "k3", ok("cccc"));
+        // 访问 k1，k2 成为最久未用
+        assertTrue(cache.containsFresh(FEED_DETAIL, "k1"));
+
+        cache.put(FEED_DETAIL, "k4", ok("dddd"));
+
+        assertTrue(cache.containsFresh(FEED_DETAIL, "k1"));
+        assertFalse(cache.containsFresh(FEED_DETAIL, "k2"));
+        assertTrue(cache.containsFresh(FEED_DETAIL, "k3"));
+        assertTrue(cache.containsFresh(FEED_DETAIL, "k4"));
+        Map<String, Object> stats = cache.stats();
+        assertEquals(1L, ((Number) stats.get("evictions")).longValue());
+        assertEquals(3, ((Number) stats.get("entries")).intValue());
+        assertTrue(((Number) stats.get("bytes")).longValue() <= 3 * one);
+    }
+
+    @Test
+    void largeEntryEvictsSeveralButNeverItself() {
+        long one = sizeOf("k1", "aaaa");
+        ToolCache cache = cache(3 * one, 600, 0, 600);
+        cache.put(FEED_DETAIL, "k1", ok("aaaa"));
+        cache.put(FEED_DETAIL, "k2", ok("bbbb"));
+        cache.put(FEED_DETAIL, "k3", ok("cccc"));
+
+        // 比单条大、但不超过总容量：挤掉两条旧的，自身保留
+        cache.put(FEED_DETAIL, "k4", ok("d".repeat((int) one)));
+
+        assertTrue(cache.containsFresh(FEED_DETAIL, "k4"));
+        assertFalse(cache.containsFresh(FEED_DETAIL, "k1"));
+        assertFalse(cache.containsFresh(FEED_DETAIL, "k2"));
+        assertTrue(cache.containsFresh(FEED_DETAIL, "k3"));
+        assertTrue(((Number) cache.stats().get("bytes")).longValue() <= 3 * one);
+    }
+
+    @Test
+    void entryLargerThanBudgetIsNotCached() {
+        ToolCache cache = cache(512, 600, 0, 600);
+        cache.put(FEED_DETAIL, "small", ok("aaaa"));
+
+        cache.put(FEED_DETAIL, "huge", ok("x".repeat(1024)));
+
+        assertFalse(cache.containsFresh(FEED_DETAIL, "huge"));
+        assertTrue(cache.containsFresh(FEED_DETAIL, "small"), "oversize put must not evict others");
+        assertEquals(0L, ((Number) cache.stats().get("evictions")).longValue());
+    }
+
+    /* =============== 同 key 合并 =============== */
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        ToolCache cache = cache(BIG, 600, 0, 600);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<Result<String>> loader = () -> {
+            loads.incrementAndGet();
+            started.countDown();
+            await(release);
+            return ok("v");
+        };
+
+        Future<Result<String>> first = pool.submit(() -> cache.get(FEED_DETAIL, "k", loader));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<Result<String>> second = pool.submit(() -> cache.get(FEED_DETAIL, "k", loader));
+        Future<Result<String>> third = pool.submit(() -> cache.get(FEED_DETAIL, "k", loader));
+        waitUntil(() -> counter(cache, "coalesced") == 2);
+        release.countDown();
+
+        Result<String> r1 = first.get(5, TimeUnit.SECONDS);
+        assertSame(r1, second.get(5, TimeUnit.SECONDS));
+        assertSame(r1, third.get(5, TimeUnit.SECONDS));
+        assertEquals("v", r1.getData());
+        assertEquals(1, loads.get());
+        assertEquals(1L, counter(cache, "misses"));
+        assertEquals(0, ((Number) cache.stats().get("inflight")).intValue());
+    }
+
+    @Test
+    void loaderExceptionReachesEveryWaiter() throws Exception {
+        ToolCache cache = cache(BIG, 600, 0, 600);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<Result<String>> loader = () -> {
+            started.countDown();
+            await(release);
+            throw new IllegalStateException("boom");
+        };
+
+        Future<Result<String>> first = pool.submit(() -> cache.get(FEED_DETAIL, "k", loader));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<Result<String>> second = pool.submit(() -> cache.get(FEED_DETAIL, "k", loader));
+        waitUntil(() -> counter(cache, "coalesced") == 1);
+        release.countDown();
+
+        for (Future<Result<String>> f : new Future[]{first, second}) {
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> f.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, ex.getCause());
+        }
+        // 失败不留下缓存，下一次重新加载
+        assertEquals("v", cache.get(FEED_DETAIL, "k", () -> ok("v")).getData());
+    }
+
+    /* =============== 负缓存 =============== */
+
+    @Test
+    void authRequiredIsNegativelyCached() {
+        ToolCache cache = cache(BIG, 600, 0, 600);
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Result<String>> loader = () -> {
+            loads.incrementAndGet();
+            return Result.fail(BizErrorCode.AUTH_REQUIRED, "未登录");
+        };
+
+        assertEquals(BizErrorCode.AUTH_REQUIRED, cache.get(FEED_DETAIL, "k", loader).getCode());
+        assertEquals(BizErrorCode.AUTH_REQUIRED, cache.get(FEED_DETAIL, "k", loader).getCode());
+
+        assertEquals(1, loads.get());
+        assertEquals(1L, counter(cache, "negativeHits"));
+        assertFalse(cache.containsFresh(FEED_DETAIL, "k"));
+    }
+
+    @Test
+    void otherFailuresAreNotCached() {
+        ToolCache cache = cache(BIG, 600, 0, 600);
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Result<String>> loader = () -> {
+            loads.incrementAndGet();
+            return Result.fail(BizErrorCode.GET_FEED_DETAIL_FAILED, "加载失败");
+        };
+
+        assertEquals(BizErrorCode.GET_FEED_DETAIL_FAILED, cache.get(FEED_DETAIL, "k", loader).getCode());
+        assertEquals(BizErrorCode.GET_FEED_DETAIL_FAILED, cache.get(FEED_DETAIL, "k", loader).getCode());
+
+        assertEquals(2, loads.get());
+        assertEquals(0L, counter(cache, "negativeHits"));
+    }
+
+    /* =============== 过期兜底 =============== */
+
+    @Test
+    void siteFailureFallsBackToStaleEntry() {
+        // 详情 TTL 为 0：写入即过期，仍在兜底窗口内
+        ToolCache cache = cache(BIG, 600, 3600, 0);
+        cache.get(FEED_DETAIL, "k", () -> ok("old"));
+
+        Result<String> r = cache.get(FEED_DETAIL, "k",
+                () -> Result.fail(BizErrorCode.GET_FEED_DETAIL_FAILED, "加载失败"));
+
+        assertTrue(r.isSuccess());
+        assertEquals("old", r.getData());
+        assertEquals("站点请求失败，返回过期缓存", r.getMessage());
+        assertEquals(1L, counter(cache, "staleServed"));
+    }
+
+    @Test
+    void loaderExceptionFallsBackToStaleEntry() {
+        ToolCache cache = cache(BIG, 600, 3600, 0);
+        cache.get(FEED_DETAIL, "k", () -> ok("old"));
+
+        Result<String> r = cache.get(FEED_DETAIL, "k", () -> {
+            throw new IllegalStateException("boom");
+        });
+
+        assertTrue(r.isSuccess());
+        assertEquals("old", r.getData());
+    }
+
+    @Test
+    void noFallbackOnceStaleWindowHasPassed() throws Exception {
+        ToolCache cache = cache(BIG, 600, 0, 0);
+        cache.get(FEED_DETAIL, "k", () -> ok("old"));
+        Thread.sleep(5);
+
+        Result<String> r = cache.get(FEED_DETAIL, "k",
+                () -> Result.fail(BizErrorCode.GET_FEED_DETAIL_FAILED, "加载失败"));
+        assertEquals(BizErrorCode.GET_FEED_DETAIL_FAILED, r.getCode());
+
+        assertThrows(IllegalStateException.class, () -> cache.get(FEED_DETAIL, "k", () -> {
+            throw new IllegalStateException("boom");
+        }));
+    }
+
+    @Test
+    void negativeEntryIsNeverServedAsStale() throws Exception {
+        // 负缓存 TTL 为 0：立即过期，兜底窗口内也不能把 AUTH_REQUIRED 当成功返回
+        ToolCache cache = cache(BIG, 0, 3600, 600);
+        cache.get(FEED_DETAIL, "k", () -> Result.fail(BizErrorCode.AUTH_REQUIRED, "未登录"));
+        Thread.sleep(5);
+
+        Result<String> r = cache.get(FEED_DETAIL, "k",
+                () -> Result.fail(BizErrorCode.GET_FEED_DETAIL_FAILED, "加载失败"));
+
+        assertFalse(r.isSuccess());
+        assertEquals(BizErrorCode.GET_FEED_DETAIL_FAILED, r.getCode());
+    }
+
+    /* =============== 工具 =============== */
+
+    private static ToolCache cache(long maxBytes, long negativeTtl, long staleSeconds, long feedDetailTtl) {
+        return new ToolCache(maxBytes, negativeTtl, staleSeconds, feedDetailTtl, 600, 600);
+    }
+
+    private static Result<String> ok(String data) {
+        return Result.ok(data, "OK");
+    }
+
+    /** 单条写入后的估算字节数 */
+    private static long sizeOf(String key, String data) {
+        ToolCache probe = cache(BIG, 600, 0, 600);
+        probe.put(FEED_DETAIL, key, ok(data));
+        return ((Number) probe.stats().get("bytes")).longValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long counter(ToolCache cache, String name) {
+        Map<String, Object> tools = (Map<String, Object>) cache.stats().get("tools");
+        Map<String, Object> c = (Map<String, Object>) tools.get(FEED_DETAIL);
+        return c == null ? 0 : ((Number) c.get(name)).longValue();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(java.util.function.BooleanSupplier cond) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!cond.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met in time");
+            Thread.sleep(5);
+        }
+    }
+}
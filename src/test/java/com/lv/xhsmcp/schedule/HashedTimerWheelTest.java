@@ -0,0 +1,120 @@
+package com.lv.xhsmcp.schedule;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedTimerWheelTest {
+    private static final long TICK_MS = 10;
+    /** 4 格 × 10ms：40ms 以上的任务要跨圈 */
+    private static final int WHEEL_SIZE = 4;
+    /** currentTimeMillis 与 nanoTime 两个时间轴之间的误差 */
+    private static final long CLOCK_SLACK_MS = 5;
+
+    private HashedTimerWheel wheel;
+
+    @AfterEach
+    void tearDown() {
+        if (wheel != null) wheel.close();
+    }
+
+    /* =============== 到期执行 =============== */
+
+    @Test
+    void expiredDeadlineRunsOnNextTick() throws Exception {
+        wheel = new HashedTimerWheel(TICK_MS, WHEEL_SIZE, Runnable::run);
+        CountDownLatch done = new CountDownLatch(1);
+        wheel.schedule(done::countDown, System.currentTimeMillis() - 60_000);
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void neverFiresBeforeDeadline() throws Exception {
+        wheel = new HashedTimerWheel(TICK_MS, WHEEL_SIZE, Runnable::run);
+        long[] delays = {15, 35, 95, 170};              // 后两个跨 2 圈、4 圈
+        CountDownLatch done = new CountDownLatch(delays.length);
+        List<String> early = new CopyOnWriteArrayList<>();
+        long now = System.currentTimeMillis();
+        for (long d : delays) {
+            long deadline = now + d;
+            wheel.schedule(() -> {
+                long late = System.currentTimeMillis() - deadline;
+                if (late < -CLOCK_SLACK_MS) early.add(d + "ms fired " + (-late) + "ms early");
+                done.countDown();
+            }, deadline);
+        }
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(List.of(), early);
+    }
+
+    @Test
+    void firesInDeadlineOrderAcrossRounds() throws Exception {
+        wheel = new HashedTimerWheel(TICK_MS, WHEEL_SIZE, Runnable::run);
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        long now = System.currentTimeMillis();
+        // 同一格（offset 模 40ms 相同）但圈数不同
+        wheel.schedule(() -> { order.add(3); done.countDown(); }, now + 130);
+        wheel.schedule(() -> { order.add(1); done.countDown(); }, now + 50);
+        wheel.schedule(() -> { order.add(2); done.countDown(); }, now + 90);
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(List.of(1, 2, 3), order);
+    }
+
+    /* =============== 取消 / 异常 =============== */
+
+    @Test
+    void cancelledTaskDoesNotRun() throws Exception {
+        wheel = new HashedTimerWheel(TICK_MS, WHEEL_SIZE, Runnable::run);
+        AtomicInteger runs = new AtomicInteger();
+        long now = System.currentTimeMillis();
+        HashedTimerWheel.Timeout t = wheel.schedule(runs::incrementAndGet, now + 30);
+        assertTrue(t.cancel());
+        assertFalse(t.cancel());
+        assertTrue(t.isCancelled());
+
+        CountDownLatch later = new CountDownLatch(1);
+        wheel.schedule(later::countDown, now + 80);
+        assertTrue(later.await(1, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    void rejectedTaskDoesNotStopTheWheel() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Executor flaky = r -> {
+            if (calls.incrementAndGet() == 1) throw new IllegalStateException("rejected");
+            r.run();
+        };
+        wheel = new HashedTimerWheel(TICK_MS, WHEEL_SIZE, flaky);
+        long now = System.currentTimeMillis();
+        wheel.schedule(() -> {}, now);
+        CountDownLatch done = new CountDownLatch(1);
+        wheel.schedule(done::countDown, now + 50);
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+    }
+
+    /* =============== 参数 / 生命周期 =============== */
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new HashedTimerWheel(0, 8, Runnable::run));
+        assertThrows(IllegalArgumentException.class, () -> new HashedTimerWheel(10, 0, Runnable::run));
+        assertThrows(IllegalArgumentException.class, () -> new HashedTimerWheel(10, (1 << 20) + 1, Runnable::run));
+    }
+
+    @Test
+    void scheduleAfterCloseFails() {
+        wheel = new HashedTimerWheel(TICK_MS, WHEEL_SIZE, Runnable::run);
+        wheel.close();
+        assertThrows(IllegalStateException.class, () -> wheel.schedule(() -> {}, System.currentTimeMillis()));
+    }
+}
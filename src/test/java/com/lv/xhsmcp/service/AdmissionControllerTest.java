@@ -0,0 +1,203 @@
+package com.lv.xhsmcp.service;
+
+import com.lv.xhsmcp.service.AdmissionController.Histogram;
+import com.lv.xhsmcp.service.AdmissionController.Priority;
+import com.lv.xhsmcp.xhs.BizErrorCode;
+import com.lv.xhsmcp.xhs.Result;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControllerTest {
+    private final ExecutorService pool = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    /* =============== 直方图 =============== */
+
+    @Test
+    void histogramBucketsCoverEveryValue() {
+        for (long v = 0; v < 200_000; v++) {
+            int b = Histogram.bucket(v);
+            assertTrue(Histogram.upper(b) >= v, "upper of " + v);
+            if (b > 0) assertTrue(Histogram.upper(b - 1) < v, "previous upper of " + v);
+        }
+        // 误差不超过 25%
+        for (long v = 4; v < 1L << 40; v = v * 3 + 1) {
+            assertTrue(Histogram.upper(Histogram.bucket(v)) <= v * 1.25, "error of " + v);
+        }
+    }
+
+    @Test
+    void histogramPercentiles() {
+        Histogram h = new Histogram();
+        assertEquals(0, h.percentile(0.5));
+        for (long ms = 1; ms <= 1_000; ms++) h.record(ms);
+        h.record(-5);
+        long p50 = h.percentile(0.50);
+        long p99 = h.percentile(0.99);
+        assertTrue(p50 >= 500 && p50 <= 625, "p50 " + p50);
+        assertTrue(p99 >= 990 && p99 <= 1_237, "p99 " + p99);
+        assertEquals(0, h.percentile(0.0001));
+    }
+
+    /* =============== 页面池 =============== */
+
+    @Test
+    void writeClassIsCappedAndRejectsAfterQueueTimeout() throws Exception {
+        AdmissionController ac = controller(4, 8, 100, 1, 6, 4, 1, 3, 3, 0, 1, 1);
+        Hold hold = new Hold();
+        Future<Result<Integer>> first = pool.submit(() -> ac.admit("publish", hold::run));
+        assertTrue(hold.started.await(1, TimeUnit.SECONDS));
+
+        // 调用方不能把写操作降级绕过上限
+        Result<Integer> second = ac.admit("publishVideo", Priority.INTERACTIVE, () -> Result.ok(2));
+        assertEquals(BizErrorCode.OVERLOADED, second.getCode());
+        assertNotNull(second.getRetryAfterSeconds());
+        assertTrue(second.getRetryAfterSeconds() >= 1);
+
+        // 其他级别不受影响
+        assertTrue(ac.admit("search", () -> Result.ok(3)).isSuccess());
+        hold.release.countDown();
+        assertTrue(first.get(1, TimeUnit.SECONDS).isSuccess());
+        assertTrue(ac.admit("publish", () -> Result.ok(4)).isSuccess());
+        assertEquals(1L, classStats(ac, "write").get("rejectedTimeout"));
+    }
+
+    @Test
+    void reservedSlotIsKeptForItsClass() throws Exception {
+        // 2 个名额：interactive 预留 1，共享 1
+        AdmissionController ac = controller(2, 8, 100, 1, 6, 2, 0, 3, 2, 0, 1, 1);
+        Hold hold = new Hold();
+        Future<Result<Integer>> bulk = pool.submit(() -> ac.admit("feedDetails", hold::run));
+        assertTrue(hold.started.await(1, TimeUnit.SECONDS));
+
+        assertEquals(BizErrorCode.OVERLOADED, ac.admit("userProfiles", () -> Result.ok(1)).getCode());
+        assertTrue(ac.admit("search", () -> Result.ok(2)).isSuccess());
+        hold.release.countDown();
+        assertTrue(bulk.get(1, TimeUnit.SECONDS).isSuccess());
+    }
+
+    @Test
+    void sharedSlotGoesToHigherWeightOnTie() throws Exception {
+        AdmissionController ac = controller(1, 8, 5_000, 0, 6, 1, 0, 3, 1, 0, 1, 1);
+        Hold hold = new Hold();
+        Future<Result<Integer>> write = pool.submit(() -> ac.admit("publish", hold::run));
+        assertTrue(hold.started.await(1, TimeUnit.SECONDS));
+
+        List<String> order = new CopyOnWriteArrayList<>();
+        Future<Result<Integer>> bulk = pool.submit(() -> ac.admit("feedDetails", () -> { order.add("bulk"); return Result.ok(1); }));
+        awaitQueued(ac, "bulk");
+        Future<Result<Integer>> interactive = pool.submit(() -> ac.admit("search", () -> { order.add("interactive"); return Result.ok(2); }));
+        awaitQueued(ac, "interactive");
+
+        hold.release.countDown();
+        assertTrue(write.get(1, TimeUnit.SECONDS).isSuccess());
+        assertTrue(bulk.get(1, TimeUnit.SECONDS).isSuccess());
+        assertTrue(interactive.get(1, TimeUnit.SECONDS).isSuccess());
+        assertEquals(List.of("interactive", "bulk"), order);
+    }
+
+    @Test
+    void fullQueueRejectsImmediately() throws Exception {
+        AdmissionController ac = controller(1, 0, 60_000, 0, 6, 1, 0, 3, 1, 0, 1, 1);
+        Hold hold = new Hold();
+        Future<Result<Integer>> first = pool.submit(() -> ac.admit("search", hold::run));
+        assertTrue(hold.started.await(1, TimeUnit.SECONDS));
+
+        long t0 = System.nanoTime();
+        Result<Integer> r = ac.admit("search", () -> Result.ok(1));
+        assertEquals(BizErrorCode.OVERLOADED, r.getCode());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0) < 1_000);
+        hold.release.countDown();
+        first.get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void failedJobReleasesItsSlot() {
+        AdmissionController ac = controller(1, 8, 100, 0, 6, 1, 0, 3, 1, 0, 1, 1);
+        assertThrows(IllegalStateException.class, () -> ac.admit("search", () -> { throw new IllegalStateException("boom"); }));
+        assertTrue(ac.admit("search", () -> Result.ok(1)).isSuccess());
+        assertEquals(0, classStats(ac, "interactive").get("running"));
+    }
+
+    /* =============== 配置 =============== */
+
+    @Test
+    void concurrencyIsBoundedByToolAndClass() {
+        AdmissionController ac = new AdmissionController(true, 4, 8, 100, "userProfiles=2", "search=bulk",
+                1, 6, 4, 1, 3, 3, 0, 1, 1);
+        assertEquals(3, ac.concurrency("feedDetails", null));
+        assertEquals(4, ac.concurrency("feedDetails", Priority.INTERACTIVE));
+        assertEquals(2, ac.concurrency("userProfiles", Priority.INTERACTIVE));
+        assertEquals(1, ac.concurrency("publish", Priority.INTERACTIVE));
+        assertEquals(Priority.BULK, ac.priorityOf("search"));
+        assertEquals(Priority.BULK, ac.priorityOf("trendSweep"));
+        assertEquals(Priority.INTERACTIVE, ac.priorityOf("listFeeds"));
+    }
+
+    @Test
+    void invalidConfigurationFailsFast() {
+        assertThrows(IllegalStateException.class, () -> controller(2, 8, 100, 1, 6, 2, 1, 3, 2, 1, 1, 1));
+        assertThrows(IllegalStateException.class, () -> controller(2, 8, 100, 2, 6, 1, 0, 3, 2, 0, 1, 1));
+        assertThrows(IllegalStateException.class, () -> new AdmissionController(true, 2, 8, 100, "search=0", "",
+                0, 6, 2, 0, 3, 2, 0, 1, 1));
+        assertThrows(IllegalStateException.class, () -> new AdmissionController(true, 2, 8, 100, "", "search=urgent",
+                0, 6, 2, 0, 3, 2, 0, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> Priority.of("urgent"));
+        assertNull(Priority.of(" "));
+    }
+
+    @Test
+    void disabledRunsEverything() {
+        AdmissionController ac = new AdmissionController(false, 1, 0, 0, "", "", 0, 6, 1, 0, 3, 1, 0, 1, 1);
+        assertTrue(ac.admit("publish", () -> ac.admit("publish", () -> Result.ok(1))).isSuccess());
+    }
+
+    /* =============== 工具 =============== */
+
+    /** 占住名额直到 release */
+    private static final class Hold {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        Result<Integer> run() {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Result.ok(0);
+        }
+    }
+
+    private static AdmissionController controller(int global, int queue, long maxQueueMs,
+                                                  int iReserved, int iWeight, int iMax,
+                                                  int bReserved, int bWeight, int bMax,
+                                                  int wReserved, int wWeight, int wMax) {
+        return new AdmissionController(true, global, queue, maxQueueMs, "", "",
+                iReserved, iWeight, iMax, bReserved, bWeight, bMax, wReserved, wWeight, wMax);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> classStats(AdmissionController ac, String klass) {
+        return (Map<String, Object>) ((Map<String, Object>) ac.stats().get("pool")).get(klass);
+    }
+
+    private static void awaitQueued(AdmissionController ac, String klass) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (!Integer.valueOf(1).equals(classStats(ac, klass).get("queueDepth"))) {
+            assertTrue(System.nanoTime() < deadline, klass + " not queued");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.lv.xhsmcp.store;
+
+import com.lv.xhsmcp.model.Feed;
+import com.lv.xhsmcp.model.LocalSearchItem;
+import com.lv.xhsmcp.model.NoteCard;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FullTextIndexTest {
+
+    /* =============== 单字查询 =============== */
+
+    @Test
+    void singleCjkCharMatchesInsideLongerRun() {
+        FullTextIndex index = newIndex();
+        index.onSaved(NoteStore.FEED, "n1", feed("n1", "小猫咪的日常"));
+        index.onSaved(NoteStore.FEED, "n2", feed("n2", "周末露营清单"));
+
+        assertEquals(List.of("n1"), ids(index, "猫"));
+        assertEquals(List.of("n1"), ids(index, "小猫"));
+        assertEquals(List.of(), ids(index, "狗"));
+    }
+
+    @Test
+    void bigramQueryDoesNotMatchScatteredChars() {
+        FullTextIndex index = newIndex();
+        // 两个字都出现但不相邻：按二元组查询不应命中
+        index.onSaved(NoteStore.FEED, "n1", feed("n1", "猫和咪"));
+        index.onSaved(NoteStore.FEED, "n2", feed("n2", "猫咪"));
+
+        assertEquals(List.of("n2"), ids(index, "猫咪"));
+    }
+
+    /* =============== 工具 =============== */
+
+    private static List<String> ids(FullTextIndex index, String query) {
+        return index.search(query, 0, 0).getItems().stream().map(LocalSearchItem::getFeedId).toList();
+    }
+
+    private static FullTextIndex newIndex() {
+        FullTextIndex index = new FullTextIndex();
+        ReflectionTestUtils.setField(index, "enabled", true);
+        ReflectionTestUtils.setField(index, "noteStore", new NoteStore());
+        return index;
+    }
+
+    private static Feed feed(String id, String title) {
+        NoteCard card = new NoteCard();
+        card.setDisplayTitle(title);
+        return Feed.builder().id(id).modelType("note").noteCard(card).build();
+    }
+}
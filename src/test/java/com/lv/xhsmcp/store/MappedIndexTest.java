@@ -0,0 +1,157 @@
+package com.lv.xhsmcp.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedIndexTest {
+    private static final int CAP = 4_096;
+
+    @TempDir
+    Path dir;
+
+    /* =============== 读写 =============== */
+
+    @Test
+    void putReturnsPreviousLocation() throws Exception {
+        MappedIndex idx = MappedIndex.create(dir.resolve("a.idx"), 0);
+        assertEquals(CAP, idx.capacity());
+        assertNull(idx.put(42, loc(1, 100)));
+        assertEquals(loc(1, 100), idx.get(42));
+
+        assertEquals(loc(1, 100), idx.put(42, loc(2, 200)));
+        assertEquals(loc(2, 200), idx.get(42));
+        assertEquals(1, idx.live());
+        assertNull(idx.get(43));
+    }
+
+    @Test
+    void collidingHashesProbeLinearly() throws Exception {
+        MappedIndex idx = MappedIndex.create(dir.resolve("a.idx"), 0);
+        long a = 5, b = 5 + CAP, c = 5 + 2L * CAP;       // 同一起始槽位
+        idx.put(a, loc(1, 1));
+        idx.put(b, loc(1, 2));
+        idx.put(c, loc(1, 3));
+
+        // 删除中间一个留下墓碑，不影响后面的查找
+        assertTrue(idx.removeIf(b, loc(1, 2)));
+        assertNull(idx.get(b));
+        assertEquals(loc(1, 1), idx.get(a));
+        assertEquals(loc(1, 3), idx.get(c));
+        assertEquals(2, idx.live());
+
+        // 墓碑槽位可被同一哈希重新占用
+        assertNull(idx.put(b, loc(2, 9)));
+        assertEquals(loc(2, 9), idx.get(b));
+        assertEquals(3, idx.live());
+    }
+
+    @Test
+    void removeIfOnlyMatchesExpectedLocation() throws Exception {
+        MappedIndex idx = MappedIndex.create(dir.resolve("a.idx"), 0);
+        idx.put(7, loc(1, 10));
+        assertFalse(idx.removeIf(7, loc(1, 11)));
+        assertFalse(idx.removeIf(7, loc(2, 10)));
+        assertFalse(idx.removeIf(8, loc(1, 10)));
+        assertTrue(idx.removeIf(7, loc(1, 10)));
+        assertFalse(idx.removeIf(7, loc(1, 10)));
+        assertEquals(0, idx.live());
+    }
+
+    @Test
+    void forEachSkipsTombstones() throws Exception {
+        MappedIndex idx = MappedIndex.create(dir.resolve("a.idx"), 0);
+        for (long h = 1; h <= 10; h++) idx.put(h, loc(1, h));
+        idx.removeIf(3, loc(1, 3));
+        Map<Long, MappedIndex.Loc> seen = new HashMap<>();
+        idx.forEach(seen::put);
+        assertEquals(9, seen.size());
+        assertFalse(seen.containsKey(3L));
+        assertEquals(loc(1, 10), seen.get(10L));
+    }
+
+    /* =============== 打开 / 扩容 =============== */
+
+    @Test
+    void reopenSeesWrites() throws Exception {
+        Path file = dir.resolve("a.idx");
+        MappedIndex idx = MappedIndex.create(file, 0);
+        idx.put(11, loc(3, 300));
+        idx.setClean(true);
+        idx.force();
+
+        MappedIndex rw = MappedIndex.open(file, false);
+        assertNotNull(rw);
+        assertEquals(loc(3, 300), rw.get(11));
+        assertTrue(rw.clean());
+
+        MappedIndex ro = MappedIndex.open(file, true);
+        assertNotNull(ro);
+        assertEquals(loc(3, 300), ro.get(11));
+        assertThrows(IllegalStateException.class, () -> ro.put(12, loc(1, 1)));
+    }
+
+    @Test
+    void openRejectsMissingOrForeignFiles() throws Exception {
+        assertNull(MappedIndex.open(dir.resolve("missing.idx"), true));
+        Path junk = dir.resolve("junk.idx");
+        Files.write(junk, new byte[128]);
+        assertNull(MappedIndex.open(junk, true));
+    }
+
+    @Test
+    void growDoublesWhenMostlyLive() throws Exception {
+        MappedIndex idx = MappedIndex.create(dir.resolve("a.idx"), 0);
+        int n = (int) (CAP * 0.7) + 1;
+        for (int i = 1; i <= n; i++) idx.put(MappedIndex.hash(key(i)), loc(1, i));
+        assertTrue(idx.needsGrow());
+
+        MappedIndex next = idx.grow();
+        assertEquals(CAP * 2, next.capacity());
+        assertEquals(n, next.live());
+        assertFalse(next.needsGrow());
+        for (int i = 1; i <= n; i++) {
+            assertEquals(loc(1, i), next.get(MappedIndex.hash(key(i))), "key " + i);
+        }
+        assertEquals(CAP * 2, MappedIndex.open(dir.resolve("a.idx"), true).capacity());
+    }
+
+    @Test
+    void growKeepsCapacityWhenMostlyTombstones() throws Exception {
+        MappedIndex idx = MappedIndex.create(dir.resolve("a.idx"), 0);
+        int n = (int) (CAP * 0.7) + 1;
+        for (int i = 1; i <= n; i++) idx.put(MappedIndex.hash(key(i)), loc(1, i));
+        for (int i = 1; i <= n - 10; i++) idx.removeIf(MappedIndex.hash(key(i)), loc(1, i));
+        assertTrue(idx.needsGrow());
+
+        MappedIndex next = idx.grow();
+        assertEquals(CAP, next.capacity());
+        assertEquals(10, next.live());
+        assertFalse(next.needsGrow());
+        assertEquals(loc(1, n), next.get(MappedIndex.hash(key(n))));
+    }
+
+    @Test
+    void hashIsStableAndNonZero() {
+        assertEquals(MappedIndex.hash(key(1)), MappedIndex.hash(key(1)));
+        assertNotEquals(MappedIndex.hash(key(1)), MappedIndex.hash(key(2)));
+        assertNotEquals(0L, MappedIndex.hash(new byte[0]));
+    }
+
+    /* =============== 工具 =============== */
+
+    private static MappedIndex.Loc loc(int segment, long offset) {
+        return new MappedIndex.Loc(segment, offset, 64, 1_000 + offset);
+    }
+
+    private static byte[] key(int i) {
+        return ("note-" + i).getBytes(StandardCharsets.UTF_8);
+    }
+}
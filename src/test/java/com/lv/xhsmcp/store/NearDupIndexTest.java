@@ -0,0 +1,195 @@
+package com.lv.xhsmcp.store;
+
+import com.lv.xhsmcp.model.DetailImageInfo;
+import com.lv.xhsmcp.model.Feed;
+import com.lv.xhsmcp.model.NearDuplicate;
+import com.lv.xhsmcp.model.NoteCard;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NearDupIndexTest {
+    private static final String OUTFIT = "春日温柔风穿搭分享，小个子女生也能穿出高级感";
+    private static final String CAMPING = "周末去哪儿：城市近郊露营地推荐清单";
+
+    private record Item(String id, String title) {}
+
+    /* =============== shingle / 签名 =============== */
+
+    @Test
+    void shinglesAreSortedAndDistinct() {
+        // 二元组 春日 日穿 穿搭 搭春 春日 日穿 穿搭 -> 相邻组合去重后 4 个
+        long[] s = NearDupIndex.shingles("春日穿搭春日穿搭", null);
+        assertEquals(4, s.length);
+        for (int i = 1; i < s.length; i++) {
+            assertTrue(s[i - 1] < s[i]);
+        }
+        assertArrayEquals(s, NearDupIndex.shingles("春日穿搭春日穿搭", null));
+    }
+
+    @Test
+    void shinglesOfShortText() {
+        assertEquals(0, NearDupIndex.shingles(null, null).length);
+        assertEquals(0, NearDupIndex.shingles("！？", null).length);
+        assertEquals(1, NearDupIndex.shingles("hello", null).length);
+    }
+
+    @Test
+    void imagesAreAddedOnceEach() {
+        long[] plain = NearDupIndex.shingles(OUTFIT, null);
+        long[] withImages = NearDupIndex.shingles(OUTFIT, List.of("abc", "abc", "def"));
+        assertEquals(plain.length + 2, withImages.length);
+    }
+
+    @Test
+    void imageKeysStripStyleAndQuery() {
+        DetailImageInfo a = new DetailImageInfo();
+        a.setUrlDefault("https://sns-webpic.xhscdn.com/202410/spectrum/1040g0k0abc!nd_dft_wlteh_webp_3");
+        DetailImageInfo b = new DetailImageInfo();
+        b.setUrlPre("https://sns-webpic.xhscdn.com/notes_pre_post/1040g0k0def?imageView2/2/w/540");
+        assertEquals(List.of("1040g0k0abc", "1040g0k0def"), NearDupIndex.imageKeys(Arrays.asList(a, null, b)));
+        assertNull(NearDupIndex.imageKeys(List.of()));
+    }
+
+    @Test
+    void similarityCountsEqualMinHashes() {
+        int[] mins = sequence(0);
+        NearDupIndex.Sig a = NearDupIndex.Sig.of(mins);
+        assertEquals(1.0, NearDupIndex.Sig.similarity(a, NearDupIndex.Sig.of(mins.clone())));
+        assertTrue(NearDupIndex.Sig.same(a, NearDupIndex.Sig.of(mins.clone())));
+
+        int[] half = mins.clone();
+        for (int i = 0; i < NearDupIndex.K; i += 2) half[i]++;
+        NearDupIndex.Sig b = NearDupIndex.Sig.of(half);
+        assertEquals(0.5, NearDupIndex.Sig.similarity(a, b));
+        assertFalse(NearDupIndex.Sig.same(a, b));
+        assertTrue(NearDupIndex.Sig.same(null, null));
+        assertFalse(NearDupIndex.Sig.same(a, null));
+    }
+
+    /* =============== 段哈希表 =============== */
+
+    @Test
+    void bandTableReturnsEveryPutPerBand() {
+        NearDupIndex.BandTable t = new NearDupIndex.BandTable(0);
+        NearDupIndex.Sig s = NearDupIndex.Sig.of(sequence(0));
+        NearDupIndex.Sig other = NearDupIndex.Sig.of(sequence(1_000));
+        t.putAll(0, s, 7);
+        t.putAll(0, s, 9);
+        t.putAll(1, s, 11);
+        t.putAll(0, other, 13);
+
+        Map<Integer, Integer> seen = new HashMap<>();
+        t.forEach(0, s, docNo -> seen.merge(docNo, 1, Integer::sum));
+        assertEquals(Map.of(7, NearDupIndex.BANDS, 9, NearDupIndex.BANDS), seen);
+    }
+
+    @Test
+    void bandTableKeepsEntriesWhenGrowing() {
+        NearDupIndex.BandTable t = new NearDupIndex.BandTable(0);
+        int initial = t.keys.length;
+        int n = 2_000;
+        for (int i = 0; i < n; i++) {
+            t.putAll(0, NearDupIndex.Sig.of(sequence(i * NearDupIndex.K)), i);
+        }
+        assertEquals(n * NearDupIndex.BANDS, t.size);
+        assertTrue(t.keys.length > initial);
+        assertTrue(t.size * 4L <= t.keys.length * 3L);
+        for (int i = 0; i < n; i++) {
+            Set<Integer> found = new HashSet<>();
+            t.forEach(0, NearDupIndex.Sig.of(sequence(i * NearDupIndex.K)), found::add);
+            assertTrue(found.contains(i), "doc " + i);
+        }
+    }
+
+    /* =============== 折叠 / 查询 =============== */
+
+    @Test
+    void collapseKeepsFirstOccurrenceInOrder() {
+        NearDupIndex index = newIndex();
+        List<Item> items = List.of(
+                new Item("b", CAMPING),
+                new Item("a", OUTFIT),
+                new Item("c", OUTFIT),
+                new Item("e", "好"),
+                new Item("d", OUTFIT + "！"));
+
+        NearDupIndex.Collapsed<Item> r = index.collapse(items, Item::id, Item::title, false);
+
+        assertEquals(List.of("b", "a", "e"), r.kept().stream().map(Item::id).toList());
+        assertEquals(List.of("c", "d"), new ArrayList<>(r.duplicateOf().keySet()));
+        assertEquals("a", r.duplicateOf().get("c"));
+        assertEquals("a", r.duplicateOf().get("d"));
+    }
+
+    @Test
+    void collapseWithoutTitlesKeepsEverything() {
+        NearDupIndex index = newIndex();
+        List<Item> items = List.of(new Item("a", OUTFIT), new Item("b", OUTFIT));
+        assertEquals(items, index.collapse(items, Item::id, null, false).kept());
+    }
+
+    @Test
+    void duplicatesOfFindsIndexedCards() {
+        NearDupIndex index = newIndex();
+        index.onSaved(NoteStore.FEED, "n1", feed("n1", OUTFIT));
+        index.onSaved(NoteStore.FEED, "n2", feed("n2", OUTFIT));
+        index.onSaved(NoteStore.FEED, "n3", feed("n3", CAMPING));
+
+        List<NearDuplicate> dups = index.duplicatesOf("n1", 0);
+        assertEquals(1, dups.size());
+        assertEquals("n2", dups.get(0).getFeedId());
+        assertEquals("title", dups.get(0).getBasis());
+        assertFalse(dups.get(0).getFetched());
+        assertNull(index.duplicatesOf("missing", 0));
+        assertThrows(IllegalArgumentException.class, () -> index.duplicatesOf("n1", -1));
+    }
+
+    @Test
+    void snapshotRoundTrip(@TempDir Path dir) {
+        Path file = dir.resolve("index.bin");
+        NearDupIndex first = newIndex();
+        first.open(new NoteStore(), file, 3_600);
+        first.onSaved(NoteStore.FEED, "n1", feed("n1", OUTFIT));
+        first.onSaved(NoteStore.FEED, "n2", feed("n2", OUTFIT));
+        first.close();
+
+        NearDupIndex second = newIndex();
+        second.open(new NoteStore(), file, 3_600);
+        try {
+            List<NearDuplicate> dups = second.duplicatesOf("n1", 0);
+            assertNotNull(dups);
+            assertEquals("n2", dups.get(0).getFeedId());
+        } finally {
+            second.close();
+        }
+    }
+
+    /* =============== 工具 =============== */
+
+    private static NearDupIndex newIndex() {
+        NearDupIndex index = new NearDupIndex();
+        ReflectionTestUtils.setField(index, "enabled", true);
+        ReflectionTestUtils.setField(index, "threshold", 0.6);
+        ReflectionTestUtils.setField(index, "titleThreshold", 0.8);
+        ReflectionTestUtils.setField(index, "maxDocs", 50_000);
+        return index;
+    }
+
+    private static Feed feed(String id, String title) {
+        NoteCard card = new NoteCard();
+        card.setDisplayTitle(title);
+        return Feed.builder().id(id).modelType("note").noteCard(card).build();
+    }
+
+    private static int[] sequence(int from) {
+        int[] mins = new int[NearDupIndex.K];
+        for (int i = 0; i < mins.length; i++) mins[i] = from + i;
+        return mins;
+    }
+}
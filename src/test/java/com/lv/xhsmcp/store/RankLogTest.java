@@ -0,0 +1,135 @@
+package com.lv.xhsmcp.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RankLogTest {
+    private static final long T0 = 1_760_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    /* =============== 追加 / 读取 =============== */
+
+    @Test
+    void repeatedSweepIsStoredAsMarker() throws Exception {
+        RankLog log = RankLog.open(dir, "kw");
+        assertTrue(log.append(T0, List.of("a", "b", "c")));
+        long afterFirst = Files.size(dir.resolve("kw.rank"));
+        assertFalse(log.append(T0 + 1, List.of("a", "b", "c")));
+        long repeatBytes = Files.size(dir.resolve("kw.rank")) - afterFirst;
+        assertTrue(log.append(T0 + 2, List.of("c", "d", "a")));
+
+        assertTrue(repeatBytes < afterFirst, "repeat " + repeatBytes + " vs " + afterFirst);
+        assertEquals(3, log.sweeps());
+        assertEquals(List.of(
+                new RankLog.Sweep(T0, List.of("a", "b", "c")),
+                new RankLog.Sweep(T0 + 1, List.of("a", "b", "c")),
+                new RankLog.Sweep(T0 + 2, List.of("c", "d", "a"))), log.read(Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(List.of(new RankLog.Sweep(T0 + 1, List.of("a", "b", "c"))), log.read(T0 + 1, T0 + 1));
+        assertEquals(List.of(), log.read(T0 + 3, Long.MAX_VALUE));
+    }
+
+    @Test
+    void reopenRestoresDictionaryAndLastSweep() throws Exception {
+        RankLog log = RankLog.open(dir, "kw");
+        log.append(T0, List.of("a", "b"));
+        log.append(T0 + 1, List.of("b", "c"));
+
+        RankLog again = RankLog.open(dir, "kw");
+        assertEquals(2, again.sweeps());
+        assertEquals(log.bytes(), again.bytes());
+        // 与重开前最后一次相同：按 repeat 记录
+        assertFalse(again.append(T0 + 2, List.of("b", "c")));
+        assertEquals(List.of("b", "c"), again.read(T0 + 2, T0 + 2).get(0).ids());
+        assertEquals(List.of("a", "b"), again.read(T0, T0).get(0).ids());
+    }
+
+    @Test
+    void rejectsOutOfOrderOrInvalidSweeps() throws Exception {
+        RankLog log = RankLog.open(dir, "kw");
+        log.append(T0, List.of("a"));
+        assertThrows(IllegalArgumentException.class, () -> log.append(T0, List.of("a")));
+        assertThrows(IllegalArgumentException.class, () -> log.append(T0 + 1, List.of("b", "x\ny")));
+
+        // 被拒的巡检不留下字典编号
+        log.append(T0 + 2, List.of("b"));
+        RankLog again = RankLog.open(dir, "kw");
+        assertEquals(List.of("b"), again.read(T0 + 2, T0 + 2).get(0).ids());
+    }
+
+    /* =============== 崩溃恢复 =============== */
+
+    @Test
+    void tornDictionaryLineIsTruncated() throws Exception {
+        RankLog log = RankLog.open(dir, "kw");
+        log.append(T0, List.of("a", "b"));
+        Path ids = dir.resolve("kw.ids");
+        Files.write(ids, "hal".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        RankLog again = RankLog.open(dir, "kw");
+        assertEquals("a\nb\n", Files.readString(ids));
+        again.append(T0 + 1, List.of("c"));
+        assertEquals(List.of("c"), RankLog.open(dir, "kw").read(T0 + 1, T0 + 1).get(0).ids());
+    }
+
+    @Test
+    void tornOrCorruptRecordIsTruncated() throws Exception {
+        RankLog log = RankLog.open(dir, "kw");
+        log.append(T0, List.of("a", "b"));
+        Path rank = dir.resolve("kw.rank");
+        long firstEnd = Files.size(rank);
+        log.append(T0 + 1, List.of("b", "a"));
+
+        byte[] b = Files.readAllBytes(rank);
+        b[b.length - 1] ^= 0x01;
+        Files.write(rank, b);
+        RankLog again = RankLog.open(dir, "kw");
+        assertEquals(firstEnd, Files.size(rank));
+        assertEquals(1, again.sweeps());
+
+        Files.write(rank, new byte[]{0, 0, 0, 9, 1, 2}, StandardOpenOption.APPEND);
+        again = RankLog.open(dir, "kw");
+        assertEquals(firstEnd, Files.size(rank));
+        assertTrue(again.append(T0 + 2, List.of("b", "a")));
+    }
+
+    @Test
+    void dictionaryWrittenWithoutRecordIsKept() throws Exception {
+        RankLog log = RankLog.open(dir, "kw");
+        log.append(T0, List.of("a"));
+        // 模拟字典已写、记录未写时崩溃
+        Files.write(dir.resolve("kw.ids"), "b\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        RankLog again = RankLog.open(dir, "kw");
+        assertEquals(1, again.sweeps());
+        again.append(T0 + 1, List.of("b", "c"));
+        assertEquals(List.of("b", "c"), RankLog.open(dir, "kw").read(T0 + 1, T0 + 1).get(0).ids());
+    }
+
+    @Test
+    void recordsBeyondDictionaryAreDropped() throws Exception {
+        RankLog log = RankLog.open(dir, "kw");
+        log.append(T0, List.of("a"));
+        log.append(T0 + 1, List.of("a", "b"));
+        Files.writeString(dir.resolve("kw.ids"), "a\n");
+
+        RankLog again = RankLog.open(dir, "kw");
+        assertEquals(1, again.sweeps());
+        assertEquals(List.of(new RankLog.Sweep(T0, List.of("a"))), again.read(Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(headerAndPayloadLength(dir.resolve("kw.rank")), Files.size(dir.resolve("kw.rank")));
+    }
+
+    private static long headerAndPayloadLength(Path rank) throws Exception {
+        return 8 + ByteBuffer.wrap(Files.readAllBytes(rank)).getInt(0);
+    }
+}
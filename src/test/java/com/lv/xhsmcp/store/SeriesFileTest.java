@@ -0,0 +1,178 @@
+package com.lv.xhsmcp.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeriesFileTest {
+    private static final int ROW = 8 + 8 * SeriesFile.METRICS + 1;
+    private static final long T0 = 1_760_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    /* =============== 编解码 =============== */
+
+    @Test
+    void varintsRoundTrip() {
+        long[] values = {0, 1, 127, 128, 16_383, 16_384, Integer.MAX_VALUE, Long.MAX_VALUE, -1, Long.MIN_VALUE};
+        SeriesFile.Varints out = new SeriesFile.Varints(0);
+        for (long v : values) out.put(v);
+        ByteBuffer in = ByteBuffer.wrap(out.buf, 0, out.len);
+        for (long v : values) assertEquals(v, SeriesFile.Varints.get(in));
+        assertFalse(in.hasRemaining());
+    }
+
+    @Test
+    void encodeDecodeRoundTripsIrregularSeries() {
+        List<SeriesFile.Sample> in = new ArrayList<>();
+        long ts = T0;
+        for (int i = 0; i < 50; i++) {
+            ts += 60_000 + (i % 7) * 1_003 - 2_000;     // 不等间隔
+            long[] v = {1_000 + i * 3L, 500 - i, i % 2 == 0 ? 0 : Long.MAX_VALUE, -i};
+            in.add(new SeriesFile.Sample(ts, v, i % 3));
+        }
+        assertSamples(in, decode(SeriesFile.encode(in)));
+    }
+
+    @Test
+    void constantColumnsStoreOnlyFirstValue() {
+        List<SeriesFile.Sample> in = new ArrayList<>();
+        for (int i = 0; i < SeriesFile.BLOCK_SAMPLES; i++) {
+            in.add(new SeriesFile.Sample(T0 + i * 60_000L, new long[]{12_000, 30, 5, 1}, 1));
+        }
+        byte[] payload = SeriesFile.encode(in);
+        // 计数列全 0 差分只存首值；等间隔的时间列二阶差分除第一个外都是 0，每个 1 字节
+        assertTrue(payload.length < 40 + SeriesFile.BLOCK_SAMPLES, "payload " + payload.length);
+        assertSamples(in, decode(payload));
+    }
+
+    @Test
+    void singleSampleBlock() {
+        List<SeriesFile.Sample> in = List.of(new SeriesFile.Sample(T0, new long[]{1, 2, 3, 4}, 0));
+        assertSamples(in, decode(SeriesFile.encode(in)));
+    }
+
+    /* =============== 文件 =============== */
+
+    @Test
+    void appendSealsBlocksAndReopens() throws Exception {
+        int n = SeriesFile.BLOCK_SAMPLES * 2 + 5;
+        SeriesFile f = SeriesFile.open(dir, "n1");
+        List<SeriesFile.Sample> in = samples(n);
+        for (SeriesFile.Sample s : in) f.append(s);
+        assertEquals(5L * ROW, Files.size(dir.resolve("n1.tail")));
+        assertSamples(in, f.read(Long.MIN_VALUE, Long.MAX_VALUE));
+
+        SeriesFile again = SeriesFile.open(dir, "n1");
+        assertSamples(in, again.read(Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(f.bytes(), again.bytes());
+        assertEquals(in.get(n - 1).ts(), again.last().ts());
+        assertSamples(in.subList(10, 21), again.read(in.get(10).ts(), in.get(20).ts()));
+    }
+
+    @Test
+    void appendRejectsNonIncreasingTime() throws Exception {
+        SeriesFile f = SeriesFile.open(dir, "n1");
+        f.append(new SeriesFile.Sample(T0, new long[4], 0));
+        assertThrows(IllegalArgumentException.class, () -> f.append(new SeriesFile.Sample(T0, new long[4], 0)));
+    }
+
+    /* =============== 崩溃恢复 =============== */
+
+    @Test
+    void tornTailRowIsDropped() throws Exception {
+        SeriesFile f = SeriesFile.open(dir, "n1");
+        List<SeriesFile.Sample> in = samples(3);
+        for (SeriesFile.Sample s : in) f.append(s);
+        Files.write(dir.resolve("n1.tail"), new byte[ROW / 2], StandardOpenOption.APPEND);
+
+        SeriesFile again = SeriesFile.open(dir, "n1");
+        assertSamples(in, again.read(Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(3L * ROW, Files.size(dir.resolve("n1.tail")));
+    }
+
+    @Test
+    void tornOrCorruptBlockIsTruncated() throws Exception {
+        SeriesFile f = SeriesFile.open(dir, "n1");
+        List<SeriesFile.Sample> in = samples(SeriesFile.BLOCK_SAMPLES * 2);
+        for (SeriesFile.Sample s : in) f.append(s);
+        Path ts = dir.resolve("n1.ts");
+        long firstBlockEnd = firstBlockEnd(ts);
+
+        // 翻转第二块 payload 中的一个字节：CRC 不符，从第二块起截掉
+        byte[] b = Files.readAllBytes(ts);
+        b[(int) firstBlockEnd + 12] ^= 0x55;
+        Files.write(ts, b);
+        SeriesFile again = SeriesFile.open(dir, "n1");
+        assertEquals(firstBlockEnd, Files.size(ts));
+        assertSamples(in.subList(0, SeriesFile.BLOCK_SAMPLES), again.read(Long.MIN_VALUE, Long.MAX_VALUE));
+
+        // 写一半的块头
+        Files.write(ts, new byte[]{0, 0, 1}, StandardOpenOption.APPEND);
+        SeriesFile.open(dir, "n1");
+        assertEquals(firstBlockEnd, Files.size(ts));
+    }
+
+    @Test
+    void tailRowsAlreadySealedAreDropped() throws Exception {
+        SeriesFile f = SeriesFile.open(dir, "n1");
+        List<SeriesFile.Sample> in = samples(SeriesFile.BLOCK_SAMPLES + 1);
+        for (SeriesFile.Sample s : in.subList(0, SeriesFile.BLOCK_SAMPLES)) f.append(s);
+        assertFalse(Files.exists(dir.resolve("n1.tail")));
+
+        // 模拟封块后、清空尾部前崩溃：尾部仍是已封块的最后几行，外加一条新样本
+        ByteBuffer tail = ByteBuffer.allocate(4 * ROW);
+        for (SeriesFile.Sample s : in.subList(SeriesFile.BLOCK_SAMPLES - 3, SeriesFile.BLOCK_SAMPLES + 1)) {
+            tail.putLong(s.ts());
+            for (long v : s.values()) tail.putLong(v);
+            tail.put((byte) s.approxMask());
+        }
+        Files.write(dir.resolve("n1.tail"), tail.array());
+
+        SeriesFile again = SeriesFile.open(dir, "n1");
+        assertSamples(in, again.read(Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals((long) ROW, Files.size(dir.resolve("n1.tail")));
+    }
+
+    /* =============== 工具 =============== */
+
+    private static List<SeriesFile.Sample> samples(int n) {
+        List<SeriesFile.Sample> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            out.add(new SeriesFile.Sample(T0 + i * 60_000L + (i % 5) * 250,
+                    new long[]{100 + i * 2L, 10 + i / 10, 3, i % 4}, i % 10 == 0 ? 1 : 0));
+        }
+        return out;
+    }
+
+    private static List<SeriesFile.Sample> decode(byte[] payload) {
+        List<SeriesFile.Sample> out = new ArrayList<>();
+        SeriesFile.decode(ByteBuffer.wrap(payload), out::add);
+        return out;
+    }
+
+    private static long firstBlockEnd(Path ts) throws Exception {
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(ts));
+        return 8 + b.getInt(0);
+    }
+
+    private static void assertSamples(List<SeriesFile.Sample> expected, List<SeriesFile.Sample> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            SeriesFile.Sample e = expected.get(i);
+            SeriesFile.Sample a = actual.get(i);
+            assertEquals(e.ts(), a.ts(), "ts #" + i);
+            assertArrayEquals(e.values(), a.values());
+            assertEquals(e.approxMask(), a.approxMask(), "approxMask #" + i);
+        }
+    }
+}
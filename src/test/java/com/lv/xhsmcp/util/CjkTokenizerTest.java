@@ -0,0 +1,56 @@
+package com.lv.xhsmcp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CjkTokenizerTest {
+
+    @Test
+    void cjkRunsBecomeOverlappingBigrams() {
+        assertEquals(List.of("春日", "日穿", "穿搭"), CjkTokenizer.tokenize("春日穿搭"));
+        assertEquals(List.of("カメ", "メラ"), CjkTokenizer.tokenize("カメラ"));
+    }
+
+    @Test
+    void indexModeAddsUnigramsForMultiCharRuns() {
+        assertEquals(List.of("小猫", "猫咪", "小", "猫", "咪"), CjkTokenizer.tokenizeForIndex("小猫咪"));
+        assertEquals(List.of("好", "cat"), CjkTokenizer.tokenizeForIndex("好cat"));
+    }
+
+    @Test
+    void singleCharRunIsKept() {
+        assertEquals(List.of("好", "看"), CjkTokenizer.tokenize("好，看"));
+    }
+
+    @Test
+    void wordsAreLowercasedAndSplitFromCjk() {
+        assertEquals(List.of("iphone15", "真香"), CjkTokenizer.tokenize("iPhone15真香"));
+        assertEquals(List.of("hello", "world"), CjkTokenizer.tokenize("Hello, World!"));
+    }
+
+    @Test
+    void fullWidthIsNormalized() {
+        assertEquals(List.of("abc123"), CjkTokenizer.tokenize("ＡＢＣ１２３"));
+    }
+
+    @Test
+    void xhsMarkupAndEmojiAreDropped() {
+        assertEquals(List.of("今天", "出门"), CjkTokenizer.tokenize("[笑哭R]今天[话题]出门😂"));
+    }
+
+    @Test
+    void longWordsAreTruncated() {
+        String w = "a".repeat(40);
+        assertEquals(List.of("a".repeat(32)), CjkTokenizer.tokenize(w));
+    }
+
+    @Test
+    void emptyInput() {
+        assertEquals(List.of(), CjkTokenizer.tokenize(null));
+        assertEquals(List.of(), CjkTokenizer.tokenize(""));
+        assertEquals(List.of(), CjkTokenizer.tokenize("！？ ..."));
+    }
+}
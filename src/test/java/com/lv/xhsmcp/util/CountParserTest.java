@@ -0,0 +1,45 @@
+package com.lv.xhsmcp.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountParserTest {
+
+    @Test
+    void plainNumbers() {
+        assertEquals(0, CountParser.parse("0"));
+        assertEquals(1234, CountParser.parse("1,234"));
+        assertEquals(56, CountParser.parse(" 56 "));
+    }
+
+    @Test
+    void unitsAreExpanded() {
+        assertEquals(12_000, CountParser.parse("1.2万"));
+        assertEquals(3_000, CountParser.parse("3千"));
+        assertEquals(100_000, CountParser.parse("10w+"));
+        assertEquals(15_000, CountParser.parse("1.5W"));
+        assertEquals(2_500, CountParser.parse("2.5k"));
+        assertEquals(120_000_000, CountParser.parse("1.2亿"));
+    }
+
+    @Test
+    void placeholdersAreZero() {
+        assertEquals(0, CountParser.parse(null));
+        assertEquals(0, CountParser.parse(""));
+        assertEquals(0, CountParser.parse("赞"));
+        assertEquals(0, CountParser.parse("评论"));
+        assertEquals(0, CountParser.parse("万"));
+    }
+
+    @Test
+    void approximateOnlyWithUnitOrPlus() {
+        assertTrue(CountParser.isApproximate("1.2万"));
+        assertTrue(CountParser.isApproximate("10w+"));
+        assertTrue(CountParser.isApproximate("999+"));
+        assertTrue(CountParser.isApproximate("3K"));
+        assertFalse(CountParser.isApproximate("1,234"));
+        assertFalse(CountParser.isApproximate(""));
+        assertFalse(CountParser.isApproximate(null));
+    }
+}